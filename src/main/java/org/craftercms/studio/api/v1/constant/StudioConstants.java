@@ -57,6 +57,7 @@ package org.craftercms.studio.api.v1.constant;
    String PATTERN_PATH = "\\{path\\}";
    String PATTERN_FROM_PATH = "\\{fromPath\\}";
    String PATTERN_TO_PATH = "\\{toPath\\}";
+   String PATTERN_COUNT = "\\{count\\}";
    String PATTERN_WEB_PROJECT = "\\$\\{webproject\\}";
    String PATTERN_BASE_URL = "\\{baseUrl\\}";
 
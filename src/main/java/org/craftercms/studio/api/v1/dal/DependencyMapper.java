@@ -44,6 +44,8 @@ public interface DependencyMapper {
 
     void deleteAllSourceDependencies(Map params);
 
+    void deleteAllSourceDependenciesForPaths(Map params);
+
     void insertList(Map params);
 
     List<DependencyEntity> getDependenciesByType(Map params);
@@ -63,4 +65,10 @@ public interface DependencyMapper {
     List<Map<String, String>> calculatePublishingDependenciesForList(Map params);
 
     void moveDependency(Map params);
+
+    List<DependencyEntity> getDependenciesForSite(Map params);
+
+    void bumpDependenciesVersion(Map params);
+
+    Long getDependenciesVersion(Map params);
 }
@@ -31,6 +31,8 @@ public class DeploymentSyncHistory implements Serializable {
     protected String target;
     protected String username;
     protected String contentTypeClass;
+    protected String commitId;
+    protected String packageId;
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -55,4 +57,10 @@ public class DeploymentSyncHistory implements Serializable {
 
     public String getContentTypeClass() { return contentTypeClass; }
     public void setContentTypeClass(String contentTypeClass) { this.contentTypeClass = contentTypeClass; }
+
+    public String getCommitId() { return commitId; }
+    public void setCommitId(String commitId) { this.commitId = commitId; }
+
+    public String getPackageId() { return packageId; }
+    public void setPackageId(String packageId) { this.packageId = packageId; }
 }
@@ -24,21 +24,29 @@ public interface ItemMetadataMapper {
 
     ItemMetadata getProperties(Map params);
 
+    List<ItemMetadata> getPropertiesForSiteAndPaths(Map params);
+
     void setProperties(Map params);
 
-    void insertEntry(Map params);
+    void setPropertiesForSiteAndPaths(Map params);
+
+    int insertEntry(Map params);
+
+    int insertEntries(Map params);
 
     int countEntries(Map params);
 
     int countAllItems();
 
-    void deleteEntry(Map params);
+    int deleteEntry(Map params);
+
+    int deleteEntries(Map params);
 
-    void deleteFolder(Map params);
+    int deleteFolder(Map params);
 
     void setLockOwner(Map params);
 
-    void deleteObjectMetadataForSite(Map params);
+    int deleteObjectMetadataForSite(Map params);
 
     void updateObjectPath(Map params);
 
@@ -42,22 +42,30 @@ public interface ItemStateMapper {
 
     void insertEntry(ItemState itemState);
 
+    void insertEntries(Map params);
+
     void setObjectState(ItemState itemState);
 
     List<ItemState> getObjectStateForSiteAndPaths(Map params);
 
     void setObjectStateForSiteAndPaths(Map params);
 
+    void setObjectStateForObjectIds(Map params);
+
     void updateObjectPath(Map params);
 
     void deleteObjectStatesForSite(Map params);
 
     void deleteObjectStateForSiteAndPath(Map params);
 
+    void deleteObjectStatesForSiteAndPaths(Map params);
+
     void deleteObjectStateForSiteAndFolder(Map params);
 
     int isFolderLive(Map<String, Object> params);
 
+    List<String> getLiveFolders(Map<String, Object> params);
+
     void setStateForSiteContent(Map params);
 
     List<ItemState> getChangeSetForSubtree(Map params);
@@ -37,6 +37,13 @@ public interface PublishRequestMapper {
 
     void updateItemDeploymentState(PublishRequest item);
 
+    /**
+     * Update the state of multiple publishing requests with a single statement
+     *
+     * @param params SQL query parameters, the new state and the ids of the requests
+     */
+    void updateItemsDeploymentState(Map params);
+
     void deleteDeploymentDataForSite(Map params);
 
     PublishRequest checkPublishingStatus(Map params);
@@ -50,5 +50,9 @@ public interface SiteFeedMapper {
 
     void updateLastVerifiedGitlogCommitId(Map params);
 
+    void updateLastIndexedCommitId(Map params);
+
+    String getLastIndexedCommitId(Map params);
+
     List<SiteFeed> getDeletedSites();
 }
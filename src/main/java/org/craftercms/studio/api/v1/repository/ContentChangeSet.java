@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v1.repository;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set of changes to be committed to the repository of a site as a single commit, see
+ * {@link ContentRepository#commitChangeSet(String, ContentChangeSet, String, String)}. Changes are applied in the
+ * order they are added, so a change can depend on the result of the previous ones.
+ */
+public class ContentChangeSet {
+
+    public enum ChangeType {
+        WRITE,
+        CREATE_FOLDER,
+        DELETE,
+        MOVE,
+        COPY
+    }
+
+    protected final List<Change> changes = new ArrayList<Change>();
+
+    /**
+     * Write a file, creating it and its parent folders if they don't exist
+     *
+     * @param path path of the file
+     * @param content content of the file, read when the change set is committed
+     * @return this change set
+     */
+    public ContentChangeSet write(String path, InputStream content) {
+        changes.add(new Change(ChangeType.WRITE, path, null, content));
+        return this;
+    }
+
+    /**
+     * Create a folder and its parent folders if they don't exist
+     *
+     * @param path path of the folder
+     * @return this change set
+     */
+    public ContentChangeSet createFolder(String path) {
+        changes.add(new Change(ChangeType.CREATE_FOLDER, path, null, null));
+        return this;
+    }
+
+    /**
+     * Delete a file or a folder with all its content
+     *
+     * @param path path of the file or folder
+     * @return this change set
+     */
+    public ContentChangeSet delete(String path) {
+        changes.add(new Change(ChangeType.DELETE, path, null, null));
+        return this;
+    }
+
+    /**
+     * Move a file, or a folder with all its content
+     *
+     * @param fromPath path of the file or folder to move
+     * @param toPath new path of the file or folder
+     * @return this change set
+     */
+    public ContentChangeSet move(String fromPath, String toPath) {
+        changes.add(new Change(ChangeType.MOVE, fromPath, toPath, null));
+        return this;
+    }
+
+    /**
+     * Copy a file, or a folder with all its content
+     *
+     * @param fromPath path of the file or folder to copy
+     * @param toPath path of the copy
+     * @return this change set
+     */
+    public ContentChangeSet copy(String fromPath, String toPath) {
+        changes.add(new Change(ChangeType.COPY, fromPath, toPath, null));
+        return this;
+    }
+
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public static class Change {
+
+        protected final ChangeType type;
+        protected final String path;
+        protected final String toPath;
+        protected final InputStream content;
+
+        protected Change(ChangeType type, String path, String toPath, InputStream content) {
+            this.type = type;
+            this.path = path;
+            this.toPath = toPath;
+            this.content = content;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getToPath() {
+            return toPath;
+        }
+
+        public InputStream getContent() {
+            return content;
+        }
+    }
+}
@@ -33,8 +33,10 @@ import org.craftercms.studio.api.v1.to.RepoOperationTO;
 import org.craftercms.studio.api.v1.to.VersionTO;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This interface represents the repository layer of Crafter Studio.  All interaction with the backend
@@ -53,6 +55,16 @@ public interface ContentRepository {
      */
     boolean contentExists(String site, String path);
 
+    /**
+     * Determine which of the given paths have content in the repository. All the paths are checked against the
+     * same commit, so it is much cheaper than calling {@link #contentExists(String, String)} for each path.
+     *
+     * @param site site id where the operation will be executed
+     * @param paths paths to check
+     * @return subset of the paths that have a content object
+     */
+    Set<String> getExistingPaths(String site, Collection<String> paths);
+
     /**
      * get document from wcm content
      *
@@ -71,6 +83,16 @@ public interface ContentRepository {
      */
     long getContentSize(String site, String path);
 
+    /**
+     * Get the id of the object stored at a given path in the last commit of the repository. The id changes every
+     * time the content changes, so it can be used as a version key for anything derived from the content.
+     *
+     * @param site site id where the operation will be executed
+     * @param path path to content
+     * @return object id, or null if there is no content at path
+     */
+    String getContentObjectId(String site, String path);
+
     /**
      * write content
      *
@@ -81,6 +103,18 @@ public interface ContentRepository {
      */
     String writeContent(String site, String path, InputStream content) throws ServiceLayerException;
 
+    /**
+     * Apply a set of changes and commit all of them as a single commit. The repository is locked once for the
+     * whole change set, so it is much cheaper than writing, deleting or moving each path on its own.
+     *
+     * @param site site id where the operation will be executed
+     * @param changeSet changes to apply
+     * @param comment commit message
+     * @param author user that authors the commit, the current user if empty
+     * @return Commit Id if successful, null if it failed or nothing changed
+     */
+    String commitChangeSet(String site, ContentChangeSet changeSet, String comment, String author);
+
     /**
      * create a folder
      *
@@ -279,6 +313,39 @@ public interface ContentRepository {
      */
     List<RepoOperationTO> getOperations(String site, String commitIdFrom, String commitIdTo);
 
+    /**
+     * Get the net operations between two commits, comparing both trees at once with rename detection. All the
+     * operations are attributed to the author and date of commitIdTo.
+     *
+     * @param site         site to use
+     * @param commitIdFrom commit ID to start at, the empty tree if empty
+     * @param commitIdTo   commit ID to end at
+     * @return net operations, at most one per path
+     */
+    List<RepoOperationTO> getNetOperations(String site, String commitIdFrom, String commitIdTo);
+
+    /**
+     * Get the net operations of a list of commits. Each run of commits where every commit is the only child of the
+     * previous one is compared at once with rename detection, so the commits that are not in the list are never
+     * included. Every operation is attributed to the author, date and id of the last commit that touched its path.
+     *
+     * @param site      site to use
+     * @param commitIds commits to get the operations of, parents first
+     * @return net operations of each run of commits, in the order of the runs
+     */
+    List<RepoOperationTO> getNetOperations(String site, List<String> commitIds);
+
+    /**
+     * Get the IDs of the commits after commitIdFrom up to commitIdTo, oldest first, skipping the commits that are
+     * marked not to be processed
+     *
+     * @param site         site to use
+     * @param commitIdFrom commit ID to start at (excluded), all the history if empty
+     * @param commitIdTo   commit ID to end at (included)
+     * @return list of commit IDs
+     */
+    List<String> getCommitIds(String site, String commitIdFrom, String commitIdTo);
+
     /**
      * Get last commit id from repository for given site.
      *
@@ -295,6 +362,14 @@ public interface ContentRepository {
      */
     String getRepoFirstCommitId(String site);
 
+    /**
+     * Get the commit ids of the branches of the published repository for given site
+     *
+     * @param site site id
+     * @return commit id of each branch by branch name, empty if the published repository doesn't exist
+     */
+    Map<String, String> getPublishedBranchHeads(String site);
+
     /**
      * Get a list of commits for updates on a content
      *
@@ -356,6 +431,15 @@ public interface ContentRepository {
      */
     void deleteGitLogForSite(String siteId);
 
+    /**
+     * Index the commits of the sandbox repository of a site that changed each path, used for the version history
+     *
+     * @param site site id
+     * @param rebuild if true the index is built again from the whole history, otherwise only the commits after
+     *                the last indexed one are indexed
+     */
+    void updateCommitPathIndex(String site, boolean rebuild);
+
     /**
      * Create new site as a clone from remote repository
      *
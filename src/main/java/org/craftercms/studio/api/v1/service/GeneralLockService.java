@@ -16,6 +16,8 @@
  */
 package org.craftercms.studio.api.v1.service;
 
+import java.util.concurrent.TimeUnit;
+
 public interface GeneralLockService {
 
     String MASTER_LOCK = "MASTER LOCK";
@@ -25,4 +27,14 @@ public interface GeneralLockService {
     void unlock(String objectId);
 
     boolean tryLock(String objectId);
+
+    /**
+     * Try to get the lock for the given id, waiting up to the given time if it is held by another thread
+     *
+     * @param objectId id of the object to lock
+     * @param timeout maximum time to wait for the lock
+     * @param unit time unit of the timeout
+     * @return true if the lock was acquired
+     */
+    boolean tryLock(String objectId, long timeout, TimeUnit unit);
 }
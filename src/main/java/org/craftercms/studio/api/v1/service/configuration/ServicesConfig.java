@@ -165,6 +165,13 @@ public interface ServicesConfig {
 
     void reloadConfiguration(String site);
 
+    /**
+     * Discard the cached configuration for given site, it will be loaded again on next access
+     *
+     * @param site site id
+     */
+    void invalidateConfiguration(String site);
+
     /**
      * Get sandbox branch name for given site
      *
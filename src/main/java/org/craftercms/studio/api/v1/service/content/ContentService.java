@@ -20,6 +20,7 @@ package org.craftercms.studio.api.v1.service.content;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.craftercms.studio.api.v1.exception.ContentNotFoundException;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
@@ -118,6 +119,18 @@ public interface ContentService {
      */
     String copyContent(String site, String fromPath, String toPath);
 
+    /**
+     * copy trees of content to toPath in a single operation: the whole copy is planned first (new names, object ids
+     * and copy dependencies), written to the repository as one commit and then the item states, metadata and
+     * dependencies are updated in batches
+     *
+     * @param site   - the project ID
+     * @param items  the items to copy, their children are copied into the copy of each item
+     * @param toPath the target path to copy the items to
+     * @return final paths of the copied items, not including the copy dependencies
+     */
+    Set<String> copyContentTree(String site, List<ContentCopyTO> items, String toPath);
+
     /**
      * move content fromPath to toPath
      *
@@ -18,8 +18,25 @@
 package org.craftercms.studio.api.v1.service.content;
 
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
+import org.craftercms.studio.api.v1.to.ImportJobTO;
 
 public interface ImportService {
 
     void importSite(String configLocation) throws SiteNotFoundException;
+
+    /**
+     * Get the status of the import of a site
+     *
+     * @param site site id
+     * @return the running import, or the last one if none is running, null if the site has not been imported
+     */
+    ImportJobTO getImportJob(String site);
+
+    /**
+     * Cancel the running import of a site. The files committed before the cancellation are kept.
+     *
+     * @param site site id
+     * @return true if there was an import running
+     */
+    boolean cancelImport(String site);
 }
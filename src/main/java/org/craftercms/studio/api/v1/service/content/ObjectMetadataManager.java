@@ -26,10 +26,37 @@ public interface ObjectMetadataManager {
 
     void insertNewObjectMetadata(String site, String path);
 
+    /**
+     * Insert empty metadata for a list of paths in a single statement per batch, paths that already have metadata
+     * are skipped
+     *
+     * @param site site id
+     * @param paths paths to insert the metadata for
+     */
+    void insertNewObjectMetadata(String site, List<String> paths);
+
     void setObjectMetadata(String site, String path, Map<String, Object> properties);
 
+    /**
+     * Set the same properties for a list of paths in a single statement per batch
+     *
+     * @param site site id
+     * @param paths paths to update
+     * @param properties properties to set
+     */
+    void setObjectMetadata(String site, List<String> paths, Map<String, Object> properties);
+
     ItemMetadata getProperties(String site, String path);
 
+    /**
+     * Get the metadata for a list of paths in a single query per batch
+     *
+     * @param site site id
+     * @param paths paths to get the metadata for
+     * @return metadata by path, paths without metadata are not included
+     */
+    Map<String, ItemMetadata> getProperties(String site, List<String> paths);
+
     boolean metadataExist(String site, String path);
 
     boolean isRenamed(String site, String path);
@@ -44,6 +71,14 @@ public interface ObjectMetadataManager {
 
     void deleteObjectMetadata(String site, String path);
 
+    /**
+     * Delete the metadata for a list of paths in a single statement per batch
+     *
+     * @param site site id
+     * @param paths paths to delete the metadata for
+     */
+    void deleteObjectMetadata(String site, List<String> paths);
+
     void deleteObjectMetadataForFolder(String site, String path);
 
     void updateObjectPath(String site, String oldUri, String relativePath);
@@ -17,6 +17,7 @@
 
 package org.craftercms.studio.api.v1.service.dependency;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,4 +49,13 @@ public interface DependencyResolver {
      */
     Map<String, Set<String>> resolve(String site, String path);
 
+    /**
+     * Resolves dependent files for a list of items, sharing the configuration and repository lookups between them
+     *
+     * @param site site id
+     * @param paths paths of the items
+     * @return dependencies by type for each path, in the order of the given paths
+     */
+    Map<String, Map<String, Set<String>>> resolve(String site, List<String> paths);
+
 }
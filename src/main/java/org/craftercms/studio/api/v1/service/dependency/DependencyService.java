@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
 import org.craftercms.studio.api.v1.exception.ContentNotFoundException;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
@@ -62,6 +63,18 @@ public interface DependencyService {
 	Set<String> upsertDependencies(String site, List<String> paths)
             throws SiteNotFoundException, ContentNotFoundException, ServiceLayerException;
 
+	/**
+	 * Scan a list of items for direct dependencies without updating the
+	 * dependencies database.
+	 *
+	 * @param site Site to operate on
+	 * @param paths List of paths to items to scan
+	 * @return dependencies found, one entity per source, target and type
+	 * @throws ServiceLayerException Internal error, see exception details
+	 */
+	List<DependencyEntity> resolveDependencyEntities(String site, List<String> paths)
+			throws ServiceLayerException;
+
 	/**
 	 * Get a all publishing dependencies of a list of items. A publishing
 	 * dependency is:
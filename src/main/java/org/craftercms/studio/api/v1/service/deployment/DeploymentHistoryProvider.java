@@ -48,4 +48,19 @@ public interface DeploymentHistoryProvider {
      * @return last deployment date or null if never deployed
      */
     ZonedDateTime getLastDeploymentDate(String site, String path);
+
+    /**
+     * Record in the deployment history the publishing done before it was kept, entries already recorded are
+     * skipped
+     *
+     * @param site site id
+     */
+    void backfillDeploymentHistory(String site);
+
+    /**
+     * Delete the deployment history of given site
+     *
+     * @param site site id
+     */
+    void deleteDeploymentHistoryForSite(String site);
 }
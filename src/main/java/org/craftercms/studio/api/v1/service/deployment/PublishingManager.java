@@ -33,6 +33,17 @@ public interface PublishingManager {
 
     DeploymentItemTO processItem(PublishRequest item) throws DeploymentException, SiteNotFoundException;
 
+    /**
+     * Process a batch of publishing requests of a site. Works like {@link #processItem(PublishRequest)} but the
+     * state and the metadata of the items are read and updated for the whole batch at once.
+     *
+     * @param items publishing requests of the same site
+     * @return deployment items in the same order as the requests, null for the requests that were skipped
+     * @throws DeploymentException if any of the requests can't be processed
+     * @throws SiteNotFoundException if the site doesn't exist
+     */
+    List<DeploymentItemTO> processItems(List<PublishRequest> items) throws DeploymentException, SiteNotFoundException;
+
     void markItemsCompleted(String site, String environment, List<PublishRequest> processedItems)
         throws DeploymentException;
 
@@ -25,8 +25,23 @@ import java.util.List;
 
 public interface EventService {
 
+    /**
+     * Publish an event, depending on the configuration of the event the listeners are invoked asynchronously or the
+     * call waits until all of them have been invoked
+     *
+     * @param event event name
+     * @param args arguments passed to the listeners
+     */
     void publish(String event, Object... args);
 
+    /**
+     * Publish an event and wait until all the listeners have been invoked
+     *
+     * @param event event name
+     * @param args arguments passed to the listeners
+     */
+    void publishAndWait(String event, Object... args);
+
     void subscribe(String event, String listener, Method method);
 
     void unSubscribe(String event, String listener);
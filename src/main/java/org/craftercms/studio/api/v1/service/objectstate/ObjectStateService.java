@@ -21,6 +21,8 @@ import org.craftercms.studio.api.v1.dal.ItemState;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ObjectStateService {
 
@@ -38,6 +40,15 @@ public interface ObjectStateService {
 
     ItemState getObjectState(String site, String path, boolean insert);
 
+    /**
+     * Get the states for a list of paths in a single query per batch, missing states are not inserted
+     *
+     * @param site site id
+     * @param paths paths to get the states for
+     * @return states by path, paths without state are not included
+     */
+    Map<String, ItemState> getObjectStates(String site, List<String> paths);
+
     void setSystemProcessing(String site, String path, boolean isSystemProcessing);
 
     void setSystemProcessingBulk(String site, List<String> paths, boolean isSystemProcessing);
@@ -58,10 +69,31 @@ public interface ObjectStateService {
 
     void deleteObjectStateForPath(String site, String path);
 
+    /**
+     * Delete the states for a list of paths in a single statement per batch
+     *
+     * @param site site id
+     * @param paths paths to delete the states for
+     */
+    void deleteObjectStatesForPaths(String site, List<String> paths);
+
     void deleteObjectStatesForFolder(String site, String path);
 
     void transitionBulk(String site, List<String> paths, org.craftercms.studio.api.v1.service.objectstate.TransitionEvent event, org.craftercms.studio.api.v1.service.objectstate.State defaultTargetState);
 
+    /**
+     * Bulk equivalent of {@link #transition(String, String, TransitionEvent)}: paths without state get a new entry
+     * and the rest are moved to the next state of the transition table, with one statement per batch of new entries
+     * and per batch of entries moving to the same state. The paths of each batch are locked like in a single
+     * transition, and errors are logged instead of thrown. If a batch fails, its paths that didn't reach their
+     * target state are transitioned one by one.
+     *
+     * @param site site id
+     * @param paths paths to transition
+     * @param event transition event
+     */
+    void transitionBulk(String site, List<String> paths, TransitionEvent event);
+
     /**
      * get the object for a given set of states
      */
@@ -75,6 +107,15 @@ public interface ObjectStateService {
 
     boolean isFolderLive(String site, String uri);
 
+    /**
+     * Batch version of {@link #isFolderLive(String, String)}
+     *
+     * @param site site id
+     * @param folderPaths folders to check
+     * @return the folders that contain live content
+     */
+    Set<String> getLiveFolders(String site, List<String> folderPaths);
+
     boolean isSubmitted(String site, String dep);
 
     void setStateForSiteContent(String site, State state);
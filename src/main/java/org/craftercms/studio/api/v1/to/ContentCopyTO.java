@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v1.to;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Item to copy with a tree copy, see
+ * {@link org.craftercms.studio.api.v1.service.content.ContentService#copyContentTree(String, List, String)}. The
+ * children are copied into the copy of the item.
+ */
+public class ContentCopyTO implements Serializable {
+
+    private static final long serialVersionUID = -2383497157302418923L;
+
+    protected String fromPath;
+    protected List<ContentCopyTO> children = new ArrayList<ContentCopyTO>();
+
+    public ContentCopyTO(String fromPath) {
+        this.fromPath = fromPath;
+    }
+
+    public String getFromPath() {
+        return fromPath;
+    }
+
+    public void setFromPath(String fromPath) {
+        this.fromPath = fromPath;
+    }
+
+    public List<ContentCopyTO> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<ContentCopyTO> children) {
+        this.children = children;
+    }
+}
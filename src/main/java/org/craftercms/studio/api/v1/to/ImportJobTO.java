@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v1.to;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Status and progress of the import of a site
+ */
+public class ImportJobTO {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+
+    protected String site;
+    protected String user;
+    protected Status status;
+    protected int totalFiles;
+    protected int importedFiles;
+    protected int skippedFiles;
+    protected int failedFiles;
+    protected int commits;
+    protected ZonedDateTime startDate;
+    protected ZonedDateTime endDate;
+    protected String message;
+
+    public String getSite() {
+        return site;
+    }
+
+    public void setSite(String site) {
+        this.site = site;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    public void setTotalFiles(int totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    public int getImportedFiles() {
+        return importedFiles;
+    }
+
+    public void setImportedFiles(int importedFiles) {
+        this.importedFiles = importedFiles;
+    }
+
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public void setSkippedFiles(int skippedFiles) {
+        this.skippedFiles = skippedFiles;
+    }
+
+    public int getFailedFiles() {
+        return failedFiles;
+    }
+
+    public void setFailedFiles(int failedFiles) {
+        this.failedFiles = failedFiles;
+    }
+
+    public int getProcessedFiles() {
+        return importedFiles + skippedFiles + failedFiles;
+    }
+
+    public int getCommits() {
+        return commits;
+    }
+
+    public void setCommits(int commits) {
+        this.commits = commits;
+    }
+
+    public ZonedDateTime getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(ZonedDateTime startDate) {
+        this.startDate = startDate;
+    }
+
+    public ZonedDateTime getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(ZonedDateTime endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -42,7 +42,21 @@ public interface StudioConfiguration {
     String REPO_PUBLISHED_LIVE = "studio.repo.published.live";
     String REPO_PUBLISHED_STAGING = "studio.repo.published.staging";
     String REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING = "studio.repo.syncDB.commitMessage.noProcessing";
+    String REPO_SYNC_DB_GENERATE_AUDIT_LOG = "studio.repo.syncDB.generateAuditLog";
+    String REPO_REBUILD_METADATA_INCREMENTAL = "studio.repo.rebuildMetadata.incremental";
     String REPO_CLEANUP_CRON = "studio.repo.cleanup.cron";
+    String REPO_DEPLOYMENT_HISTORY_BACKFILL_START_DELAY = "studio.repo.deploymentHistory.backfill.startDelay";
+    String REPO_COMMIT_PATH_INDEX_UPDATE_START_DELAY = "studio.repo.commitPathIndex.update.startDelay";
+    String REPO_SNAPSHOT_MAX_SITES = "studio.repo.snapshot.maxSites";
+    String REPO_SNAPSHOT_MAX_ENTRIES = "studio.repo.snapshot.maxEntries";
+    String REPO_HANDLE_CACHE_MAX_SIZE = "studio.repo.handleCache.maxSize";
+    String REPO_HANDLE_CACHE_IDLE_TIMEOUT = "studio.repo.handleCache.idleTimeout";
+    String REPO_WINDOW_CACHE_PACKED_GIT_OPEN_FILES = "studio.repo.windowCache.packedGitOpenFiles";
+    String REPO_WINDOW_CACHE_PACKED_GIT_LIMIT = "studio.repo.windowCache.packedGitLimit";
+    String REPO_WINDOW_CACHE_PACKED_GIT_WINDOW_SIZE = "studio.repo.windowCache.packedGitWindowSize";
+    String REPO_WINDOW_CACHE_PACKED_GIT_MMAP = "studio.repo.windowCache.packedGitMMAP";
+    String REPO_WINDOW_CACHE_DELTA_BASE_CACHE_LIMIT = "studio.repo.windowCache.deltaBaseCacheLimit";
+    String REPO_WINDOW_CACHE_STREAM_FILE_THRESHOLD = "studio.repo.windowCache.streamFileThreshold";
     String REPO_CREATE_REPOSITORY_COMMIT_MESSAGE = "studio.repo.createRepository.commitMessage";
     String REPO_CREATE_SANDBOX_BRANCH_COMMIT_MESSAGE = "studio.repo.createSandboxBranch.commitMessage";
     String REPO_INITIAL_COMMIT_COMMIT_MESSAGE = "studio.repo.initialCommit.commitMessage";
@@ -51,6 +65,8 @@ public interface StudioConfiguration {
     String REPO_DELETE_CONTENT_COMMIT_MESSAGE = "studio.repo.deleteContent.commitMessage";
     String REPO_MOVE_CONTENT_COMMIT_MESSAGE = "studio.repo.moveContent.commitMessage";
     String REPO_COPY_CONTENT_COMMIT_MESSAGE = "studio.repo.copyContent.commitMessage";
+    String REPO_COPY_CONTENT_TREE_COMMIT_MESSAGE = "studio.repo.copyContentTree.commitMessage";
+    String REPO_NEXT_AVAILABLE_NAME_RESERVATION_TIMEOUT = "studio.repo.nextAvailableName.reservationTimeout";
 
     /** Database */
     String DB_DRIVER = "studio.db.driver";
@@ -123,8 +139,8 @@ public interface StudioConfiguration {
 
     /** Import Service */
     String IMPORT_ASSIGNEE = "studio.import.assignee";
-    String IMPORT_XML_CHAIN_NAME = "studio.import.xmlChainName";
-    String IMPORT_ASSET_CHAIN_NAME = "studio.import.assetChainName";
+    String IMPORT_CHECKPOINT_SIZE = "studio.import.checkpointSize";
+    String IMPORT_COMMIT_MESSAGE = "studio.import.commitMessage";
 
     /** Notification Service */
     String NOTIFICATION_CONFIGURATION_FILE = "studio.notification.configurationFile";
@@ -152,6 +168,7 @@ public interface StudioConfiguration {
     String SECURITY_FORGOT_PASSWORD_EMAIL_TEMPLATE = "studio.security.forgotPassword.email.template";
     String SECURITY_FORGOT_PASSWORD_TOKEN_TIMEOUT = "studio.security.forgotPassword.token.timeout";
     String SECURITY_RESET_PASSWORD_SERVICE_URL = "studio.security.resetPassword.serviceUrl";
+    String SECURITY_PERMISSIONS_DECISION_CACHE_MAX_SIZE = "studio.security.permissions.decisionCache.maxSize";
 
     /** Authentication headers **/
     String AUTHENTICATION_HEADERS_LOGOUT_ENABLED = "studio.authentication.headers.logout.enabled";
@@ -194,6 +211,8 @@ public interface StudioConfiguration {
             "studio.job.deployContentToEnvironment.status.message.stopped.user";
     String JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_STARTED_USER =
             "studio.job.deployContentToEnvironment.status.message.started.user";
+    String JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_UPDATE_INTERVAL =
+            "studio.job.deployContentToEnvironment.status.updateInterval";
     String JOB_DEPLOYMENT_MASTER_PUBLISHING_NODE = "studio.job.deployment.masterPublishingNode";
 
     /** Content Types Filter Patterns */
@@ -209,6 +228,10 @@ public interface StudioConfiguration {
     String PREVIEW_DISABLE_DEPLOY_CRON = "studio.preview.disableDeployCron";
     String PREVIEW_TEMPLATE_NAME = "studio.preview.templateName";
     String PREVIEW_REPO_URL = "studio.preview.repoUrl";
+    String PREVIEW_SYNC_QUIET_PERIOD = "studio.preview.sync.quietPeriod";
+    String PREVIEW_SYNC_MAX_DELAY = "studio.preview.sync.maxDelay";
+    String PREVIEW_SYNC_THREAD_POOL_NAME_PREFIX = "studio.preview.sync.threadPool.namePrefix";
+    String PREVIEW_SYNC_THREAD_POOL_SIZE = "studio.preview.sync.threadPool.poolSize";
 
     /** Authoring Deployer **/
     String AUTHORING_TEMPLATE_NAME = "studio.authoring.templateName";
@@ -221,6 +244,7 @@ public interface StudioConfiguration {
     String PUBLISHING_MANAGER_INDEX_FILE = "studio.publishingManager.indexFile";
     String PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED =
             "studio.publishingManager.publishingWithoutDependencies.enabled";
+    String PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE = "studio.publishingManager.stateUpdateBatchSize";
 
     /** Authentication Chain properties **/
     String AUTHENTICATION_CHAIN_PROVIDER_TYPE = "provider";
@@ -255,6 +279,26 @@ public interface StudioConfiguration {
     String PUBLISHING_THREAD_POOL_CORE_POOL_SIZE = "studio.publishing.threadPool.corePoolSize";
     String PUBLISHING_THREAD_POOL_MAX_POOL_SIZE = "studio.publishing.threadPool.maxPoolSize";
 
+    /** Dependency Resolution Thread Pool **/
+    String DEPENDENCY_THREAD_POOL_NAME_PREFIX = "studio.dependency.threadPool.namePrefix";
+    String DEPENDENCY_THREAD_POOL_CORE_POOL_SIZE = "studio.dependency.threadPool.corePoolSize";
+    String DEPENDENCY_THREAD_POOL_MAX_POOL_SIZE = "studio.dependency.threadPool.maxPoolSize";
+
+    /** Dependency Graph **/
+    String DEPENDENCY_GRAPH_ENABLED = "studio.dependency.graph.enabled";
+    String DEPENDENCY_GRAPH_VALIDATION_INTERVAL = "studio.dependency.graph.validationInterval";
+
+    /** Item Counter **/
+    String ITEM_COUNTER_CACHE_TIME_TO_LIVE = "studio.itemCounter.cacheTimeToLive";
+    String ITEM_COUNTER_RECONCILIATION_CRON = "studio.itemCounter.reconciliation.cron";
+
+    /** Event Bus **/
+    String EVENT_BUS_THREAD_POOL_NAME_PREFIX = "studio.eventBus.threadPool.namePrefix";
+    String EVENT_BUS_THREAD_POOL_CORE_POOL_SIZE = "studio.eventBus.threadPool.corePoolSize";
+    String EVENT_BUS_THREAD_POOL_MAX_POOL_SIZE = "studio.eventBus.threadPool.maxPoolSize";
+    String EVENT_BUS_QUEUE_CAPACITY = "studio.eventBus.queueCapacity";
+    String EVENT_BUS_AWAIT_EVENTS = "studio.eventBus.awaitEvents";
+
     /** Clustering Thread Pool **/
     String CLUSTERING_SANDBOX_SYNC_JOB_INTERVAL = "studio.clustering.sandboxSyncJob.interval";
     String CLUSTERING_PUBLISHED_SYNC_JOB_INTERVAL = "studio.clustering.publishedSyncJob.interval";
@@ -263,6 +307,8 @@ public interface StudioConfiguration {
     String CLUSTERING_THREAD_POOL_NAME_PREFIX = "studio.clustering.threadPool.namePrefix";
     String CLUSTERING_THREAD_POOL_CORE_POOL_SIZE = "studio.clustering.threadPool.corePoolSize";
     String CLUSTERING_THREAD_POOL_MAX_POOL_SIZE = "studio.clustering.threadPool.maxPoolSize";
+    String CLUSTERING_FETCH_THREAD_POOL_SIZE = "studio.clustering.fetchThreadPool.poolSize";
+    String CLUSTERING_FETCH_THREAD_POOL_QUEUE_CAPACITY = "studio.clustering.fetchThreadPool.queueCapacity";
     String CLUSTERING_HEARTBEAT_STALE_TIME_LIMIT = "studio.clustering.heartbeatStale.timeLimit";
     String CLUSTERING_INACTIVITY_TIME_LIMIT = "studio.clustering.inactivity.timeLimit";
 
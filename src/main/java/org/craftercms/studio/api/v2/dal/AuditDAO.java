@@ -36,6 +36,8 @@ public interface AuditDAO {
 
     int insertAuditLog(AuditLog auditLog);
 
+    void insertAuditLogs(Map params);
+
     void insertAuditLogParams(Map params);
 
     List<AuditLog> selectUserFeedEntriesHideLive(Map params);
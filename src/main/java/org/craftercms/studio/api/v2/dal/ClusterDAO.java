@@ -129,5 +129,22 @@ public interface ClusterDAO {
      */
     List<ClusterMember> getInactiveMembersWithStaleHeartbeat(Map params);
 
+    /**
+     * Insert or update the repository state of the given sites for a cluster node
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int upsertSiteSyncRepos(Map params);
+
+    /**
+     * Get the repository state of all sites in the other cluster nodes
+     *
+     * @param params Parameters for SQL query
+     * @return List of repository states
+     */
+    List<ClusterSiteSyncRepo> getOtherNodesSiteSyncRepos(Map params);
+
 
 }
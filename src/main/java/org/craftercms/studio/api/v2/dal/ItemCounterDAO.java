@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of items of each site, kept up to date by the writes to the item metadata so the totals don't need to be
+ * counted from the item metadata table.
+ */
+public interface ItemCounterDAO {
+
+    /**
+     * Add to the number of items of a site, the delta can be negative
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int addItemCount(Map params);
+
+    /**
+     * Remove the number of items of a site
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int deleteItemCount(Map params);
+
+    /**
+     * Get the number of items of all sites
+     *
+     * @return total number of items
+     */
+    long getTotalItemCount();
+
+    /**
+     * Get the number of items of each site, locking the counters until the end of the transaction so no item
+     * metadata write can commit in between
+     *
+     * @return number of items per site
+     */
+    List<ItemCount> lockItemCounts();
+
+    /**
+     * Count the items of each site in the item metadata table, used to reconcile the counters
+     *
+     * @return number of items per site
+     */
+    List<ItemCount> countMetadataItems();
+}
@@ -93,6 +93,10 @@ public abstract class QueryParameterNames {
     public static final String CLUSTER_INACTIVE_STATE = "inactiveState";
     // Stale heartbeat limit
     public static final String CLUSTER_HEARTBEAT_STALE_LIMIT = "heartbeatStaleLimit";
+    // Repository type
+    public static final String CLUSTER_REPO_TYPE = "repoType";
+    // Repository states
+    public static final String CLUSTER_SITE_SYNC_REPOS = "siteSyncRepos";
 
     /* Publish request */
     // Environment
@@ -119,5 +123,21 @@ public abstract class QueryParameterNames {
 
     public static final String INCLUDE_PARAMETERS = "includeParameters";
 
+    /* Metadata rebuild */
+
+    // Paths of the items
+    public static final String REBUILD_PATHS = "paths";
+    // Dependencies to stage
+    public static final String REBUILD_DEPENDENCIES = "dependencies";
+    // Ids of the dependency rows
+    public static final String REBUILD_DEPENDENCY_IDS = "dependencyIds";
+    // Paths left out of the comparison
+    public static final String REBUILD_EXCLUDED_PATHS = "excludedPaths";
+
+    /* Item counter */
+
+    // Number of items added to or removed from a site
+    public static final String ITEM_COUNT_DELTA = "delta";
+
     private QueryParameterNames() { }
 }
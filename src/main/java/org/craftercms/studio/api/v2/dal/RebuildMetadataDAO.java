@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Staging tables used to rebuild the metadata of a site incrementally: the expected state is loaded from the
+ * repository into the staging tables and only the differences with the live tables are applied. The queries that
+ * compare both accept a list of excluded paths, for the items changed after the staged commit.
+ */
+public interface RebuildMetadataDAO {
+
+    /**
+     * Add the paths of the items of a site to the item staging table
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int insertItemStaging(Map params);
+
+    /**
+     * Add dependencies to the dependency staging table
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int insertDependencyStaging(Map params);
+
+    /**
+     * Remove the staged items of a site
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int deleteItemStaging(Map params);
+
+    /**
+     * Remove the staged dependencies of a site
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int deleteDependencyStaging(Map params);
+
+    /**
+     * Get the staged paths without item state
+     *
+     * @param params Parameters for SQL query
+     * @return List of paths
+     */
+    List<String> getMissingItemStatePaths(Map params);
+
+    /**
+     * Get the paths with item state that are not staged
+     *
+     * @param params Parameters for SQL query
+     * @return List of paths
+     */
+    List<String> getStaleItemStatePaths(Map params);
+
+    /**
+     * Get the staged paths without item metadata
+     *
+     * @param params Parameters for SQL query
+     * @return List of paths
+     */
+    List<String> getMissingItemMetadataPaths(Map params);
+
+    /**
+     * Get the paths with item metadata that are not staged
+     *
+     * @param params Parameters for SQL query
+     * @return List of paths
+     */
+    List<String> getStaleItemMetadataPaths(Map params);
+
+    /**
+     * Get the paths with the system processing flag set
+     *
+     * @param params Parameters for SQL query
+     * @return List of paths
+     */
+    List<String> getSystemProcessingPaths(Map params);
+
+    /**
+     * Clear the system processing flag of the given paths, left by operations that did not finish
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int resetSystemProcessing(Map params);
+
+    /**
+     * Get the ids of the staged dependencies that are not in the dependency table
+     *
+     * @param params Parameters for SQL query
+     * @return List of staged dependency ids
+     */
+    List<Long> getMissingDependencyIds(Map params);
+
+    /**
+     * Copy staged dependencies to the dependency table
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int insertDependenciesFromStaging(Map params);
+
+    /**
+     * Get the ids of the dependencies that are not staged
+     *
+     * @param params Parameters for SQL query
+     * @return List of dependency ids
+     */
+    List<Long> getStaleDependencyIds(Map params);
+
+    /**
+     * Delete dependencies by id
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int deleteDependencies(Map params);
+
+    /**
+     * Increment the version of the dependencies of a site, must be called in the same transaction that changes them
+     *
+     * @param params Parameters for SQL query
+     *
+     * @return number of affected rows
+     */
+    int bumpDependenciesVersion(Map params);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.monitoring;
+
+import java.util.Map;
+
+/**
+ * Component that exposes runtime statistics (cache hits, timings, queue sizes...) through the monitoring API.
+ */
+public interface StatisticsProvider {
+
+    /**
+     * Get the name used to group the statistics of this component
+     *
+     * @return statistics name
+     */
+    String getStatisticsName();
+
+    /**
+     * Get a snapshot of the current statistics
+     *
+     * @return map of statistic name to value
+     */
+    Map<String, Object> getStatistics();
+
+}
@@ -80,6 +80,14 @@ public interface AuditServiceInternal {
      */
     boolean insertAuditLog(AuditLog auditLog);
 
+    /**
+     * Insert a list of log audit entries in order, consecutive entries without parameters are inserted with one
+     * statement per batch
+     *
+     * @param auditLogs Audit logs to insert
+     */
+    void insertAuditLogs(List<AuditLog> auditLogs);
+
     /**
      * Create Audit log entry and populate common properties
      *
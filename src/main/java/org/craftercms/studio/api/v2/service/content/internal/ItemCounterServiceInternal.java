@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.service.content.internal;
+
+public interface ItemCounterServiceInternal {
+
+    /**
+     * Get the number of items of all sites, served from a short lived cache
+     *
+     * @return total number of items
+     */
+    long getTotalItemCount();
+
+    /**
+     * Add to the number of items of a site. When called inside a transaction the change is only visible to
+     * other transactions after it commits.
+     *
+     * @param siteId site identifier
+     * @param delta number of items added, negative for removed items
+     */
+    void updateItemCount(String siteId, long delta);
+
+    /**
+     * Remove the number of items of a site, for sites that are deleted
+     *
+     * @param siteId site identifier
+     */
+    void deleteItemCount(String siteId);
+
+    /**
+     * Count the items of all sites from the item metadata and correct the counters that drifted
+     */
+    void reconcile();
+}
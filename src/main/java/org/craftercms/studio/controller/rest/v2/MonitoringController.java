@@ -17,12 +17,16 @@
 
 package org.craftercms.studio.controller.rest.v2;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.craftercms.commons.monitoring.MemoryInfo;
 import org.craftercms.commons.monitoring.StatusInfo;
 import org.craftercms.commons.monitoring.VersionInfo;
 import org.craftercms.engine.util.logging.CircularQueueLogAppender;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.model.rest.ApiResponse;
 import org.craftercms.studio.model.rest.ResultList;
 import org.craftercms.studio.model.rest.ResultOne;
@@ -35,6 +39,7 @@ import static org.craftercms.commons.monitoring.rest.MonitoringRestControllerBas
 import static org.craftercms.engine.controller.rest.MonitoringController.LOG_URL;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_EVENTS;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_MEMORY;
+import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_STATISTICS;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_STAUS;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_VERSION;
 
@@ -46,6 +51,10 @@ import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KE
 @RequestMapping("/api/2" + ROOT_URL)
 public class MonitoringController {
 
+    public static final String STATISTICS_URL = "/statistics";
+
+    protected List<StatisticsProvider> statisticsProviders = new ArrayList<>();
+
     @GetMapping(MEMORY_URL)
     public ResultOne<MemoryInfo> getCurrentMemory() {
         ResultOne<MemoryInfo> result = new ResultOne<>();
@@ -78,4 +87,24 @@ public class MonitoringController {
         return result;
     }
 
+    @GetMapping(STATISTICS_URL)
+    public ResultOne<Map<String, Map<String, Object>>> getStatistics() {
+        Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        for (StatisticsProvider provider : statisticsProviders) {
+            statistics.put(provider.getStatisticsName(), provider.getStatistics());
+        }
+        ResultOne<Map<String, Map<String, Object>>> result = new ResultOne<>();
+        result.setResponse(ApiResponse.OK);
+        result.setEntity(RESULT_KEY_STATISTICS, statistics);
+        return result;
+    }
+
+    public List<StatisticsProvider> getStatisticsProviders() {
+        return statisticsProviders;
+    }
+
+    public void setStatisticsProviders(List<StatisticsProvider> statisticsProviders) {
+        this.statisticsProviders = statisticsProviders;
+    }
+
 }
@@ -55,5 +55,6 @@ public interface ResultConstants {
     String RESULT_KEY_VERSION = "version";
     String RESULT_KEY_MEMORY = "memory";
     String RESULT_KEY_EVENTS = "events";
+    String RESULT_KEY_STATISTICS = "statistics";
 
 }
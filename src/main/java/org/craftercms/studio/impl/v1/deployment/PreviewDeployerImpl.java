@@ -27,6 +27,7 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.craftercms.studio.api.v1.deployment.PreviewDeployer;
 import org.craftercms.studio.api.v1.ebus.EventListener;
 import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
@@ -34,12 +35,23 @@ import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.event.EventService;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONFIG_SITEENV_VARIABLE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONFIG_SITENAME_VARIABLE;
@@ -52,9 +64,16 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_DEFA
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_DISABLE_DEPLOY_CRON;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_REPLACE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_REPO_URL;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_SYNC_MAX_DELAY;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_SYNC_QUIET_PERIOD;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.PREVIEW_TEMPLATE_NAME;
 
-public class PreviewDeployerImpl implements PreviewDeployer {
+/**
+ * Preview deployer that coalesces the preview sync events of a site: the deployment is sent once no new event has
+ * been received for the quiet period (or the max delay has passed since the first pending event), so a burst of
+ * changes ends up in a single deployment per environment.
+ */
+public class PreviewDeployerImpl implements PreviewDeployer, StatisticsProvider {
 
     private final static Logger logger = LoggerFactory.getLogger(PreviewDeployerImpl.class);
 
@@ -64,8 +83,18 @@ public class PreviewDeployerImpl implements PreviewDeployer {
     protected EventService eventService;
     protected String beanName;
 
+    protected TaskScheduler taskScheduler;
+
     protected CloseableHttpClient httpClient;
 
+    /** pending sync per site, an entry is removed right before its deployment is sent **/
+    protected final Map<String, PendingSync> pendingSyncs = new ConcurrentHashMap<String, PendingSync>();
+
+    protected final LongAdder requestedSyncs = new LongAdder();
+    protected final LongAdder dispatchedSyncs = new LongAdder();
+    protected final LongAdder deploymentRequests = new LongAdder();
+    protected final LongAdder failedDeploymentRequests = new LongAdder();
+
     public PreviewDeployerImpl() {
         RequestConfig requestConfig = RequestConfig.custom().setExpectContinueEnabled(true).build();
         httpClient = HttpClientBuilder.create()
@@ -85,8 +114,80 @@ public class PreviewDeployerImpl implements PreviewDeployer {
 
     @EventListener(EVENT_PREVIEW_SYNC)
     public void onPreviewSync(PreviewEventContext context) {
-        doDeployment(context.getSite(), ENV_AUTHORING, context.isWaitTillDeploymentIsDone());
-        doDeployment(context.getSite(), ENV_PREVIEW, context.isWaitTillDeploymentIsDone());
+        String site = context.getSite();
+        boolean waitTillDone = context.isWaitTillDeploymentIsDone();
+        requestedSyncs.increment();
+        if (taskScheduler == null) {
+            dispatchSync(site, waitTillDone);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        CompletableFuture<Void> done = waitTillDone ? new CompletableFuture<Void>() : null;
+        boolean[] created = { false };
+        PendingSync pendingSync = pendingSyncs.compute(site, (key, pending) -> {
+            if (pending == null) {
+                pending = new PendingSync(now);
+                created[0] = true;
+            }
+            pending.lastRequested = now;
+            if (done != null) {
+                pending.waitTillDone = true;
+                pending.waiters.add(done);
+            }
+            return pending;
+        });
+        if (created[0] || done != null) {
+            // first event of the site since the last sync or someone waiting for it, otherwise the task scheduled
+            // for the first event will reschedule itself as needed
+            scheduleSync(site, pendingSync);
+        }
+
+        if (done != null) {
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for the preview sync of site " + site);
+            } catch (ExecutionException e) {
+                logger.error("Error while waiting for the preview sync of site " + site, e);
+            }
+        }
+    }
+
+    protected void scheduleSync(String site, PendingSync pendingSync) {
+        taskScheduler.schedule(() -> fireSync(site, pendingSync), new Date(getDueTime(pendingSync)));
+    }
+
+    protected void fireSync(String site, PendingSync pendingSync) {
+        if (getDueTime(pendingSync) > System.currentTimeMillis()) {
+            // more events were received, wait for the quiet period again
+            scheduleSync(site, pendingSync);
+        } else if (pendingSyncs.remove(site, pendingSync)) {
+            // once removed no more events can be added to this sync, new ones will start a new one
+            try {
+                dispatchSync(site, pendingSync.waitTillDone);
+            } finally {
+                for (CompletableFuture<Void> waiter : pendingSync.waiters) {
+                    waiter.complete(null);
+                }
+            }
+        }
+    }
+
+    protected long getDueTime(PendingSync pendingSync) {
+        if (pendingSync.waitTillDone) {
+            return pendingSync.firstRequested;
+        }
+        long quietPeriod = Long.parseLong(studioConfiguration.getProperty(PREVIEW_SYNC_QUIET_PERIOD));
+        long maxDelay = Long.parseLong(studioConfiguration.getProperty(PREVIEW_SYNC_MAX_DELAY));
+        return Math.min(pendingSync.lastRequested + quietPeriod, pendingSync.firstRequested + maxDelay);
+    }
+
+    protected void dispatchSync(String site, boolean waitTillDone) {
+        dispatchedSyncs.increment();
+        doDeployment(site, ENV_AUTHORING, waitTillDone);
+        doDeployment(site, ENV_PREVIEW, waitTillDone);
     }
 
     protected void doDeployment(String site, String environment, boolean waitTillDone) {
@@ -100,14 +201,17 @@ public class PreviewDeployerImpl implements PreviewDeployer {
         }
 
         // TODO: DB: add all required params to post method
-        try {
-            CloseableHttpResponse response = httpClient.execute(postRequest);
+        deploymentRequests.increment();
+        try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
+            EntityUtils.consumeQuietly(response.getEntity());
             HttpStatus httpStatus = HttpStatus.valueOf(response.getStatusLine().getStatusCode());
             if (!httpStatus.is2xxSuccessful()) {
+                failedDeploymentRequests.increment();
                 logger.error("Preview sync request for site " + site + " returned status " + httpStatus + " (" +
                     httpStatus.getReasonPhrase() + ")");
             }
         } catch (IOException e) {
+            failedDeploymentRequests.increment();
             logger.error("Error while sending preview sync request for site " + site, e);
         } finally {
             postRequest.releaseConnection();
@@ -148,8 +252,8 @@ public class PreviewDeployerImpl implements PreviewDeployer {
         HttpEntity requestEntity = new StringEntity(requestBody, ContentType.APPLICATION_JSON);
         postRequest.setEntity(requestEntity);
 
-        try {
-            CloseableHttpResponse response = httpClient.execute(postRequest);
+        try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
+            EntityUtils.consumeQuietly(response.getEntity());
             if (HttpStatus.valueOf(response.getStatusLine().getStatusCode()) != HttpStatus.CREATED) {
                 toReturn = false;
             }
@@ -198,8 +302,8 @@ public class PreviewDeployerImpl implements PreviewDeployer {
 
         HttpPost postRequest = new HttpPost(requestUrl);
 
-        try {
-            CloseableHttpResponse response = httpClient.execute(postRequest);
+        try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
+            EntityUtils.consumeQuietly(response.getEntity());
             if (!HttpStatus.valueOf(response.getStatusLine().getStatusCode()).is2xxSuccessful()) {
                 toReturn = false;
             }
@@ -231,6 +335,41 @@ public class PreviewDeployerImpl implements PreviewDeployer {
     public String getBeanName() { return beanName; }
     public void setBeanName(String beanName) { this.beanName = beanName; }
 
+    public TaskScheduler getTaskScheduler() { return taskScheduler; }
+    public void setTaskScheduler(TaskScheduler taskScheduler) { this.taskScheduler = taskScheduler; }
+
+    @Override
+    public String getStatisticsName() {
+        return "previewSync";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("requestedSyncs", requestedSyncs.sum());
+        statistics.put("dispatchedSyncs", dispatchedSyncs.sum());
+        statistics.put("pendingSyncs", pendingSyncs.size());
+        statistics.put("deploymentRequests", deploymentRequests.sum());
+        statistics.put("failedDeploymentRequests", failedDeploymentRequests.sum());
+        return statistics;
+    }
+
+    /**
+     * Preview sync events of a site waiting to be sent to the deployer
+     */
+    protected static class PendingSync {
+
+        protected final long firstRequested;
+        protected volatile long lastRequested;
+        protected volatile boolean waitTillDone;
+        protected final List<CompletableFuture<Void>> waiters = new ArrayList<CompletableFuture<Void>>();
+
+        protected PendingSync(long firstRequested) {
+            this.firstRequested = firstRequested;
+            this.lastRequested = firstRequested;
+        }
+    }
+
     protected class CreateTargetRequestBody {
 
         protected String environment;
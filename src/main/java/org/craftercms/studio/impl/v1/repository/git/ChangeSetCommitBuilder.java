@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Applies a set of changes to the working tree of a repository and commits all of them at once. The index is locked
+ * when the builder is created and it is only read once, the changes are kept in memory and applied to it with a
+ * single edit when committing, and the blobs are written directly with an {@link ObjectInserter}, so the cost of a
+ * commit depends on the number of changes and not on the size of the repository.
+ *
+ * Paths are relative to the root of the repository without the leading separator. The builder must be closed to
+ * release the lock of the index.
+ */
+public class ChangeSetCommitBuilder implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeSetCommitBuilder.class);
+
+    private static final String KEEP_FILE = ".keep";
+    private static final char SEPARATOR = '/';
+    /** character right after the separator, used as the upper bound of the entries under a folder **/
+    private static final char SEPARATOR_NEXT = '0';
+
+    protected final Repository repository;
+    protected final File workTree;
+    protected final DirCache dirCache;
+    protected final ObjectInserter inserter;
+    /** index entries changed by the change set, null for the deleted ones **/
+    protected final TreeMap<String, DirCacheEntry> staged = new TreeMap<String, DirCacheEntry>();
+
+    public ChangeSetCommitBuilder(Repository repository) throws IOException {
+        this.repository = repository;
+        this.workTree = repository.getWorkTree();
+        this.dirCache = repository.lockDirCache();
+        this.inserter = repository.newObjectInserter();
+    }
+
+    /**
+     * Write a file, creating its parent folders if needed
+     *
+     * @param path path of the file
+     * @param content content of the file
+     */
+    public void write(String path, InputStream content) throws IOException {
+        File file = new File(workTree, path);
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists()) {
+            folder.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            IOUtils.copyLarge(content, out);
+        }
+        stage(path, file, getEntry(path));
+    }
+
+    /**
+     * Delete a file, or a folder with all its content
+     *
+     * @param path path of the file or folder
+     */
+    public void delete(String path) {
+        for (String trackedPath : getTrackedFiles(path)) {
+            staged.put(trackedPath, null);
+        }
+        FileUtils.deleteQuietly(new File(workTree, path));
+    }
+
+    /**
+     * Remove the {@code .keep} file of a folder if it is the only child left, so the empty folder goes away too
+     *
+     * @param folder path of the folder, can be null for the root of the repository
+     */
+    public void deleteParentFolder(String folder) {
+        if (folder == null) {
+            return;
+        }
+        File dir = new File(workTree, folder);
+        String[] children = dir.list();
+        if (children != null && children.length == 1 && KEEP_FILE.equals(children[0])) {
+            delete(folder + SEPARATOR + KEEP_FILE);
+            dir.delete();
+        }
+    }
+
+    /**
+     * Move a file, or a folder with all its content. Moving a folder to an existing folder merges them.
+     *
+     * @param fromPath path of the file or folder to move
+     * @param toPath new path of the file or folder
+     */
+    public void move(String fromPath, String toPath) throws IOException {
+        if (fromPath.equals(toPath)) {
+            return;
+        }
+        File source = new File(workTree, fromPath);
+        Map<String, DirCacheEntry> sourceEntries = getSourceEntries(fromPath, source);
+        for (String trackedPath : getTrackedFiles(fromPath)) {
+            staged.put(trackedPath, null);
+        }
+        for (Map.Entry<String, DirCacheEntry> sourceEntry : sourceEntries.entrySet()) {
+            String targetPath = toPath + sourceEntry.getKey().substring(fromPath.length());
+            File targetFile = new File(workTree, targetPath);
+            File folder = targetFile.getParentFile();
+            if (folder != null && !folder.exists()) {
+                folder.mkdirs();
+            }
+            Files.move(new File(workTree, sourceEntry.getKey()).toPath(), targetFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            stage(targetPath, targetFile, sourceEntry.getValue());
+        }
+        if (source.isDirectory()) {
+            FileUtils.deleteDirectory(source);
+        }
+    }
+
+    /**
+     * Copy a file, or a folder with all its content
+     *
+     * @param fromPath path of the file or folder to copy
+     * @param toPath path of the copy
+     */
+    public void copy(String fromPath, String toPath) throws IOException {
+        if (fromPath.equals(toPath)) {
+            return;
+        }
+        File source = new File(workTree, fromPath);
+        Map<String, DirCacheEntry> sourceEntries = getSourceEntries(fromPath, source);
+        for (Map.Entry<String, DirCacheEntry> sourceEntry : sourceEntries.entrySet()) {
+            String targetPath = toPath + sourceEntry.getKey().substring(fromPath.length());
+            File targetFile = new File(workTree, targetPath);
+            File folder = targetFile.getParentFile();
+            if (folder != null && !folder.exists()) {
+                folder.mkdirs();
+            }
+            Files.copy(new File(workTree, sourceEntry.getKey()).toPath(), targetFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            stage(targetPath, targetFile, sourceEntry.getValue());
+        }
+    }
+
+    /**
+     * Check if a file is tracked, taking into account the changes already applied
+     *
+     * @param path path of the file
+     */
+    public boolean exists(String path) {
+        return getEntry(path) != null;
+    }
+
+    /**
+     * Paths of the files written, moved or copied by the change set
+     */
+    public Set<String> getUpdatedPaths() {
+        Set<String> paths = new LinkedHashSet<String>();
+        for (Map.Entry<String, DirCacheEntry> entry : staged.entrySet()) {
+            if (entry.getValue() != null) {
+                paths.add(entry.getKey());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Paths of all the files changed by the change set, including the deleted ones
+     */
+    public Set<String> getChangedPaths() {
+        return new LinkedHashSet<String>(staged.keySet());
+    }
+
+    /**
+     * Update the index with the changes and commit it on top of HEAD
+     *
+     * @param message commit message
+     * @param author author and committer of the commit
+     * @return the id of the new commit, or null if the changes did not modify the tree of HEAD
+     */
+    public ObjectId commit(String message, PersonIdent author) throws IOException {
+        if (staged.isEmpty()) {
+            return null;
+        }
+        DirCacheEditor editor = dirCache.editor();
+        for (Map.Entry<String, DirCacheEntry> entry : staged.entrySet()) {
+            DirCacheEntry stagedEntry = entry.getValue();
+            if (stagedEntry == null) {
+                editor.add(new DirCacheEditor.DeletePath(entry.getKey()));
+            } else {
+                editor.add(new DirCacheEditor.PathEdit(stagedEntry) {
+                    @Override
+                    public void apply(DirCacheEntry ent) {
+                        ent.copyMetaData(stagedEntry);
+                    }
+                });
+            }
+        }
+        editor.finish();
+
+        try (RevWalk rw = new RevWalk(repository)) {
+            ObjectId headId = repository.resolve(Constants.HEAD);
+            ObjectId treeId = dirCache.writeTree(inserter);
+            if (headId != null && rw.parseCommit(headId).getTree().equals(treeId)) {
+                logger.debug("Nothing to commit in repository " + workTree);
+                inserter.flush();
+                dirCache.write();
+                dirCache.commit();
+                return null;
+            }
+
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(treeId);
+            if (headId != null) {
+                commitBuilder.setParentId(headId);
+            }
+            commitBuilder.setAuthor(author);
+            commitBuilder.setCommitter(author);
+            commitBuilder.setMessage(message);
+            ObjectId commitId = inserter.insert(commitBuilder);
+            inserter.flush();
+            RevCommit revCommit = rw.parseCommit(commitId);
+
+            // the new index is written to the lock file first, so it is only left behind if HEAD can't be updated
+            dirCache.write();
+            RefUpdate refUpdate = repository.updateRef(Constants.HEAD);
+            refUpdate.setExpectedOldObjectId(headId != null ? headId : ObjectId.zeroId());
+            refUpdate.setNewObjectId(commitId);
+            refUpdate.setRefLogMessage("commit: " + revCommit.getShortMessage(), false);
+            RefUpdate.Result result = refUpdate.update(rw);
+            switch (result) {
+                case NEW:
+                case FAST_FORWARD:
+                    break;
+                default:
+                    throw new IOException("Failed to update HEAD of repository " + workTree + ": " + result.name());
+            }
+            if (!dirCache.commit()) {
+                logger.error("Failed to write the index of repository " + workTree + " after commit " +
+                        commitId.name());
+            }
+            return commitId;
+        }
+    }
+
+    @Override
+    public void close() {
+        dirCache.unlock();
+        inserter.close();
+    }
+
+    /**
+     * Get the current entry of a path, taking into account the changes already applied
+     */
+    protected DirCacheEntry getEntry(String path) {
+        if (staged.containsKey(path)) {
+            return staged.get(path);
+        }
+        return dirCache.getEntry(path);
+    }
+
+    /**
+     * Get the paths of the files tracked at a path or under it, taking into account the changes already applied
+     */
+    protected List<String> getTrackedFiles(String path) {
+        List<String> paths = new ArrayList<String>();
+        if (getEntry(path) != null) {
+            paths.add(path);
+        }
+        for (DirCacheEntry entry : dirCache.getEntriesWithin(path)) {
+            String entryPath = entry.getPathString();
+            if (!staged.containsKey(entryPath)) {
+                paths.add(entryPath);
+            }
+        }
+        for (Map.Entry<String, DirCacheEntry> entry :
+                staged.subMap(path + SEPARATOR, path + SEPARATOR_NEXT).entrySet()) {
+            if (entry.getValue() != null) {
+                paths.add(entry.getKey());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Get the files of the working tree at a path or under it with their current entries, if they have one
+     */
+    protected Map<String, DirCacheEntry> getSourceEntries(String path, File source) throws IOException {
+        Map<String, DirCacheEntry> entries = new TreeMap<String, DirCacheEntry>();
+        if (source.isFile()) {
+            entries.put(path, getEntry(path));
+        } else if (source.isDirectory()) {
+            Path sourcePath = source.toPath();
+            try (Stream<Path> files = Files.walk(sourcePath)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    String filePath = path + SEPARATOR +
+                            FilenameUtils.separatorsToUnix(sourcePath.relativize(file).toString());
+                    entries.put(filePath, getEntry(filePath));
+                });
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Add the entry of a file of the working tree. The object of the previous entry is reused when the file was
+     * not modified, otherwise the file is written to the object database.
+     */
+    protected void stage(String path, File file, DirCacheEntry previous) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        DirCacheEntry entry = new DirCacheEntry(path);
+        if (previous != null && !previous.isSmudged() && previous.getLength() == (int) length &&
+                previous.getLastModified() == lastModified) {
+            entry.setFileMode(previous.getFileMode());
+            entry.setObjectId(previous.getObjectId());
+        } else {
+            entry.setFileMode(previous != null ? previous.getFileMode() : FileMode.REGULAR_FILE);
+            try (InputStream in = new FileInputStream(file)) {
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, length, in));
+            }
+        }
+        entry.setLength(length);
+        entry.setLastModified(lastModified);
+        staged.put(path, entry);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.craftercms.studio.api.v1.dal.CommitPath;
+import org.craftercms.studio.api.v1.dal.CommitPathMapper;
+import org.craftercms.studio.api.v1.dal.SiteFeedMapper;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
+
+/**
+ * Index of the commits that changed each path of the sandbox repository of a site, so the history of a file is a
+ * database lookup instead of a walk of the whole commit graph.
+ *
+ * The index is built by a background job and catches up with HEAD when it is read or after a commit, reading it
+ * never builds it from scratch. A merge commit is only indexed for the paths that differ from all its parents, like git log does. If
+ * the last indexed commit is no longer part of the history of HEAD the index is built again.
+ */
+public class CommitPathIndex implements StatisticsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommitPathIndex.class);
+
+    protected StudioConfiguration studioConfiguration;
+    protected CommitPathMapper commitPathMapper;
+    protected SiteFeedMapper siteFeedMapper;
+
+    /** last indexed commit of each site, to avoid reading it from the database when HEAD has not changed **/
+    protected final Map<String, String> indexedCommits = new ConcurrentHashMap<String, String>();
+    protected final Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    protected final LongAdder lookups = new LongAdder();
+    protected final LongAdder indexedCommitCount = new LongAdder();
+    protected final LongAdder indexedPathCount = new LongAdder();
+    protected final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * Get the commits that changed a path, newest first
+     *
+     * @param site site id
+     * @param repository sandbox repository of the site
+     * @param path path of the file
+     * @return list of commit ids, or null if the site has not been indexed yet
+     */
+    public List<String> getCommitIds(String site, Repository repository, String path) {
+        if (!update(site, repository, true) || !indexedCommits.containsKey(site)) {
+            return null;
+        }
+        lookups.increment();
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        params.put("path", path);
+        // an interrupted update can leave a few commits indexed twice
+        return new ArrayList<String>(new LinkedHashSet<String>(commitPathMapper.getCommitIdsForPath(params)));
+    }
+
+    /**
+     * Index the commits between the last indexed commit and HEAD
+     *
+     * @param site site id
+     * @param repository sandbox repository of the site
+     * @param onlyIfIndexed only update the index if it has already been built, so the caller never pays for
+     *                      indexing the whole history
+     * @return false if the index could not be updated
+     */
+    public boolean update(String site, Repository repository, boolean onlyIfIndexed) {
+        ObjectId head;
+        try {
+            head = repository.resolve(Constants.HEAD);
+        } catch (IOException e) {
+            logger.error("Error resolving HEAD of repository for site " + site, e);
+            return false;
+        }
+        if (head == null || head.getName().equals(indexedCommits.get(site))) {
+            return true;
+        }
+
+        synchronized (locks.computeIfAbsent(site, k -> new Object())) {
+            String lastIndexed = indexedCommits.get(site);
+            if (lastIndexed == null) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("siteId", site);
+                lastIndexed = siteFeedMapper.getLastIndexedCommitId(params);
+            }
+            if (head.getName().equals(lastIndexed)) {
+                indexedCommits.put(site, lastIndexed);
+                return true;
+            }
+            if (lastIndexed == null && onlyIfIndexed) {
+                return true;
+            }
+
+            long startTime = System.currentTimeMillis();
+            int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+            int commitCount = 0;
+            try (ObjectReader reader = repository.newObjectReader();
+                 RevWalk revWalk = new RevWalk(reader)) {
+                RevCommit headCommit = revWalk.parseCommit(head);
+                RevCommit lastIndexedCommit = null;
+                if (lastIndexed != null) {
+                    lastIndexedCommit = parseCommit(revWalk, lastIndexed);
+                    if (lastIndexedCommit == null || !revWalk.isMergedInto(lastIndexedCommit, headCommit)) {
+                        logger.info("History of site " + site + " changed since commit " + lastIndexed +
+                                ", building the commit path index again");
+                        deleteRows(site);
+                        lastIndexedCommit = null;
+                        rebuilds.increment();
+                    }
+                    revWalk.reset();
+                }
+
+                revWalk.markStart(headCommit);
+                if (lastIndexedCommit != null) {
+                    revWalk.markUninteresting(lastIndexedCommit);
+                }
+                revWalk.sort(RevSort.TOPO);
+                revWalk.sort(RevSort.REVERSE, true);
+
+                List<CommitPath> commitPaths = new ArrayList<CommitPath>();
+                for (RevCommit commit : revWalk) {
+                    addChangedPaths(reader, revWalk, commit, commitPaths);
+                    commitCount++;
+                    // only flush after a whole commit, so the last indexed commit is always complete
+                    if (commitPaths.size() >= batchSize) {
+                        flush(site, commitPaths, commit.getName());
+                    }
+                }
+                flush(site, commitPaths, head.getName());
+            } catch (IOException e) {
+                logger.error("Error updating commit path index of site " + site, e);
+                return false;
+            }
+            indexedCommitCount.add(commitCount);
+            logger.debug("Indexed " + commitCount + " commits of site " + site + " in " +
+                    (System.currentTimeMillis() - startTime) + " ms");
+        }
+        return true;
+    }
+
+    /**
+     * Build the index of a site again from the whole history of the repository
+     *
+     * @param site site id
+     * @param repository sandbox repository of the site
+     */
+    public void rebuild(String site, Repository repository) {
+        synchronized (locks.computeIfAbsent(site, k -> new Object())) {
+            deleteRows(site);
+            rebuilds.increment();
+        }
+        update(site, repository, false);
+    }
+
+    /**
+     * Drop the index of a site, for example when it is deleted
+     *
+     * @param site site id
+     */
+    public void delete(String site) {
+        synchronized (locks.computeIfAbsent(site, k -> new Object())) {
+            deleteRows(site);
+        }
+        locks.remove(site);
+    }
+
+    /**
+     * Add the paths changed by a commit, for a merge only the ones that are different from all the parents
+     */
+    protected void addChangedPaths(ObjectReader reader, RevWalk revWalk, RevCommit commit,
+                                   List<CommitPath> commitPaths) throws IOException {
+        int parentCount = commit.getParentCount();
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            if (parentCount == 0) {
+                treeWalk.addTree(new EmptyTreeIterator());
+            } else {
+                for (RevCommit parent : commit.getParents()) {
+                    treeWalk.addTree(revWalk.parseCommit(parent).getTree());
+                }
+            }
+            int commitTree = treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+            ZonedDateTime commitDate = Instant.ofEpochSecond(commit.getCommitTime()).atZone(ZoneOffset.UTC);
+            while (treeWalk.next()) {
+                boolean changed = true;
+                for (int i = 0; i < commitTree && changed; i++) {
+                    changed = treeWalk.getRawMode(i) != treeWalk.getRawMode(commitTree) ||
+                            !treeWalk.idEqual(i, commitTree);
+                }
+                if (changed && treeWalk.getFileMode(commitTree) != FileMode.TREE) {
+                    CommitPath commitPath = new CommitPath();
+                    commitPath.setPath(FILE_SEPARATOR + treeWalk.getPathString());
+                    commitPath.setCommitId(commit.getName());
+                    commitPath.setCommitDate(commitDate);
+                    commitPaths.add(commitPath);
+                }
+            }
+        }
+    }
+
+    protected void flush(String site, List<CommitPath> commitPaths, String lastCommitId) {
+        if (!commitPaths.isEmpty()) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("siteId", site);
+            params.put("commitPaths", commitPaths);
+            commitPathMapper.insertCommitPathList(params);
+            indexedPathCount.add(commitPaths.size());
+            commitPaths.clear();
+        }
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        params.put("commitId", lastCommitId);
+        siteFeedMapper.updateLastIndexedCommitId(params);
+        indexedCommits.put(site, lastCommitId);
+    }
+
+    protected void deleteRows(String site) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        commitPathMapper.deleteCommitPathsForSite(params);
+        params.put("commitId", null);
+        siteFeedMapper.updateLastIndexedCommitId(params);
+        indexedCommits.remove(site);
+    }
+
+    private RevCommit parseCommit(RevWalk revWalk, String commitId) throws IOException {
+        try {
+            return revWalk.parseCommit(ObjectId.fromString(commitId));
+        } catch (MissingObjectException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "commitPathIndex";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("sites", indexedCommits.size());
+        statistics.put("lookups", lookups.sum());
+        statistics.put("indexedCommits", indexedCommitCount.sum());
+        statistics.put("indexedPaths", indexedPathCount.sum());
+        statistics.put("rebuilds", rebuilds.sum());
+        return statistics;
+    }
+
+    public StudioConfiguration getStudioConfiguration() {
+        return studioConfiguration;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    public CommitPathMapper getCommitPathMapper() {
+        return commitPathMapper;
+    }
+
+    public void setCommitPathMapper(CommitPathMapper commitPathMapper) {
+        this.commitPathMapper = commitPathMapper;
+    }
+
+    public SiteFeedMapper getSiteFeedMapper() {
+        return siteFeedMapper;
+    }
+
+    public void setSiteFeedMapper(SiteFeedMapper siteFeedMapper) {
+        this.siteFeedMapper = siteFeedMapper;
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.craftercms.studio.impl.v1.repository.git;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -39,6 +40,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -51,8 +53,8 @@ import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.iterators.ReverseListIterator;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoException;
@@ -60,9 +62,11 @@ import org.craftercms.commons.crypto.TextEncryptor;
 import org.craftercms.commons.crypto.impl.PbkAesTextEncryptor;
 import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.constant.RepoOperation;
+import org.craftercms.studio.api.v1.dal.DeploymentHistoryMapper;
 import org.craftercms.studio.api.v1.dal.DeploymentSyncHistory;
 import org.craftercms.studio.api.v1.dal.GitLog;
 import org.craftercms.studio.api.v1.dal.GitLogMapper;
+import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.dal.RemoteRepository;
 import org.craftercms.studio.api.v1.dal.RemoteRepositoryMapper;
 import org.craftercms.studio.api.v1.dal.SiteFeedMapper;
@@ -77,6 +81,7 @@ import org.craftercms.studio.api.v1.exception.repository.RemoteRepositoryNotFoun
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentChangeSet;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
@@ -89,9 +94,8 @@ import org.craftercms.studio.api.v1.to.RepoOperationTO;
 import org.craftercms.studio.api.v1.to.VersionTO;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v1.util.filter.DmFilterWrapper;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
-import org.eclipse.jgit.api.AddCommand;
-import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
@@ -111,25 +115,29 @@ import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
 import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.lib.TagBuilder;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.filter.AndRevFilter;
-import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
 import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
 import org.eclipse.jgit.revwalk.filter.NotRevFilter;
-import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
 import org.eclipse.jgit.transport.PushResult;
@@ -141,7 +149,6 @@ import org.eclipse.jgit.transport.SshTransport;
 import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.util.FS;
@@ -160,6 +167,7 @@ import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_
 import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_MESSAGE_USERNAME_VAR;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.BLUE_PRINTS_PATH;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.BOOTSTRAP_REPO;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_COPY_CONTENT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_CREATE_FOLDER_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_DELETE_CONTENT_COMMIT_MESSAGE;
@@ -180,7 +188,8 @@ import static org.eclipse.jgit.transport.RemoteRefUpdate.Status.REJECTED_NONFAST
 import static org.eclipse.jgit.transport.RemoteRefUpdate.Status.REJECTED_OTHER_REASON;
 import static org.eclipse.jgit.transport.RemoteRefUpdate.Status.REJECTED_REMOTE_CHANGED;
 
-public class GitContentRepository implements ContentRepository, ServletContextAware, DeploymentHistoryProvider {
+public class GitContentRepository implements ContentRepository, ServletContextAware, DeploymentHistoryProvider,
+        StatisticsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(GitContentRepository.class);
     private GitContentRepositoryHelper helper = null;
@@ -193,176 +202,275 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     protected StudioConfiguration studioConfiguration;
     protected ServicesConfig servicesConfig;
     protected GitLogMapper gitLogMapper;
+    protected DeploymentHistoryMapper deploymentHistoryMapper;
     protected RemoteRepositoryMapper remoteRepositoryMapper;
     protected UserServiceInternal userServiceInternal;
     protected SecurityService securityService;
     protected SiteFeedMapper siteFeedMapper;
+    protected TreeSnapshotIndex snapshotIndex;
+    protected CommitPathIndex commitPathIndex;
 
     @Override
     public boolean contentExists(String site, String path) {
         boolean toReturn = false;
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                GitRepositories.SANDBOX);
-        if (repo != null ) {
-            try {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                    // Check if the array of items is not null, and since we have an absolute path to the item,
-                    // pick the first item in the list
-                    if (tw != null && tw.getObjectId(0) != null) {
-                        toReturn = true;
-                        tw.close();
-                    } else if (tw == null) {
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                String gitPath = getSnapshotPath(path);
+                toReturn = gitPath.equals(TreeSnapshot.ROOT) || snapshot.getEntry(gitPath) != null;
+            } else if (repo != null ) {
+                try {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+                        // Check if the array of items is not null, and since we have an absolute path to the item,
+                        // pick the first item in the list
+                        if (tw != null && tw.getObjectId(0) != null) {
+                            toReturn = true;
+                            tw.close();
+                        } else if (tw == null) {
+                            String gitPath = helper.getGitPath(path);
+                            if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
+                                toReturn = true;
+                            }
+                        }
+                    } catch (IOException e) {
+                        logger.info("Content not found for site: " + site + " path: " + path, e);
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
+                }
+            }
+            return toReturn;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
+        }
+    }
+
+    @Override
+    public Set<String> getExistingPaths(String site, Collection<String> paths) {
+        Set<String> toReturn = new HashSet<String>();
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                for (String path : paths) {
+                    String gitPath = getSnapshotPath(path);
+                    if (gitPath.equals(TreeSnapshot.ROOT) || snapshot.getEntry(gitPath) != null) {
+                        toReturn.add(path);
+                    }
+                }
+            } else if (repo != null && CollectionUtils.isNotEmpty(paths)) {
+                try (ObjectReader reader = repo.newObjectReader()) {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    for (String path : paths) {
                         String gitPath = helper.getGitPath(path);
                         if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
-                            toReturn = true;
+                            toReturn.add(path);
+                            continue;
+                        }
+                        try (TreeWalk tw = TreeWalk.forPath(reader, gitPath, tree)) {
+                            if (tw != null && tw.getObjectId(0) != null) {
+                                toReturn.add(path);
+                            }
                         }
                     }
                 } catch (IOException e) {
-                    logger.info("Content not found for site: " + site + " path: " + path, e);
+                    logger.error("Failed to check existing paths for site: " + site, e);
                 }
-            } catch (Exception e) {
-                logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
             }
+            return toReturn;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
-        return toReturn;
     }
 
     @Override
     public InputStream getContent(String site, String path) throws ContentNotFoundException {
         InputStream toReturn = null;
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories
-                .GLOBAL : GitRepositories.SANDBOX);
-
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
         try {
-            RevTree tree = helper.getTreeForLastCommit(repo);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                // Check if the array of items is not null, and since we have an absolute path to the item,
-                // pick the first item in the list
-                if (tw != null && tw.getObjectId(0) != null) {
-                    ObjectId id = tw.getObjectId(0);
-                    ObjectLoader objectLoader = repo.open(id);
-                    toReturn = objectLoader.openStream();
-                    tw.close();
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                TreeSnapshot.Entry entry = snapshot.getEntry(getSnapshotPath(path));
+                if (entry != null) {
+                    try {
+                        toReturn = repo.open(entry.getObjectId()).openStream();
+                    } catch (IOException e) {
+                        logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+                    }
+                }
+                return toReturn;
+            }
+
+            try {
+                RevTree tree = helper.getTreeForLastCommit(repo);
+                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+                    // Check if the array of items is not null, and since we have an absolute path to the item,
+                    // pick the first item in the list
+                    if (tw != null && tw.getObjectId(0) != null) {
+                        ObjectId id = tw.getObjectId(0);
+                        ObjectLoader objectLoader = repo.open(id);
+                        toReturn = objectLoader.openStream();
+                        tw.close();
+                    }
+                } catch (IOException e) {
+                    logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
                 }
             } catch (IOException e) {
-                logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+                logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
             }
-        } catch (IOException e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
-        }
 
-        return toReturn;
+            return toReturn;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
+        }
     }
 
     @Override
     public long getContentSize(final String site, final String path) {
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-            GitRepositories.SANDBOX);
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
         try {
-            RevTree tree = helper.getTreeForLastCommit(repo);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                if (tw != null && tw.getObjectId(0) != null) {
-                    ObjectId id = tw.getObjectId(0);
-                    ObjectLoader objectLoader = repo.open(id);
-                    return objectLoader.getSize();
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                TreeSnapshot.Entry entry = snapshot.getEntry(getSnapshotPath(path));
+                if (entry != null) {
+                    try (ObjectReader reader = repo.newObjectReader()) {
+                        return snapshot.getSize(reader, entry);
+                    } catch (IOException e) {
+                        logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+                    }
                 }
+                return -1L;
             }
-        } catch (IOException e) {
-            logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+            try {
+                RevTree tree = helper.getTreeForLastCommit(repo);
+                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+                    if (tw != null && tw.getObjectId(0) != null) {
+                        ObjectId id = tw.getObjectId(0);
+                        ObjectLoader objectLoader = repo.open(id);
+                        return objectLoader.getSize();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+            }
+            return -1L;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
-        return -1L;
     }
 
     @Override
-    public String writeContent(String site, String path, InputStream content) {
-        // Write content to git and commit it
-        String commitId = null;
-
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Repository repo =
-                helper.getRepository(site, StringUtils.isEmpty(site)? GitRepositories.GLOBAL: GitRepositories.SANDBOX);
-
-            try {
-
-                if (repo != null) {
-                    if (helper.writeFile(repo, site, path, content)) {
-                        PersonIdent user = helper.getCurrentUserIdent();
-                        String username = securityService.getCurrentUser();
-                        String comment = studioConfiguration.getProperty(REPO_SANDBOX_WRITE_COMMIT_MESSAGE)
-                            .replace(REPO_COMMIT_MESSAGE_USERNAME_VAR, username)
-                            .replace(REPO_COMMIT_MESSAGE_PATH_VAR, path);
-                        commitId = helper.commitFile(repo, site, path, comment, user);
-                    } else {
-                        logger.error("Failed to write content site: " + site + " path: " + path);
+    public String getContentObjectId(String site, String path) {
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                TreeSnapshot.Entry entry = snapshot.getEntry(getSnapshotPath(path));
+                return entry != null ? entry.getObjectId().getName() : null;
+            } else if (repo != null) {
+                try {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+                        if (tw != null && tw.getObjectId(0) != null) {
+                            return tw.getObjectId(0).getName();
+                        }
                     }
-                } else {
-                    logger.error("Missing repository during write for site: " + site + " path: " + path);
+                } catch (IOException e) {
+                    logger.error("Error while getting object id for site: " + site + " path: " + path, e);
                 }
-            } catch (ServiceLayerException | UserNotFoundException e) {
-                logger.error("Unknown service error during write for site: " + site + " path: " + path, e);
             }
+            return null;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
+    }
 
-        return commitId;
+    @Override
+    public String writeContent(String site, String path, InputStream content) {
+        String username = securityService.getCurrentUser();
+        String comment = studioConfiguration.getProperty(REPO_SANDBOX_WRITE_COMMIT_MESSAGE)
+            .replace(REPO_COMMIT_MESSAGE_USERNAME_VAR, username)
+            .replace(REPO_COMMIT_MESSAGE_PATH_VAR, path);
+        return commitChangeSet(site, new ContentChangeSet().write(path, content), comment, null);
     }
 
     @Override
-    public String createFolder(String site, String path, String name) {
-        // SJ: Git doesn't care about empty folders, so we will create the folders and put a 0 byte file in them
-        String commitId = null;
-        boolean result;
+    public String commitChangeSet(String site, ContentChangeSet changeSet, String comment, String author) {
+        return commitChangeSet(site, changeSet, comment, author, null);
+    }
 
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Path emptyFilePath = Paths.get(path, name, EMPTY_FILE);
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                    GitRepositories.SANDBOX);
+    /**
+     * Apply a set of changes to the working tree and the index of the repository and commit all of them at once
+     *
+     * @param updatedPaths if not null, the paths of the files written, moved or copied are added to it
+     * @return Commit Id if successful, null if it failed or nothing changed
+     */
+    protected String commitChangeSet(String site, ContentChangeSet changeSet, String comment, String author,
+                                     Set<String> updatedPaths) {
+        String commitId = null;
 
+        if (changeSet.isEmpty()) {
+            return null;
+        }
 
-            try {
-                // Create basic file
-                File file = new File(repo.getDirectory().getParent(), emptyFilePath.toString());
-
-                // Create parent folders
-                File folder = file.getParentFile();
-                if (folder != null) {
-                    if (!folder.exists()) {
-                        folder.mkdirs();
-                    }
-                }
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        synchronized (helper.getRepositoryLock(site, repoType)) {
+            Repository repo = helper.acquireRepository(site, repoType);
 
-                // Create the file
-                if (!file.createNewFile()) {
-                    logger.error("error writing file: site: " + site + " path: " + emptyFilePath);
-                    result = false;
-                } else {
-                    // Add the file to git
-                    try (Git git = new Git(repo)) {
-                        git.add().addFilepattern(helper.getGitPath(emptyFilePath.toString())).call();
+            if (repo == null) {
+                logger.error("Missing repository during commit for site: " + site);
+                return null;
+            }
 
-                        git.close();
-                        result = true;
-                    } catch (GitAPIException e) {
-                        logger.error("error adding file to git: site: " + site + " path: " + emptyFilePath, e);
-                        result = false;
+            Set<String> changedPaths = new LinkedHashSet<String>();
+            boolean failed = true;
+            try {
+                PersonIdent user = StringUtils.isEmpty(author) ? helper.getCurrentUserIdent() :
+                        helper.getAuthorIdent(author);
+                try (ChangeSetCommitBuilder builder = new ChangeSetCommitBuilder(repo)) {
+                    try {
+                        for (ContentChangeSet.Change change : changeSet.getChanges()) {
+                            applyChange(repo, builder, change);
+                        }
+                        ObjectId commit = builder.commit(comment, user);
+                        if (commit != null) {
+                            commitId = commit.getName();
+                        }
+                        if (updatedPaths != null) {
+                            updatedPaths.addAll(builder.getUpdatedPaths());
+                        }
+                        failed = false;
+                    } finally {
+                        changedPaths.addAll(builder.getChangedPaths());
                     }
                 }
             } catch (IOException e) {
-                logger.error("error writing file: site: " + site + " path: " + emptyFilePath, e);
-                result = false;
+                logger.error("Error while committing " + changeSet.size() + " changes for site: " + site, e);
+            } catch (ServiceLayerException | UserNotFoundException e) {
+                logger.error("Unknown service error during commit for site: " + site, e);
+            } finally {
+                if (failed) {
+                    resetChangeSet(site, repo, changedPaths);
+                }
+                helper.releaseRepository(site, repoType, repo);
             }
+        }
 
-            if (result) {
+        // The index has its own lock for each site, other operations on the repository don't need to wait for it
+        if (commitId != null && StringUtils.isNotEmpty(site) && commitPathIndex != null) {
+            Repository repo = helper.acquireRepository(site, repoType);
+            if (repo != null) {
                 try {
-                    commitId = helper.commitFile(repo, site, emptyFilePath.toString(),
-                            studioConfiguration.getProperty(
-                                    REPO_CREATE_FOLDER_COMMIT_MESSAGE
-                                            .replaceAll(PATTERN_SITE, site)
-                                            .replaceAll(PATTERN_PATH, path + FILE_SEPARATOR + name)),
-                            helper.getCurrentUserIdent());
-                } catch (ServiceLayerException | UserNotFoundException e) {
-                    logger.error("Unknown service error during commit for site: " + site + " path: "
-                        + emptyFilePath, e);
+                    commitPathIndex.update(site, repo, true);
+                } finally {
+                    helper.releaseRepository(site, repoType, repo);
                 }
             }
         }
@@ -370,62 +478,87 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         return commitId;
     }
 
-    @Override
-    public String deleteContent(String site, String path, String approver) {
-        String commitId = null;
-
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                    GitRepositories.SANDBOX);
-
-            try (Git git = new Git(repo)) {
-                String pathToDelete = helper.getGitPath(path);
-                Path toDelete = Paths.get(repo.getDirectory().getParent(), pathToDelete);
-                Path parentToDelete = Paths.get(pathToDelete).getParent();
-                git.rm().addFilepattern(pathToDelete).setCached(false).call();
-
-                String pathToCommit = pathToDelete;
-                if (toDelete.toFile().isFile()) {
-                    pathToCommit = deleteParentFolder(git, parentToDelete);
+    protected void applyChange(Repository repo, ChangeSetCommitBuilder builder, ContentChangeSet.Change change)
+            throws IOException {
+        String gitPath = helper.getGitPath(change.getPath());
+        switch (change.getType()) {
+            case WRITE:
+                builder.write(gitPath, change.getContent());
+                break;
+            case CREATE_FOLDER:
+                // Git doesn't track empty folders, so they get a 0 byte file
+                String emptyFilePath = gitPath + FILE_SEPARATOR + EMPTY_FILE;
+                if (!builder.exists(emptyFilePath)) {
+                    builder.write(emptyFilePath, new ByteArrayInputStream(new byte[0]));
                 }
+                break;
+            case DELETE:
+                boolean isFile = new File(repo.getWorkTree(), gitPath).isFile();
+                builder.delete(gitPath);
+                if (isFile) {
+                    // don't leave behind a folder that only has its .keep file
+                    builder.deleteParentFolder(PublishTreeBuilder.getParent(gitPath));
+                }
+                break;
+            case MOVE:
+                builder.move(gitPath, helper.getGitPath(change.getToPath()));
+                break;
+            case COPY:
+                builder.copy(gitPath, helper.getGitPath(change.getToPath()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown change type " + change.getType());
+        }
+    }
 
-                // TODO: SJ: we need to define messages in a string table of sorts
-                commitId = helper.commitFile(repo, site, pathToCommit,
-                        studioConfiguration.getProperty(REPO_DELETE_CONTENT_COMMIT_MESSAGE).replaceAll(PATTERN_PATH, path),
-                        StringUtils.isEmpty(approver) ? helper.getCurrentUserIdent() : helper.getAuthorIdent(approver));
-
-            } catch (GitAPIException | UserNotFoundException e) {
-                logger.error("Error while deleting content for site: " + site + " path: " + path, e);
-            } catch (ServiceLayerException e) {
-                logger.error("Unknown service error during delete for site: " + site + " path: " + path, e);
+    /**
+     * Bring the index and the working tree back to HEAD after a change set failed half way, the files it created
+     * are not tracked so they are deleted
+     */
+    protected void resetChangeSet(String site, Repository repo, Set<String> changedPaths) {
+        try (Git git = new Git(repo)) {
+            git.reset().setMode(ResetCommand.ResetType.HARD).call();
+            DirCache dirCache = repo.readDirCache();
+            for (String path : changedPaths) {
+                if (dirCache.getEntry(path) == null) {
+                    FileUtils.deleteQuietly(new File(repo.getWorkTree(), path));
+                }
             }
+        } catch (GitAPIException | IOException e) {
+            logger.error("Error while resetting the repository after a failed commit for site: " + site, e);
         }
-
-        return commitId;
     }
 
-    private String deleteParentFolder(Git git, Path parentFolder) throws GitAPIException {
-        String parent = parentFolder.toString();
-        String toRet = parent;
-        String folderToDelete = helper.getGitPath(parent);
-        Path toDelete = Paths.get(git.getRepository().getDirectory().getParent(), parent);
-        String[] children = toDelete.toFile().list();
-        if (children != null && children.length < 2) {
-            if (children.length == 1 || children[0].equals(".keep")) {
-                Path ancestor = parentFolder.getParent();
-                git.rm()
-                        .addFilepattern(helper.getGitPath(folderToDelete + FILE_SEPARATOR + ".keep"))
-                        .setCached(false)
-                        .call();
-            } else {
-                Path ancestor = parentFolder.getParent();
-                git.rm()
-                        .addFilepattern(helper.getGitPath(parentFolder.toString()))
-                        .setCached(false)
-                        .call();
+    @Override
+    public String createFolder(String site, String path, String name) {
+        // SJ: Git doesn't care about empty folders, so we will create the folders and put a 0 byte file in them
+        Path emptyFilePath = Paths.get(path, name, EMPTY_FILE);
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            File file = new File(repo.getDirectory().getParent(), emptyFilePath.toString());
+            if (file.exists()) {
+                logger.error("error writing file: site: " + site + " path: " + emptyFilePath);
+                return null;
             }
+
+            return commitChangeSet(site, new ContentChangeSet().createFolder(Paths.get(path, name).toString()),
+                    studioConfiguration.getProperty(
+                            REPO_CREATE_FOLDER_COMMIT_MESSAGE
+                                    .replaceAll(PATTERN_SITE, site)
+                                    .replaceAll(PATTERN_PATH, path + FILE_SEPARATOR + name)),
+                    null);
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
-        return toRet;
+    }
+
+    @Override
+    public String deleteContent(String site, String path, String approver) {
+        // TODO: SJ: we need to define messages in a string table of sorts
+        return commitChangeSet(site, new ContentChangeSet().delete(path),
+                studioConfiguration.getProperty(REPO_DELETE_CONTENT_COMMIT_MESSAGE).replaceAll(PATTERN_PATH, path),
+                approver);
     }
 
     @Override
@@ -436,82 +569,23 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public Map<String, String> moveContent(String site, String fromPath, String toPath, String newName) {
         Map<String, String> toRet = new TreeMap<String, String>();
-        String commitId;
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                    GitRepositories.SANDBOX);
-
-            String gitFromPath = helper.getGitPath(fromPath);
-            String gitToPath;
-            if (StringUtils.isEmpty(newName)) {
-                gitToPath = helper.getGitPath(toPath);
-            } else {
-                gitToPath = helper.getGitPath(toPath + FILE_SEPARATOR + newName);
-            }
-
-            try (Git git = new Git(repo)) {
-                // Check if destination is a file, then this is a rename operation
-                // Perform rename and exit
-                Path sourcePath = Paths.get(repo.getDirectory().getParent(), gitFromPath);
-                File sourceFile = sourcePath.toFile();
-                Path targetPath = Paths.get(repo.getDirectory().getParent(), gitToPath);
-                File targetFile = targetPath.toFile();
-
-                if (sourceFile.getCanonicalFile().equals(targetFile.getCanonicalFile())) {
-                    sourceFile.renameTo(targetFile);
-                } else {
-                    if (targetFile.isFile()) {
-                        if (sourceFile.isFile()) {
-                            sourceFile.renameTo(targetFile);
-                        } else {
-                            // This is not a valid operation
-                            logger.error("Invalid move operation: Trying to rename a directory to a file " +
-                                    "for site: " + site + " fromPath: " + fromPath + " toPath: " + toPath +
-                                    " newName: " + newName);
-                        }
-                    } else if (sourceFile.isDirectory()) {
-                        // Check if we're moving a single file or whole subtree
-                        File[] dirList = sourceFile.listFiles();
-                        for (File child : dirList) {
-                            if (!child.equals(sourceFile)) {
-                                FileUtils.moveToDirectory(child, targetFile, true);
-                            }
-                        }
-                        FileUtils.deleteDirectory(sourceFile);
-                    } else {
-                        if (sourceFile.isFile()) {
-                            FileUtils.moveFile(sourceFile, targetFile);
-                        } else {
-                            FileUtils.moveToDirectory(sourceFile, targetFile, true);
-                        }
-                    }
-                }
-
-                // The operation is done on disk, now it's time to commit
-                git.add().addFilepattern(gitToPath).call();
-
-                Status gitStatus = git.status().addPath(gitToPath).call();
-                Set<String> changeSet = gitStatus.getAdded();
-
-                for (String pathToCommit : changeSet) {
-                    String pathRemoved = pathToCommit.replace(gitToPath, gitFromPath);
-                    RevCommit commit = git.commit()
-                            .setOnly(pathToCommit)
-                            .setOnly(pathRemoved)
-                            .setAuthor(helper.getCurrentUserIdent())
-                            .setCommitter(helper.getCurrentUserIdent())
-                            .setMessage(studioConfiguration.getProperty(REPO_MOVE_CONTENT_COMMIT_MESSAGE)
-                                    .replaceAll(PATTERN_FROM_PATH, fromPath)
-                                    .replaceAll(PATTERN_TO_PATH, toPath + (StringUtils.isNotEmpty(newName) ?
-                                    newName: StringUtils.EMPTY)))
-                            .call();
-                    commitId = commit.getName();
-                    toRet.put(pathToCommit, commitId);
-                }
-            } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
-                logger.error("Error while moving content for site: " + site + " fromPath: " + fromPath +
-                        " toPath: " + toPath + " newName: " + newName);
+        String targetPath = StringUtils.isEmpty(newName) ? toPath : toPath + FILE_SEPARATOR + newName;
+
+        // All the moved files are committed together, so they all get the same commit id
+        Set<String> movedPaths = new LinkedHashSet<String>();
+        String commitId = commitChangeSet(site, new ContentChangeSet().move(fromPath, targetPath),
+                studioConfiguration.getProperty(REPO_MOVE_CONTENT_COMMIT_MESSAGE)
+                        .replaceAll(PATTERN_FROM_PATH, fromPath)
+                        .replaceAll(PATTERN_TO_PATH, toPath + (StringUtils.isNotEmpty(newName) ?
+                                newName: StringUtils.EMPTY)),
+                null, movedPaths);
+        if (commitId != null) {
+            for (String movedPath : movedPaths) {
+                toRet.put(movedPath, commitId);
             }
+        } else {
+            logger.error("Error while moving content for site: " + site + " fromPath: " + fromPath +
+                    " toPath: " + toPath + " newName: " + newName);
         }
 
         return toRet;
@@ -519,169 +593,192 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     @Override
     public String copyContent(String site, String fromPath, String toPath) {
-        String commitId = null;
-
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                    GitRepositories.SANDBOX);
-
-            String gitFromPath = helper.getGitPath(fromPath);
-            String gitToPath = helper.getGitPath(toPath);
-
-            try (Git git = new Git(repo)) {
-                Path sourcePath = Paths.get(repo.getDirectory().getParent(), fromPath);
-                File sourceFile = sourcePath.toFile();
-                Path targetPath = Paths.get(repo.getDirectory().getParent(), toPath);
-                File targetFile = targetPath.toFile();
-
-                // Check if we're copying a single file or whole subtree
-                FileUtils.copyDirectory(sourceFile, targetFile);
-
-                // The operation is done on disk, now it's time to commit
-                git.add().addFilepattern(gitToPath).call();
-                RevCommit commit = git.commit()
-                        .setOnly(gitFromPath)
-                        .setOnly(gitToPath)
-                        .setAuthor(helper.getCurrentUserIdent())
-                        .setCommitter(helper.getCurrentUserIdent())
-                        .setMessage(studioConfiguration.getProperty(REPO_COPY_CONTENT_COMMIT_MESSAGE)
-                                .replaceAll(PATTERN_FROM_PATH, fromPath).replaceAll(PATTERN_TO_PATH, toPath))
-                        .call();
-                commitId = commit.getName();
-
-            } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
-                logger.error("Error while copying content for site: " + site + " fromPath: " + fromPath +
-                        " toPath: " + toPath + " newName: ");
-            }
-        }
-
-        return commitId;
+        return commitChangeSet(site, new ContentChangeSet().copy(fromPath, toPath),
+                studioConfiguration.getProperty(REPO_COPY_CONTENT_COMMIT_MESSAGE)
+                        .replaceAll(PATTERN_FROM_PATH, fromPath).replaceAll(PATTERN_TO_PATH, toPath),
+                null);
     }
 
     @Override
     public RepositoryItem[] getContentChildren(String site, String path) {
         // TODO: SJ: Rethink this API call for 3.1+
         final List<RepositoryItem> retItems = new ArrayList<RepositoryItem>();
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories
-                .GLOBAL : GitRepositories.SANDBOX);
-
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
         try {
-            RevTree tree = helper.getTreeForLastCommit(repo);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-
-                if (tw != null) {
-                    // Loop for all children and gather path of item excluding the item, file/folder name, and
-                    // whether or not it's a folder
-                    ObjectLoader loader = repo.open(tw.getObjectId(0));
-                    if (loader.getType() == Constants.OBJ_TREE) {
-                        int depth = tw.getDepth();
-                        tw.enterSubtree();
-                        while (tw.next()) {
-                            if (tw.getDepth() == depth + 1) {
-
-                                RepositoryItem item = new RepositoryItem();
-                                item.name = tw.getNameString();
-
-                                String visitFolderPath = FILE_SEPARATOR + tw.getPathString();
-                                loader = repo.open(tw.getObjectId(0));
-                                item.isFolder = loader.getType() == Constants.OBJ_TREE;
-                                int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
-                                if (lastIdx > 0) {
-                                    item.path = visitFolderPath.substring(0, lastIdx);
-                                }
+            TreeSnapshot snapshot = getSnapshot(site, repo);
+            if (snapshot != null) {
+                String gitPath = getSnapshotPath(path);
+                List<String> children = snapshot.getChildren(gitPath);
+                if (children != null) {
+                    String prefix = gitPath.equals(TreeSnapshot.ROOT) ? gitPath : gitPath + FILE_SEPARATOR;
+                    for (String name : children) {
+                        if (!ArrayUtils.contains(IGNORE_FILES, name)) {
+                            RepositoryItem item = new RepositoryItem();
+                            item.name = name;
+                            item.path = gitPath.equals(TreeSnapshot.ROOT) ? StringUtils.EMPTY :
+                                    FILE_SEPARATOR + gitPath;
+                            item.isFolder = snapshot.getEntry(prefix + name).isFolder();
+                            retItems.add(item);
+                        }
+                    }
+                } else {
+                    logger.debug("Object is not tree for site: " + site + " path: " + path +
+                            " - it does not have children");
+                }
+                return retItems.toArray(new RepositoryItem[retItems.size()]);
+            }
 
-                                if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
-                                    retItems.add(item);
+            try {
+                RevTree tree = helper.getTreeForLastCommit(repo);
+                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+
+                    if (tw != null) {
+                        // Loop for all children and gather path of item excluding the item, file/folder name, and
+                        // whether or not it's a folder
+                        ObjectLoader loader = repo.open(tw.getObjectId(0));
+                        if (loader.getType() == Constants.OBJ_TREE) {
+                            int depth = tw.getDepth();
+                            tw.enterSubtree();
+                            while (tw.next()) {
+                                if (tw.getDepth() == depth + 1) {
+
+                                    RepositoryItem item = new RepositoryItem();
+                                    item.name = tw.getNameString();
+
+                                    String visitFolderPath = FILE_SEPARATOR + tw.getPathString();
+                                    loader = repo.open(tw.getObjectId(0));
+                                    item.isFolder = loader.getType() == Constants.OBJ_TREE;
+                                    int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
+                                    if (lastIdx > 0) {
+                                        item.path = visitFolderPath.substring(0, lastIdx);
+                                    }
+
+                                    if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
+                                        retItems.add(item);
+                                    }
                                 }
                             }
+                            tw.close();
+                        } else {
+                            logger.debug("Object is not tree for site: " + site + " path: " + path +
+                                    " - it does not have children");
                         }
-                        tw.close();
                     } else {
-                        logger.debug("Object is not tree for site: " + site + " path: " + path +
-                                " - it does not have children");
-                    }
-                } else {
-                    String gitPath = helper.getGitPath(path);
-                    if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
-                        try (TreeWalk treeWalk = new TreeWalk(repo)) {
-                            treeWalk.addTree(tree);
-
-                            while (treeWalk.next()) {
-
-                                ObjectLoader loader = repo.open(treeWalk.getObjectId(0));
-
-                                RepositoryItem item = new RepositoryItem();
-                                item.name = treeWalk.getNameString();
-
-                                String visitFolderPath = FILE_SEPARATOR + treeWalk.getPathString();
-                                loader = repo.open(treeWalk.getObjectId(0));
-                                item.isFolder = loader.getType() == Constants.OBJ_TREE;
-                                int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
-                                if (lastIdx > 0) {
-                                    item.path = visitFolderPath.substring(0, lastIdx);
-                                } else {
-                                    item.path = StringUtils.EMPTY;
-                                }
+                        String gitPath = helper.getGitPath(path);
+                        if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
+                            try (TreeWalk treeWalk = new TreeWalk(repo)) {
+                                treeWalk.addTree(tree);
+
+                                while (treeWalk.next()) {
+
+                                    ObjectLoader loader = repo.open(treeWalk.getObjectId(0));
+
+                                    RepositoryItem item = new RepositoryItem();
+                                    item.name = treeWalk.getNameString();
 
-                                if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
-                                    retItems.add(item);
+                                    String visitFolderPath = FILE_SEPARATOR + treeWalk.getPathString();
+                                    loader = repo.open(treeWalk.getObjectId(0));
+                                    item.isFolder = loader.getType() == Constants.OBJ_TREE;
+                                    int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
+                                    if (lastIdx > 0) {
+                                        item.path = visitFolderPath.substring(0, lastIdx);
+                                    } else {
+                                        item.path = StringUtils.EMPTY;
+                                    }
+
+                                    if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
+                                        retItems.add(item);
+                                    }
                                 }
+
+                            } catch (IOException e) {
+                                logger.error("Error while getting children for site: " + site + " path: " + path, e);
                             }
 
-                        } catch (IOException e) {
-                            logger.error("Error while getting children for site: " + site + " path: " + path, e);
                         }
-
                     }
+                } catch (IOException e) {
+                    logger.error("Error while getting children for site: " + site + " path: " + path, e);
                 }
             } catch (IOException e) {
-                logger.error("Error while getting children for site: " + site + " path: " + path, e);
+                logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
             }
-        } catch (IOException e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
+
+            RepositoryItem[] items = new RepositoryItem[retItems.size()];
+            items = retItems.toArray(items);
+            return items;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
+        }
+    }
+
+    /**
+     * Get the snapshot of the last commit of the repository, null if the repository can't be indexed
+     */
+    protected TreeSnapshot getSnapshot(String site, Repository repo) {
+        if (snapshotIndex == null || repo == null) {
+            return null;
         }
+        return snapshotIndex.getSnapshot(StringUtils.defaultString(site), repo);
+    }
 
-        RepositoryItem[] items = new RepositoryItem[retItems.size()];
-        items = retItems.toArray(items);
-        return items;
+    protected String getSnapshotPath(String path) {
+        String gitPath = helper.getGitPath(path);
+        return StringUtils.isEmpty(gitPath) || gitPath.equals(".") ? TreeSnapshot.ROOT : gitPath;
     }
 
     @Override
     public VersionTO[] getContentVersionHistory(String site, String path) {
         List<VersionTO> versionHistory = new ArrayList<VersionTO>();
 
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                    GitRepositories.SANDBOX);
-
-            try {
-                ObjectId head = repo.resolve(Constants.HEAD);
-                String gitPath = helper.getGitPath(path);
-                try (Git git = new Git(repo)) {
-                    Iterable<RevCommit> commits = git.log().add(head).addPath(gitPath).call();
-                    Iterator<RevCommit> iterator = commits.iterator();
-                    while (iterator.hasNext()) {
-                        RevCommit revCommit = iterator.next();
-                        VersionTO versionTO = new VersionTO();
-                        versionTO.setVersionNumber(revCommit.getName());
-                        versionTO.setLastModifier(revCommit.getAuthorIdent().getName());
-                        versionTO.setLastModifiedDate(
-                                Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(ZoneOffset.UTC));
-                        versionTO.setComment(revCommit.getFullMessage());
-                        versionHistory.add(versionTO);
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            String gitPath = helper.getGitPath(path);
+            List<String> indexedCommitIds = null;
+            if (StringUtils.isNotEmpty(site) && commitPathIndex != null) {
+                indexedCommitIds = commitPathIndex.getCommitIds(site, repo, FILE_SEPARATOR + gitPath);
+            }
+            if (indexedCommitIds != null) {
+                // Indexed sites read the commits from the index, only the commits themselves are parsed
+                try (RevWalk revWalk = new RevWalk(repo)) {
+                    for (String commitId : indexedCommitIds) {
+                        versionHistory.add(createVersionTO(revWalk.parseCommit(ObjectId.fromString(commitId))));
                     }
-
-                    git.close();
                 } catch (IOException e) {
-                    logger.error("error while getting history for content item " + path);
+                    logger.error("error while getting history for content item " + path, e);
+                }
+            } else {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try {
+                        ObjectId head = repo.resolve(Constants.HEAD);
+                        try (Git git = new Git(repo)) {
+                            Iterable<RevCommit> commits = git.log().add(head).addPath(gitPath).call();
+                            for (RevCommit revCommit : commits) {
+                                versionHistory.add(createVersionTO(revCommit));
+                            }
+                        }
+                    } catch (IOException | GitAPIException e) {
+                        logger.error("Failed to create Git repo for site: " + site + " path: " + path, e);
+                    }
                 }
-            } catch (IOException | GitAPIException e) {
-                logger.error("Failed to create Git repo for site: " + site + " path: " + path, e);
             }
+
+            VersionTO[] toRet = new VersionTO[versionHistory.size()];
+            return versionHistory.toArray(toRet);
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
+    }
 
-        VersionTO[] toRet = new VersionTO[versionHistory.size()];
-        return versionHistory.toArray(toRet);
+    private VersionTO createVersionTO(RevCommit revCommit) {
+        VersionTO versionTO = new VersionTO();
+        versionTO.setVersionNumber(revCommit.getName());
+        versionTO.setLastModifier(revCommit.getAuthorIdent().getName());
+        versionTO.setLastModifiedDate(Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(ZoneOffset.UTC));
+        versionTO.setComment(revCommit.getFullMessage());
+        return versionTO;
     }
 
     @Override
@@ -696,10 +793,10 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         // TODO: SJ: Redesign/refactor the whole approach in 3.1+
         String toReturn = StringUtils.EMPTY;
 
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : PUBLISHED)) {
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.PUBLISHED;
+        synchronized (helper.getRepositoryLock(site, repoType)) {
             if (majorVersion) {
-                Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                        GitRepositories.PUBLISHED);
+                Repository repo = helper.acquireRepository(site, repoType);
                 // Tag the repository with a date-time based version label
                 String gitPath = helper.getGitPath(path);
 
@@ -720,6 +817,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
                 } catch (GitAPIException | ServiceLayerException | UserNotFoundException err) {
                     logger.error("error creating new version for site:  " + site + " path: " + path, err);
+                } finally {
+                    helper.releaseRepository(site, repoType, repo);
                 }
             } else {
                 logger.info("request to create minor revision ignored for site: " + site + " path: " + path);
@@ -749,145 +848,161 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     public InputStream getContentVersion(String site, String path, String version) throws ContentNotFoundException {
         InputStream toReturn = null;
 
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories
-                .GLOBAL : SANDBOX);
-
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
         try {
-            RevTree tree = helper.getTreeForCommit(repo, version);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                if (tw != null) {
-                    ObjectId id = tw.getObjectId(0);
-                    ObjectLoader objectLoader = repo.open(id);
-                    toReturn = objectLoader.openStream();
-                    tw.close();
+
+            try {
+                RevTree tree = helper.getTreeForCommit(repo, version);
+                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
+                    if (tw != null) {
+                        ObjectId id = tw.getObjectId(0);
+                        ObjectLoader objectLoader = repo.open(id);
+                        toReturn = objectLoader.openStream();
+                        tw.close();
+                    }
+                } catch (IOException e) {
+                    logger.error("Error while getting content for file at site: " + site + " path: " + path +
+                            " version: " + version, e);
                 }
             } catch (IOException e) {
-                logger.error("Error while getting content for file at site: " + site + " path: " + path +
-                        " version: " + version, e);
+                logger.error("Failed to create RevTree for site: " + site + " path: " + path + " version: " +
+                        version, e);
             }
-        } catch (IOException e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path + " version: " +
-                    version, e);
-        }
 
-        return toReturn;
+            return toReturn;
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
+        }
     }
 
     @Override
     public void lockItem(String site, String path) {
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                SANDBOX);
-
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            try (TreeWalk tw = new TreeWalk(repo)) {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                tw.addTree(tree); // tree ‘0’
-                tw.setRecursive(false);
-                tw.setFilter(PathFilter.create(path));
-
-                if (!tw.next()) {
-                    return;
-                }
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            synchronized (helper.getRepositoryLock(site, repoType)) {
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    tw.addTree(tree); // tree ‘0’
+                    tw.setRecursive(false);
+                    tw.setFilter(PathFilter.create(path));
+
+                    if (!tw.next()) {
+                        return;
+                    }
 
-                File repoRoot = repo.getWorkTree();
-                Paths.get(repoRoot.getPath(), tw.getPathString());
-                File file = new File(tw.getPathString());
-                LockFile lock = new LockFile(file);
-                lock.lock();
+                    File repoRoot = repo.getWorkTree();
+                    Paths.get(repoRoot.getPath(), tw.getPathString());
+                    File file = new File(tw.getPathString());
+                    LockFile lock = new LockFile(file);
+                    lock.lock();
 
-                tw.close();
+                    tw.close();
 
-            } catch (IOException e) {
-                logger.error("Error while locking file for site: " + site + " path: " + path, e);
+                } catch (IOException e) {
+                    logger.error("Error while locking file for site: " + site + " path: " + path, e);
+                }
             }
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
     }
 
     @Override
     public void lockItemForPublishing(String site, String path) {
-        Repository repo = helper.getRepository(site, PUBLISHED);
-
-        synchronized (repo) {
-            try (TreeWalk tw = new TreeWalk(repo)) {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                tw.addTree(tree); // tree ‘0’
-                tw.setRecursive(false);
-                tw.setFilter(PathFilter.create(path));
-
-                if (!tw.next()) {
-                    return;
-                }
+        Repository repo = helper.acquireRepository(site, PUBLISHED);
+        try {
+            synchronized (helper.getRepositoryLock(site, PUBLISHED)) {
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    tw.addTree(tree); // tree ‘0’
+                    tw.setRecursive(false);
+                    tw.setFilter(PathFilter.create(path));
+
+                    if (!tw.next()) {
+                        return;
+                    }
 
-                File repoRoot = repo.getWorkTree();
-                Paths.get(repoRoot.getPath(), tw.getPathString());
-                File file = new File(tw.getPathString());
-                LockFile lock = new LockFile(file);
-                lock.lock();
+                    File repoRoot = repo.getWorkTree();
+                    Paths.get(repoRoot.getPath(), tw.getPathString());
+                    File file = new File(tw.getPathString());
+                    LockFile lock = new LockFile(file);
+                    lock.lock();
 
-                tw.close();
+                    tw.close();
 
-            } catch (IOException e) {
-                logger.error("Error while locking file for site: " + site + " path: " + path, e);
+                } catch (IOException e) {
+                    logger.error("Error while locking file for site: " + site + " path: " + path, e);
+                }
             }
+        } finally {
+            helper.releaseRepository(site, PUBLISHED, repo);
         }
     }
 
     @Override
     public void unLockItem(String site, String path) {
-        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                SANDBOX);
-
-        synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX)) {
-            try (TreeWalk tw = new TreeWalk(repo)) {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                tw.addTree(tree); // tree ‘0’
-                tw.setRecursive(false);
-                tw.setFilter(PathFilter.create(path));
-
-                if (!tw.next()) {
-                    return;
-                }
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : GitRepositories.SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        try {
+            synchronized (helper.getRepositoryLock(site, repoType)) {
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    tw.addTree(tree); // tree ‘0’
+                    tw.setRecursive(false);
+                    tw.setFilter(PathFilter.create(path));
+
+                    if (!tw.next()) {
+                        return;
+                    }
 
-                File repoRoot = repo.getWorkTree();
-                Paths.get(repoRoot.getPath(), tw.getPathString());
-                File file = new File(tw.getPathString());
-                LockFile lock = new LockFile(file);
-                lock.unlock();
+                    File repoRoot = repo.getWorkTree();
+                    Paths.get(repoRoot.getPath(), tw.getPathString());
+                    File file = new File(tw.getPathString());
+                    LockFile lock = new LockFile(file);
+                    lock.unlock();
 
-                tw.close();
+                    tw.close();
 
-            } catch (IOException e) {
-                logger.error("Error while unlocking file for site: " + site + " path: " + path, e);
+                } catch (IOException e) {
+                    logger.error("Error while unlocking file for site: " + site + " path: " + path, e);
+                }
             }
+        } finally {
+            helper.releaseRepository(site, repoType, repo);
         }
     }
 
     @Override
     public void unLockItemForPublishing(String site, String path) {
-        Repository repo = helper.getRepository(site, PUBLISHED);
-
-        synchronized (repo) {
-            try (TreeWalk tw = new TreeWalk(repo)) {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                tw.addTree(tree); // tree ‘0’
-                tw.setRecursive(false);
-                tw.setFilter(PathFilter.create(path));
-
-                if (!tw.next()) {
-                    return;
-                }
+        Repository repo = helper.acquireRepository(site, PUBLISHED);
+        try {
+            synchronized (helper.getRepositoryLock(site, PUBLISHED)) {
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    RevTree tree = helper.getTreeForLastCommit(repo);
+                    tw.addTree(tree); // tree ‘0’
+                    tw.setRecursive(false);
+                    tw.setFilter(PathFilter.create(path));
+
+                    if (!tw.next()) {
+                        return;
+                    }
 
-                File repoRoot = repo.getWorkTree();
-                Paths.get(repoRoot.getPath(), tw.getPathString());
-                File file = new File(tw.getPathString());
-                LockFile lock = new LockFile(file);
-                lock.unlock();
+                    File repoRoot = repo.getWorkTree();
+                    Paths.get(repoRoot.getPath(), tw.getPathString());
+                    File file = new File(tw.getPathString());
+                    LockFile lock = new LockFile(file);
+                    lock.unlock();
 
-                tw.close();
+                    tw.close();
 
-            } catch (IOException e) {
-                logger.error("Error while unlocking file for site: " + site + " path: " + path, e);
+                } catch (IOException e) {
+                    logger.error("Error while unlocking file for site: " + site + " path: " + path, e);
+                }
             }
+        } finally {
+            helper.releaseRepository(site, PUBLISHED, repo);
         }
     }
 
@@ -898,6 +1013,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         // Initialize the helper
         helper = new GitContentRepositoryHelper(studioConfiguration, servicesConfig, userServiceInternal,
                 securityService);
+        helper.configureWindowCache();
 
         encryptor = new PbkAesTextEncryptor(studioConfiguration.getProperty(SECURITY_CIPHER_KEY),
                 studioConfiguration.getProperty(SECURITY_CIPHER_SALT));
@@ -977,17 +1093,20 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public boolean deleteSite(String site) {
         boolean toReturn;
+        if (snapshotIndex != null) {
+            snapshotIndex.invalidate(site);
+        }
+        if (commitPathIndex != null && StringUtils.isNotEmpty(site)) {
+            commitPathIndex.delete(site);
+        }
 
-        Repository repository = helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL :
-                SANDBOX);
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repository = helper.acquireRepository(site, repoType);
         if (repository != null) {
-            synchronized (repository) {
-                Repository publishedRepository = helper.getRepository(site, GitRepositories.PUBLISHED);
-                if (publishedRepository != null) {
-                    synchronized (publishedRepository) {
-                        toReturn = helper.deleteSiteGitRepo(site);
-                    }
-                } else {
+            // Don't keep it open while the files are deleted
+            helper.releaseRepository(site, repoType, repository);
+            synchronized (helper.getRepositoryLock(site, repoType)) {
+                synchronized (helper.getRepositoryLock(site, PUBLISHED)) {
                     toReturn = helper.deleteSiteGitRepo(site);
                 }
             }
@@ -1009,14 +1128,14 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public void initialPublish(String site, String sandboxBranch, String environment, String author, String comment)
             throws DeploymentException {
-        Repository repo = helper.getRepository(site, GitRepositories.PUBLISHED);
+        Repository repo = helper.acquireRepository(site, GitRepositories.PUBLISHED);
         String commitId = StringUtils.EMPTY;
 
         String sandboxBranchName = sandboxBranch;
         if (StringUtils.isEmpty(sandboxBranchName)) {
             sandboxBranchName = studioConfiguration.getProperty(REPO_SANDBOX_BRANCH);
         }
-        synchronized (repo) {
+        synchronized (helper.getRepositoryLock(site, GitRepositories.PUBLISHED)) {
             try (Git git = new Git(repo)) {
 
                 // fetch "origin/master"
@@ -1065,6 +1184,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 logger.error("Error when publishing site " + site + " to environment " + environment, e);
                 throw new DeploymentException("Error when publishing site " + site + " to environment " +
                         environment + " [commit ID = " + commitId + "]");
+            } finally {
+                helper.releaseRepository(site, GitRepositories.PUBLISHED, repo);
             }
         }
 
@@ -1076,14 +1197,24 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         if (CollectionUtils.isEmpty(deploymentItems)) {
             return;
         }
-        Repository repo = helper.getRepository(site, GitRepositories.PUBLISHED);
+        Repository repo = helper.acquireRepository(site, GitRepositories.PUBLISHED);
+        try {
+            publish(repo, site, sandboxBranch, deploymentItems, environment, author, comment);
+        } finally {
+            helper.releaseRepository(site, GitRepositories.PUBLISHED, repo);
+        }
+    }
+
+    protected void publish(Repository repo, String site, String sandboxBranch, List<DeploymentItemTO> deploymentItems,
+                           String environment, String author, String comment) throws DeploymentException {
         String commitId = StringUtils.EMPTY;
         String path = StringUtils.EMPTY;
         String sandboxBranchName = sandboxBranch;
         if (StringUtils.isEmpty(sandboxBranchName)) {
             sandboxBranchName = studioConfiguration.getProperty(REPO_SANDBOX_BRANCH);
         }
-        synchronized (repo) {
+        synchronized (helper.getRepositoryLock(site, GitRepositories.PUBLISHED)) {
+            long startTime = System.currentTimeMillis();
             try (Git git = new Git(repo)) {
 
                 String inProgressBranchName = environment + IN_PROGRESS_BRANCH_NAME_SUFIX;
@@ -1092,122 +1223,83 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 logger.debug("Fetch from sandbox for site " + site);
                 git.fetch().call();
 
-                // checkout master and pull from sandbox
-                logger.debug("Checkout published/master branch for site " + site);
-                try {
-                    // First delete it in case it already exists (ignored if does not exist)
-                    String currentBranch = repo.getBranch();
-                    if (currentBranch.endsWith(IN_PROGRESS_BRANCH_NAME_SUFIX)) {
-                        git.reset()
-                                .setMode(ResetCommand.ResetType.HARD)
-                                .call();
-                    }
-
-                    Ref ref = repo.exactRef(Constants.R_HEADS + sandboxBranchName);
-                    boolean createBranch = (ref == null);
-
-                    git.checkout()
-                            .setName(sandboxBranchName)
-                            .setCreateBranch(createBranch)
-                            .call();
-
-                    logger.debug("Delete in-progress branch, in case it was not cleaned up for site " + site);
-                    git.branchDelete().setBranchNames(inProgressBranchName).setForce(true).call();
+                // Publishing only moves refs, HEAD is detached so the working tree and the index never get out of
+                // sync with it
+                detachPublishedHead(git);
 
-                    git.pull().
-                            setRemote(Constants.DEFAULT_REMOTE_NAME)
-                            .setRemoteBranchName(sandboxBranchName)
-                            .setStrategy(MergeStrategy.THEIRS)
-                            .call();
-                } catch (RefNotFoundException e) {
-                    logger.error("Failed to checkout published master and to pull content from sandbox for site "
-                            + site, e);
+                logger.debug("Delete in-progress branch, in case it was not cleaned up for site " + site);
+                git.branchDelete().setBranchNames(inProgressBranchName).setForce(true).call();
+
+                // update master from sandbox
+                logger.debug("Update published/master branch from sandbox for site " + site);
+                ObjectId sandboxHead = repo.resolve(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME +
+                        FILE_SEPARATOR + sandboxBranchName);
+                if (sandboxHead == null) {
+                    logger.error("Failed to find branch " + sandboxBranchName + " in sandbox for site " + site);
                     throw new DeploymentException("Failed to checkout published master and to pull content from " +
                             "sandbox for site " + site);
                 }
+                checkRefUpdate(updateRef(repo, Constants.R_HEADS + sandboxBranchName, null, sandboxHead, true,
+                        "pull: from sandbox"));
 
-                // checkout environment branch
-                logger.debug("Checkout environment branch " + environment + " for site " + site);
-                boolean newBranch = false;
-                try {
-                    git.checkout()
-                            .setName(environment)
-                            .call();
-                } catch (RefNotFoundException e) {
+                Ref environmentRef = repo.exactRef(Constants.R_HEADS + environment);
+                if (environmentRef == null) {
+                    // new branch starts from the sandbox branch, nothing else to do, it already has everything
                     logger.info("Not able to find branch " + environment + " for site " + site +
                             ". Creating new branch");
-                    // checkout environment branch
-                    newBranch = true;
-                    git.checkout()
-                            .setCreateBranch(true)
-                            .setForce(true)
-                            .setStartPoint(sandboxBranchName)
-                            .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
-                            .setName(environment)
-                            .call();
+                    checkRefUpdate(updateRef(repo, Constants.R_HEADS + environment, ObjectId.zeroId(), sandboxHead,
+                            false, "branch: Created from " + sandboxBranchName));
+                    StoredConfig config = repo.getConfig();
+                    config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, environment,
+                            ConfigConstants.CONFIG_KEY_REMOTE, ".");
+                    config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, environment,
+                            ConfigConstants.CONFIG_KEY_MERGE, Constants.R_HEADS + sandboxBranchName);
+                    config.save();
+                    recordDeploymentHistory(site, environment, deploymentItems, sandboxHead,
+                            ZonedDateTime.now(ZoneOffset.UTC), helper.getAuthorIdent(author).getName());
+                    return;
                 }
 
-                // check if it is new branch
-                // if true nothing to do, already pulled everything
-                // otherwise do cherry-picking
-                if (!newBranch) {
-                    // cherry pick all commit ids
-
-                    // Create in progress branch
-                    try {
-
-                        // Create in progress branch
-                        logger.debug("Create in-progress branch for site " + site);
-                        git.checkout()
-                                .setCreateBranch(true)
-                                .setForce(true)
-                                .setStartPoint(environment)
-                                .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
-                                .setName(inProgressBranchName)
-                                .call();
-                    } catch (GitAPIException e) {
-                        // TODO: DB: Error ?
-                        logger.error("Failed to create in-progress published branch for site " + site);
-                    }
+                try (RevWalk rw = new RevWalk(repo); ObjectInserter inserter = repo.newObjectInserter()) {
+                    RevCommit environmentCommit = rw.parseCommit(environmentRef.getObjectId());
 
                     Set<String> deployedCommits = new HashSet<String>();
                     Set<String> deployedPackages = new HashSet<String>();
-                    logger.debug("Checkout deployed files started.");
-                    AddCommand addCommand = git.add();
+                    Map<String, RevTree> commitTrees = new HashMap<String, RevTree>();
+                    logger.debug("Build tree of deployed files started.");
+                    PublishTreeBuilder treeBuilder =
+                            new PublishTreeBuilder(rw.getObjectReader(), environmentCommit.getTree());
                     for (DeploymentItemTO deploymentItem : deploymentItems) {
                         commitId = deploymentItem.getCommitId();
                         path = helper.getGitPath(deploymentItem.getPath());
                         logger.debug("Checking out file " + path + " from commit id " + commitId +
                                 " for site " + site);
 
-                        ObjectId objCommitId = repo.resolve(commitId);
-                        RevWalk rw = new RevWalk(repo);
-                        RevCommit rc = rw.parseCommit(objCommitId);
-
-                        CheckoutCommand checkout = git.checkout();
-                        checkout.setStartPoint(commitId).addPath(path).call();
+                        RevTree commitTree = commitTrees.get(commitId);
+                        if (commitTree == null) {
+                            commitTree = rw.parseCommit(repo.resolve(commitId)).getTree();
+                            commitTrees.put(commitId, commitTree);
+                        }
+                        treeBuilder.checkoutPath(commitTree, path);
 
                         if (deploymentItem.isMove()) {
                             String oldPath = helper.getGitPath(deploymentItem.getOldPath());
-                            git.rm().addFilepattern(oldPath).setCached(false).call();
-                            cleanUpMoveFolders(git, oldPath);
+                            treeBuilder.removePath(oldPath);
+                            treeBuilder.cleanUpMoveFolders(oldPath);
                         }
 
                         if (deploymentItem.isDelete()) {
-                            String deletePath = helper.getGitPath(deploymentItem.getPath());
-                            git.rm().addFilepattern(deletePath).setCached(false).call();
-                            Path parentToDelete = Paths.get(path).getParent();
-                            deleteParentFolder(git, parentToDelete);
+                            treeBuilder.removePath(path);
+                            treeBuilder.deleteParentFolder(PublishTreeBuilder.getParent(path));
                         }
                         deployedCommits.add(commitId);
                         String packageId = deploymentItem.getPackageId();
                         if (StringUtils.isNotEmpty(packageId)) {
                             deployedPackages.add(deploymentItem.getPackageId());
                         }
-
-                        addCommand.addFilepattern(path);
                     }
-                    logger.debug("Checkout deployed files completed.");
+                    ObjectId treeId = treeBuilder.writeTree(inserter);
+                    logger.debug("Build tree of deployed files completed.");
 
                     // commit all deployed files
                     String commitMessage = studioConfiguration.getProperty(REPO_PUBLISHED_COMMIT_MESSAGE);
@@ -1216,10 +1308,6 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                     PersonIdent authorIdent = helper.getAuthorIdent(author);
                     logger.debug("Get Author Ident completed.");
 
-                    logger.debug("Git add all published items started.");
-                    addCommand.call();
-                    logger.debug("Git add all published items completed.");
-
                     commitMessage = commitMessage.replace("{username}", author);
                     commitMessage =
                             commitMessage.replace("{datetime}",
@@ -1238,7 +1326,15 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                     commitMessage = commitMessage.replace("{commit_id}", sb.toString().trim());
                     commitMessage = commitMessage.replace("{package_id}", sbPackage.toString().trim());
                     logger.debug("Git commit all published items started.");
-                    RevCommit revCommit = git.commit().setMessage(commitMessage).setAuthor(authorIdent).call();
+                    CommitBuilder commitBuilder = new CommitBuilder();
+                    commitBuilder.setTreeId(treeId);
+                    commitBuilder.setParentId(environmentCommit);
+                    commitBuilder.setAuthor(authorIdent);
+                    commitBuilder.setCommitter(new PersonIdent(repo));
+                    commitBuilder.setMessage(commitMessage);
+                    ObjectId publishCommitId = inserter.insert(commitBuilder);
+                    inserter.flush();
+                    RevCommit revCommit = rw.parseCommit(publishCommitId);
                     logger.debug("Git commit all published items completed.");
                     int commitTime = revCommit.getCommitTime();
 
@@ -1253,27 +1349,34 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                     logger.debug("Get Author Ident completed.");
 
                     logger.debug("Git tag started.");
-                    git.tag().setTagger(authorIdent2).setName(tagName2).setMessage(commitMessage).call();
+                    TagBuilder tagBuilder = new TagBuilder();
+                    tagBuilder.setObjectId(revCommit);
+                    tagBuilder.setTag(tagName2);
+                    tagBuilder.setTagger(authorIdent2);
+                    tagBuilder.setMessage(commitMessage);
+                    ObjectId tagId = inserter.insert(tagBuilder);
+                    inserter.flush();
+                    String tagRefName = Constants.R_TAGS + tagName2;
+                    checkRefUpdate(updateRef(repo, tagRefName, ObjectId.zeroId(), tagId, false,
+                            "tagged " + tagName2));
                     logger.debug("Git tag completed.");
 
-                    // checkout environment
-                    logger.debug("Checkout environment " + environment + " branch for site " + site);
-                    git.checkout()
-                            .setName(environment)
-                            .call();
-
-                    Ref branchRef = repo.findRef(inProgressBranchName);
-
-                    // merge in-progress branch
-                    logger.debug("Merge in-progress branch into environment " + environment + " for site " +
-                            site);
-                    git.merge().setCommit(true).include(branchRef).call();
+                    // move the environment branch, fails if it was updated by someone else in the meantime
+                    logger.debug("Update environment " + environment + " branch for site " + site);
+                    RefUpdate.Result result = updateRef(repo, Constants.R_HEADS + environment, environmentCommit,
+                            publishCommitId, false, "commit: " + revCommit.getShortMessage());
+                    if (result != RefUpdate.Result.FAST_FORWARD) {
+                        RefUpdate tagDelete = repo.updateRef(tagRefName);
+                        tagDelete.setForceUpdate(true);
+                        tagDelete.delete();
+                        throw new IOException("Failed to update branch " + environment + ": " + result.name());
+                    }
 
-                    // clean up
-                    logger.debug("Delete in-progress branch (clean up) for site " + site);
-                    git.branchDelete().setBranchNames(inProgressBranchName).setForce(true).call();
-                    git.close();
+                    recordDeploymentHistory(site, environment, deploymentItems, publishCommitId, tagDate2,
+                            authorIdent.getName());
                 }
+                logger.debug("Published " + deploymentItems.size() + " items to environment " + environment +
+                        " for site " + site + " in " + (System.currentTimeMillis() - startTime) + " ms");
             } catch (Exception e) {
                 logger.error("Error when publishing site " + site + " to environment " + environment, e);
                 throw new DeploymentException("Error when publishing site " + site + " to environment " +
@@ -1283,155 +1386,299 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     }
 
-    private void cleanUpMoveFolders(Git git, String path) throws GitAPIException {
-        Path parentToDelete = Paths.get(path).getParent();
-        deleteParentFolder(git, parentToDelete);
-        Path testDelete = Paths.get(git.getRepository().getDirectory().getParent(), parentToDelete.toString());
-        File testDeleteFile = testDelete.toFile();
-        if (!testDeleteFile.exists()) {
-            cleanUpMoveFolders(git, parentToDelete.toString());
+    /**
+     * Detach HEAD of the published repository at its current commit, resetting first a working tree left behind
+     * by an interrupted publishing
+     */
+    private void detachPublishedHead(Git git) throws GitAPIException, IOException {
+        Repository repo = git.getRepository();
+        Ref head = repo.exactRef(Constants.HEAD);
+        if (head != null && head.isSymbolic() && head.getObjectId() != null) {
+            if (repo.getBranch().endsWith(IN_PROGRESS_BRANCH_NAME_SUFIX)) {
+                git.reset()
+                        .setMode(ResetCommand.ResetType.HARD)
+                        .call();
+            }
+            RefUpdate headUpdate = repo.updateRef(Constants.HEAD, true);
+            headUpdate.setNewObjectId(head.getObjectId());
+            checkRefUpdate(headUpdate.forceUpdate());
+        }
+    }
+
+    private RefUpdate.Result updateRef(Repository repo, String refName, ObjectId expectedOldId, ObjectId newId,
+                                       boolean force, String refLogMessage) throws IOException {
+        RefUpdate refUpdate = repo.updateRef(refName);
+        if (expectedOldId != null) {
+            refUpdate.setExpectedOldObjectId(expectedOldId);
+        }
+        refUpdate.setNewObjectId(newId);
+        refUpdate.setRefLogMessage(refLogMessage, false);
+        return force ? refUpdate.forceUpdate() : refUpdate.update();
+    }
+
+    private void checkRefUpdate(RefUpdate.Result result) throws IOException {
+        switch (result) {
+            case NEW:
+            case FORCED:
+            case FAST_FORWARD:
+            case NO_CHANGE:
+                break;
+            default:
+                throw new IOException("Failed to update ref: " + result.name());
         }
     }
 
     @Override
     public List<RepoOperationTO> getOperations(String site, String commitIdFrom, String commitIdTo) {
         List<RepoOperationTO> operations = new ArrayList<>();
-        Repository repository =
-                helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX);
-        if (repository != null) {
-            synchronized (repository) {
-                try {
-                    // Get the sandbox repo, and then get a reference to the commitId we received and another for head
-                    boolean fromEmptyRepo = StringUtils.isEmpty(commitIdFrom);
-                    String firstCommitId = getRepoFirstCommitId(site);
-                    if (fromEmptyRepo) {
-                        commitIdFrom = firstCommitId;
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try (ObjectReader reader = repo.newObjectReader();
+                         RevWalk revWalk = new RevWalk(reader)) {
+                        // Diff every commit with its parent, all of them with the same reader so the trees that did not
+                        // change between consecutive commits are not parsed again
+                        for (RevCommit commit : getCommitRange(site, repo, revWalk, commitIdFrom, commitIdTo)) {
+                            RevTree parentTree = null;
+                            if (commit.getParentCount() > 0) {
+                                parentTree = revWalk.parseCommit(commit.getParent(0)).getTree();
+                            }
+                            List<DiffEntry> diffEntries = helper.diffTrees(repo, reader, parentTree, commit.getTree(),
+                                    false);
+
+                            // Now that we have a diff, let's itemize the file changes, pack them into a TO
+                            // and add them to the list of RepoOperations to return to the caller
+                            // also include date/time of commit by taking number of seconds and multiply by 1000 and
+                            // convert to java date before sending over
+                            operations.addAll(processDiffEntry(diffEntries, commit.getId(), getCommitAuthor(commit),
+                                    Instant.ofEpochSecond(commit.getCommitTime()).atZone(ZoneOffset.UTC)));
+                        }
+                    } catch (IOException e) {
+                        logger.error("Error getting operations for site " + site + " from commit ID: " + commitIdFrom +
+                                " to commit ID: " + commitIdTo, e);
                     }
-                    Repository repo = helper.getRepository(site, SANDBOX);
-                    ObjectId objCommitIdFrom = repo.resolve(commitIdFrom);
-                    ObjectId objCommitIdTo = repo.resolve(commitIdTo);
-
-                    ObjectId objFirstCommitId = repo.resolve(firstCommitId);
-                    boolean initialEqToCommit = StringUtils.equals(firstCommitId, commitIdTo);
-                    boolean initialEqFromCommit = StringUtils.equals(firstCommitId, commitIdFrom);
+                }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
+            }
+        }
 
-                    try (Git git = new Git(repo)) {
+        return operations;
+    }
 
-                        if (fromEmptyRepo) {
-                            try (RevWalk walk = new RevWalk(repo)) {
-                                RevCommit firstCommit = walk.parseCommit(objFirstCommitId);
-                                RevTree firstCommitTree = helper.getTreeForCommit(repo, firstCommit.getName());
-                                try (ObjectReader reader = repo.newObjectReader()) {
-                                    CanonicalTreeParser firstCommitTreeParser = new CanonicalTreeParser();
-                                    firstCommitTreeParser.reset();//reset(reader, firstCommitTree.getId());
-                                    // Diff the two commit Ids
-                                    List<DiffEntry> diffEntries = git.diff()
-                                            .setOldTree(firstCommitTreeParser)
-                                            .setNewTree(null)
-                                            .call();
-
-
-                                    // Now that we have a diff, let's itemize the file changes, pack them into a TO
-                                    // and add them to the list of RepoOperations to return to the caller
-                                    // also include date/time of commit by taking number of seconds and multiply by 1000 and
-                                    // convert to java date before sending over
-                                    operations.addAll(processDiffEntry(diffEntries, firstCommit.getId(),
-                                            firstCommit.getCommitterIdent().getName(),
-                                            Instant.ofEpochSecond(firstCommit.getCommitTime()).atZone(ZoneOffset.UTC)));
-                                }
+    @Override
+    public List<RepoOperationTO> getNetOperations(String site, String commitIdFrom, String commitIdTo) {
+        List<RepoOperationTO> operations = new ArrayList<>();
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try (ObjectReader reader = repo.newObjectReader();
+                         RevWalk revWalk = new RevWalk(reader)) {
+                        ObjectId objCommitIdTo = repo.resolve(commitIdTo);
+                        if (objCommitIdTo == null) {
+                            logger.error("Commit ID " + commitIdTo + " not found for site " + site);
+                            return operations;
+                        }
+                        RevCommit commitTo = revWalk.parseCommit(objCommitIdTo);
+                        RevTree treeFrom = null;
+                        if (StringUtils.isNotEmpty(commitIdFrom)) {
+                            ObjectId objCommitIdFrom = repo.resolve(commitIdFrom);
+                            if (objCommitIdFrom == null) {
+                                logger.error("Commit ID " + commitIdFrom + " not found for site " + site);
+                                return operations;
                             }
+                            treeFrom = revWalk.parseCommit(objCommitIdFrom).getTree();
                         }
 
-                        // If the commitIdFrom is the same as commitIdTo, there is nothing to calculate, otherwise,
-                        // let's do it
-                        if (!objCommitIdFrom.equals(objCommitIdTo)) {
-                            // Compare HEAD with commitId we're given
-                            // Get list of commits between commitId and HEAD in chronological order
-
-                            // Get the log of all the commits between commitId and head
-                            Iterable<RevCommit> commits = git.log().addRange(objCommitIdFrom, objCommitIdTo).call();
-
-                            // Loop through through the commits and diff one from the next util head
-                            ObjectId prevCommitId = objCommitIdFrom;
-                            ObjectId nextCommitId = objCommitIdFrom;
-                            String author = StringUtils.EMPTY;
+                        List<DiffEntry> diffEntries =
+                                helper.diffTrees(repo, reader, treeFrom, commitTo.getTree(), true);
+                        operations.addAll(processDiffEntry(diffEntries, commitTo.getId(), getCommitAuthor(commitTo),
+                                Instant.ofEpochSecond(commitTo.getCommitTime()).atZone(ZoneOffset.UTC)));
+                    } catch (IOException e) {
+                        logger.error("Error getting net operations for site " + site + " from commit ID: " +
+                                commitIdFrom + " to commit ID: " + commitIdTo, e);
+                    }
+                }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
+            }
+        }
 
-                            // Reverse orders of commits
-                            // TODO: DB: try to find better algorithm
-                            Iterator<RevCommit> iterator = commits.iterator();
-                            List<RevCommit> revCommits = new ArrayList<RevCommit>();
-                            while (iterator.hasNext()) {
+        return operations;
+    }
 
-                                RevCommit commit = iterator.next();
-                                revCommits.add(commit);
+    @Override
+    public List<RepoOperationTO> getNetOperations(String site, List<String> commitIds) {
+        List<RepoOperationTO> operations = new ArrayList<>();
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try (ObjectReader reader = repo.newObjectReader();
+                         RevWalk revWalk = new RevWalk(reader)) {
+                        // A run only grows with commits whose single parent is the last commit of the run, anything
+                        // in between (processed or not to be processed commits, other branches) starts a new one
+                        List<RevCommit> run = new ArrayList<RevCommit>();
+                        for (String commitId : commitIds) {
+                            ObjectId objCommitId = repo.resolve(commitId);
+                            if (objCommitId == null) {
+                                logger.error("Commit ID " + commitId + " not found for site " + site);
+                                continue;
                             }
+                            RevCommit commit = revWalk.parseCommit(objCommitId);
+                            if (!run.isEmpty() && (commit.getParentCount() != 1 ||
+                                    !commit.getParent(0).equals(run.get(run.size() - 1)))) {
+                                operations.addAll(getRunOperations(repo, reader, revWalk, run));
+                                run.clear();
+                            }
+                            run.add(commit);
+                        }
+                        if (!run.isEmpty()) {
+                            operations.addAll(getRunOperations(repo, reader, revWalk, run));
+                        }
+                    } catch (IOException e) {
+                        logger.error("Error getting net operations for site " + site + " for commits: " + commitIds,
+                                e);
+                    }
+                }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
+            }
+        }
 
-                            ReverseListIterator<RevCommit> reverseIterator = new ReverseListIterator<RevCommit>(revCommits);
-                            while (reverseIterator.hasNext()) {
-
-                                RevCommit commit = reverseIterator.next();
+        return operations;
+    }
 
-                                if (StringUtils.contains(commit.getFullMessage(),
-                                        studioConfiguration.getProperty(REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING))) {
-                                    prevCommitId = commit.getId();
-                                    logger.debug("Skipping commitId: " + prevCommitId.getName() + " for site " + site +
-                                            " because it is marked not to be processed.");
-                                    GitLog gitLog = getGitLog(site, prevCommitId.getName());
-                                    if (gitLog != null) {
-                                        markGitLogVerifiedProcessed(site, prevCommitId.getName());
-                                    } else {
-                                        insertGitLog(site, prevCommitId.getName(), 1);
-                                    }
-                                    updateLastVerifiedGitlogCommitId(site, prevCommitId.getName());
-                                } else {
-                                    nextCommitId = commit.getId();
-                                    if (commit.getAuthorIdent() != null) {
-                                        author = commit.getAuthorIdent().getName();
-                                    }
-                                    if (StringUtils.isEmpty(author)) {
-                                        author = commit.getCommitterIdent().getName();
-                                    }
+    /**
+     * Compare the tree before the first commit of a run with the tree of the last one, and attribute each operation
+     * to the last commit of the run that touched its path
+     */
+    private List<RepoOperationTO> getRunOperations(Repository repo, ObjectReader reader, RevWalk revWalk,
+                                                   List<RevCommit> run) throws IOException {
+        RevCommit first = run.get(0);
+        RevCommit last = run.get(run.size() - 1);
+        RevTree treeFrom = null;
+        if (first.getParentCount() > 0) {
+            treeFrom = revWalk.parseCommit(first.getParent(0)).getTree();
+        }
+        List<RepoOperationTO> operations =
+                processDiffEntry(helper.diffTrees(repo, reader, treeFrom, last.getTree(), true), last.getId(),
+                        getCommitAuthor(last), Instant.ofEpochSecond(last.getCommitTime()).atZone(ZoneOffset.UTC));
+        if (run.size() == 1) {
+            return operations;
+        }
 
-                                    RevTree prevTree = helper.getTreeForCommit(repo, prevCommitId.getName());
-                                    RevTree nextTree = helper.getTreeForCommit(repo, nextCommitId.getName());
-
-                                    try (ObjectReader reader = repo.newObjectReader()) {
-                                        CanonicalTreeParser prevCommitTreeParser = new CanonicalTreeParser();
-                                        CanonicalTreeParser nextCommitTreeParser = new CanonicalTreeParser();
-                                        prevCommitTreeParser.reset(reader, prevTree.getId());
-                                        nextCommitTreeParser.reset(reader, nextTree.getId());
-
-                                        // Diff the two commit Ids
-                                        List<DiffEntry> diffEntries = git.diff()
-                                                .setOldTree(prevCommitTreeParser)
-                                                .setNewTree(nextCommitTreeParser)
-                                                .call();
-
-
-                                        // Now that we have a diff, let's itemize the file changes, pack them into a TO
-                                        // and add them to the list of RepoOperations to return to the caller
-                                        // also include date/time of commit by taking number of seconds and multiply by 1000 and
-                                        // convert to java date before sending over
-                                        operations.addAll(processDiffEntry(diffEntries, nextCommitId, author,
-                                                Instant.ofEpochSecond(commit.getCommitTime()).atZone(ZoneOffset.UTC)));
-                                        prevCommitId = nextCommitId;
-                                    }
-                                }
-                            }
+        // Without rename detection a move touches both paths, which is all that is needed here
+        Map<String, RevCommit> lastCommits = new HashMap<String, RevCommit>();
+        RevTree parentTree = treeFrom;
+        for (RevCommit commit : run) {
+            for (DiffEntry diffEntry : helper.diffTrees(repo, reader, parentTree, commit.getTree(), false)) {
+                if (!DiffEntry.DEV_NULL.equals(diffEntry.getOldPath())) {
+                    lastCommits.put(FILE_SEPARATOR + diffEntry.getOldPath(), commit);
+                }
+                if (!DiffEntry.DEV_NULL.equals(diffEntry.getNewPath())) {
+                    lastCommits.put(FILE_SEPARATOR + diffEntry.getNewPath(), commit);
+                }
+            }
+            parentTree = commit.getTree();
+        }
+        for (RepoOperationTO operation : operations) {
+            RevCommit commit = lastCommits.get(operation.getOperation() == RepoOperation.MOVE ?
+                    operation.getMoveToPath() : operation.getPath());
+            if (commit != null) {
+                String author = getCommitAuthor(commit);
+                operation.setAuthor(StringUtils.isEmpty(author) ? "N/A" : author);
+                operation.setDateTime(Instant.ofEpochSecond(commit.getCommitTime()).atZone(ZoneOffset.UTC));
+                operation.setCommitId(commit.getName());
+            }
+        }
+        return operations;
+    }
 
+    @Override
+    public List<String> getCommitIds(String site, String commitIdFrom, String commitIdTo) {
+        List<String> commitIds = new ArrayList<String>();
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try (RevWalk revWalk = new RevWalk(repo)) {
+                        for (RevCommit commit : getCommitRange(site, repo, revWalk, commitIdFrom, commitIdTo)) {
+                            commitIds.add(commit.getName());
                         }
-                    } catch (GitAPIException e) {
-                        logger.error("Error getting operations for site " + site + " from commit ID: " + commitIdFrom
-                                + " to commit ID: " + commitIdTo, e);
+                    } catch (IOException e) {
+                        logger.error("Error getting commits for site " + site + " from commit ID: " + commitIdFrom +
+                                " to commit ID: " + commitIdTo, e);
                     }
-                } catch (IOException e) {
-                    logger.error("Error getting operations for site " + site + " from commit ID: " + commitIdFrom +
-                            " to commit ID: " + commitIdTo, e);
                 }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
             }
         }
+        return commitIds;
+    }
 
-        return operations;
+    /**
+     * Get the commits after commitIdFrom up to commitIdTo, parents first. The commits marked not to be processed
+     * are skipped and marked as processed in the git log.
+     *
+     * @param commitIdFrom first commit to exclude, all the commits up to commitIdTo if empty
+     * @param commitIdTo last commit to include
+     */
+    private List<RevCommit> getCommitRange(String site, Repository repo, RevWalk revWalk, String commitIdFrom,
+                                           String commitIdTo) throws IOException {
+        List<RevCommit> commits = new ArrayList<RevCommit>();
+        ObjectId objCommitIdTo = repo.resolve(commitIdTo);
+        if (objCommitIdTo == null) {
+            logger.error("Commit ID " + commitIdTo + " not found for site " + site);
+            return commits;
+        }
+        revWalk.markStart(revWalk.parseCommit(objCommitIdTo));
+        if (StringUtils.isNotEmpty(commitIdFrom)) {
+            ObjectId objCommitIdFrom = repo.resolve(commitIdFrom);
+            if (objCommitIdFrom == null) {
+                logger.error("Commit ID " + commitIdFrom + " not found for site " + site);
+                return commits;
+            }
+            revWalk.markUninteresting(revWalk.parseCommit(objCommitIdFrom));
+        }
+        revWalk.sort(RevSort.TOPO);
+        revWalk.sort(RevSort.REVERSE, true);
+
+        String noProcessingMessage = studioConfiguration.getProperty(REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING);
+        for (RevCommit commit : revWalk) {
+            if (StringUtils.contains(commit.getFullMessage(), noProcessingMessage)) {
+                logger.debug("Skipping commitId: " + commit.getName() + " for site " + site +
+                        " because it is marked not to be processed.");
+                GitLog gitLog = getGitLog(site, commit.getName());
+                if (gitLog != null) {
+                    markGitLogVerifiedProcessed(site, commit.getName());
+                } else {
+                    insertGitLog(site, commit.getName(), 1);
+                }
+                updateLastVerifiedGitlogCommitId(site, commit.getName());
+            } else {
+                commits.add(commit);
+            }
+        }
+        return commits;
+    }
+
+    private String getCommitAuthor(RevCommit commit) {
+        String author = StringUtils.EMPTY;
+        if (commit.getAuthorIdent() != null) {
+            author = commit.getAuthorIdent().getName();
+        }
+        if (StringUtils.isEmpty(author)) {
+            author = commit.getCommitterIdent().getName();
+        }
+        return author;
     }
 
     private void updateLastVerifiedGitlogCommitId(String site, String commitId) {
@@ -1444,19 +1691,22 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public String getRepoLastCommitId(final String site) {
         String toReturn = StringUtils.EMPTY;
-        Repository repository =
-                helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX);
-        if (repository != null) {
-            synchronized (repository) {
-                Repository repo = helper.getRepository(site, SANDBOX);
-                try {
-                    ObjectId commitId = repo.resolve(Constants.HEAD);
-                    if (commitId != null) {
-                        toReturn = commitId.getName();
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
+                    try {
+                        ObjectId commitId = repo.resolve(Constants.HEAD);
+                        if (commitId != null) {
+                            toReturn = commitId.getName();
+                        }
+                    } catch (IOException e) {
+                        logger.error("Error getting last commit ID for site " + site, e);
                     }
-                } catch (IOException e) {
-                    logger.error("Error getting last commit ID for site " + site, e);
                 }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
             }
         }
         return toReturn;
@@ -1465,12 +1715,11 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public String getRepoFirstCommitId(final String site) {
         String toReturn = StringUtils.EMPTY;
-        Repository repository =
-                helper.getRepository(site, StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX);
-        if (repository != null) {
-            synchronized (repository) {
-                Repository repo = helper.getRepository(site, SANDBOX);
-                if (repo != null) {
+        GitRepositories repoType = StringUtils.isEmpty(site) ? GitRepositories.GLOBAL : SANDBOX;
+        Repository repo = helper.acquireRepository(site, repoType);
+        if (repo != null) {
+            try {
+                synchronized (helper.getRepositoryLock(site, repoType)) {
                     try (RevWalk rw = new RevWalk(repo)) {
                         ObjectId head = repo.resolve(Constants.HEAD);
                         if (head != null) {
@@ -1485,12 +1734,35 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                         logger.error("Error getting first commit ID for site " + site, e);
                     }
                 }
+            } finally {
+                helper.releaseRepository(site, repoType, repo);
             }
         }
 
         return toReturn;
     }
 
+    @Override
+    public Map<String, String> getPublishedBranchHeads(String site) {
+        Map<String, String> toReturn = new TreeMap<String, String>();
+        Repository repo = helper.acquireRepository(site, PUBLISHED);
+        if (repo != null) {
+            try {
+                for (Map.Entry<String, Ref> entry : repo.getRefDatabase().getRefs(Constants.R_HEADS).entrySet()) {
+                    ObjectId objectId = entry.getValue().getObjectId();
+                    if (objectId != null) {
+                        toReturn.put(entry.getKey(), objectId.getName());
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error getting the branches of the published repository for site " + site, e);
+            } finally {
+                helper.releaseRepository(site, PUBLISHED, repo);
+            }
+        }
+        return toReturn;
+    }
+
     private List<RepoOperationTO> processDiffEntry(List<DiffEntry> diffEntries, ObjectId commitId, String author,
                                                    ZonedDateTime commitTime) {
         List<RepoOperationTO> toReturn = new ArrayList<RepoOperationTO>();
@@ -1541,128 +1813,252 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                                                             DmFilterWrapper dmFilterWrapper,
                                                             String filterType, int numberOfItems) {
         List<DeploymentSyncHistory> toRet = new ArrayList<DeploymentSyncHistory>();
-        Repository publishedRepo = helper.getRepository(site, PUBLISHED);
-        int counter = 0;
-        try (Git git = new Git(publishedRepo)) {
-            // List all environments
-            List<Ref> environments = git.branchList().call();
-            for (int i = 0; i < environments.size() && counter < numberOfItems; i++) {
-                Ref env = environments.get(i);
-                String environment = env.getName();
-                environment = environment.replace(Constants.R_HEADS, "");
-                if (environmentNames.contains(environment)) {
-                    List<RevFilter> filters = new ArrayList<RevFilter>();
-                    filters.add(CommitTimeRevFilter.after(fromDate.toInstant().toEpochMilli()));
-                    filters.add(CommitTimeRevFilter.before(toDate.toInstant().toEpochMilli()));
-                    filters.add(NotRevFilter.create(MessageRevFilter.create("Initial commit.")));
-
-                    Iterable<RevCommit> branchLog = git.log()
-                            .add(env.getObjectId())
-                            .setRevFilter(AndRevFilter.create(filters))
-                            .call();
+        if (CollectionUtils.isEmpty(environmentNames) || numberOfItems <= 0) {
+            return toRet;
+        }
+        // Entries are filtered by type after reading them, keep reading pages until there are enough
+        int pageSize = Math.max(numberOfItems, getBatchSize());
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        params.put("environments", environmentNames);
+        params.put("fromDate", fromDate);
+        params.put("toDate", toDate);
+        params.put("limit", pageSize);
+        int offset = 0;
+        while (toRet.size() < numberOfItems) {
+            params.put("offset", offset);
+            List<DeploymentSyncHistory> page = deploymentHistoryMapper.getDeploymentHistory(params);
+            for (int i = 0; i < page.size() && toRet.size() < numberOfItems; i++) {
+                DeploymentSyncHistory entry = page.get(i);
+                if (dmFilterWrapper.accept(site, entry.getPath(), filterType)) {
+                    toRet.add(entry);
+                }
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            offset += pageSize;
+        }
+        return toRet;
+    }
 
-                    Iterator<RevCommit> iterator = branchLog.iterator();
-                    while (iterator.hasNext() && counter < numberOfItems) {
-                        RevCommit revCommit = iterator.next();
-                        List<String> files = helper.getFilesInCommit(publishedRepo, revCommit);
-                        for (int j = 0; j < files.size() && counter < numberOfItems; j++) {
-                            String file = files.get(j);
-                            Path path = Paths.get(file);
-                            String fileName = path.getFileName().toString();
-                            if (!ArrayUtils.contains(IGNORE_FILES, fileName)) {
-                                if (dmFilterWrapper.accept(site, file, filterType)) {
-                                    DeploymentSyncHistory dsh = new DeploymentSyncHistory();
-                                    dsh.setSite(site);
-                                    dsh.setPath(file);
-                                    dsh.setSyncDate(
-                                            Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(ZoneOffset.UTC));
-                                    dsh.setUser(revCommit.getAuthorIdent().getName());
-                                    dsh.setEnvironment(environment.replace(Constants.R_HEADS, ""));
-                                    toRet.add(dsh);
-                                    counter++;
-                                }
+    @Override
+    public ZonedDateTime getLastDeploymentDate(String site, String path) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        params.put("path", FILE_SEPARATOR + helper.getGitPath(path));
+        return deploymentHistoryMapper.getLastDeploymentDate(params);
+    }
+
+    @Override
+    public void backfillDeploymentHistory(String site) {
+        Repository publishedRepo = helper.acquireRepository(site, PUBLISHED);
+        if (publishedRepo == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("siteId", site);
+            SiteFeed siteFeed = siteFeedMapper.getSite(params);
+            String sandboxBranchName = siteFeed != null ? siteFeed.getSandboxBranch() : null;
+            if (StringUtils.isEmpty(sandboxBranchName)) {
+                sandboxBranchName = studioConfiguration.getProperty(REPO_SANDBOX_BRANCH);
+            }
+
+            // Read what is already recorded and the environment branches at the same time, anything published
+            // after this is recorded by the publishing itself and is not reachable from these branches
+            Set<String> recorded = new HashSet<String>();
+            List<Ref> environments = new ArrayList<Ref>();
+            synchronized (helper.getRepositoryLock(site, PUBLISHED)) {
+                for (DeploymentSyncHistory entry : deploymentHistoryMapper.getDeploymentHistoryCommits(params)) {
+                    recorded.add(entry.getEnvironment() + ":" + entry.getCommitId());
+                }
+                for (Ref ref : publishedRepo.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+                    String environment = Repository.shortenRefName(ref.getName());
+                    if (!environment.equals(sandboxBranchName) &&
+                            !environment.endsWith(IN_PROGRESS_BRANCH_NAME_SUFIX)) {
+                        environments.add(ref);
+                    }
+                }
+            }
+
+            int batchSize = getBatchSize();
+            int total = 0;
+            List<DeploymentSyncHistory> entries = new ArrayList<DeploymentSyncHistory>();
+            try (ObjectReader reader = publishedRepo.newObjectReader();
+                 RevWalk revWalk = new RevWalk(reader)) {
+                for (Ref env : environments) {
+                    String environment = Repository.shortenRefName(env.getName());
+                    revWalk.reset();
+                    revWalk.setRevFilter(NotRevFilter.create(MessageRevFilter.create("Initial commit.")));
+                    revWalk.markStart(revWalk.parseCommit(env.getObjectId()));
+                    for (RevCommit commit : revWalk) {
+                        if (!recorded.add(environment + ":" + commit.getName())) {
+                            continue;
+                        }
+                        RevTree parentTree = null;
+                        if (commit.getParentCount() > 0) {
+                            parentTree = revWalk.parseCommit(commit.getParent(0)).getTree();
+                        }
+                        ZonedDateTime publishDate =
+                                Instant.ofEpochSecond(commit.getCommitTime()).atZone(ZoneOffset.UTC);
+                        for (DiffEntry diffEntry : helper.diffTrees(publishedRepo, reader, parentTree,
+                                commit.getTree(), false)) {
+                            String path = diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE ?
+                                    diffEntry.getOldPath() : diffEntry.getNewPath();
+                            DeploymentSyncHistory entry = createDeploymentHistoryEntry(site, environment,
+                                    FILE_SEPARATOR + path, commit.getName(), publishDate,
+                                    commit.getAuthorIdent().getName(), null);
+                            if (entry != null) {
+                                entries.add(entry);
                             }
                         }
+                        if (entries.size() >= batchSize) {
+                            total += entries.size();
+                            insertDeploymentHistory(entries);
+                            entries.clear();
+                        }
                     }
                 }
             }
-            git.close();
-            toRet.sort((o1, o2) -> o2.getSyncDate().compareTo(o1.getSyncDate()));
-        } catch (IOException | GitAPIException e1) {
-            logger.error("Error while getting deployment history for site " + site, e1);
+            total += entries.size();
+            insertDeploymentHistory(entries);
+            logger.info("Backfilled " + total + " deployment history entries for site " + site + " in " +
+                    (System.currentTimeMillis() - startTime) + " ms");
+        } catch (IOException e) {
+            logger.error("Error while backfilling deployment history for site " + site, e);
+        } finally {
+            helper.releaseRepository(site, PUBLISHED, publishedRepo);
         }
-        return toRet;
     }
 
     @Override
-    public ZonedDateTime getLastDeploymentDate(String site, String path) {
-        ZonedDateTime toRet = null;
-        Repository publishedRepo = helper.getRepository(site, PUBLISHED);
-        try (Git git = new Git(publishedRepo)) {
-            Iterable<RevCommit> log = git.log()
-                    .all()
-                    .addPath(helper.getGitPath(path))
-                    .setMaxCount(1)
-                    .call();
-            Iterator<RevCommit> iter = log.iterator();
-            if (iter.hasNext()) {
-                RevCommit commit = iter.next();
-                toRet = Instant.ofEpochMilli(1000l * commit.getCommitTime()).atZone(ZoneOffset.UTC);
-            }
-            git.close();
-        } catch (IOException | GitAPIException e) {
-            logger.error("Error while getting last deployment date for site " + site + ", path " + path, e);
+    public void deleteDeploymentHistoryForSite(String site) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("siteId", site);
+        deploymentHistoryMapper.deleteDeploymentHistoryForSite(params);
+    }
+
+    /**
+     * Record the items of a publishing in the deployment history, failures are only logged since the items are
+     * already published
+     */
+    protected void recordDeploymentHistory(String site, String environment, List<DeploymentItemTO> deploymentItems,
+                                           ObjectId publishCommitId, ZonedDateTime publishDate, String user) {
+        List<DeploymentSyncHistory> entries = new ArrayList<DeploymentSyncHistory>();
+        for (DeploymentItemTO deploymentItem : deploymentItems) {
+            DeploymentSyncHistory entry = createDeploymentHistoryEntry(site, environment,
+                    FILE_SEPARATOR + helper.getGitPath(deploymentItem.getPath()), publishCommitId.getName(),
+                    publishDate, user, deploymentItem.getPackageId());
+            if (entry != null) {
+                entries.add(entry);
+            }
         }
-        return toRet;
+        try {
+            int batchSize = getBatchSize();
+            for (int i = 0; i < entries.size(); i += batchSize) {
+                insertDeploymentHistory(entries.subList(i, Math.min(i + batchSize, entries.size())));
+            }
+        } catch (Exception e) {
+            logger.error("Error recording deployment history for site " + site + " environment " + environment +
+                    " commit " + publishCommitId.getName(), e);
+        }
+    }
+
+    private DeploymentSyncHistory createDeploymentHistoryEntry(String site, String environment, String path,
+                                                               String commitId, ZonedDateTime publishDate,
+                                                               String user, String packageId) {
+        if (ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(path))) {
+            return null;
+        }
+        DeploymentSyncHistory entry = new DeploymentSyncHistory();
+        entry.setSite(site);
+        entry.setEnvironment(environment);
+        entry.setPath(path);
+        entry.setCommitId(commitId);
+        entry.setSyncDate(publishDate);
+        entry.setUser(user);
+        entry.setPackageId(StringUtils.isEmpty(packageId) ? null : packageId);
+        return entry;
+    }
+
+    private void insertDeploymentHistory(List<DeploymentSyncHistory> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("entries", entries);
+        deploymentHistoryMapper.insertDeploymentHistoryList(params);
+    }
+
+    private int getBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
     }
 
     @Override
     public List<String> getEditCommitIds(String site, String path, String commitIdFrom, String commitIdTo) {
         List<String> commitIds = new ArrayList<String>();
 
-        synchronized (helper.getRepository(site, SANDBOX)) {
-            try {
-                // Get the sandbox repo, and then get a reference to the commitId we received and another for head
-                Repository repo = helper.getRepository(site, SANDBOX);
-                if (StringUtils.isEmpty(commitIdFrom)) {
-                    commitIdFrom = getRepoFirstCommitId(site);
-                }
-                if (StringUtils.isEmpty(commitIdTo)) {
-                    commitIdTo = getRepoLastCommitId(site);
+        // Get the sandbox repo, and then get a reference to the commitId we received and another for head
+        Repository repo = helper.acquireRepository(site, SANDBOX);
+        try {
+            if (StringUtils.isEmpty(commitIdFrom)) {
+                commitIdFrom = getRepoFirstCommitId(site);
+            }
+            if (StringUtils.isEmpty(commitIdTo)) {
+                commitIdTo = getRepoLastCommitId(site);
+            }
+            ObjectId objCommitIdFrom = repo.resolve(commitIdFrom);
+            ObjectId objCommitIdTo = repo.resolve(commitIdTo);
+
+            // If the commitIdFrom is the same as commitIdTo, there is nothing to calculate, otherwise,
+            // let's do it
+            if (!objCommitIdFrom.equals(objCommitIdTo)) {
+                List<String> indexedCommitIds = null;
+                if (commitPathIndex != null) {
+                    indexedCommitIds = commitPathIndex.getCommitIds(site, repo,
+                            FILE_SEPARATOR + helper.getGitPath(path));
                 }
-                ObjectId objCommitIdFrom = repo.resolve(commitIdFrom);
-                ObjectId objCommitIdTo = repo.resolve(commitIdTo);
-
-                try (Git git = new Git(repo)) {
-
-                    // If the commitIdFrom is the same as commitIdTo, there is nothing to calculate, otherwise,
-                    // let's do it
-                    if (!objCommitIdFrom.equals(objCommitIdTo)) {
-                        // Compare HEAD with commitId we're given
-                        // Get list of commits between commitId and HEAD in chronological order
+                if (indexedCommitIds != null) {
+                    // Get the commits between commitId and head, without diffing them
+                    Set<String> range = new HashSet<String>();
+                    try (RevWalk revWalk = new RevWalk(repo)) {
+                        revWalk.markStart(revWalk.parseCommit(objCommitIdTo));
+                        revWalk.markUninteresting(revWalk.parseCommit(objCommitIdFrom));
+                        for (RevCommit commit : revWalk) {
+                            range.add(commit.getName());
+                        }
+                    }
 
-                        // Get the log of all the commits between commitId and head
+                    // The index returns the commits that changed the path newest first, return them in
+                    // chronological order
+                    for (String commitId : indexedCommitIds) {
+                        if (range.contains(commitId)) {
+                            commitIds.add(0, commitId);
+                        }
+                    }
+                } else {
+                    // The site has not been indexed yet, get the log of all the commits between commitId and head
+                    try (Git git = new Git(repo)) {
                         Iterable<RevCommit> commits = git.log()
                                 .addPath(helper.getGitPath(path))
                                 .addRange(objCommitIdFrom, objCommitIdTo)
                                 .call();
-
-                        // Reverse orders of commits
-                        Iterator<RevCommit> iterator = commits.iterator();
-                        while (iterator.hasNext()) {
-
-                            RevCommit commit = iterator.next();
+                        for (RevCommit commit : commits) {
                             commitIds.add(0, commit.getId().getName());
                         }
+                    } catch (GitAPIException e) {
+                        logger.error("Error getting commit ids for site " + site + " and path " + path +
+                                " from commit ID: " + commitIdFrom + " to commit ID: " + commitIdTo, e);
                     }
-                } catch (GitAPIException e) {
-                    logger.error("Error getting commit ids for site " + site + " and path " + path +
-                            " from commit ID: " + commitIdFrom + " to commit ID: " + commitIdTo, e);
                 }
-            } catch (IOException e) {
-                logger.error("Error getting operations for site " + site + " and path " + path +
-                        " from commit ID: " + commitIdFrom + " to commit ID: " + commitIdTo, e);
             }
+        } catch (IOException e) {
+            logger.error("Error getting operations for site " + site + " and path " + path +
+                    " from commit ID: " + commitIdFrom + " to commit ID: " + commitIdTo, e);
+        } finally {
+            helper.releaseRepository(site, SANDBOX, repo);
         }
 
         return commitIds;
@@ -1671,7 +2067,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public boolean commitIdExists(String site, String commitId) {
         boolean toRet = false;
-        try (Repository repo = helper.getRepository(site, SANDBOX)) {
+        Repository repo = helper.acquireRepository(site, SANDBOX);
+        try {
             if (repo != null) {
                 ObjectId objCommitId = repo.resolve(commitId);
                 if (objCommitId != null) {
@@ -1683,6 +2080,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
             }
         } catch (IOException e) {
             logger.info("Commit ID " + commitId + " does not exist in sandbox for site " + site);
+        } finally {
+            helper.releaseRepository(site, SANDBOX, repo);
         }
         return toRet;
     }
@@ -1719,8 +2118,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     public void insertFullGitLog(String siteId, int processed) {
         List<GitLog> gitLogs = new ArrayList<>();
 
-        synchronized (helper.getRepository(siteId, SANDBOX)) {
-            Repository repo = helper.getRepository(siteId, SANDBOX);
+        synchronized (helper.getRepositoryLock(siteId, SANDBOX)) {
+            Repository repo = helper.acquireRepository(siteId, SANDBOX);
             try (Git git = new Git(repo)) {
                 Iterable<RevCommit> logs = git.log().call();
                 for (RevCommit rev : logs) {
@@ -1732,6 +2131,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 }
             } catch (GitAPIException e) {
                 logger.error("Error getting full git log for site " + siteId, e);
+            } finally {
+                helper.releaseRepository(siteId, SANDBOX, repo);
             }
         }
 
@@ -1758,6 +2159,26 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         gitLogMapper.deleteGitLogForSite(params);
     }
 
+    @Override
+    public void updateCommitPathIndex(String site, boolean rebuild) {
+        if (commitPathIndex == null) {
+            return;
+        }
+        Repository repo = helper.acquireRepository(site, SANDBOX);
+        if (repo == null) {
+            return;
+        }
+        try {
+            if (rebuild) {
+                commitPathIndex.rebuild(site, repo);
+            } else {
+                commitPathIndex.update(site, repo, false);
+            }
+        } finally {
+            helper.releaseRepository(site, SANDBOX, repo);
+        }
+    }
+
     @Override
     public boolean createSiteCloneRemote(String siteId, String sandboxBranch, String remoteName, String remoteUrl,
                                          String remoteBranch, boolean singleBranch, String authenticationType,
@@ -1806,7 +2227,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
             InvalidRemoteRepositoryCredentialsException, RemoteRepositoryNotFoundException,
             RemoteRepositoryNotBareException, ServiceLayerException {
         boolean toRet = true;
-        try (Repository repo = helper.getRepository(siteId, SANDBOX)) {
+        Repository repo = helper.acquireRepository(siteId, SANDBOX);
+        try {
             try (Git git = new Git(repo)) {
                 boolean pkauth = false;
                 final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(),".tmp");
@@ -1888,6 +2310,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                 logger.error("Failed to push newly created site " + siteId + " to remote repository " +
                         remoteUrl, e);
                 toRet = false;
+        } finally {
+            helper.releaseRepository(siteId, SANDBOX, repo);
         }
         return toRet;
     }
@@ -1900,7 +2324,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         boolean isValid = false;
         try {
             logger.debug("Add remote " + remoteName + " to the sandbox repo for the site " + siteId);
-            Repository repo = helper.getRepository(siteId, SANDBOX);
+            Repository repo = helper.acquireRepository(siteId, SANDBOX);
             try (Git git = new Git(repo)) {
 
                 Config storedConfig = repo.getConfig();
@@ -1934,6 +2358,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                         siteId, e);
                 throw new ServiceLayerException("Error while adding remote " + remoteName + " (url: " + remoteUrl +
                         ") for site " + siteId, e);
+            } finally {
+                helper.releaseRepository(siteId, SANDBOX, repo);
             }
 
             if (isValid) {
@@ -2027,7 +2453,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public boolean removeRemote(String siteId, String remoteName) {
         logger.debug("Remove remote " + remoteName + " from the sandbox repo for the site " + siteId);
-        Repository repo = helper.getRepository(siteId, SANDBOX);
+        Repository repo = helper.acquireRepository(siteId, SANDBOX);
         try (Git git = new Git(repo)) {
             RemoteRemoveCommand remoteRemoveCommand = git.remoteRemove();
             remoteRemoveCommand.setName(remoteName);
@@ -2036,6 +2462,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         } catch (GitAPIException e) {
             logger.error("Failed to remove remote " + remoteName + " for site " + siteId, e);
             return false;
+        } finally {
+            helper.releaseRepository(siteId, SANDBOX, repo);
         }
 
         logger.debug("Remove remote record from database for remote " + remoteName + " and site " + siteId);
@@ -2057,7 +2485,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public List<RemoteRepositoryInfoTO> listRemote(String siteId, String sandboxBranch) throws ServiceLayerException {
         List<RemoteRepositoryInfoTO> res = new ArrayList<RemoteRepositoryInfoTO>();
-        try (Repository repo = helper.getRepository(siteId, SANDBOX)) {
+        Repository repo = helper.acquireRepository(siteId, SANDBOX);
+        try {
 
             try (Git git = new Git(repo)) {
                 List<RemoteConfig> resultRemotes = git.remoteList().call();
@@ -2183,6 +2612,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
             } catch (GitAPIException | CryptoException | IOException e) {
                 logger.error("Error getting remote repositories for site " + siteId, e);
             }
+        } finally {
+            helper.releaseRepository(siteId, SANDBOX, repo);
         }
         return res;
     }
@@ -2197,7 +2628,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         RemoteRepository remoteRepository = remoteRepositoryMapper.getRemoteRepository(params);
 
         logger.debug("Prepare push command.");
-        Repository repo = helper.getRepository(siteId, SANDBOX);
+        Repository repo = helper.acquireRepository(siteId, SANDBOX);
         try (Git git = new Git(repo)) {
             Iterable<PushResult> pushResultIterable = null;
             PushCommand pushCommand = git.push();
@@ -2268,6 +2699,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                     + remoteBranch + " for site " + siteId, e);
             throw new ServiceLayerException("Error while pushing to remote " + remoteName + " branch "
                     + remoteBranch + " for site " + siteId, e);
+        } finally {
+            helper.releaseRepository(siteId, SANDBOX, repo);
         }
     }
 
@@ -2281,7 +2714,7 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         RemoteRepository remoteRepository = remoteRepositoryMapper.getRemoteRepository(params);
 
         logger.debug("Prepare pull command");
-        Repository repo = helper.getRepository(siteId, SANDBOX);
+        Repository repo = helper.acquireRepository(siteId, SANDBOX);
         try (Git git = new Git(repo)) {
             PullResult pullResult = null;
             PullCommand pullCommand = git.pull();
@@ -2342,6 +2775,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
                     + remoteBranch + " for site " + siteId, e);
         } catch (CryptoException | IOException e) {
             throw new ServiceLayerException(e);
+        } finally {
+            helper.releaseRepository(siteId, SANDBOX, repo);
         }
     }
 
@@ -2379,10 +2814,10 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     @Override
     public void resetStagingRepository(String siteId) throws ServiceLayerException {
-        Repository repo = helper.getRepository(siteId, PUBLISHED);
+        Repository repo = helper.acquireRepository(siteId, PUBLISHED);
         String stagingName = servicesConfig.getStagingEnvironment(siteId);
         String liveName = servicesConfig.getLiveEnvironment(siteId);
-        synchronized (repo) {
+        synchronized (helper.getRepositoryLock(siteId, PUBLISHED)) {
             try (Git git = new Git(repo)) {
                 logger.debug("Checkout live first becuase it is not allowed to delete checkedout branch");
                 git.checkout().setName(liveName).call();
@@ -2397,6 +2832,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
             } catch (GitAPIException e) {
                 logger.error("Error while reseting staging environment for site: " + siteId);
                 throw new ServiceLayerException(e);
+            } finally {
+                helper.releaseRepository(siteId, PUBLISHED, repo);
             }
         }
     }
@@ -2404,15 +2841,17 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     @Override
     public void reloadRepository(String siteId) {
         helper.sandboxes.remove(siteId);
-        helper.getRepository(siteId, SANDBOX);
+        helper.releaseRepository(siteId, SANDBOX, helper.acquireRepository(siteId, SANDBOX));
     }
 
     protected void cleanup(String siteId, GitRepositories repository) {
-        Repository sandbox = helper.getRepository(siteId, repository);
+        Repository sandbox = helper.acquireRepository(siteId, repository);
         try (Git git = new Git(sandbox)) {
             git.gc().call();
         } catch (Exception e) {
             logger.warn("Error cleaning up repository for site " + siteId, e);
+        } finally {
+            helper.releaseRepository(siteId, repository, sandbox);
         }
     }
 
@@ -2431,6 +2870,16 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         }
     }
 
+    @Override
+    public String getStatisticsName() {
+        return "repositories";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        return helper.getRepositoryStatistics();
+    }
+
     @Override
     public boolean repositoryExists(String site) {
         return commitIdExists(site, Constants.HEAD);
@@ -2460,6 +2909,14 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         this.gitLogMapper = gitLogMapper;
     }
 
+    public DeploymentHistoryMapper getDeploymentHistoryMapper() {
+        return deploymentHistoryMapper;
+    }
+
+    public void setDeploymentHistoryMapper(DeploymentHistoryMapper deploymentHistoryMapper) {
+        this.deploymentHistoryMapper = deploymentHistoryMapper;
+    }
+
     public RemoteRepositoryMapper getRemoteRepositoryMapper() {
         return remoteRepositoryMapper;
     }
@@ -2484,6 +2941,22 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         this.securityService = securityService;
     }
 
+    public TreeSnapshotIndex getSnapshotIndex() {
+        return snapshotIndex;
+    }
+
+    public void setSnapshotIndex(TreeSnapshotIndex snapshotIndex) {
+        this.snapshotIndex = snapshotIndex;
+    }
+
+    public CommitPathIndex getCommitPathIndex() {
+        return commitPathIndex;
+    }
+
+    public void setCommitPathIndex(CommitPathIndex commitPathIndex) {
+        this.commitPathIndex = commitPathIndex;
+    }
+
     public SiteFeedMapper getSiteFeedMapper() {
         return siteFeedMapper;
     }
@@ -49,8 +49,10 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
@@ -62,6 +64,8 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
 import org.eclipse.jgit.transport.SshSessionFactory;
@@ -69,6 +73,9 @@ import org.eclipse.jgit.transport.SshTransport;
 import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.FS;
 
 import java.io.File;
@@ -87,10 +94,12 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
@@ -101,7 +110,15 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATIO
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATION_SITE_ROLE_MAPPINGS_FILE_NAME;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_CREATE_REPOSITORY_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_CREATE_SANDBOX_BRANCH_COMMIT_MESSAGE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_HANDLE_CACHE_IDLE_TIMEOUT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_HANDLE_CACHE_MAX_SIZE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_SANDBOX_BRANCH;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_DELTA_BASE_CACHE_LIMIT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_PACKED_GIT_LIMIT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_PACKED_GIT_MMAP;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_PACKED_GIT_OPEN_FILES;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_PACKED_GIT_WINDOW_SIZE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_WINDOW_CACHE_STREAM_FILE_THRESHOLD;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_BIG_FILE_THRESHOLD;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_BIG_FILE_THRESHOLD_DEFAULT;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_COMPRESSION;
@@ -118,11 +135,14 @@ import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryC
 public class GitContentRepositoryHelper {
     private static final Logger logger = LoggerFactory.getLogger(GitContentRepositoryHelper.class);
 
-    protected Map<String, Repository> sandboxes = new HashMap<>();
-    protected Map<String, Repository> published = new HashMap<>();
+    protected RepositoryHandleCache sandboxes;
+    protected RepositoryHandleCache published;
 
     protected Repository globalRepo = null;
 
+    /** locks for the write operations of each repository, they outlive the cached repositories **/
+    protected final Map<String, Object> repositoryLocks = new ConcurrentHashMap<String, Object>();
+
     protected StudioConfiguration studioConfiguration;
     protected ServicesConfig servicesConfig;
     protected UserServiceInternal userServiceInternal;
@@ -134,6 +154,93 @@ public class GitContentRepositoryHelper {
         this.servicesConfig = servicesConfig;
         this.userServiceInternal = userServiceInternal;
         this.securityService = securityService;
+
+        int maxSize = Integer.parseInt(studioConfiguration.getProperty(REPO_HANDLE_CACHE_MAX_SIZE));
+        long idleTimeout = Long.parseLong(studioConfiguration.getProperty(REPO_HANDLE_CACHE_IDLE_TIMEOUT));
+        this.sandboxes = new RepositoryHandleCache(GitRepositories.SANDBOX.name().toLowerCase(), maxSize,
+                idleTimeout);
+        this.published = new RepositoryHandleCache(GitRepositories.PUBLISHED.name().toLowerCase(), maxSize,
+                idleTimeout);
+    }
+
+    /**
+     * Install the JGit window cache configuration (pack files kept open and memory used to cache them), it is
+     * shared by all the repositories
+     */
+    public void configureWindowCache() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitOpenFiles(
+                Integer.parseInt(studioConfiguration.getProperty(REPO_WINDOW_CACHE_PACKED_GIT_OPEN_FILES)));
+        config.setPackedGitLimit(Long.parseLong(studioConfiguration.getProperty(REPO_WINDOW_CACHE_PACKED_GIT_LIMIT)));
+        config.setPackedGitWindowSize(
+                Integer.parseInt(studioConfiguration.getProperty(REPO_WINDOW_CACHE_PACKED_GIT_WINDOW_SIZE)));
+        config.setPackedGitMMAP(Boolean.parseBoolean(studioConfiguration.getProperty(REPO_WINDOW_CACHE_PACKED_GIT_MMAP)));
+        config.setDeltaBaseCacheLimit(
+                Integer.parseInt(studioConfiguration.getProperty(REPO_WINDOW_CACHE_DELTA_BASE_CACHE_LIMIT)));
+        config.setStreamFileThreshold(
+                Integer.parseInt(studioConfiguration.getProperty(REPO_WINDOW_CACHE_STREAM_FILE_THRESHOLD)));
+        config.install();
+    }
+
+    /**
+     * Get a repository and mark it as in use, so it is not closed by the cache until it is released with
+     * {@link #releaseRepository(String, GitRepositories, Repository)}
+     */
+    public Repository acquireRepository(String site, GitRepositories gitRepository) {
+        RepositoryHandleCache cache = getCache(gitRepository);
+        if (cache == null) {
+            return getRepository(site, gitRepository);
+        }
+        Repository repo = cache.acquire(site);
+        if (repo == null && getRepository(site, gitRepository) != null) {
+            repo = cache.acquire(site);
+        }
+        return repo;
+    }
+
+    public void releaseRepository(String site, GitRepositories gitRepository, Repository repo) {
+        RepositoryHandleCache cache = getCache(gitRepository);
+        if (cache != null && repo != null) {
+            cache.release(site, repo);
+        }
+    }
+
+    /**
+     * Get the object used to serialize the operations on a repository. It doesn't depend on the cached repository,
+     * so it is the same for all the threads even if the repository is closed and opened again.
+     */
+    public Object getRepositoryLock(String site, GitRepositories gitRepository) {
+        String key = gitRepository == GitRepositories.GLOBAL ? gitRepository.name() :
+                gitRepository.name() + ":" + site;
+        return repositoryLocks.computeIfAbsent(key, k -> new Object());
+    }
+
+    /**
+     * Close and forget the repositories of a site
+     */
+    public void invalidateSiteRepositories(String site) {
+        sandboxes.invalidate(site);
+        published.invalidate(site);
+    }
+
+    public Map<String, Object> getRepositoryStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put(GitRepositories.SANDBOX.name().toLowerCase(), sandboxes.getStatistics());
+        statistics.put(GitRepositories.PUBLISHED.name().toLowerCase(), published.getStatistics());
+        statistics.put("windowCacheOpenFiles", WindowCacheStats.getOpenFiles());
+        statistics.put("windowCacheOpenBytes", WindowCacheStats.getOpenBytes());
+        return statistics;
+    }
+
+    private RepositoryHandleCache getCache(GitRepositories gitRepository) {
+        switch (gitRepository) {
+            case SANDBOX:
+                return sandboxes;
+            case PUBLISHED:
+                return published;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -168,7 +275,9 @@ public class GitContentRepositoryHelper {
         Path sitePublishedRepoPath = buildRepoPath(GitRepositories.PUBLISHED, site).resolve(GIT_ROOT);
 
         try {
-            if (Files.exists(siteSandboxRepoPath)) {
+            if (sandboxes.get(site) != null) {
+                toReturn = true;
+            } else if (Files.exists(siteSandboxRepoPath)) {
                 // Build and put in cache
                 sandboxRepo = openRepository(siteSandboxRepoPath);
                 sandboxes.put(site, sandboxRepo);
@@ -180,7 +289,7 @@ public class GitContentRepositoryHelper {
         }
 
         try {
-            if (toReturn && Files.exists(sitePublishedRepoPath)) {
+            if (toReturn && published.get(site) == null && Files.exists(sitePublishedRepoPath)) {
                 // Build and put in cache
                 publishedRepo = openRepository(sitePublishedRepoPath);
                 published.put(site, publishedRepo);
@@ -195,6 +304,25 @@ public class GitContentRepositoryHelper {
         return toReturn;
     }
 
+    /**
+     * Builds a site's published repository object and caches it
+     * @param site site id
+     * @return true if successful, false otherwise
+     */
+    public boolean buildPublishedRepo(String site) {
+        Path sitePublishedRepoPath = buildRepoPath(GitRepositories.PUBLISHED, site).resolve(GIT_ROOT);
+        try {
+            if (Files.exists(sitePublishedRepoPath)) {
+                published.put(site, openRepository(sitePublishedRepoPath));
+                return true;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to create published repo for site: " + site + " using path " +
+                    sitePublishedRepoPath.toString(), e);
+        }
+        return false;
+    }
+
     /**
      * Opens a git repository
      *
@@ -418,20 +546,7 @@ public class GitContentRepositoryHelper {
         File siteFolder = sitePath.toFile();
 
         try {
-            Repository sboxRepo = sandboxes.get(site);
-            if (sboxRepo != null) {
-                sboxRepo.close();
-                sandboxes.remove(site);
-                RepositoryCache.close(sboxRepo);
-                sboxRepo = null;
-            }
-            Repository pubRepo = published.get(site);
-            if (pubRepo != null) {
-                pubRepo.close();
-                published.remove(site);
-                RepositoryCache.close(pubRepo);
-                pubRepo = null;
-            }
+            invalidateSiteRepositories(site);
             FileUtils.deleteDirectory(siteFolder);
 
             toReturn = true;
@@ -510,7 +625,9 @@ public class GitContentRepositoryHelper {
     public boolean performInitialCommit(String site, String message, String sandboxBranch) {
         boolean toReturn = true;
 
-        Repository repo = getRepository(site, GitRepositories.SANDBOX, sandboxBranch);
+        // Opens the repository and checks out the sandbox branch the first time
+        getRepository(site, GitRepositories.SANDBOX, sandboxBranch);
+        Repository repo = acquireRepository(site, GitRepositories.SANDBOX);
 
         try (Git git = new Git(repo)) {
 
@@ -553,6 +670,8 @@ public class GitContentRepositoryHelper {
         } catch (GitAPIException | UserNotFoundException | ServiceLayerException err) {
             logger.error("error creating initial commit for site:  " + site, err);
             toReturn = false;
+        } finally {
+            releaseRepository(site, GitRepositories.SANDBOX, repo);
         }
 
         return toReturn;
@@ -569,20 +688,30 @@ public class GitContentRepositoryHelper {
             case SANDBOX:
                 repo = sandboxes.get(site);
                 if (repo == null) {
-                    if (buildSiteRepo(site)) {
+                    synchronized (this) {
                         repo = sandboxes.get(site);
-                    } else {
-                        logger.warn("Couldn't get the sandbox repository for site: " + site);
+                        if (repo == null) {
+                            if (buildSiteRepo(site)) {
+                                repo = sandboxes.get(site);
+                            } else {
+                                logger.warn("Couldn't get the sandbox repository for site: " + site);
+                            }
+                        }
                     }
                 }
                 break;
             case PUBLISHED:
                 repo = published.get(site);
                 if (repo == null) {
-                    if (buildSiteRepo(site)) {
+                    synchronized (this) {
                         repo = published.get(site);
-                    } else {
-                        logger.warn("Couldn't get the published repository for site: " + site);
+                        if (repo == null) {
+                            if (buildPublishedRepo(site)) {
+                                repo = published.get(site);
+                            } else {
+                                logger.warn("Couldn't get the published repository for site: " + site);
+                            }
+                        }
                     }
                 }
                 break;
@@ -619,21 +748,31 @@ public class GitContentRepositoryHelper {
             case SANDBOX:
                 repo = sandboxes.get(site);
                 if (repo == null) {
-                    if (buildSiteRepo(site)) {
+                    synchronized (this) {
                         repo = sandboxes.get(site);
-                        checkoutSandboxBranch(site, repo, sandboxBranch);
-                    } else {
-                        logger.error("error getting the sandbox repository for site: " + site);
+                        if (repo == null) {
+                            if (buildSiteRepo(site)) {
+                                repo = sandboxes.get(site);
+                                checkoutSandboxBranch(site, repo, sandboxBranch);
+                            } else {
+                                logger.error("error getting the sandbox repository for site: " + site);
+                            }
+                        }
                     }
                 }
                 break;
             case PUBLISHED:
                 repo = published.get(site);
                 if (repo == null) {
-                    if (buildSiteRepo(site)) {
+                    synchronized (this) {
                         repo = published.get(site);
-                    } else {
-                        logger.error("error getting the published repository for site: " + site);
+                        if (repo == null) {
+                            if (buildPublishedRepo(site)) {
+                                repo = published.get(site);
+                            } else {
+                                logger.error("error getting the published repository for site: " + site);
+                            }
+                        }
                     }
                 }
                 break;
@@ -688,6 +827,36 @@ public class GitContentRepositoryHelper {
         }
     }
 
+    /**
+     * Compare two trees in a single walk that only enters the subtrees that are different
+     *
+     * @param fromTree tree to compare from, null to compare from an empty tree
+     * @param toTree tree to compare to
+     * @param detectRenames pair the deleted and added files with the same or similar content as renames
+     * @return differences between the trees
+     */
+    public List<DiffEntry> diffTrees(Repository repository, ObjectReader reader, RevTree fromTree, RevTree toTree,
+                                     boolean detectRenames) throws IOException {
+        List<DiffEntry> diffEntries;
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            if (fromTree != null) {
+                tw.addTree(fromTree);
+            } else {
+                tw.addTree(new EmptyTreeIterator());
+            }
+            tw.addTree(toTree);
+            tw.setRecursive(true);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            diffEntries = DiffEntry.scan(tw);
+        }
+        if (detectRenames && !diffEntries.isEmpty()) {
+            RenameDetector renameDetector = new RenameDetector(repository);
+            renameDetector.addAll(diffEntries);
+            diffEntries = renameDetector.compute(reader, NullProgressMonitor.INSTANCE);
+        }
+        return diffEntries;
+    }
+
     public boolean writeFile(Repository repo, String site, String path, InputStream content) {
         boolean result = true;
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+/**
+ * Builds the tree of a publishing commit in memory. It starts from the tree of the environment branch and applies
+ * the deployed items on top of it with the same rules the working tree based publishing used (checkout of the path
+ * from the item commit, removal of moved and deleted paths and clean up of the {@code .keep} files of the folders
+ * left empty), without touching the working tree or the index of the published repository.
+ */
+public class PublishTreeBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PublishTreeBuilder.class);
+
+    private static final String KEEP_FILE = ".keep";
+    private static final char SEPARATOR = '/';
+    /** character right after the separator, used as the upper bound of the entries under a folder **/
+    private static final char SEPARATOR_NEXT = '0';
+
+    protected final ObjectReader reader;
+    protected final TreeMap<String, TreeEntry> entries = new TreeMap<String, TreeEntry>();
+
+    public PublishTreeBuilder(ObjectReader reader, RevTree baseTree) throws IOException {
+        this.reader = reader;
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.addTree(baseTree);
+            tw.setRecursive(true);
+            while (tw.next()) {
+                entries.put(tw.getPathString(), new TreeEntry(tw.getObjectId(0), tw.getFileMode(0)));
+            }
+        }
+    }
+
+    /**
+     * Equivalent of checking out a path from a commit: a file is replaced and a folder gets all its files replaced
+     * or added. Nothing is done if the path does not exist in the commit.
+     *
+     * @param tree tree of the commit to take the path from
+     * @param path path relative to the root of the repository
+     */
+    public void checkoutPath(RevTree tree, String path) throws IOException {
+        boolean found = false;
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.addTree(tree);
+            tw.setRecursive(true);
+            tw.setFilter(PathFilter.create(path));
+            while (tw.next()) {
+                entries.put(tw.getPathString(), new TreeEntry(tw.getObjectId(0), tw.getFileMode(0)));
+                found = true;
+            }
+        }
+        if (!found) {
+            logger.debug("Path " + path + " not found in tree " + tree.getName() + ", nothing to checkout");
+        }
+    }
+
+    /**
+     * Remove a file, or a folder with all its content
+     *
+     * @param path path relative to the root of the repository
+     */
+    public void removePath(String path) {
+        entries.remove(path);
+        getFolderEntries(path).clear();
+    }
+
+    /**
+     * Remove the {@code .keep} file of the folder if it has a single child left
+     *
+     * @param folder folder path relative to the root of the repository
+     */
+    public void deleteParentFolder(String folder) {
+        if (folder != null && countChildren(folder, 2) == 1) {
+            entries.remove(folder + SEPARATOR + KEEP_FILE);
+        }
+    }
+
+    /**
+     * Clean up the parent folders of a moved path, going up while the folders are left empty
+     *
+     * @param path old path of the moved item relative to the root of the repository
+     */
+    public void cleanUpMoveFolders(String path) {
+        String parent = getParent(path);
+        if (parent != null) {
+            deleteParentFolder(parent);
+            if (getFolderEntries(parent).isEmpty()) {
+                cleanUpMoveFolders(parent);
+            }
+        }
+    }
+
+    /**
+     * Write the tree and all its subtrees
+     *
+     * @param inserter inserter to write the trees with, the caller is responsible for flushing it
+     * @return the id of the root tree
+     */
+    public ObjectId writeTree(ObjectInserter inserter) throws IOException {
+        DirCache dirCache = DirCache.newInCore();
+        DirCacheBuilder builder = dirCache.builder();
+        for (Map.Entry<String, TreeEntry> entry : entries.entrySet()) {
+            DirCacheEntry dirCacheEntry = new DirCacheEntry(entry.getKey());
+            dirCacheEntry.setFileMode(entry.getValue().mode);
+            dirCacheEntry.setObjectId(entry.getValue().objectId);
+            builder.add(dirCacheEntry);
+        }
+        builder.finish();
+        return dirCache.writeTree(inserter);
+    }
+
+    public static String getParent(String path) {
+        int idx = path.lastIndexOf(SEPARATOR);
+        return idx > 0 ? path.substring(0, idx) : null;
+    }
+
+    protected SortedMap<String, TreeEntry> getFolderEntries(String folder) {
+        return entries.subMap(folder + SEPARATOR, folder + SEPARATOR_NEXT);
+    }
+
+    /**
+     * Count the direct children (files or folders) of a folder
+     *
+     * @param folder folder path relative to the root of the repository
+     * @param limit stop counting once this number is reached
+     * @return number of children, up to the limit
+     */
+    protected int countChildren(String folder, int limit) {
+        int count = 0;
+        String lastChild = null;
+        int prefixLength = folder.length() + 1;
+        for (String path : getFolderEntries(folder).keySet()) {
+            int idx = path.indexOf(SEPARATOR, prefixLength);
+            String child = idx < 0 ? path.substring(prefixLength) : path.substring(prefixLength, idx);
+            if (!child.equals(lastChild)) {
+                lastChild = child;
+                if (++count >= limit) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    protected static class TreeEntry {
+
+        protected final ObjectId objectId;
+        protected final FileMode mode;
+
+        protected TreeEntry(ObjectId objectId, FileMode mode) {
+            this.objectId = objectId;
+            this.mode = mode;
+        }
+    }
+}
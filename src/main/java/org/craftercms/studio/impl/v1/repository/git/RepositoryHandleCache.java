@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Cache of open repositories. Repositories that have not been used for the idle timeout are closed, and when there
+ * are more than the max size the least recently used ones are closed, which releases their pack files and the
+ * memory they take in the window cache.
+ *
+ * Every use of a repository must be wrapped in {@link #acquire(String)} and {@link #release(String, Repository)}.
+ * Acquiring increments the open count of the repository, so closing it when it is evicted, removed or replaced only
+ * drops the reference of the cache, and the repository is really closed when the last user releases it. Entries
+ * that are acquired are never picked for eviction.
+ */
+public class RepositoryHandleCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryHandleCache.class);
+
+    /** min idle time for the least recently used repositories to be closed when the cache is full **/
+    private static final long MIN_IDLE_TIME_FOR_EVICTION = TimeUnit.MINUTES.toMillis(1);
+
+    protected final String name;
+    protected final int maxSize;
+    protected final long idleTimeout;
+
+    protected final Map<String, Handle> handles = new ConcurrentHashMap<String, Handle>();
+    protected final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder opened = new LongAdder();
+    protected final LongAdder evicted = new LongAdder();
+
+    public RepositoryHandleCache(String name, int maxSize, long idleTimeout) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Get an open repository
+     *
+     * @param key site id
+     * @return the repository or null if it is not open
+     */
+    public Repository get(String key) {
+        Handle handle = handles.get(key);
+        sweepIfNeeded();
+        if (handle == null) {
+            return null;
+        }
+        handle.lastAccess = System.currentTimeMillis();
+        hits.increment();
+        return handle.repository;
+    }
+
+    /**
+     * Add a repository that has just been opened, the cache takes over its initial open count. The previous
+     * repository, if any, is closed once its users release it.
+     *
+     * @param key site id
+     * @param repository the repository
+     */
+    public void put(String key, Repository repository) {
+        Handle previous = handles.put(key, new Handle(repository));
+        opened.increment();
+        if (previous != null && previous.repository != repository) {
+            close(key, previous);
+        }
+        evictIfNeeded(key);
+    }
+
+    /**
+     * Remove a repository from the cache, it is closed once its users release it
+     *
+     * @param key site id
+     * @return the removed repository
+     */
+    public Repository remove(String key) {
+        Handle handle = handles.remove(key);
+        if (handle == null) {
+            return null;
+        }
+        close(key, handle);
+        return handle.repository;
+    }
+
+    /**
+     * Remove a repository from the cache for repositories that are deleted, it is closed once its users release it
+     *
+     * @param key site id
+     */
+    public void invalidate(String key) {
+        remove(key);
+    }
+
+    /**
+     * Get an open repository and mark it as in use so it is not closed until released
+     *
+     * @param key site id
+     * @return the repository or null if it is not open
+     */
+    public Repository acquire(String key) {
+        Handle handle = handles.computeIfPresent(key, (k, h) -> {
+            // still inside the atomic operation for the key, so it can't be evicted and closed in between
+            h.repository.incrementOpen();
+            h.references++;
+            h.lastAccess = System.currentTimeMillis();
+            return h;
+        });
+        if (handle == null) {
+            return null;
+        }
+        hits.increment();
+        return handle.repository;
+    }
+
+    /**
+     * Release a repository acquired with {@link #acquire(String)}, even if it has been removed from the cache since
+     *
+     * @param key site id
+     * @param repository the acquired repository
+     */
+    public void release(String key, Repository repository) {
+        handles.computeIfPresent(key, (k, h) -> {
+            if (h.repository == repository && h.references > 0) {
+                h.references--;
+                h.lastAccess = System.currentTimeMillis();
+            }
+            return h;
+        });
+        repository.close();
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        int inUse = 0;
+        for (Handle handle : handles.values()) {
+            if (handle.references > 0) {
+                inUse++;
+            }
+        }
+        statistics.put("open", handles.size());
+        statistics.put("inUse", inUse);
+        statistics.put("maxSize", maxSize);
+        statistics.put("hits", hits.sum());
+        statistics.put("opened", opened.sum());
+        statistics.put("evicted", evicted.sum());
+        return statistics;
+    }
+
+    /**
+     * Close the repositories idle for more than the idle timeout, at most once per minute
+     */
+    protected void sweepIfNeeded() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < MIN_IDLE_TIME_FOR_EVICTION || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String key : handles.keySet()) {
+            evict(key, idleTimeout);
+        }
+    }
+
+    /**
+     * Close the least recently used repositories while there are more than the max size
+     */
+    protected void evictIfNeeded(String currentKey) {
+        while (handles.size() > maxSize) {
+            String eldestKey = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, Handle> entry : handles.entrySet()) {
+                Handle handle = entry.getValue();
+                if (!entry.getKey().equals(currentKey) && handle.references == 0 &&
+                        handle.lastAccess < eldestAccess) {
+                    eldestKey = entry.getKey();
+                    eldestAccess = handle.lastAccess;
+                }
+            }
+            if (eldestKey == null || !evict(eldestKey, MIN_IDLE_TIME_FOR_EVICTION)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Remove and close a repository if it is not in use and it has been idle for at least the given time
+     *
+     * @return true if the repository was evicted
+     */
+    protected boolean evict(String key, long minIdleTime) {
+        long now = System.currentTimeMillis();
+        Handle[] removed = new Handle[1];
+        handles.computeIfPresent(key, (k, h) -> {
+            if (h.references == 0 && now - h.lastAccess >= minIdleTime) {
+                removed[0] = h;
+                return null;
+            }
+            return h;
+        });
+        if (removed[0] != null) {
+            logger.debug("Closing idle " + name + " repository for site " + key);
+            evicted.increment();
+            close(key, removed[0]);
+            return true;
+        }
+        return false;
+    }
+
+    protected void close(String key, Handle handle) {
+        try {
+            handle.repository.close();
+        } catch (Exception e) {
+            logger.warn("Error closing " + name + " repository for site " + key, e);
+        }
+    }
+
+    protected static class Handle {
+
+        /** repository opened once for the cache, plus once for every user that has acquired it **/
+        protected final Repository repository;
+        protected volatile int references;
+        protected volatile long lastAccess = System.currentTimeMillis();
+
+        protected Handle(Repository repository) {
+            this.repository = repository;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Index of all the paths (files and folders) of the tree of a commit. Once built it is never modified, a new
+ * snapshot is created for every commit, incrementally from the snapshot of a previous commit when possible.
+ *
+ * Paths are relative to the root of the repository without the leading separator, the root folder is the empty
+ * string.
+ */
+public class TreeSnapshot {
+
+    public static final String ROOT = "";
+
+    private static final char SEPARATOR = '/';
+
+    protected final ObjectId commitId;
+    protected final ObjectId treeId;
+    protected final Map<String, Entry> entries;
+    /** names of the children of each folder, in the same order git stores them **/
+    protected final Map<String, List<String>> children;
+
+    protected TreeSnapshot(ObjectId commitId, ObjectId treeId, Map<String, Entry> entries,
+                           Map<String, List<String>> children) {
+        this.commitId = commitId;
+        this.treeId = treeId;
+        this.entries = entries;
+        this.children = children;
+    }
+
+    /**
+     * Build the snapshot of a tree walking it completely
+     *
+     * @param maxEntries max number of entries, if the tree is bigger no snapshot is built
+     * @return the snapshot or null if the tree has more than maxEntries entries
+     */
+    public static TreeSnapshot build(ObjectReader reader, ObjectId commitId, RevTree tree, int maxEntries)
+            throws IOException {
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        Map<String, List<String>> children = new HashMap<String, List<String>>();
+        children.put(ROOT, new ArrayList<String>());
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.addTree(tree);
+            while (tw.next()) {
+                if (entries.size() >= maxEntries) {
+                    return null;
+                }
+                String path = tw.getPathString();
+                Entry entry = new Entry(tw.getObjectId(0), tw.getFileMode(0));
+                entries.put(path, entry);
+                children.get(getParent(path)).add(tw.getNameString());
+                if (tw.isSubtree()) {
+                    children.put(path, new ArrayList<String>());
+                    tw.enterSubtree();
+                }
+            }
+        }
+        return new TreeSnapshot(commitId, tree.getId(), entries, children);
+    }
+
+    /**
+     * Build the snapshot of a tree from the snapshot of another one, only walking the subtrees that are different
+     *
+     * @param maxEntries max number of entries, if the tree is bigger no snapshot is built
+     * @return the snapshot or null if the tree has more than maxEntries entries
+     */
+    public static TreeSnapshot update(ObjectReader reader, TreeSnapshot previous, ObjectId commitId, RevTree tree,
+                                      int maxEntries) throws IOException {
+        Map<String, Entry> entries = new HashMap<String, Entry>(previous.entries);
+        Map<String, List<String>> children = new HashMap<String, List<String>>(previous.children);
+        Map<String, Set<String>> addedChildren = new HashMap<String, Set<String>>();
+        Set<String> changedFolders = new HashSet<String>();
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.addTree(previous.treeId);
+            tw.addTree(tree);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            while (tw.next()) {
+                String path = tw.getPathString();
+                String parent = getParent(path);
+                int oldMode = tw.getRawMode(0);
+                int newMode = tw.getRawMode(1);
+                if (newMode != 0) {
+                    entries.put(path, new Entry(tw.getObjectId(1), tw.getFileMode(1)));
+                    if (oldMode == 0) {
+                        changedFolders.add(parent);
+                        addedChildren.computeIfAbsent(parent, k -> new HashSet<String>()).add(tw.getNameString());
+                    }
+                    if (FileMode.TREE.equals(newMode) && oldMode == 0) {
+                        children.put(path, Collections.<String>emptyList());
+                    }
+                } else {
+                    // a file replaced by a folder with the same name (or the opposite) shows up as two entries,
+                    // so only remove the path if it was not added back by the other one
+                    Entry entry = entries.get(path);
+                    if (entry != null && entry.mode.equals(tw.getFileMode(0))) {
+                        entries.remove(path);
+                        entry = null;
+                    }
+                    if (FileMode.TREE.equals(oldMode) && (entry == null || !entry.isFolder())) {
+                        children.remove(path);
+                    }
+                    changedFolders.add(parent);
+                }
+                if (tw.isSubtree()) {
+                    tw.enterSubtree();
+                }
+            }
+        }
+        if (entries.size() > maxEntries) {
+            return null;
+        }
+        for (String folder : changedFolders) {
+            List<String> previousChildren = children.get(folder);
+            if (previousChildren != null) {
+                String prefix = folder.isEmpty() ? folder : folder + SEPARATOR;
+                Set<String> names = new HashSet<String>(previousChildren);
+                names.addAll(addedChildren.getOrDefault(folder, Collections.<String>emptySet()));
+                List<String> folderChildren = new ArrayList<String>(names.size());
+                for (String name : names) {
+                    if (entries.containsKey(prefix + name)) {
+                        folderChildren.add(name);
+                    }
+                }
+                folderChildren.sort(new GitNameComparator(entries, prefix));
+                children.put(folder, folderChildren);
+            }
+        }
+        return new TreeSnapshot(commitId, tree.getId(), entries, children);
+    }
+
+    public static String getParent(String path) {
+        int idx = path.lastIndexOf(SEPARATOR);
+        return idx > 0 ? path.substring(0, idx) : ROOT;
+    }
+
+    public ObjectId getCommitId() {
+        return commitId;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the entry of a path
+     *
+     * @param path path relative to the root of the repository
+     * @return the entry, or null if the path does not exist
+     */
+    public Entry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Get the names of the children of a folder
+     *
+     * @param path folder path relative to the root of the repository
+     * @return names of the children, or null if the path is not a folder
+     */
+    public List<String> getChildren(String path) {
+        return children.get(path);
+    }
+
+    /**
+     * Get the size of the object of an entry, loaded from the object database the first time it is requested
+     */
+    public long getSize(ObjectReader reader, Entry entry) throws IOException {
+        long size = entry.size;
+        if (size < 0) {
+            size = reader.getObjectSize(entry.objectId, ObjectReader.OBJ_ANY);
+            entry.size = size;
+        }
+        return size;
+    }
+
+    public static class Entry {
+
+        protected final ObjectId objectId;
+        protected final FileMode mode;
+        protected volatile long size = -1L;
+
+        protected Entry(ObjectId objectId, FileMode mode) {
+            this.objectId = objectId;
+            this.mode = mode;
+        }
+
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        public boolean isFolder() {
+            return FileMode.TREE.equals(mode);
+        }
+    }
+
+    /**
+     * Sorts names the way git sorts the entries of a tree: folders are compared as if they ended with a separator
+     */
+    protected static class GitNameComparator implements Comparator<String> {
+
+        protected final Map<String, Entry> entries;
+        protected final String prefix;
+
+        protected GitNameComparator(Map<String, Entry> entries, String prefix) {
+            this.entries = entries;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int compare(String name1, String name2) {
+            return compareBytes(Constants.encode(sortName(name1)), Constants.encode(sortName(name2)));
+        }
+
+        private String sortName(String name) {
+            Entry entry = entries.get(prefix + name);
+            return entry != null && entry.isFolder() ? name + SEPARATOR : name;
+        }
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_SNAPSHOT_MAX_ENTRIES;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_SNAPSHOT_MAX_SITES;
+
+/**
+ * Keeps the {@link TreeSnapshot} of the HEAD of the repository of each site. The snapshot is built the first time
+ * it is requested for a HEAD, from the snapshot of the previous HEAD when there is one, and replaced as a whole so
+ * readers always see a consistent tree.
+ *
+ * The number of sites and the size of the snapshots are limited, repositories bigger than the limit are read
+ * directly from git.
+ */
+public class TreeSnapshotIndex implements StatisticsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(TreeSnapshotIndex.class);
+
+    protected StudioConfiguration studioConfiguration;
+
+    protected final Map<String, SiteSnapshot> snapshots = new ConcurrentHashMap<String, SiteSnapshot>();
+
+    protected final LongAdder lookups = new LongAdder();
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder fullBuilds = new LongAdder();
+    protected final LongAdder incrementalBuilds = new LongAdder();
+    protected final LongAdder fallbacks = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    /**
+     * Get the snapshot of the current HEAD of the repository
+     *
+     * @param key key of the repository, the site id
+     * @param repository repository
+     * @return the snapshot, or null if the repository has no commits or it is too big to be indexed
+     */
+    public TreeSnapshot getSnapshot(String key, Repository repository) {
+        lookups.increment();
+        ObjectId head;
+        try {
+            head = repository.resolve(Constants.HEAD);
+        } catch (IOException e) {
+            logger.error("Error resolving HEAD of repository for site " + key, e);
+            return null;
+        }
+        if (head == null) {
+            return null;
+        }
+
+        SiteSnapshot siteSnapshot = snapshots.computeIfAbsent(key, k -> new SiteSnapshot());
+        siteSnapshot.lastAccess = System.currentTimeMillis();
+        TreeSnapshot snapshot = siteSnapshot.current;
+        if (snapshot != null && snapshot.getCommitId().equals(head)) {
+            hits.increment();
+            return snapshot;
+        }
+
+        synchronized (siteSnapshot) {
+            snapshot = siteSnapshot.current;
+            if (snapshot != null && snapshot.getCommitId().equals(head)) {
+                hits.increment();
+                return snapshot;
+            }
+            if (head.equals(siteSnapshot.oversizedCommitId)) {
+                fallbacks.increment();
+                return null;
+            }
+            int maxEntries = Integer.parseInt(studioConfiguration.getProperty(REPO_SNAPSHOT_MAX_ENTRIES));
+            try (ObjectReader reader = repository.newObjectReader();
+                 RevWalk revWalk = new RevWalk(reader)) {
+                RevCommit commit = revWalk.parseCommit(head);
+                if (snapshot != null) {
+                    logger.debug("Updating tree snapshot of site " + key + " to commit " + head.name());
+                    snapshot = TreeSnapshot.update(reader, snapshot, head, commit.getTree(), maxEntries);
+                    incrementalBuilds.increment();
+                } else {
+                    logger.debug("Building tree snapshot of site " + key + " for commit " + head.name());
+                    snapshot = TreeSnapshot.build(reader, head, commit.getTree(), maxEntries);
+                    fullBuilds.increment();
+                }
+            } catch (IOException e) {
+                logger.error("Error building tree snapshot of site " + key + " for commit " + head.name(), e);
+                snapshot = null;
+            }
+            siteSnapshot.current = snapshot;
+            if (snapshot == null) {
+                logger.debug("Repository of site " + key + " is too big to be indexed, it will be read from git");
+                siteSnapshot.oversizedCommitId = head;
+                fallbacks.increment();
+            } else {
+                siteSnapshot.oversizedCommitId = null;
+            }
+        }
+        evictIfNeeded(key);
+        return snapshot;
+    }
+
+    /**
+     * Drop the snapshot of a repository, for example when it is deleted or reloaded
+     *
+     * @param key key of the repository, the site id
+     */
+    public void invalidate(String key) {
+        snapshots.remove(key);
+    }
+
+    /**
+     * Drop the least recently used snapshots while there are more than the max number of sites
+     */
+    protected void evictIfNeeded(String currentKey) {
+        int maxSites = Integer.parseInt(studioConfiguration.getProperty(REPO_SNAPSHOT_MAX_SITES));
+        while (snapshots.size() > maxSites) {
+            String eldestKey = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, SiteSnapshot> entry : snapshots.entrySet()) {
+                if (!entry.getKey().equals(currentKey) && entry.getValue().lastAccess < eldestAccess) {
+                    eldestKey = entry.getKey();
+                    eldestAccess = entry.getValue().lastAccess;
+                }
+            }
+            if (eldestKey == null) {
+                break;
+            }
+            snapshots.remove(eldestKey);
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "repositorySnapshots";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long totalEntries = 0;
+        for (SiteSnapshot siteSnapshot : snapshots.values()) {
+            TreeSnapshot snapshot = siteSnapshot.current;
+            if (snapshot != null) {
+                totalEntries += snapshot.size();
+            }
+        }
+        long totalLookups = lookups.sum();
+        long totalHits = hits.sum();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("sites", snapshots.size());
+        statistics.put("entries", totalEntries);
+        statistics.put("lookups", totalLookups);
+        statistics.put("hits", totalHits);
+        statistics.put("hitRate", totalLookups > 0 ? (double) totalHits / totalLookups : 0);
+        statistics.put("fullBuilds", fullBuilds.sum());
+        statistics.put("incrementalBuilds", incrementalBuilds.sum());
+        statistics.put("fallbacks", fallbacks.sum());
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+
+    public StudioConfiguration getStudioConfiguration() {
+        return studioConfiguration;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    protected static class SiteSnapshot {
+
+        protected volatile TreeSnapshot current;
+        /** HEAD that was too big to be indexed, to avoid trying again until it changes **/
+        protected volatile ObjectId oversizedCommitId;
+        protected volatile long lastAccess;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.job;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Brings the index of the commits that changed each path up to date for all existing sites, so the version history
+ * of the items doesn't have to index the commits done while Studio was down on the first request.
+ */
+public class CommitPathIndexUpdateJob {
+
+    protected static final Logger logger = LoggerFactory.getLogger(CommitPathIndexUpdateJob.class);
+
+    protected SiteService siteService;
+    protected ContentRepository contentRepository;
+
+    /**
+     * Updates the commit path index of all existing sites.
+     */
+    public void updateAllSites() {
+        logger.info("Starting commit path index update for all sites");
+        for (String site : siteService.getAllAvailableSites()) {
+            try {
+                contentRepository.updateCommitPathIndex(site, false);
+            } catch (Exception e) {
+                logger.error("Error updating commit path index for site " + site, e);
+            }
+        }
+    }
+
+    @Required
+    public void setSiteService(final SiteService siteService) {
+        this.siteService = siteService;
+    }
+
+    @Required
+    public void setContentRepository(final ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.job;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.service.deployment.DeploymentHistoryProvider;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Records in the deployment history the publishing done on all existing sites before it was kept in the database.
+ */
+public class DeploymentHistoryBackfillJob {
+
+    protected static final Logger logger = LoggerFactory.getLogger(DeploymentHistoryBackfillJob.class);
+
+    protected SiteService siteService;
+    protected DeploymentHistoryProvider deploymentHistoryProvider;
+
+    /**
+     * Backfills the deployment history of all existing sites.
+     */
+    public void backfillAllSites() {
+        logger.info("Starting deployment history backfill for all sites");
+        for (String site : siteService.getAllAvailableSites()) {
+            try {
+                deploymentHistoryProvider.backfillDeploymentHistory(site);
+            } catch (Exception e) {
+                logger.error("Error backfilling deployment history for site " + site, e);
+            }
+        }
+    }
+
+    @Required
+    public void setSiteService(final SiteService siteService) {
+        this.siteService = siteService;
+    }
+
+    @Required
+    public void setDeploymentHistoryProvider(final DeploymentHistoryProvider deploymentHistoryProvider) {
+        this.deploymentHistoryProvider = deploymentHistoryProvider;
+    }
+
+}
@@ -17,31 +17,78 @@
 
 package org.craftercms.studio.impl.v1.repository.job;
 
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.constant.DmConstants;
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.ItemMetadata;
 import org.craftercms.studio.api.v1.dal.PublishRequestMapper;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.job.CronJobContext;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.ObjectMetadataManager;
 import org.craftercms.studio.api.v1.service.dependency.DependencyService;
 import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
+import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v1.to.RepoOperationTO;
+import org.craftercms.studio.api.v1.util.ListUtils;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.dal.RebuildMetadataDAO;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class RebuildRepositoryMetadata {
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_REBUILD_METADATA_INCREMENTAL;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REBUILD_DEPENDENCIES;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REBUILD_DEPENDENCY_IDS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REBUILD_EXCLUDED_PATHS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REBUILD_PATHS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
+
+/**
+ * Rebuilds the database metadata of a site from its repository. By default the rebuild is incremental: the items and
+ * dependencies of the last commit are loaded into staging tables with a single scan of the repository, and only the
+ * differences with the live tables are applied in a short transaction, so the workflow state of the existing items
+ * is kept and the site can be used during the rebuild. The full rebuild deletes all the metadata of the site and
+ * replays the whole history of the repository.
+ */
+public class RebuildRepositoryMetadata implements StatisticsProvider {
 
     private final static Logger logger = LoggerFactory.getLogger(RebuildRepositoryMetadata.class);
 
     private static ReentrantLock taskLock = new ReentrantLock();
 
+    public static final String TABLE_ITEM_STATE = "item_state";
+    public static final String TABLE_ITEM_METADATA = "item_metadata";
+    public static final String TABLE_DEPENDENCY = "dependency";
+
+    public static final String ROWS_INSERTED = "inserted";
+    public static final String ROWS_UPDATED = "updated";
+    public static final String ROWS_DELETED = "deleted";
+
+    /** times the changes are applied again when the repository changes while applying them **/
+    protected static final int MAX_APPLY_ATTEMPTS = 3;
+
     protected PublishRequestMapper publishRequestMapper;
     protected ObjectMetadataManager objectMetadataManager;
     protected ObjectStateService objectStateService;
@@ -52,6 +99,12 @@ public class RebuildRepositoryMetadata {
     protected StudioConfiguration studioConfiguration;
     protected SiteService siteService;
     protected ContentRepository contentRepository;
+    protected RebuildMetadataDAO rebuildMetadataDAO;
+    protected ServicesConfig servicesConfig;
+    protected PlatformTransactionManager transactionManager;
+
+    /** rows changed per table by the last incremental rebuild of each site **/
+    protected final Map<String, Map<String, Object>> lastRebuilds = new ConcurrentHashMap<>();
 
     public void execute(String site) {
         if (taskLock.tryLock()) {
@@ -81,13 +134,18 @@ public class RebuildRepositoryMetadata {
         public void run() {
             logger.debug("Start rebuilding repository metadata for site " + site);
             CronJobContext.setCurrent(securityContext);
-            logger.debug("Cleaning existing repository metadata for site " + site);
-            cleanOldMetadata(site);
-            logger.debug("Initiate rebuild metadata process for site " + site);
-            try {
-                rebuildMetadata(site);
-            } catch (SiteNotFoundException e) {
-                logger.error("Error while rebuilding metadata", e);
+            if (Boolean.parseBoolean(studioConfiguration.getProperty(REPO_REBUILD_METADATA_INCREMENTAL))) {
+                logger.debug("Initiate incremental rebuild metadata process for site " + site);
+                rebuildMetadataIncremental(site);
+            } else {
+                logger.debug("Cleaning existing repository metadata for site " + site);
+                cleanOldMetadata(site);
+                logger.debug("Initiate rebuild metadata process for site " + site);
+                try {
+                    rebuildMetadata(site);
+                } catch (SiteNotFoundException e) {
+                    logger.error("Error while rebuilding metadata", e);
+                }
             }
             CronJobContext.clear();
             logger.debug("Finished rebuilding repository metadata for site " + site);
@@ -144,9 +202,273 @@ public class RebuildRepositoryMetadata {
 
     protected boolean rebuildMetadata(String site) throws SiteNotFoundException {
         siteService.syncDatabaseWithRepo(site, null);
+        try {
+            contentRepository.updateCommitPathIndex(site, true);
+        } catch (Exception e) {
+            logger.error("Error rebuilding commit path index for site " + site, e);
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild the metadata of a site applying only the differences between the repository and the database. Items
+     * that still exist keep their workflow state and metadata, the publishing queue is not touched.
+     *
+     * @param site site id
+     * @return true if the rebuild was successful
+     */
+    protected boolean rebuildMetadataIncremental(String site) {
+        long startTime = System.currentTimeMillis();
+        String lastCommitId = contentRepository.getRepoLastCommitId(site);
+        if (StringUtils.isEmpty(lastCommitId)) {
+            logger.error("Unable to rebuild metadata for site " + site + ", the repository has no commits");
+            return false;
+        }
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_ID, site);
+        Map<String, Object> changes = new LinkedHashMap<String, Object>();
+        try {
+            cleanStaging(params);
+            // Flags set before staging that are still set when applying were left by operations that did not
+            // finish, the ones set later belong to operations that are running
+            Set<String> processingPaths = new HashSet<String>(rebuildMetadataDAO.getSystemProcessingPaths(params));
+
+            // Expected state, built from a single scan of the last commit. Dependencies are resolved outside of the
+            // transaction since it is the slowest part of the rebuild
+            long phaseStart = System.currentTimeMillis();
+            List<RepoOperationTO> repoOperations = contentRepository.getNetOperations(site, null, lastCommitId);
+            List<String> paths = new ArrayList<String>();
+            for (RepoOperationTO repoOperation : repoOperations) {
+                paths.add(repoOperation.getPath());
+            }
+            int stagedDependencies = stage(site, paths, batchSize);
+            logger.info("Staged " + paths.size() + " items and " + stagedDependencies + " dependencies for site " +
+                    site + " in " + (System.currentTimeMillis() - phaseStart) + " ms");
+
+            phaseStart = System.currentTimeMillis();
+            DefaultTransactionDefinition defaultTransactionDefinition = new DefaultTransactionDefinition();
+            defaultTransactionDefinition.setName("rebuildRepositoryMetadata");
+            boolean applied = false;
+            for (int attempt = 1; !applied; attempt++) {
+                TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
+                try {
+                    // Items changed after the staged commit are left to the sync of their commits
+                    String headCommitId = contentRepository.getRepoLastCommitId(site);
+                    Set<String> excludedPaths = getChangedPaths(site, lastCommitId, headCommitId);
+                    applyChanges(site, repoOperations.isEmpty() ? null : repoOperations.get(0), excludedPaths,
+                            processingPaths, batchSize, changes);
+                    applied = StringUtils.equals(headCommitId, contentRepository.getRepoLastCommitId(site));
+                    if (applied) {
+                        transactionManager.commit(txStatus);
+                    } else {
+                        transactionManager.rollback(txStatus);
+                    }
+                } catch (Exception e) {
+                    transactionManager.rollback(txStatus);
+                    throw e;
+                }
+                if (!applied) {
+                    if (attempt >= MAX_APPLY_ATTEMPTS) {
+                        logger.error("Unable to rebuild metadata for site " + site + ", the repository kept " +
+                                "changing while applying the changes");
+                        return false;
+                    }
+                    logger.info("Repository of site " + site + " changed while applying the metadata changes, " +
+                            "applying them again");
+                }
+            }
+            logger.info("Applied metadata changes for site " + site + " in " +
+                    (System.currentTimeMillis() - phaseStart) + " ms");
+
+            if (contentRepository.getGitLog(site, lastCommitId) == null) {
+                contentRepository.insertGitLog(site, lastCommitId, 1);
+            }
+            contentRepository.markGitLogVerifiedProcessed(site, lastCommitId);
+            // The database may have been synced past the staged commit in the meantime
+            String siteLastCommitId = siteService.getSite(site).getLastCommitId();
+            if (StringUtils.isEmpty(siteLastCommitId) ||
+                    contentRepository.getCommitIds(site, lastCommitId, siteLastCommitId).isEmpty()) {
+                siteService.updateLastCommitId(site, lastCommitId);
+            }
+        } catch (Exception e) {
+            logger.error("Error rebuilding metadata for site " + site, e);
+            return false;
+        } finally {
+            cleanStaging(params);
+        }
+
+        try {
+            contentRepository.updateCommitPathIndex(site, false);
+        } catch (Exception e) {
+            logger.error("Error updating commit path index for site " + site, e);
+        }
+
+        lastRebuilds.put(site, changes);
+        logger.info("Rebuilt metadata for site " + site + " up to commit " + lastCommitId + " in " +
+                (System.currentTimeMillis() - startTime) + " ms, rows changed per table: " + changes);
         return true;
     }
 
+    /**
+     * Get the paths changed between two commits, including both paths of a move
+     */
+    protected Set<String> getChangedPaths(String site, String fromCommitId, String toCommitId) {
+        Set<String> paths = new HashSet<String>();
+        if (StringUtils.isNotEmpty(toCommitId) && !StringUtils.equals(fromCommitId, toCommitId)) {
+            for (RepoOperationTO repoOperation : contentRepository.getNetOperations(site, fromCommitId, toCommitId)) {
+                paths.add(repoOperation.getPath());
+                if (StringUtils.isNotEmpty(repoOperation.getMoveToPath())) {
+                    paths.add(repoOperation.getMoveToPath());
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Load the items and their dependencies into the staging tables
+     *
+     * @return number of staged dependencies
+     */
+    protected int stage(String site, List<String> paths, int batchSize) throws ServiceLayerException {
+        int stagedDependencies = 0;
+        for (List<String> batch : ListUtils.partition(paths, batchSize)) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put(SITE_ID, site);
+            params.put(REBUILD_PATHS, batch);
+            rebuildMetadataDAO.insertItemStaging(params);
+
+            List<String> dependencyPaths = new ArrayList<String>();
+            for (String path : batch) {
+                if (requiresDependencyExtraction(site, path)) {
+                    dependencyPaths.add(path);
+                }
+            }
+            if (!dependencyPaths.isEmpty()) {
+                List<DependencyEntity> dependencies =
+                        dependencyService.resolveDependencyEntities(site, dependencyPaths);
+                for (List<DependencyEntity> dependencyBatch : ListUtils.partition(dependencies, batchSize)) {
+                    params = new HashMap<String, Object>();
+                    params.put(REBUILD_DEPENDENCIES, dependencyBatch);
+                    rebuildMetadataDAO.insertDependencyStaging(params);
+                }
+                stagedDependencies += dependencies.size();
+            }
+        }
+        return stagedDependencies;
+    }
+
+    /**
+     * Apply the differences between the staging tables and the live tables
+     *
+     * @param site site id
+     * @param repoOperation any operation of the last commit, used for the metadata of the new items
+     * @param excludedPaths paths changed after the staged commit, they are not touched
+     * @param processingPaths paths whose system processing flag was set before staging
+     * @param batchSize max number of rows per statement
+     * @param changes rows changed per table
+     */
+    protected void applyChanges(String site, RepoOperationTO repoOperation, Set<String> excludedPaths,
+                                Set<String> processingPaths, int batchSize, Map<String, Object> changes) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_ID, site);
+        params.put(REBUILD_EXCLUDED_PATHS, new ArrayList<String>(excludedPaths));
+
+        List<String> missingStates = rebuildMetadataDAO.getMissingItemStatePaths(params);
+        List<String> staleStates = rebuildMetadataDAO.getStaleItemStatePaths(params);
+        for (List<String> batch : ListUtils.partition(staleStates, batchSize)) {
+            objectStateService.deleteObjectStatesForPaths(site, batch);
+        }
+        for (List<String> batch : ListUtils.partition(missingStates, batchSize)) {
+            objectStateService.transitionBulk(site, batch, TransitionEvent.SAVE);
+        }
+        List<String> resetPaths = new ArrayList<String>();
+        for (String path : processingPaths) {
+            if (!excludedPaths.contains(path)) {
+                resetPaths.add(path);
+            }
+        }
+        int resetStates = 0;
+        for (List<String> batch : ListUtils.partition(resetPaths, batchSize)) {
+            Map<String, Object> batchParams = new HashMap<String, Object>();
+            batchParams.put(SITE_ID, site);
+            batchParams.put(REBUILD_PATHS, batch);
+            resetStates += rebuildMetadataDAO.resetSystemProcessing(batchParams);
+        }
+        changes.put(TABLE_ITEM_STATE, createTableChanges(missingStates.size(), resetStates, staleStates.size()));
+
+        List<String> missingMetadata = rebuildMetadataDAO.getMissingItemMetadataPaths(params);
+        List<String> staleMetadata = rebuildMetadataDAO.getStaleItemMetadataPaths(params);
+        for (List<String> batch : ListUtils.partition(staleMetadata, batchSize)) {
+            objectMetadataManager.deleteObjectMetadata(site, batch);
+        }
+        Map<String, Object> properties = new HashMap<String, Object>();
+        if (repoOperation != null) {
+            properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
+            properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
+            properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
+        }
+        for (List<String> batch : ListUtils.partition(missingMetadata, batchSize)) {
+            objectMetadataManager.insertNewObjectMetadata(site, batch);
+            if (!properties.isEmpty()) {
+                objectMetadataManager.setObjectMetadata(site, batch, properties);
+            }
+        }
+        changes.put(TABLE_ITEM_METADATA, createTableChanges(missingMetadata.size(), 0, staleMetadata.size()));
+
+        List<Long> missingDependencies = rebuildMetadataDAO.getMissingDependencyIds(params);
+        List<Long> staleDependencies = rebuildMetadataDAO.getStaleDependencyIds(params);
+        for (List<Long> batch : ListUtils.partition(staleDependencies, batchSize)) {
+            Map<String, Object> batchParams = new HashMap<String, Object>();
+            batchParams.put(REBUILD_DEPENDENCY_IDS, batch);
+            rebuildMetadataDAO.deleteDependencies(batchParams);
+        }
+        for (List<Long> batch : ListUtils.partition(missingDependencies, batchSize)) {
+            Map<String, Object> batchParams = new HashMap<String, Object>();
+            batchParams.put(REBUILD_DEPENDENCY_IDS, batch);
+            rebuildMetadataDAO.insertDependenciesFromStaging(batchParams);
+        }
+        if (!missingDependencies.isEmpty() || !staleDependencies.isEmpty()) {
+            // Lets the dependency graphs of all nodes know they are stale
+            rebuildMetadataDAO.bumpDependenciesVersion(params);
+        }
+        changes.put(TABLE_DEPENDENCY, createTableChanges(missingDependencies.size(), 0, staleDependencies.size()));
+    }
+
+    protected void cleanStaging(Map<String, Object> params) {
+        try {
+            rebuildMetadataDAO.deleteItemStaging(params);
+            rebuildMetadataDAO.deleteDependencyStaging(params);
+        } catch (Exception e) {
+            logger.error("Failed to clean rebuild staging data for site " + params.get(SITE_ID), e);
+        }
+    }
+
+    protected boolean requiresDependencyExtraction(String site, String path) {
+        return path.endsWith(DmConstants.XML_PATTERN) || path.endsWith(DmConstants.CSS_PATTERN) ||
+                path.endsWith(DmConstants.JS_PATTERN) ||
+                ContentUtils.matchesPatterns(path, servicesConfig.getRenderingTemplatePatterns(site));
+    }
+
+    protected Map<String, Integer> createTableChanges(int inserted, int updated, int deleted) {
+        Map<String, Integer> tableChanges = new LinkedHashMap<String, Integer>();
+        tableChanges.put(ROWS_INSERTED, inserted);
+        tableChanges.put(ROWS_UPDATED, updated);
+        tableChanges.put(ROWS_DELETED, deleted);
+        return tableChanges;
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "rebuildRepositoryMetadata";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        return new LinkedHashMap<String, Object>(lastRebuilds);
+    }
+
     public ObjectMetadataManager getObjectMetadataManager() {
         return objectMetadataManager;
     }
@@ -226,4 +548,28 @@ public class RebuildRepositoryMetadata {
     public void setPublishRequestMapper(PublishRequestMapper publishRequestMapper) {
         this.publishRequestMapper = publishRequestMapper;
     }
+
+    public RebuildMetadataDAO getRebuildMetadataDAO() {
+        return rebuildMetadataDAO;
+    }
+
+    public void setRebuildMetadataDAO(RebuildMetadataDAO rebuildMetadataDAO) {
+        this.rebuildMetadataDAO = rebuildMetadataDAO;
+    }
+
+    public ServicesConfig getServicesConfig() {
+        return servicesConfig;
+    }
+
+    public void setServicesConfig(ServicesConfig servicesConfig) {
+        this.servicesConfig = servicesConfig;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
 }
@@ -20,18 +20,35 @@ import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
 import org.craftercms.studio.api.v1.service.AbstractRegistrableService;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class GeneralLockServiceImpl extends AbstractRegistrableService implements GeneralLockService {
+/**
+ * Lock registry keyed by object id. Entries are reference counted, they are created by the first thread asking for
+ * the lock and removed when the last holder or waiter releases it, so the registry only holds the locks in use.
+ * Lookups are done per key in a {@link ConcurrentHashMap} without any global monitor.
+ */
+public class GeneralLockServiceImpl extends AbstractRegistrableService
+        implements GeneralLockService, StatisticsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneralLockServiceImpl.class);
 
-    protected Map<String, ReentrantLock> nodeLocks = new HashMap<String, ReentrantLock>();
+    protected Map<String, LockEntry> nodeLocks = new ConcurrentHashMap<String, LockEntry>();
+
+    protected final LongAdder acquisitions = new LongAdder();
+    protected final LongAdder contentions = new LongAdder();
+    protected final LongAdder failures = new LongAdder();
+    protected final LongAdder totalWaitTime = new LongAdder();
+    protected final AtomicLong maxWaitTime = new AtomicLong();
 
     @Override
     public void register() {
@@ -41,60 +58,72 @@ public class GeneralLockServiceImpl extends AbstractRegistrableService implement
     @Override
     @ValidateParams
     public void lock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Obtaining lock for id " + objectId);
         }
-        synchronized (this) {
-            if (nodeLocks.containsKey(objectId)) {
-                nodeLock = nodeLocks.get(objectId);
-            } else {
-                nodeLock = new ReentrantLock();
-                nodeLocks.put(objectId, nodeLock);
-            }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before lock)");
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
+        ReentrantLock nodeLock = acquireEntry(objectId).lock;
+        if (!nodeLock.tryLock()) {
+            contentions.increment();
+            long start = System.nanoTime();
+            nodeLock.lock();
+            recordWaitTime(start);
         }
-        nodeLock.lock();
+        acquisitions.increment();
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after lock)");
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Locked all threads for id " + objectId);
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " +
+                    nodeLock.getHoldCount() + " for id " + objectId + " (after lock)");
         }
     }
 
     @Override
     @ValidateParams
     public boolean tryLock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Trying to get lock for id " + objectId);
         }
-        synchronized (this) {
-            if (nodeLocks.containsKey(objectId)) {
-                nodeLock = nodeLocks.get(objectId);
-            } else {
-                nodeLock = new ReentrantLock();
-                nodeLocks.put(objectId, nodeLock);
-            }
+        boolean toRet = acquireEntry(objectId).lock.tryLock();
+        if (toRet) {
+            acquisitions.increment();
+        } else {
+            contentions.increment();
+            failures.increment();
+            releaseEntry(objectId);
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before tryLock)");
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Result for tryLock on id " + objectId +
+                    " : " + toRet);
         }
+        return toRet;
+    }
+
+    @Override
+    @ValidateParams
+    public boolean tryLock(@ValidateStringParam(name = "objectId") String objectId, long timeout, TimeUnit unit) {
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Trying to get lock for id " + objectId +
+                    " waiting up to " + timeout + " " + unit);
         }
+        ReentrantLock nodeLock = acquireEntry(objectId).lock;
         boolean toRet = nodeLock.tryLock();
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after tryLock)");
+        if (!toRet) {
+            contentions.increment();
+            long start = System.nanoTime();
+            try {
+                toRet = nodeLock.tryLock(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            recordWaitTime(start);
+        }
+        if (toRet) {
+            acquisitions.increment();
+        } else {
+            failures.increment();
+            releaseEntry(objectId);
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Result for tryLock on id " + objectId + " : " + toRet);
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Result for tryLock on id " + objectId +
+                    " : " + toRet);
         }
         return toRet;
     }
@@ -102,28 +131,67 @@ public class GeneralLockServiceImpl extends AbstractRegistrableService implement
     @Override
     @ValidateParams
     public void unlock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock = null;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Unlocking id " + objectId);
         }
-        synchronized (this) {
-            nodeLock = nodeLocks.get(objectId);
-        }
-        if (nodeLock != null) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before unlock)");
-            }
-            if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
-            }
-            nodeLock.unlock();
-            if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after unlock)");
-            }
+        LockEntry entry = nodeLocks.get(objectId);
+        if (entry != null) {
+            entry.lock.unlock();
+            releaseEntry(objectId);
         }
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Finished unlocking id " + objectId);
         }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "generalLocks";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("activeLocks", nodeLocks.size());
+        statistics.put("acquisitions", acquisitions.sum());
+        statistics.put("contentions", contentions.sum());
+        statistics.put("failures", failures.sum());
+        statistics.put("totalWaitTimeMs", TimeUnit.NANOSECONDS.toMillis(totalWaitTime.sum()));
+        statistics.put("maxWaitTimeMs", TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get()));
+        return statistics;
+    }
+
+    /**
+     * Get the entry for the id, creating it if needed, and add a reference to it. The reference must be released
+     * with {@link #releaseEntry(String)} once the lock is released or could not be acquired.
+     */
+    protected LockEntry acquireEntry(String objectId) {
+        return nodeLocks.compute(objectId, (id, entry) -> {
+            if (entry == null) {
+                entry = new LockEntry();
+            }
+            entry.references++;
+            return entry;
+        });
+    }
+
+    protected void releaseEntry(String objectId) {
+        nodeLocks.computeIfPresent(objectId, (id, entry) -> --entry.references > 0 ? entry : null);
+    }
+
+    protected void recordWaitTime(long start) {
+        long waitTime = System.nanoTime() - start;
+        totalWaitTime.add(waitTime);
+        maxWaitTime.accumulateAndGet(waitTime, Math::max);
+    }
+
+    /**
+     * Lock along with the number of threads holding it or waiting for it, only modified inside the map's atomic
+     * operations for its key
+     */
+    protected static class LockEntry {
 
+        protected final ReentrantLock lock = new ReentrantLock();
+        protected int references;
     }
 }
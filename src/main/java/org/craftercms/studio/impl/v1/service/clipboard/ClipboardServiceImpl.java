@@ -28,9 +28,12 @@ import org.craftercms.studio.api.v1.service.AbstractRegistrableService;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.clipboard.ClipboardService;
 import org.craftercms.studio.api.v1.service.workflow.WorkflowService;
+import org.craftercms.studio.api.v1.to.ContentCopyTO;
 import org.craftercms.studio.api.v1.to.DmDependencyTO;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -102,7 +105,8 @@ implements ClipboardService {
     }
 
     /**
-     * Recursive paste operation on item and it's children
+     * Paste operation on item and it's children. Cut items are moved one by one, copied items are copied with their
+     * children as a single tree copy
      * @param site site ID
      * @param destinationPath destination path for itme
      * @param clipOps ops to be pasted
@@ -110,32 +114,51 @@ implements ClipboardService {
      */
     protected void pasteItems(String site, String destinationPath, Set<ClipboardItem> clipOps, Set<String> pastedItems) 
     throws ServiceLayerException {
+        List<ContentCopyTO> copyItems = new ArrayList<ContentCopyTO>();
         for(ClipboardItem op : clipOps) {
-            try {
-                String newPath = null;
-                boolean cut = op.isCut;
-
-                if (cut) {
+            if (op.isCut) {
+                try {
                     // RDTMP_COPYPASTE
                     // CopyContent inteface is able to send status and new path yet
                     workflowService.cleanWorkflow(op.path, site, Collections.<DmDependencyTO>emptySet());
-                    newPath = contentService.moveContent(site, op.path, destinationPath);
-                }
-                else {
-                    // RDTMP_COPYPASTE
-                    // CopyContent inteface is able to send status and new path yet
-                    newPath = contentService.copyContent(site, op.path, destinationPath);
+                    String newPath = contentService.moveContent(site, op.path, destinationPath);
 
-                    // recurse on copied children
-                    pasteItems(site, newPath, op.children, pastedItems);
+                    pastedItems.add(newPath);
+                }
+                catch(Exception err) {
+                    logger.error("Paste operation failed for item '{0}' to dest path `{1}', isCut: '{2}'", err,
+                            op.path, destinationPath, op.isCut);
                 }
+            }
+            else {
+                copyItems.add(createContentCopy(op));
+            }
+        }
 
-                pastedItems.add(newPath);                
+        if (!copyItems.isEmpty()) {
+            try {
+                pastedItems.addAll(contentService.copyContentTree(site, copyItems, destinationPath));
             }
             catch(Exception err) {
-                logger.error("Paste operation failed for item '{0}' to dest path `{1}', isCut: '{2}'", err);
+                logger.error("Paste operation failed for {0} copied items to dest path `{1}'", err,
+                        copyItems.size(), destinationPath);
+            }
+        }
+    }
+
+    /**
+     * Convert a clipped item and its children to a tree copy
+     * @param item clipped item
+     * @return item to copy
+     */
+    protected ContentCopyTO createContentCopy(ClipboardItem item) {
+        ContentCopyTO copy = new ContentCopyTO(item.path);
+        if (item.children != null) {
+            for (ClipboardItem child : item.children) {
+                copy.getChildren().add(createContentCopy(child));
             }
         }
+        return copy;
     }
 
     /**
@@ -36,6 +36,7 @@ import org.craftercms.studio.api.v1.to.FacetTO;
 import org.craftercms.studio.api.v1.to.RepositoryConfigTO;
 import org.craftercms.studio.api.v1.to.SiteConfigTO;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
@@ -48,9 +49,12 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -70,9 +74,11 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_PUBLISH
  * Implementation of ServicesConfigImpl. This class requires a configuration
  * file in the repository
  *
+ * Parsed configurations are cached per site and keyed by the id of the configuration blob in the sandbox, so a
+ * change to the file (local write, pull or cluster sync) is picked up on the next access.
  *
  */
-public class ServicesConfigImpl implements ServicesConfig {
+public class ServicesConfigImpl implements ServicesConfig, StatisticsProvider {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ServicesConfigImpl.class);
 
@@ -110,8 +116,40 @@ public class ServicesConfigImpl implements ServicesConfig {
     protected GeneralLockService generalLockService;
     protected StudioConfiguration studioConfiguration;
 
+    /** parsed site configurations by site **/
+    protected Map<String, CachedSiteConfig> siteConfigCache = new ConcurrentHashMap<>();
+
+    protected final AtomicLong cacheHits = new AtomicLong();
+    protected final AtomicLong cacheMisses = new AtomicLong();
+    protected final AtomicLong cacheReloads = new AtomicLong();
+    protected final AtomicLong cacheInvalidations = new AtomicLong();
+
     protected SiteConfigTO getSiteConfig(final String site) {
-        return loadConfiguration(site);
+        // Read the version before the content, if the file changes in between the entry is stored with the old
+        // version and reloaded on the next access
+        String version = contentRepository.getContentObjectId(site, getSiteConfigFilePath(site));
+        CachedSiteConfig cached = siteConfigCache.get(site);
+        if (cached != null && StringUtils.equals(cached.version, version)) {
+            cacheHits.incrementAndGet();
+            return cached.config;
+        }
+        if (cached == null) {
+            cacheMisses.incrementAndGet();
+        } else {
+            cacheReloads.incrementAndGet();
+        }
+        SiteConfigTO config = loadConfiguration(site);
+        if (config != null && version != null) {
+            siteConfigCache.put(site, new CachedSiteConfig(version, config));
+        } else {
+            siteConfigCache.remove(site);
+        }
+        return config;
+    }
+
+    protected String getSiteConfigFilePath(String site) {
+        return getConfigPath().replaceFirst(StudioConstants.PATTERN_SITE, site) + FILE_SEPARATOR +
+                getConfigFileName();
     }
 
     @Override
@@ -517,7 +555,32 @@ public class ServicesConfigImpl implements ServicesConfig {
     @Override
     @ValidateParams
     public void reloadConfiguration(@ValidateStringParam(name = "site") String site) {
-        SiteConfigTO config = loadConfiguration(site);
+        invalidateConfiguration(site);
+        getSiteConfig(site);
+    }
+
+    @Override
+    @ValidateParams
+    public void invalidateConfiguration(@ValidateStringParam(name = "site") String site) {
+        if (siteConfigCache.remove(site) != null) {
+            cacheInvalidations.incrementAndGet();
+        }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "siteConfigCache";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size", siteConfigCache.size());
+        statistics.put("hits", cacheHits.get());
+        statistics.put("misses", cacheMisses.get());
+        statistics.put("reloads", cacheReloads.get());
+        statistics.put("invalidations", cacheInvalidations.get());
+        return statistics;
     }
 
     @Override
@@ -604,4 +667,18 @@ public class ServicesConfigImpl implements ServicesConfig {
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    /**
+     * Parsed site configuration along with the version of the file it was loaded from
+     */
+    protected static class CachedSiteConfig {
+
+        protected final String version;
+        protected final SiteConfigTO config;
+
+        protected CachedSiteConfig(String version, SiteConfigTO config) {
+            this.version = version;
+            this.config = config;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.content;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.constant.DmConstants;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.RepositoryItem;
+import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
+import org.craftercms.studio.impl.v1.util.ContentUtils;
+
+/**
+ * Allocates the next available name for a copy of an item (name-1.xml, name-2.xml...). The names in use are taken
+ * from the child listing of the parent folder in the repository, and every allocated name is reserved for the
+ * parent folder during the reservation timeout so concurrent requests never get the same name before the new items
+ * are written.
+ */
+public class ContentNameAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentNameAllocator.class);
+
+    /** min time between sweeps of the expired reservations of all folders **/
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    protected ContentRepository contentRepository;
+    protected long reservationTimeout;
+
+    /** reserved names and their expiration time, by site and parent folder **/
+    protected final Map<String, Map<String, Long>> reservations = new ConcurrentHashMap<String, Map<String, Long>>();
+    protected final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Get the next available name for a copy of an item and reserve it
+     *
+     * @param site site id
+     * @param path path of the item, for pages either the folder or its index file
+     * @return the name, or the current name of the item if it doesn't exist
+     */
+    public String allocate(String site, String path) {
+        if (StringUtils.equals(ContentUtils.getPageName(path), DmConstants.INDEX_FILE)) {
+            path = ContentUtils.getParentUrl(path);
+        }
+        String name = ContentUtils.getPageName(path);
+        if (!contentRepository.contentExists(site, path)) {
+            return name;
+        }
+
+        boolean folder = contentRepository.isFolder(site, path);
+        int extIndex = name.lastIndexOf(".");
+        String ext = (folder || extIndex <= 0) ? StringUtils.EMPTY : name.substring(extIndex);
+        String originalName = name.substring(0, name.length() - ext.length());
+        String parentPath = ContentUtils.getParentUrl(path);
+
+        Pattern pattern = Pattern.compile(Pattern.quote(originalName) + "-([0-9]+)" + Pattern.quote(ext));
+        int lastNumber = 0;
+        RepositoryItem[] children = contentRepository.getContentChildren(site, parentPath);
+        if (children != null) {
+            for (RepositoryItem child : children) {
+                if (child.isFolder == folder) {
+                    Matcher matcher = pattern.matcher(child.name);
+                    if (matcher.matches()) {
+                        lastNumber = Math.max(lastNumber, ContentFormatUtils.getIntValue(matcher.group(1)));
+                    }
+                }
+            }
+        }
+        return reserve(site + ":" + parentPath, originalName, ext, lastNumber);
+    }
+
+    /**
+     * Reserve the first name after the given number that is not reserved yet for the folder
+     */
+    protected String reserve(String key, String originalName, String ext, int lastNumber) {
+        sweepIfNeeded();
+        String[] reserved = new String[1];
+        reservations.compute(key, (k, names) -> {
+            long now = System.currentTimeMillis();
+            Map<String, Long> folderNames = names != null ? names : new HashMap<String, Long>();
+            folderNames.values().removeIf(expiration -> expiration < now);
+            int number = lastNumber;
+            String candidate;
+            do {
+                candidate = originalName + "-" + ++number + ext;
+            } while (folderNames.containsKey(candidate));
+            folderNames.put(candidate, now + reservationTimeout);
+            reserved[0] = candidate;
+            return folderNames;
+        });
+        logger.debug("Reserved name " + reserved[0] + " for " + key);
+        return reserved[0];
+    }
+
+    /**
+     * Remove the expired reservations of all folders, at most once per sweep interval
+     */
+    protected void sweepIfNeeded() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String key : reservations.keySet()) {
+            reservations.computeIfPresent(key, (k, names) -> {
+                names.values().removeIf(expiration -> expiration < now);
+                return names.isEmpty() ? null : names;
+            });
+        }
+    }
+
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    public long getReservationTimeout() {
+        return reservationTimeout;
+    }
+
+    public void setReservationTimeout(long reservationTimeout) {
+        this.reservationTimeout = reservationTimeout;
+    }
+}
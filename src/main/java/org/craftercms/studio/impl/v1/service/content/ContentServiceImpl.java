@@ -18,11 +18,15 @@ package org.craftercms.studio.impl.v1.service.content;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +59,7 @@ import org.craftercms.studio.api.v1.exception.security.AuthenticationException;
 import org.craftercms.studio.api.v1.executor.ProcessContentExecutor;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentChangeSet;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
@@ -74,6 +79,7 @@ import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.to.ContentAssetInfoTO;
+import org.craftercms.studio.api.v1.to.ContentCopyTO;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
 import org.craftercms.studio.api.v1.to.CopyDependencyConfigTO;
@@ -88,7 +94,6 @@ import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v2.dal.AuditLog;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.security.UserService;
-import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentItemOrderComparator;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 
@@ -115,8 +120,13 @@ import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_TAXONOMY_REGEX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_UNKNOWN;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_COUNT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_TO_PATH;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_MESSAGE_USERNAME_VAR;
 import static org.craftercms.studio.api.v1.ebus.EBusConstants.EVENT_PREVIEW_SYNC;
 import static org.craftercms.studio.api.v1.service.objectstate.TransitionEvent.REVERT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_COPY_CONTENT_TREE_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v1.service.objectstate.TransitionEvent.SAVE;
 import static org.craftercms.studio.api.v1.service.objectstate.TransitionEvent.SAVE_FOR_PREVIEW;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
@@ -162,6 +172,7 @@ public class ContentServiceImpl implements ContentService {
     protected EntitlementValidator entitlementValidator;
     protected AuditServiceInternal auditServiceInternal;
     protected UserService userService;
+    protected ContentNameAllocator contentNameAllocator;
 
     /**
      * file and folder name patterns for copied files and folders
@@ -845,6 +856,345 @@ public class ContentServiceImpl implements ContentService {
         return retNewFileName;
     }
 
+    @Override
+    @ValidateParams
+    public Set<String> copyContentTree(@ValidateStringParam(name = "site") String site, List<ContentCopyTO> items,
+                                       @ValidateSecurePathParam(name = "toPath") String toPath) {
+        Set<String> copiedPaths = new LinkedHashSet<String>();
+        long startTime = System.currentTimeMillis();
+
+        // Plan the whole copy in memory, nothing is written until all the new paths and contents are known
+        ContentCopyPlan plan = new ContentCopyPlan(countCopyItems(items));
+        for (ContentCopyTO item : items) {
+            planCopyTree(site, item, toPath, plan, copiedPaths);
+        }
+        if (plan.changeSet.isEmpty()) {
+            return copiedPaths;
+        }
+        logger.info("Planned the copy of " + plan.plannedItems + " items to " + toPath + " for site " + site +
+                " (" + plan.files.size() + " files, " + plan.folders.size() + " folders) in " +
+                (System.currentTimeMillis() - startTime) + " ms");
+
+        long phaseStart = System.currentTimeMillis();
+        String user = securityService.getCurrentUser();
+        String comment = studioConfiguration.getProperty(REPO_COPY_CONTENT_TREE_COMMIT_MESSAGE)
+                .replace(REPO_COMMIT_MESSAGE_USERNAME_VAR, user)
+                .replaceAll(PATTERN_COUNT, Integer.toString(plan.plannedItems))
+                .replaceAll(PATTERN_TO_PATH, toPath);
+        String commitId = _contentRepository.commitChangeSet(site, plan.changeSet, comment, null);
+        if (StringUtils.isEmpty(commitId)) {
+            logger.error("Failed to commit the copy of " + plan.plannedItems + " items to " + toPath +
+                    " for site " + site);
+            return new LinkedHashSet<String>();
+        }
+        logger.info("Committed the copy of " + plan.plannedItems + " items to " + toPath + " for site " + site +
+                " in " + (System.currentTimeMillis() - phaseStart) + " ms");
+
+        applyCopyPlan(site, user, commitId, plan);
+
+        logger.info("Finished the copy of " + plan.plannedItems + " items to " + toPath + " for site " + site +
+                " in " + (System.currentTimeMillis() - startTime) + " ms");
+        return copiedPaths;
+    }
+
+    protected int countCopyItems(List<ContentCopyTO> items) {
+        int count = 0;
+        if (items != null) {
+            for (ContentCopyTO item : items) {
+                count += 1 + countCopyItems(item.getChildren());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plan the copy of an item and then of its children into the copy
+     */
+    protected void planCopyTree(String site, ContentCopyTO item, String toPath, ContentCopyPlan plan,
+                                Set<String> copiedPaths) {
+        String copyPath = planCopy(site, item.getFromPath(), toPath, plan);
+        plan.itemPlanned(site);
+        if (copyPath == null) {
+            // same as a single copy, the children can't be copied if the parent failed
+            return;
+        }
+        copiedPaths.add(copyPath);
+        if (item.getChildren() != null) {
+            for (ContentCopyTO child : item.getChildren()) {
+                planCopyTree(site, child, copyPath, plan, copiedPaths);
+            }
+        }
+    }
+
+    /**
+     * Bulk version of {@link #copyContent(String, String, String, Set)}: the new path, object ids and copy
+     * dependencies are calculated the same way, but the changes are only added to the plan
+     *
+     * @return the path of the copy, null if the item can't be copied
+     */
+    protected String planCopy(String site, String fromPath, String toPath, ContentCopyPlan plan) {
+        String copyPath = null;
+        try {
+            Map<String, String> copyPathMap = constructNewPathforCutCopy(site, fromPath, toPath, true, plan.paths);
+            copyPath = copyPathMap.get("FILE_PATH");
+            String copyPathModifier = copyPathMap.get("MODIFIER");
+            String copyPathFileName = copyPathMap.get("FILE_NAME");
+            String copyPathFolder = copyPathMap.get("FILE_FOLDER");
+            String copyPathOnly = copyPath.substring(0, copyPath.lastIndexOf(FILE_SEPARATOR));
+
+            if (_contentRepository.isFolder(site, fromPath)) {
+                plan.addFolder(copyPath);
+                return copyPath;
+            }
+            if (!fromPath.endsWith(DmConstants.XML_PATTERN)) {
+                if (!contentExists(site, fromPath)) {
+                    logger.debug("Content not found while copying content for site {0} from {1} to {2}",
+                            site, fromPath, toPath);
+                    return null;
+                }
+                plan.addCopy(fromPath, copyPath);
+                return copyPath;
+            }
+
+            Document fromDocument = getContentAsDocument(site, fromPath);
+            if (fromDocument == null) {
+                logger.debug("Content not found while copying content for site {0} from {1} to {2}",
+                        site, fromPath, toPath);
+                return null;
+            }
+            String contentType = fromDocument.getRootElement().valueOf(DmXmlConstants.ELM_CONTENT_TYPE);
+            Map<String, String> fromPageIds = getContentIds(fromDocument);
+
+            logger.debug("copying file for site {0} from {1} to {2}, new name is {3}",
+                    site, fromPath, toPath, copyPath);
+
+            // come up with a new object ID and group ID for the object
+            Map<String, String> copyObjectIds = contentItemIdGenerator.getIds();
+
+            // track the items being copied so a circular dependency points to the copy instead of copying again
+            plan.inProgress.put(fromPath, copyPath);
+            try {
+                Map<String, String> copyDependencies = getCopyDependenciesForContentType(site, contentType, fromPath);
+                copyDependencies = getItemSpecificDependencies(site, fromPath, fromDocument, copyDependencies);
+
+                logger.debug("Calculated copy dependencies: {0}, {1}", fromPath, copyDependencies);
+
+                // Duplicate the children
+                for (String dependencyKey : copyDependencies.keySet()) {
+                    String dependencyPath = copyDependencies.get(dependencyKey);
+                    String copyDepPath = dependencyPath;
+
+                    // try a simple substitution
+                    if (fromPageIds.containsKey(DmConstants.KEY_PAGE_ID)) {
+                        copyDepPath = copyDepPath.replaceAll(
+                                fromPageIds.get(DmConstants.KEY_PAGE_ID),
+                                copyObjectIds.get(DmConstants.KEY_PAGE_ID));
+                    }
+                    if (fromPageIds.containsKey(DmConstants.KEY_PAGE_GROUP_ID)) {
+                        copyDepPath = copyDepPath.replaceAll(
+                                fromPageIds.get(DmConstants.KEY_PAGE_GROUP_ID),
+                                copyObjectIds.get(DmConstants.KEY_PAGE_GROUP_ID));
+                    }
+
+                    if (plan.folders.contains(copyDepPath) || (contentExists(site, copyDepPath) &&
+                            _contentRepository.isFolder(site, copyDepPath))) {
+                        copyDepPath = copyDepPath + FILE_SEPARATOR + FilenameUtils.getName(dependencyKey);
+                        copyDepPath = copyDepPath.replaceAll(FILE_SEPARATOR + FILE_SEPARATOR,
+                                FILE_SEPARATOR);
+                    } else if (!copyDepPath.endsWith(DmConstants.XML_PATTERN)) {
+                        copyDepPath = ContentUtils.getParentUrl(copyDepPath);
+                    }
+
+                    logger.debug("Translated dependency path from {0} to {1}", dependencyPath, copyDepPath);
+
+                    String newCopyDepPath = plan.inProgress.get(dependencyKey);
+                    if (newCopyDepPath == null) {
+                        newCopyDepPath = planCopy(site, dependencyKey, copyDepPath, plan);
+                    }
+                    if (newCopyDepPath != null) {
+                        fromDocument = replaceCopyDependency(fromDocument, dependencyKey, newCopyDepPath);
+                    }
+                }
+            } finally {
+                plan.inProgress.remove(fromPath);
+            }
+
+            // update the file name / folder values
+            Document copyDocument = updateContentOnCopy(fromDocument, copyPathFileName, copyPathFolder,
+                    copyObjectIds, copyPathModifier);
+            dmPageNavigationOrderService.addNavOrder(site, copyPathOnly, copyDocument);
+
+            plan.addFile(copyPath, contentType, ContentUtils.convertDocumentToStream(copyDocument, CONTENT_ENCODING));
+            return copyPath;
+        } catch (DocumentException e) {
+            logger.error("General Error while copying content for site {0} from {1} to {2}, new name is {3}", e,
+                    site, fromPath, toPath, copyPath);
+        } catch (ServiceLayerException e) {
+            logger.info("General Error while copying content for site {0} from {1} to {2}, new name is {3}", e,
+                    site, fromPath, toPath, copyPath);
+        }
+        return null;
+    }
+
+    /**
+     * Update the database for a copy plan that has been committed: item states, metadata and dependencies are
+     * updated with one statement per batch of paths instead of once per item
+     */
+    protected void applyCopyPlan(String site, String user, String commitId, ContentCopyPlan plan) {
+        long phaseStart = System.currentTimeMillis();
+        List<String> files = new ArrayList<String>(plan.files.keySet());
+
+        // Only items without state get a new one, same as a single copy
+        Map<String, ItemState> states = objectStateService.getObjectStates(site, files);
+        List<String> newStates = new ArrayList<String>();
+        for (String path : files) {
+            if (!states.containsKey(path)) {
+                newStates.add(path);
+            }
+        }
+        objectStateService.transitionBulk(site, newStates, SAVE);
+
+        Set<String> existingMetadata = objectMetadataManager.getProperties(site, files).keySet();
+        List<String> newMetadata = new ArrayList<String>();
+        Map<String, List<String>> filesByName = new HashMap<String, List<String>>();
+        for (String path : files) {
+            if (!existingMetadata.contains(path)) {
+                newMetadata.add(path);
+            }
+            filesByName.computeIfAbsent(FilenameUtils.getName(path), n -> new ArrayList<String>()).add(path);
+        }
+        objectMetadataManager.insertNewObjectMetadata(site, newMetadata);
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        // Most of the copied items are index.xml files, so grouping by name keeps the number of statements low
+        for (Map.Entry<String, List<String>> entry : filesByName.entrySet()) {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(ItemMetadata.PROP_NAME, entry.getKey());
+            properties.put(ItemMetadata.PROP_MODIFIED, now);
+            properties.put(ItemMetadata.PROP_CREATOR, user);
+            properties.put(ItemMetadata.PROP_MODIFIER, user);
+            properties.put(ItemMetadata.PROP_OWNER, user);
+            properties.put(ItemMetadata.PROP_LOCK_OWNER, StringUtils.EMPTY);
+            properties.put(ItemMetadata.PROP_COMMIT_ID, commitId);
+            objectMetadataManager.setObjectMetadata(site, entry.getValue(), properties);
+        }
+        _contentRepository.insertGitLog(site, commitId, 1);
+        siteService.updateLastCommitId(site, commitId);
+        logger.info("Updated item state and metadata of " + files.size() + " copied items for site " + site +
+                " in " + (System.currentTimeMillis() - phaseStart) + " ms");
+
+        phaseStart = System.currentTimeMillis();
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+        for (int i = 0; i < files.size(); i += batchSize) {
+            List<String> batch = files.subList(i, Math.min(i + batchSize, files.size()));
+            try {
+                dependencyService.upsertDependencies(site, batch);
+            } catch (ServiceLayerException e) {
+                logger.error("Error extracting dependencies for site " + site + " files: " + batch, e);
+            }
+            logger.info("Extracted dependencies for " + (i + batch.size()) + " of " + files.size() +
+                    " copied items of site " + site);
+        }
+        logger.debug("Extracted dependencies of copied items for site " + site + " in " +
+                (System.currentTimeMillis() - phaseStart) + " ms");
+
+        try {
+            SiteFeed siteFeed = siteService.getSite(site);
+            List<AuditLog> auditLogs = new ArrayList<AuditLog>();
+            for (String folder : plan.folders) {
+                AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                auditLog.setOperation(OPERATION_CREATE);
+                auditLog.setSiteId(siteFeed.getId());
+                auditLog.setActorId(user);
+                auditLog.setPrimaryTargetId(site + ":" + folder);
+                auditLog.setPrimaryTargetType(TARGET_TYPE_FOLDER);
+                auditLog.setPrimaryTargetValue(folder);
+                auditLogs.add(auditLog);
+            }
+            for (String path : files) {
+                AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                auditLog.setOperation(OPERATION_CREATE);
+                auditLog.setSiteId(siteFeed.getId());
+                auditLog.setActorId(user);
+                auditLog.setPrimaryTargetId(site + ":" + path);
+                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+                auditLog.setPrimaryTargetValue(path);
+                auditLog.setPrimaryTargetSubtype(getContentTypeClass(site, path));
+                auditLogs.add(auditLog);
+            }
+            auditServiceInternal.insertAuditLogs(auditLogs);
+        } catch (SiteNotFoundException e) {
+            logger.error("Error inserting the audit log of copied items for site " + site, e);
+        }
+
+        // Content type scripts run for every copied item, like the form content chain does
+        for (Map.Entry<String, String> entry : plan.files.entrySet()) {
+            if (StringUtils.isNotEmpty(entry.getValue())) {
+                dmContentLifeCycleService.process(site, user, entry.getKey(), entry.getValue(),
+                        DmContentLifeCycleService.ContentLifeCycleOperation.COPY, null);
+            }
+        }
+
+        PreviewEventContext context = new PreviewEventContext();
+        context.setSite(site);
+        eventService.publish(EVENT_PREVIEW_SYNC, context);
+    }
+
+    /**
+     * Changes planned by a tree copy, see {@link #copyContentTree(String, List, String)}
+     */
+    protected static class ContentCopyPlan {
+
+        /** number of planned items between progress logs **/
+        private static final int PROGRESS_INTERVAL = 100;
+
+        protected final ContentChangeSet changeSet = new ContentChangeSet();
+        // paths created by the copy, including the parent folders of the files
+        protected final Set<String> paths = new HashSet<String>();
+        protected final Set<String> folders = new LinkedHashSet<String>();
+        // content type of the copied files by path, null for files that are not XML
+        protected final Map<String, String> files = new LinkedHashMap<String, String>();
+        // copy path of the items being planned by source path
+        protected final Map<String, String> inProgress = new HashMap<String, String>();
+        protected final int totalItems;
+        protected int plannedItems;
+
+        protected ContentCopyPlan(int totalItems) {
+            this.totalItems = totalItems;
+        }
+
+        protected void addFolder(String path) {
+            changeSet.createFolder(path);
+            folders.add(path);
+            addPath(path);
+        }
+
+        protected void addFile(String path, String contentType, InputStream content) {
+            changeSet.write(path, content);
+            files.put(path, contentType);
+            addPath(path);
+        }
+
+        protected void addCopy(String fromPath, String toPath) {
+            changeSet.copy(fromPath, toPath);
+            files.put(toPath, null);
+            addPath(toPath);
+        }
+
+        protected void addPath(String path) {
+            String current = path;
+            while (StringUtils.isNotEmpty(current) && !FILE_SEPARATOR.equals(current) && paths.add(current)) {
+                current = ContentUtils.getParentUrl(current);
+            }
+        }
+
+        protected void itemPlanned(String site) {
+            plannedItems++;
+            if (plannedItems % PROGRESS_INTERVAL == 0) {
+                logger.info("Planned the copy of " + plannedItems + " of " + totalItems + " items for site " + site);
+            }
+        }
+    }
+
     protected Document replaceCopyDependency(Document document, String depPath, String copyDepPath) {
         Element root = document.getRootElement();
         List<Node> includes = root.selectNodes(COPY_DEP_XPATH.replace(COPY_DEP, depPath));
@@ -866,30 +1216,41 @@ public class ContentServiceImpl implements ContentService {
         if(sourceContentPath.endsWith(DmConstants.XML_PATTERN) && dependencyPath.endsWith(DmConstants.XML_PATTERN)){
             ContentItemTO dependencyItem = getContentItem(site, sourceContentPath);
             if (dependencyItem != null) {
-                String contentType = dependencyItem.getContentType();
-                List<CopyDependencyConfigTO> copyDependencyPatterns =
-                        servicesConfig.getCopyDependencyPatterns(site, contentType);
-                if (copyDependencyPatterns != null && copyDependencyPatterns.size() > 0) {
-                    logger.debug("Copy Pattern provided for contentType" + contentType);
-                    Set<String> dependencies = dependencyService.getItemDependencies(site, dependencyPath, 1);
-                    if (CollectionUtils.isNotEmpty(dependencies)) {
-                        for (String dependency : dependencies) {
-                            for (CopyDependencyConfigTO copyConfig : copyDependencyPatterns) {
-                                if (contentExists(site, dependency) &&
-                                        StringUtils.isNotEmpty(copyConfig.getPattern()) &&
-                                        StringUtils.isNotEmpty(copyConfig.getTarget()) &&
-                                        dependency.matches(copyConfig.getPattern())) {
-                                    copyDependency.put(dependency, copyConfig.getTarget());
-                                }
-                            }
+                copyDependency = getCopyDependenciesForContentType(site, dependencyItem.getContentType(),
+                        dependencyPath);
+            } else {
+                logger.debug("Not found dependency item at site {0} path {!}", site, sourceContentPath);
+            }
+        }
+        return copyDependency;
+    }
+
+    /**
+     * Get the copy dependencies of an item when its content type is already known
+     */
+    private Map<String, String> getCopyDependenciesForContentType(String site, String contentType,
+                                                                 String dependencyPath)
+            throws ServiceLayerException {
+        Map<String,String> copyDependency = new HashMap<String,String>();
+        List<CopyDependencyConfigTO> copyDependencyPatterns =
+                servicesConfig.getCopyDependencyPatterns(site, contentType);
+        if (copyDependencyPatterns != null && copyDependencyPatterns.size() > 0) {
+            logger.debug("Copy Pattern provided for contentType" + contentType);
+            Set<String> dependencies = dependencyService.getItemDependencies(site, dependencyPath, 1);
+            if (CollectionUtils.isNotEmpty(dependencies)) {
+                for (String dependency : dependencies) {
+                    for (CopyDependencyConfigTO copyConfig : copyDependencyPatterns) {
+                        if (contentExists(site, dependency) &&
+                                StringUtils.isNotEmpty(copyConfig.getPattern()) &&
+                                StringUtils.isNotEmpty(copyConfig.getTarget()) &&
+                                dependency.matches(copyConfig.getPattern())) {
+                            copyDependency.put(dependency, copyConfig.getTarget());
                         }
                     }
-                } else {
-                    logger.debug("Copy Pattern is not provided for contentType" + contentType);
                 }
-            } else {
-                logger.debug("Not found dependency item at site {0} path {!}", site, sourceContentPath);
             }
+        } else {
+            logger.debug("Copy Pattern is not provided for contentType" + contentType);
         }
         return copyDependency;
     }
@@ -938,7 +1299,9 @@ public class ContentServiceImpl implements ContentService {
                 updateChildrenOnMove(site, fromPath, movePath);
                 for (Map.Entry<String, String> entry : commitIds.entrySet()) {
                     objectMetadataManager.updateCommitId(site, FILE_SEPARATOR + entry.getKey(), entry.getValue());
-                    _contentRepository.insertGitLog(site, entry.getValue(), 1);
+                }
+                for (String commitId : new HashSet<String>(commitIds.values())) {
+                    _contentRepository.insertGitLog(site, commitId, 1);
                 }
                 siteService.updateLastCommitId(site, _contentRepository.getRepoLastCommitId(site));
             }
@@ -1073,6 +1436,16 @@ public class ContentServiceImpl implements ContentService {
 
     protected Map<String, String> constructNewPathforCutCopy(String site, String fromPath, String toPath,
                                                              boolean adjustOnCollide) throws ServiceLayerException {
+        return constructNewPathforCutCopy(site, fromPath, toPath, adjustOnCollide, Collections.emptySet());
+    }
+
+    /**
+     * @param plannedPaths paths that don't exist yet but will be created by the same operation, they are considered
+     *                     existing to detect collisions
+     */
+    protected Map<String, String> constructNewPathforCutCopy(String site, String fromPath, String toPath,
+                                                             boolean adjustOnCollide, Set<String> plannedPaths)
+            throws ServiceLayerException {
         Map<String, String> result = new HashMap<String, String>();
 
         // The following rules apply to content under the site folder
@@ -1105,7 +1478,7 @@ public class ContentServiceImpl implements ContentService {
         String proposedDestPath_folder = null;
         boolean targetPathExistsPriorToOp = false;
 
-        targetPathExistsPriorToOp = contentExists(site, toPath);
+        targetPathExistsPriorToOp = contentExists(site, toPath) || plannedPaths.contains(toPath);
 
         if(fromFileIsIndex && newFileIsIndex) {
             // Example MOVE LOCATION, INDEX FILES
@@ -1189,7 +1562,7 @@ public class ContentServiceImpl implements ContentService {
 
         if(adjustOnCollide == true) {
             // if adjustOnCollide is true we need to check, otherwise we don't
-            contentExists = contentExists(site, proposedDestPath);
+            contentExists = contentExists(site, proposedDestPath) || plannedPaths.contains(proposedDestPath);
         }
 
         if(adjustOnCollide && contentExists) {
@@ -1537,7 +1910,7 @@ public class ContentServiceImpl implements ContentService {
         }
     }
 
-    protected ContentItemTO populateItemChildren(ContentItemTO item, int depth) {
+    protected ContentItemTO populateItemChildren(ContentItemTO item, int depth, List<ContentItemTO> items) {
         // TODO: SJ: Refactor  in 3.1+
         String contentPath = item.uri;
 
@@ -1579,10 +1952,11 @@ public class ContentServiceImpl implements ContentService {
                             if (childPath.startsWith(FILE_SEPARATOR + "site" + FILE_SEPARATOR + "website" +
                                     FILE_SEPARATOR) && childRepoItems[j].isFolder &&
                                     contentExists(item.site,childPath + FILE_SEPARATOR + DmConstants.INDEX_FILE )) {
-                                children.add(getContentItem(item.site, childPath + FILE_SEPARATOR +
-                                        DmConstants.INDEX_FILE, depth - 1));
-                            } else {
-                                children.add(getContentItem(item.site, childPath, depth - 1));
+                                childPath = childPath + FILE_SEPARATOR + DmConstants.INDEX_FILE;
+                            }
+                            ContentItemTO child = assembleChildContentItem(item.site, childPath, depth - 1, items);
+                            if (child != null) {
+                                children.add(child);
                             }
                         }
                     }
@@ -1651,23 +2025,11 @@ public class ContentServiceImpl implements ContentService {
 
         try {
             if (contentExists(site, path)) {
-                // get item from cache
-                item = loadContentItem(site, path);
-
-                if (depth != 0) {
-                    item = populateItemChildren(item, depth);
-                }
-
-                // POPULATE LOCK STATUS
-                populateMetadata(site, item);
+                List<ContentItemTO> items = new ArrayList<ContentItemTO>();
+                item = assembleContentItem(site, path, depth, items);
 
-                // POPULATE WORKFLOW STATUS
-                if (!item.isFolder() || item.isContainer()) {
-                    populateWorkflowProperties(site, item);
-                } else {
-                    item.setNew(!objectStateService.isFolderLive(site, item.getUri()));
-                    item.isNew = item.isNew();
-                }
+                // POPULATE LOCK AND WORKFLOW STATUS
+                populateItemsStatus(site, items);
             } else {
                 item = createDummyDmContentItemForDeletedNode(site, path);
             }
@@ -1682,6 +2044,74 @@ public class ContentServiceImpl implements ContentService {
         return item;
     }
 
+    /**
+     * Load an item and its children up to the given depth from the repository. Every item of the tree is added to
+     * the list so their database properties can be populated in bulk afterwards.
+     *
+     * @param site site id
+     * @param path path of the item
+     * @param depth depth of the children to load
+     * @param items list to add the loaded items to
+     * @return the item
+     */
+    protected ContentItemTO assembleContentItem(String site, String path, int depth, List<ContentItemTO> items) {
+        ContentItemTO item = loadContentItem(site, path);
+        if (depth != 0) {
+            item = populateItemChildren(item, depth, items);
+        }
+        items.add(item);
+        return item;
+    }
+
+    protected ContentItemTO assembleChildContentItem(String site, String path, int depth,
+                                                     List<ContentItemTO> items) {
+        // Children come from the repository listing so there is no need to check if they exist
+        ContentItemTO child = null;
+        try {
+            child = assembleContentItem(site, path, depth, items);
+        } catch (Exception err) {
+            logger.debug("error constructing item for object at site '{}' path '{}'", err, site, path);
+        }
+        return child;
+    }
+
+    /**
+     * Populate the lock and workflow status for all the items of a tree with one query per table
+     *
+     * @param site site id
+     * @param items items to populate
+     */
+    protected void populateItemsStatus(String site, List<ContentItemTO> items) {
+        List<String> paths = new ArrayList<String>(items.size());
+        List<String> folderPaths = new ArrayList<String>();
+        for (ContentItemTO item : items) {
+            paths.add(item.getUri());
+            if (item.isFolder()) {
+                folderPaths.add(item.getUri());
+            }
+        }
+        Map<String, ItemMetadata> metadata = objectMetadataManager.getProperties(site, paths);
+        Map<String, ItemState> states = objectStateService.getObjectStates(site, paths);
+        Set<String> liveFolders = folderPaths.isEmpty() ? Collections.<String>emptySet() :
+                objectStateService.getLiveFolders(site, folderPaths);
+
+        for (ContentItemTO item : items) {
+            String cleanPath = FilenameUtils.normalize(item.getUri(), true);
+            boolean liveFolder = liveFolders.contains(cleanPath);
+
+            // POPULATE LOCK STATUS
+            populateMetadata(item, metadata.get(cleanPath));
+
+            // POPULATE WORKFLOW STATUS
+            if (!item.isFolder() || item.isContainer()) {
+                populateWorkflowProperties(item, states.get(cleanPath), liveFolder);
+            } else {
+                item.setNew(!liveFolder);
+                item.isNew = item.isNew();
+            }
+        }
+    }
+
     protected ContentItemTO loadContentItem(String site, String path) {
         // TODO: SJ: Refactor such that the populate of non-XML is also a method in 3.1+
         ContentItemTO item = createNewContentItemTO(site, path);
@@ -1749,11 +2179,9 @@ public class ContentServiceImpl implements ContentService {
         // TODO CodeRev:but what if the config is null?
     }
 
-    protected void populateWorkflowProperties(String site, ContentItemTO item) {
-        ItemState state = objectStateService.getObjectState(site, item.getUri(), false);
+    protected void populateWorkflowProperties(ContentItemTO item, ItemState state, boolean liveFolder) {
         if (state != null) {
             if (item.isFolder()) {
-                boolean liveFolder = objectStateService.isFolderLive(site, item.getUri());
                 item.setNew(!liveFolder);
                 item.setLive(liveFolder);
             } else {
@@ -1772,7 +2200,6 @@ public class ContentServiceImpl implements ContentService {
             item.isInFlight = item.isInFlight();
         } else {
             if (item.isFolder()) {
-                boolean liveFolder = objectStateService.isFolderLive(site, item.getUri());
                 item.setNew(!liveFolder);
                 item.setLive(liveFolder);
                 item.isNew = item.isNew();
@@ -1783,14 +2210,13 @@ public class ContentServiceImpl implements ContentService {
         }
     }
 
-    protected void populateMetadata(String site, ContentItemTO item) {
+    protected void populateMetadata(ContentItemTO item, ItemMetadata metadata) {
         // TODO: SJ: Refactor to return a ContentItemTO instead of changing the parameter
         // TODO: SJ: Change method name to be getContentItemMetadata or similar
         // TODO: SJ: 3.1+
 
         // TODO: SJ: Create a method String getValueIfNotNull(String) to use to return not null/empty string if null
         // TODO: SJ: Use that method to reduce redundant code here. 3.1+
-        ItemMetadata metadata = objectMetadataManager.getProperties(site, item.getUri());
         if (metadata != null) {
             // Set the lock owner to empty string if we get a null to not confuse the UI, or set it to what's in the
             // database if it's not null
@@ -2064,14 +2490,7 @@ public class ContentServiceImpl implements ContentService {
     }
 
     protected boolean matchesPatterns(String uri, List<String> patterns) {
-        if (patterns != null) {
-            for (String pattern : patterns) {
-                if (uri.matches(pattern)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return ContentUtils.matchesPatterns(uri, patterns);
     }
 
     @Override
@@ -2104,58 +2523,11 @@ public class ContentServiceImpl implements ContentService {
     @ValidateParams
     public String getNextAvailableName(@ValidateStringParam(name = "site") String site,
                                        @ValidateSecurePathParam(name = "path") String path) {
-        // TODO: SJ: Refactor to be faster, and make it work regardless (seems to fail above 10) in 3.1+
-        String[] levels = path.split(FILE_SEPARATOR);
-        int length = levels.length;
-        if (length > 0) {
-            ContentItemTO item = getContentItem(site, path, 0);
-            if (item != null) {
-                String name = ContentUtils.getPageName(path);
-                String parentPath = ContentUtils.getParentUrl(path);
-                ContentItemTO parentItem = getContentItemTree(site, parentPath, 1);
-                if (parentItem != null) {
-                    int lastIndex = name.lastIndexOf(".");
-                    String ext = (item.isFolder()) ? "" : name.substring(lastIndex);
-                    String originalName = (item.isFolder() ||
-                            item.isContainer()) ? name : name.substring(0, lastIndex);
-                    List<ContentItemTO> children = parentItem.getChildren();
-                    // pattern matching doesn't work here
-                    // String childNamePattern = originalName + "%" + ext;
-                    int lastNumber = 0;
-                    String namePattern = originalName + "-[0-9]+" + ext;
-                    if (children != null && children.size() > 0) {
-                        // since it is already sorted, we only care about the last matching item
-                        for (ContentItemTO child : children) {
-                            if (((item.isFolder() || item.isContainer()) == (child.isFolder() ||
-                                    child.isContainer()))) {
-                                String childName = child.getName();
-                                if ((child.isFolder() || child.isContainer())) {
-                                    childName = ContentUtils.getPageName(child.getBrowserUri());
-                                }
-                                if (childName.matches(namePattern)) {
-                                    Pattern pattern = (item.isFolder() ||
-                                            item.isContainer()) ? COPY_FOLDER_PATTERN : COPY_FILE_PATTERN;
-                                    Matcher matcher = pattern.matcher(childName);
-                                    if (matcher.matches()) {
-                                        int helper = ContentFormatUtils.getIntValue(matcher.group(2));
-                                        lastNumber = (helper > lastNumber) ? helper : lastNumber;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    String nextName = originalName + "-" + ++lastNumber + ext;
-                    return nextName;
-                } else {
-                    // if parent doesn't exist, it is new item so the current name is available one
-                }
-            }
-        } else {
+        if (path.split(FILE_SEPARATOR).length == 0) {
             // cannot generate a name
             return "";
         }
-        // if not found the current name is available
-        return levels[length - 1];
+        return contentNameAllocator.allocate(site, path);
     }
 
     @Override
@@ -2464,7 +2836,9 @@ public class ContentServiceImpl implements ContentService {
             updateChildrenOnMove(site, path, targetPath);
             for (Map.Entry<String, String> entry : commitIds.entrySet()) {
                 objectMetadataManager.updateCommitId(site, FILE_SEPARATOR + entry.getKey(), entry.getValue());
-                _contentRepository.insertGitLog(site, entry.getValue(), 1);
+            }
+            for (String commitId : new HashSet<String>(commitIds.values())) {
+                _contentRepository.insertGitLog(site, commitId, 1);
             }
             siteService.updateLastCommitId(site, _contentRepository.getRepoLastCommitId(site));
 
@@ -2651,4 +3025,12 @@ public class ContentServiceImpl implements ContentService {
     public void setUserService(UserService userService) {
         this.userService = userService;
     }
-}
\ No newline at end of file
+
+    public ContentNameAllocator getContentNameAllocator() {
+        return contentNameAllocator;
+    }
+
+    public void setContentNameAllocator(ContentNameAllocator contentNameAllocator) {
+        this.contentNameAllocator = contentNameAllocator;
+    }
+}
@@ -20,22 +20,20 @@ package org.craftercms.studio.impl.v1.service.content;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
-import org.craftercms.studio.api.v1.constant.DmConstants;
-import org.craftercms.studio.api.v1.dal.ItemState;
-import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
+import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentChangeSet;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
-import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.ImportService;
 import org.craftercms.studio.api.v1.service.deployment.DmPublishService;
-import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
-import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
+import org.craftercms.studio.api.v1.service.event.EventService;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.service.workflow.context.MultiChannelPublishingContext;
-import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v1.to.ImportJobTO;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
@@ -47,20 +45,36 @@ import org.dom4j.Node;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
-import static org.craftercms.studio.api.v1.util.StudioConfiguration.IMPORT_ASSET_CHAIN_NAME;
+import static org.craftercms.studio.api.v1.ebus.EBusConstants.EVENT_PREVIEW_SYNC;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.IMPORT_ASSIGNEE;
-import static org.craftercms.studio.api.v1.util.StudioConfiguration.IMPORT_XML_CHAIN_NAME;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.IMPORT_CHECKPOINT_SIZE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.IMPORT_COMMIT_MESSAGE;
 
+/**
+ * Imports the content of a folder of the file system into sites. The files are streamed straight into the
+ * repository of the site in a single commit, or in a commit per checkpoint when a checkpoint size is configured,
+ * and the database is synced with each commit in bulk.
+ */
 public class ImportServiceImpl implements ImportService {
 
     private final static Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
 
+    private static final String PATTERN_SITE = "\\{site\\}";
+    private static final String PATTERN_COUNT = "\\{count\\}";
+    private static final long PAUSE_STEP = 1000;
+
+    /** running or last import of each site **/
+    protected final Map<String, ImportJob> jobs = new ConcurrentHashMap<String, ImportJob>();
+
     @Override
     @SuppressWarnings("unchecked")
     @ValidateParams
@@ -81,6 +95,9 @@ public class ImportServiceImpl implements ImportService {
                             ? Integer.valueOf(publishSize) : -1;
                     Node foldersNode = siteNode.selectSingleNode("folders");
                     String sourceLocation = buildDataLocation + FILE_SEPARATOR + name;
+                    String checkpointSizeStr = siteNode.valueOf("checkpoint-size");
+                    int checkpointSize = (!StringUtils.isEmpty(checkpointSizeStr) && StringUtils.isNumeric(checkpointSizeStr))
+                            ? Integer.valueOf(checkpointSizeStr) : getCheckpointSize();
                     String delayIntervalStr = siteNode.valueOf("delay-interval");
                     int delayInterval = (!StringUtils.isEmpty(delayIntervalStr) && StringUtils.isNumeric(delayIntervalStr))
                             ? Integer.valueOf(delayIntervalStr) : -1;
@@ -88,12 +105,31 @@ public class ImportServiceImpl implements ImportService {
                     int delayLength = (!StringUtils.isEmpty(delayLengthStr) && StringUtils.isNumeric(delayLengthStr))
                             ? Integer.valueOf(delayLengthStr) : -1;
 
-                    importFromConfigNode(name, publishingChannelGroup, foldersNode, sourceLocation, FILE_SEPARATOR, publish, chunkSize, delayInterval, delayLength);
+                    importFromConfigNode(name, publishingChannelGroup, foldersNode, sourceLocation, FILE_SEPARATOR, publish, chunkSize, checkpointSize, delayInterval, delayLength);
                 }
             }
         }
     }
 
+    @Override
+    @ValidateParams
+    public ImportJobTO getImportJob(@ValidateStringParam(name = "site") String site) {
+        ImportJob job = jobs.get(site);
+        return job != null ? job.toTO() : null;
+    }
+
+    @Override
+    @ValidateParams
+    public boolean cancelImport(@ValidateStringParam(name = "site") String site) {
+        ImportJob job = jobs.get(site);
+        if (job != null && job.status == ImportJobTO.Status.RUNNING) {
+            logger.info("[IMPORT] cancelling import in " + site);
+            job.cancelled = true;
+            return true;
+        }
+        return false;
+    }
+
     protected Document loadConfiguration(String configLocation) {
         logger.debug("[IMPORT] loading " + configLocation);
         InputStream in = null;
@@ -117,69 +153,65 @@ public class ImportServiceImpl implements ImportService {
     @SuppressWarnings("unchecked")
     private void importFromConfigNode(final String site, String publishChannelGroup, final Node node,
                                       final String fileRoot, final String targetRoot,
-                                      boolean publish, int chunkSize, int delayInterval, int delayLength) throws SiteNotFoundException {
-        if (!inProgress) {
-            inProgress = true;
-            if (delayInterval > 0) pauseEanbeld = true;
-            this.currentDelayInterval = delayInterval * 1000;
-            this.currentDelayLength = delayLength * 1000;
-            final Set<String> importedPaths = new HashSet<String>();
-            final List<String> importedFullPaths = new ArrayList<String>();
-            logger.info("[IMPORT] started importing in " + site
-                    + ", pause enabled: " + pauseEanbeld
-                    + ", delay interval: " + this.currentDelayInterval
-                    + ", delay length: " + this.currentDelayLength);
+                                      boolean publish, int chunkSize, int checkpointSize, int delayInterval,
+                                      int delayLength) throws SiteNotFoundException {
+        ImportJob job = new ImportJob(site, securityService.getCurrentUser(), delayInterval * 1000L,
+                delayLength * 1000L);
+        ImportJob currentJob = jobs.compute(site, (key, previous) ->
+                previous != null && previous.status == ImportJobTO.Status.RUNNING ? previous : job);
+        if (currentJob != job) {
+            logger.info("[IMPORT] an import process is currently running in " + site);
+            return;
+        }
 
+        logger.info("[IMPORT] started importing in " + site
+                + ", checkpoint size: " + checkpointSize
+                + ", delay interval: " + job.delayInterval
+                + ", delay length: " + job.delayLength);
+        try {
             boolean overWrite = ContentFormatUtils.getBooleanValue(node.valueOf("@over-write"));
             final List<Node> folderNodes = node.selectNodes("folder");
-            if (publish) {
-                String user = securityService.getCurrentUser();
-                logger.debug("[IMPORT] publishing user: " + user);
+            Set<String> folders = new LinkedHashSet<String>();
+            Map<String, ImportFile> files = new LinkedHashMap<String, ImportFile>();
+            collectFolders(folders, files, folderNodes, fileRoot, "", overWrite);
+            job.totalFiles = files.size();
 
-                this.nextStop = System.currentTimeMillis() + this.currentDelayInterval;
-                createFolders(site, importedPaths, importedFullPaths, folderNodes, fileRoot, targetRoot, "",
-                        overWrite, user);
+            List<String> importedFullPaths = importFiles(job, folders, files, targetRoot, checkpointSize);
+            if (publish && !job.cancelled && !importedFullPaths.isEmpty()) {
                 logger.info("Starting Publish of Imported Files (Total " + importedFullPaths.size() + " On chunkSize of " + chunkSize + " )");
                 publish(site, publishChannelGroup, targetRoot, importedFullPaths, chunkSize);
-            } else {
-                this.nextStop = System.currentTimeMillis() + this.currentDelayInterval;
-                createFolders(site, importedPaths, importedFullPaths, folderNodes, fileRoot, targetRoot, "",
-                        overWrite, null);
             }
-            inProgress = false;
-        } else {
-            logger.info("[IMPORT] an import process is currently running.");
+            job.finish(job.cancelled ? ImportJobTO.Status.CANCELLED : ImportJobTO.Status.COMPLETED, null);
+        } catch (Exception e) {
+            logger.error("[IMPORT] failed to import in " + site, e);
+            job.finish(ImportJobTO.Status.FAILED, e.getMessage());
         }
+        logger.info("[IMPORT] finished importing in " + site + " with status " + job.status + ": "
+                + job.importedFiles + " imported, " + job.skippedFiles + " skipped, " + job.failedFiles
+                + " failed of " + job.totalFiles + " files in " + job.commits + " commits");
     }
 
-
     /**
-     * create folders
+     * collect the folders and files to import
      *
-     * @param site
-     *            site name
-     * @param importedPaths
-     *            a list of imported files
-     * @param importedFullPaths
+     * @param folders
+     *            the target paths of the folders
+     * @param files
+     *            the files by target path
      * @param nodes
      *            nodes representing folders
      * @param fileRoot
      *            the root location of files/folders being imported
-     * @param targetRoot
-     *            the target location root
      * @param parentPath
      *            the target location to import to
      * @param overWrite
      *            overwrite contents?
-     * @param user
-     *
      */
     @SuppressWarnings("unchecked")
-    private void createFolders(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                               List<Node> nodes, String fileRoot, String targetRoot, String parentPath,
-                               boolean overWrite, String user) throws SiteNotFoundException {
-        logger.info("[IMPORT] createFolders : site[" + site + "] " + "] fileRoot [" + fileRoot + "] targetRoot [ "
-                + targetRoot + "] parentPath [" + parentPath + "] overwrite[" + overWrite + "]");
+    private void collectFolders(Set<String> folders, Map<String, ImportFile> files, List<Node> nodes,
+                                String fileRoot, String parentPath, boolean overWrite) {
+        logger.debug("[IMPORT] collectFolders : fileRoot [" + fileRoot + "] parentPath [" + parentPath
+                + "] overwrite[" + overWrite + "]");
 
         if (nodes != null) {
             for (Node node : nodes) {
@@ -190,26 +222,17 @@ public class ImportServiceImpl implements ImportService {
                 if (!StringUtils.isEmpty(name)) {
                     String currentFilePath = fileRoot + FILE_SEPARATOR + name;
                     String currentPath = parentPath + FILE_SEPARATOR + name;
-                    // check if the parent node exists and create the folder if
-                    // not
-                    boolean folderExists = contentService.contentExists(site, currentPath);
-                    if (!folderExists) {
-                        contentService.createFolder(site, parentPath, name);
-                    }
+                    folders.add(currentPath);
                     boolean importAll = ContentFormatUtils.getBooleanValue(node.valueOf("@import-all"));
                     if (importAll) {
-                        importRootFileList(site, importedPaths, importedFullPaths, fileRoot + FILE_SEPARATOR + name,
-                                targetRoot, currentPath, folderOverWrite, user);
-
+                        collectFileList(folders, files, new File(currentFilePath), currentPath, folderOverWrite);
                     } else {
-                        // create child folders
+                        // collect child folders
                         List<Node> childFolders = node.selectNodes("folder");
-                        createFolders(site, importedPaths, importedFullPaths, childFolders, currentFilePath,
-                                targetRoot, currentPath, folderOverWrite, user);
-                        // create child fiimportedPathsles
+                        collectFolders(folders, files, childFolders, currentFilePath, currentPath, folderOverWrite);
+                        // collect child files
                         List<Node> childFiles = node.selectNodes("file");
-                        createFiles(site, importedPaths, importedFullPaths, childFiles, currentFilePath,
-                                targetRoot, currentPath, folderOverWrite, user);
+                        collectFiles(files, childFiles, currentFilePath, currentPath, folderOverWrite);
                     }
                 }
             }
@@ -217,290 +240,213 @@ public class ImportServiceImpl implements ImportService {
     }
 
     /**
-     * import all files from the given file root
+     * collect all files and folders at the given folder
      *
-     * @param site
-     * @param importedPaths
-     * @param importedFullPaths
-     * @param fileRoot
-     * @param targetRoot
-     *            the target location root
+     * @param folders
+     *            the target paths of the folders
+     * @param files
+     *            the files by target path
+     * @param folder
+     *            the folder being imported
      * @param parentPath
      *            the target location to import to
      * @param overWrite
-     * @param user
+     *            overwrite contents?
      */
-    protected void importRootFileList(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                                      String fileRoot, String targetRoot, String parentPath, boolean overWrite, String user) throws SiteNotFoundException {
-        URL resourceUrl = getResourceUrl(fileRoot);
-        if (resourceUrl != null) {
-            String resourcePath = resourceUrl.getFile();
-            File file = new File(resourcePath);
-            if (file.isDirectory()) {
-                String[] children = file.list();
-                if (children != null && children.length > 0) {
-                    for (String childName : children) {
-                        File childFile = new File(resourcePath + FILE_SEPARATOR + childName);
-                        if (childFile.isDirectory()) {
-                            String currentPath = parentPath + FILE_SEPARATOR + childName;
-                            boolean folderExists = contentService.contentExists(site, currentPath);
-                            if (!folderExists) {
-                                contentService.createFolder(site, parentPath, childName);
-                            }
-                            logger.info("[IMPORT] Importing " + parentPath + FILE_SEPARATOR + childName);
-
-                            importFileList(site, importedPaths, importedFullPaths, fileRoot + FILE_SEPARATOR + childName,
-                                    targetRoot, parentPath + FILE_SEPARATOR + childName, overWrite, user);
-                            logger.info("[IMPORT] Finished Importing " + parentPath + FILE_SEPARATOR + childName);
-                        } else {
-                            writeContentInTransaction(site, importedPaths, importedFullPaths, fileRoot,
-                                    targetRoot, parentPath, childName, overWrite, user);
-                        }
+    protected void collectFileList(Set<String> folders, Map<String, ImportFile> files, File folder,
+                                   String parentPath, boolean overWrite) {
+        if (folder.isDirectory()) {
+            File[] children = folder.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    String currentPath = parentPath + FILE_SEPARATOR + child.getName();
+                    if (child.isDirectory()) {
+                        folders.add(currentPath);
+                        collectFileList(folders, files, child, currentPath, overWrite);
+                    } else {
+                        files.put(currentPath, new ImportFile(child, overWrite));
                     }
                 }
-
             }
-
         } else {
-            logger.error("[IMPORT] " + fileRoot + " is not found.");
-        }
-    }
-
-    /**
-     * get the resource url for import
-     *
-     * @param filePath
-     * @return
-     */
-    private URL getResourceUrl(String filePath) {
-        try {
-            return new File(filePath).toURI().toURL();
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Not able to find " + filePath);
+            logger.error("[IMPORT] " + folder.getPath() + " is not found.");
         }
     }
 
     /**
-     * import files and folders at the given fileRoot path
+     * collect files from a list
      *
-     * @param site
-     * @param importedPaths
-     * @param importedFullPaths
+     * @param files
+     *            the files by target path
+     * @param nodes
+     *            nodes representing files
      * @param fileRoot
-     * @param targetRoot
-     *            the target location root
+     *            the location of the files being imported
      * @param parentPath
      *            the target location to import to
      * @param overWrite
-     * @param user
+     *            overwrite contents?
      */
-    protected void importFileList(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                                  String fileRoot, String targetRoot, String parentPath, boolean overWrite, String user) throws SiteNotFoundException {
-        logger.info("[IMPORT] importFileList: fileRoot [" + fileRoot + "] name [" + targetRoot + "] overwrite["
-                + overWrite + "]");
-        URL resourceUrl = getResourceUrl(fileRoot);
-        if (resourceUrl != null) {
-            String resourcePath = resourceUrl.getFile();
-            File file = new File(resourcePath);
-            if (file.isDirectory()) {
-                String[] children = file.list();
-                if (children != null && children.length > 0) {
-                    for (String childName : children) {
-                        File childFile = new File(resourcePath + FILE_SEPARATOR + childName);
-                        if (childFile.isDirectory()) {
-                            String currentPath = parentPath + FILE_SEPARATOR + childName;
-                            boolean folderExists = contentService.contentExists(site, currentPath);
-                            if (!folderExists) {
-                                contentService.createFolder(site, parentPath, childName);
-                            }
-                            importFileList(site, importedPaths, importedFullPaths, fileRoot + FILE_SEPARATOR + childName,
-                                    targetRoot, parentPath + FILE_SEPARATOR + childName, overWrite, user);
-                        } else {
-                            writeContentInTransaction(site, importedPaths, importedFullPaths, fileRoot,
-                                    targetRoot, parentPath, childName, overWrite, user);
-                        }
+    protected void collectFiles(Map<String, ImportFile> files, List<Node> nodes, String fileRoot,
+                                String parentPath, boolean overWrite) {
+        if (nodes != null) {
+            for (Node node : nodes) {
+                String name = node.valueOf("@name");
+                String value = node.valueOf("@over-write");
+                boolean fileOverwrite = (StringUtils.isEmpty(value)) ? overWrite : ContentFormatUtils
+                        .getBooleanValue(value);
+                if (!StringUtils.isEmpty(name)) {
+                    File file = new File(fileRoot + FILE_SEPARATOR + name);
+                    if (file.exists()) {
+                        files.put(parentPath + FILE_SEPARATOR + name, new ImportFile(file, fileOverwrite));
+                    } else {
+                        logger.warn("[IMPORT] " + file.getPath() + " does not exist.");
                     }
                 }
             }
-        } else {
-            logger.error("[IMPORT] " + fileRoot + " is not found.");
         }
     }
 
     /**
-     * write content
+     * write the collected folders and files to the repository, committing every checkpoint size files
      *
-     * @param site
-     * @param importedPaths
-     * @param importedFullPaths
-     * @param fileRoot
-     * @param parentPath
-     * @param name
-     * @param overWrite
-     * @param user
-     */
-    protected void writeContentInTransaction(final String site, final Set<String> importedPaths,
-                                             final List<String> importedFullPaths, final String fileRoot,
-                                             final String targetRoot, final String parentPath, final String name, final boolean overWrite, final String user) {
-        long startTimeWrite = System.currentTimeMillis();
-        logger.debug("[IMPORT] writing file in transaction: " + parentPath + FILE_SEPARATOR + name);
-        writeContent(site, importedPaths, importedFullPaths, fileRoot, targetRoot, parentPath, name,
-                        overWrite);
-        logger.debug("[IMPORT] done writing file in transaction: " + parentPath + FILE_SEPARATOR + name
-                        + ", time: " + (System.currentTimeMillis() - startTimeWrite));
-        pause();
-    }
-
-    /**
-     * write content
-     *
-     * @param site
-     * @param importedPaths
-     * @param importedFullPaths
-     * @param fileRoot
-     * @param parentPath
-     * @param name
-     * @param overWrite
+     * @param job
+     * @param folders
+     * @param files
+     * @param targetRoot
+     *            the target location root
+     * @param checkpointSize
+     *            number of files per commit, everything goes in a single commit if it is not positive
+     * @return full paths of the imported files
      */
-    protected void writeContent(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                                String fileRoot, String targetRoot, String parentPath, String name, boolean overWrite) {
-        boolean isXml = true;
-        String processChain = getXmlChainName();
-        if (!name.endsWith(".xml")) {
-            isXml = false;
-            processChain = getAssetChainName();
+    protected List<String> importFiles(ImportJob job, Set<String> folders, Map<String, ImportFile> files,
+                                       String targetRoot, int checkpointSize) throws SiteNotFoundException {
+        String site = job.site;
+        List<String> importedFullPaths = new ArrayList<String>();
+
+        Set<String> paths = new HashSet<String>(folders);
+        paths.addAll(files.keySet());
+        Set<String> existingPaths = contentRepository.getExistingPaths(site, paths);
+
+        ContentChangeSet changeSet = new ContentChangeSet();
+        Map<String, ImportFileInputStream> changeSetFiles = new LinkedHashMap<String, ImportFileInputStream>();
+        for (String folder : folders) {
+            if (!existingPaths.contains(folder)) {
+                changeSet.createFolder(folder);
+            }
         }
-        InputStream in = null;
-        String filePath = parentPath + FILE_SEPARATOR + name;
-        String fileSystemPath = fileRoot + FILE_SEPARATOR + name;
-        logger.info("[IMPORT] writeContent: fileRoot [" + fileRoot + "] fullPath [" + filePath + "] overwrite["
-                + overWrite + "] process chain [ " + processChain + "]");
-        long startTimeWrite = System.currentTimeMillis();
-        logger.debug("[IMPORT] writing file: " + parentPath + FILE_SEPARATOR + name);
-
-        try {
-            File file = new File(fileSystemPath);
-            if (file.exists()) {
-                in = new FileInputStream(file);
-                String currentPath = parentPath + FILE_SEPARATOR + name;
-                boolean contentExists = contentService.contentExists(site, currentPath);
-                // create parameters
-                Map<String, String> params = createParams(site, isXml, targetRoot, parentPath, name);
-                String id = site + ":" + filePath + ":" + name;
-                // write content only it is new or overwrite is set to true for
-                // existing
-                if (!contentExists || overWrite) {
-                    String fullPath = targetRoot + filePath;
-                    objectStateService.setSystemProcessing(site, currentPath, true);
-                    // write the content
-                    contentService.processContent(id, in, isXml, params, processChain);
-                    ContentItemTO item = contentService.getContentItem(site, currentPath);
-                    // update state
-                    if (item != null) {
-                        objectStateService.transition(site, item, TransitionEvent.SAVE);
-                        objectStateService.setSystemProcessing(site, currentPath, false);
-                    } else {
-                        ItemState state = objectStateService.getObjectState(site, currentPath);
-                        if (state == null) {
-                            objectStateService.insertNewEntry(site, currentPath);
-                        }
-                    }
-
-                    importedPaths.add(filePath);
-                    importedFullPaths.add(fullPath);
-                } else {
-                    logger.debug("[IMPORT] " + filePath
-                                + " exists and set to not to overrwite. skipping this file.");
-
-                }
+        for (Map.Entry<String, ImportFile> entry : files.entrySet()) {
+            if (job.cancelled) {
+                break;
+            }
+            String filePath = entry.getKey();
+            if (existingPaths.contains(filePath) && !entry.getValue().overWrite) {
+                logger.debug("[IMPORT] " + filePath + " exists and set to not to overrwite. skipping this file.");
+                job.skippedFiles.incrementAndGet();
+                continue;
+            }
+            File file = entry.getValue().file;
+            if (!file.canRead()) {
+                logger.error("[IMPORT] " + file.getPath() + " can't be read. skipping this file.");
+                job.failedFiles.incrementAndGet();
+                continue;
+            }
+            ImportFileInputStream content = new ImportFileInputStream(file);
+            changeSet.write(filePath, content);
+            changeSetFiles.put(filePath, content);
+            if (checkpointSize > 0 && changeSetFiles.size() >= checkpointSize) {
+                commit(job, changeSet, changeSetFiles, targetRoot, importedFullPaths);
+                changeSet = new ContentChangeSet();
+                changeSetFiles = new LinkedHashMap<String, ImportFileInputStream>();
+                pause(job);
             }
-        } catch (FileNotFoundException e) {
-            logger.warn("[IMPORT] " + filePath + " does not exist.");
-
-        } catch (ServiceLayerException e) {
-            logger.error("[IMPORT] failed to import " + filePath, e);
-        } finally {
-            ContentUtils.release(in);
         }
-        logger.debug("[IMPORT] done writing file: " + parentPath + FILE_SEPARATOR + name
-                + ", time: " + (System.currentTimeMillis() - startTimeWrite));
-    }
-
-    /**
-     * create write process parameters
-     *
-     * @param site
-     * @param isXml
-     * @param targetRoot
-     * @param parentPath
-     * @param name
-     * @return
-     */
-    private Map<String, String> createParams(String site, boolean isXml, String targetRoot, String parentPath, String name) {
-        Map<String, String> params = new HashMap<String, String>();
-        String filePath = parentPath + FILE_SEPARATOR + name;
-        String path = (isXml) ? filePath : parentPath;
-        String fullPath = targetRoot + filePath;
-        params.put(DmConstants.KEY_SITE, site);
-        params.put(DmConstants.KEY_PATH, path);
-        params.put(DmConstants.KEY_FULL_PATH, fullPath);
-        params.put(DmConstants.KEY_FILE_NAME, name);
-        params.put(DmConstants.KEY_USER, getAssignee());
-        params.put(DmConstants.KEY_CREATE_FOLDERS, "true");
-        params.put(DmConstants.KEY_UNLOCK, "true");
-        logger.debug("[IMPORT] creating/updating " + filePath);
-        return params;
+        if (!job.cancelled) {
+            commit(job, changeSet, changeSetFiles, targetRoot, importedFullPaths);
+        }
+        return importedFullPaths;
     }
 
     /**
-     * pause the process if it reached the interval
+     * commit a change set and sync the database with it. If some files could not be read the commit is retried
+     * without them, so they are the only ones that fail.
      */
-    protected void pause() {
-        if (this.pauseEanbeld) {
-            if (System.currentTimeMillis() >= this.nextStop) {
-                logger.debug("[IMPORT] pausing import process.");
-                try {
-                    Thread.sleep(this.currentDelayLength);
-                    this.nextStop = System.currentTimeMillis() + this.currentDelayInterval;
-                } catch (InterruptedException e) {
-                    logger.error("[IMPORT] error while pausing import process.", e);
+    protected void commit(ImportJob job, ContentChangeSet changeSet, Map<String, ImportFileInputStream> changeSetFiles,
+                          String targetRoot, List<String> importedFullPaths) throws SiteNotFoundException {
+        if (changeSet.isEmpty()) {
+            return;
+        }
+        Set<String> changeSetPaths = changeSetFiles.keySet();
+        String site = job.site;
+        long startTime = System.currentTimeMillis();
+        String fromCommitId = contentRepository.getRepoLastCommitId(site);
+        String comment = studioConfiguration.getProperty(IMPORT_COMMIT_MESSAGE)
+                .replaceAll(PATTERN_SITE, site)
+                .replaceAll(PATTERN_COUNT, Integer.toString(changeSetPaths.size()));
+        String commitId = contentRepository.commitChangeSet(site, changeSet, comment, getAssignee());
+        if (commitId == null) {
+            ContentChangeSet retryChangeSet = new ContentChangeSet();
+            Map<String, ImportFileInputStream> retryFiles = new LinkedHashMap<String, ImportFileInputStream>();
+            for (ContentChangeSet.Change change : changeSet.getChanges()) {
+                ImportFileInputStream content = changeSetFiles.get(change.getPath());
+                if (content == null) {
+                    retryChangeSet.createFolder(change.getPath());
+                } else if (content.failed) {
+                    logger.error("[IMPORT] failed to read " + content.file.getPath() + ". skipping this file.");
+                    job.failedFiles.incrementAndGet();
+                } else {
+                    ImportFileInputStream retryContent = new ImportFileInputStream(content.file);
+                    retryChangeSet.write(change.getPath(), retryContent);
+                    retryFiles.put(change.getPath(), retryContent);
                 }
-                logger.debug("[IMPORT] done pausing import process.");
             }
+            if (retryFiles.size() < changeSetFiles.size()) {
+                commit(job, retryChangeSet, retryFiles, targetRoot, importedFullPaths);
+            } else {
+                logger.error("[IMPORT] failed to commit " + changeSetPaths.size() + " files in " + site);
+                job.failedFiles.addAndGet(changeSetPaths.size());
+            }
+            return;
         }
+        job.commits.incrementAndGet();
+        job.importedFiles.addAndGet(changeSetPaths.size());
+        for (String filePath : changeSetPaths) {
+            importedFullPaths.add(targetRoot + filePath);
+        }
+        logger.info("[IMPORT] committed " + changeSetPaths.size() + " files in " + site + " ("
+                + job.getProcessedFiles() + "/" + job.totalFiles + "), time: "
+                + (System.currentTimeMillis() - startTime));
+
+        startTime = System.currentTimeMillis();
+        siteService.syncDatabaseWithRepo(site, fromCommitId);
+        logger.info("[IMPORT] synced database with commit " + commitId + " in " + site + ", time: "
+                + (System.currentTimeMillis() - startTime));
+
+        PreviewEventContext context = new PreviewEventContext();
+        context.setSite(site);
+        eventService.publish(EVENT_PREVIEW_SYNC, context);
     }
 
     /**
-     * create files from a list
-     *
-     * @param site
-     * @param importedPaths
-     * @param importedFullPaths
-     * @param nodes
-     * @param fileRoot
-     * @param targetRoot
-     *            the target location root
-     * @param parentPath
-     *            the target location to import to
-     * @param overWrite
-     * @param user
+     * pause the process if it reached the interval
      */
-    protected void createFiles(String site, Set<String> importedPaths, List<String> importedFullPaths,
-                               List<Node> nodes, String fileRoot, String targetRoot, String parentPath,
-                               boolean overWrite, String user) {
-        logger.info("[IMPORT] createFiles: fileRoot [" + fileRoot + "] parentFullPath [" + parentPath
-                    + "] overwrite[" + overWrite + "]");
-        if (nodes != null) {
-            for (Node node : nodes) {
-                String name = node.valueOf("@name");
-                String value = node.valueOf("@over-write");
-                boolean fileOverwrite = (StringUtils.isEmpty(value)) ? overWrite : ContentFormatUtils
-                        .getBooleanValue(value);
-                if (!StringUtils.isEmpty(name)) {
-                    writeContentInTransaction(site, importedPaths, importedFullPaths, fileRoot, targetRoot,
-                            parentPath, name, fileOverwrite, user);
+    protected void pause(ImportJob job) {
+        if (job.delayInterval > 0 && System.currentTimeMillis() >= job.nextStop) {
+            logger.debug("[IMPORT] pausing import process.");
+            try {
+                // sleep in steps so a cancellation doesn't wait for the whole delay
+                long end = System.currentTimeMillis() + job.delayLength;
+                long remaining;
+                while (!job.cancelled && (remaining = end - System.currentTimeMillis()) > 0) {
+                    Thread.sleep(Math.min(remaining, PAUSE_STEP));
                 }
+            } catch (InterruptedException e) {
+                logger.error("[IMPORT] error while pausing import process.", e);
+                Thread.currentThread().interrupt();
+                job.cancelled = true;
             }
+            job.nextStop = System.currentTimeMillis() + job.delayInterval;
+            logger.debug("[IMPORT] done pausing import process.");
         }
     }
 
@@ -574,51 +520,165 @@ public class ImportServiceImpl implements ImportService {
     public ContentRepository getContentRepository() { return contentRepository; }
     public void setContentRepository(ContentRepository contentRepository) { this.contentRepository = contentRepository; }
 
-    public ContentService getContentService() { return contentService; }
-    public void setContentService(ContentService contentService) { this.contentService = contentService; }
-
-    public ObjectStateService getObjectStateService() { return objectStateService; }
-    public void setObjectStateService(ObjectStateService objectStateService) { this.objectStateService = objectStateService; }
-
     public DmPublishService getDmPublishService() { return dmPublishService; }
     public void setDmPublishService(DmPublishService dmPublishService) { this.dmPublishService = dmPublishService; }
 
     public StudioConfiguration getStudioConfiguration() { return studioConfiguration; }
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) { this.studioConfiguration = studioConfiguration; }
 
+    public EventService getEventService() { return eventService; }
+    public void setEventService(EventService eventService) { this.eventService = eventService; }
+
     public String getAssignee() {
         return studioConfiguration.getProperty(IMPORT_ASSIGNEE);
     }
 
-    public String getXmlChainName() {
-        return studioConfiguration.getProperty(IMPORT_XML_CHAIN_NAME);
-    }
-
-    public String getAssetChainName() {
-        return studioConfiguration.getProperty(IMPORT_ASSET_CHAIN_NAME);
+    public int getCheckpointSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(IMPORT_CHECKPOINT_SIZE));
     }
 
     protected SiteService siteService;
     protected SecurityService securityService;
     protected ContentRepository contentRepository;
-    protected ContentService contentService;
-    protected ObjectStateService objectStateService;
     protected DmPublishService dmPublishService;
     protected StudioConfiguration studioConfiguration;
+    protected EventService eventService;
+
+    /**
+     * a file to import
+     */
+    protected static class ImportFile {
+
+        protected final File file;
+        protected final boolean overWrite;
+
+        protected ImportFile(File file, boolean overWrite) {
+            this.file = file;
+            this.overWrite = overWrite;
+        }
+    }
+
+    /**
+     * status of the import of a site, updated by the thread running the import and read by anyone
+     */
+    protected static class ImportJob {
+
+        protected final String site;
+        protected final String user;
+        protected final ZonedDateTime startDate = ZonedDateTime.now(ZoneOffset.UTC);
+        /** import delay interval **/
+        protected final long delayInterval;
+        /** import delay time **/
+        protected final long delayLength;
+        /** next pause time **/
+        protected volatile long nextStop;
+        protected volatile ImportJobTO.Status status = ImportJobTO.Status.RUNNING;
+        protected volatile boolean cancelled;
+        protected volatile int totalFiles;
+        protected final AtomicInteger importedFiles = new AtomicInteger();
+        protected final AtomicInteger skippedFiles = new AtomicInteger();
+        protected final AtomicInteger failedFiles = new AtomicInteger();
+        protected final AtomicInteger commits = new AtomicInteger();
+        protected volatile ZonedDateTime endDate;
+        protected volatile String message;
+
+        protected ImportJob(String site, String user, long delayInterval, long delayLength) {
+            this.site = site;
+            this.user = user;
+            this.delayInterval = delayInterval;
+            this.delayLength = delayLength;
+            this.nextStop = System.currentTimeMillis() + delayInterval;
+        }
+
+        protected void finish(ImportJobTO.Status status, String message) {
+            this.message = message;
+            this.endDate = ZonedDateTime.now(ZoneOffset.UTC);
+            this.status = status;
+        }
+
+        protected int getProcessedFiles() {
+            return importedFiles.get() + skippedFiles.get() + failedFiles.get();
+        }
+
+        protected ImportJobTO toTO() {
+            ImportJobTO to = new ImportJobTO();
+            to.setSite(site);
+            to.setUser(user);
+            to.setStatus(status);
+            to.setTotalFiles(totalFiles);
+            to.setImportedFiles(importedFiles.get());
+            to.setSkippedFiles(skippedFiles.get());
+            to.setFailedFiles(failedFiles.get());
+            to.setCommits(commits.get());
+            to.setStartDate(startDate);
+            to.setEndDate(endDate);
+            to.setMessage(message);
+            return to;
+        }
+    }
 
     /**
-     * is import in progress?
+     * stream of a file to import that is only opened when it is read and closed once it is fully read, so a change
+     * set with thousands of files doesn't keep all of them open
      */
-    private boolean inProgress = false;
-
-    /** going to pause import process? **/
-    private boolean pauseEanbeld = false;
-    /** next pause time **/
-    private long nextStop;
-    /** import delay interval **/
-    private long currentDelayInterval;
-    /** import delay time **/
-    private long currentDelayLength;
+    protected static class ImportFileInputStream extends InputStream {
+
+        protected final File file;
+        protected InputStream in;
+        protected boolean closed;
+        /** true if the file could not be read **/
+        protected boolean failed;
+
+        protected ImportFileInputStream(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                InputStream stream = open();
+                int b = stream != null ? stream.read() : -1;
+                if (b < 0) {
+                    close();
+                }
+                return b;
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                InputStream stream = open();
+                int count = stream != null ? stream.read(b, off, len) : -1;
+                if (count < 0) {
+                    close();
+                }
+                return count;
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+
+        protected InputStream open() throws IOException {
+            if (in == null && !closed) {
+                in = new FileInputStream(file);
+            }
+            return in;
+        }
+    }
 
     /**
      * publishing channel
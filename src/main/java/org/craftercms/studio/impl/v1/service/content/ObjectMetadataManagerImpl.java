@@ -26,17 +26,30 @@ import org.craftercms.studio.api.v1.dal.ItemMetadataMapper;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.content.ObjectMetadataManager;
+import org.craftercms.studio.api.v1.util.ListUtils;
+import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.service.content.internal.ItemCounterServiceInternal;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntSupplier;
+
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
 
 public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
 
     private final static Logger logger = LoggerFactory.getLogger(ObjectMetadataManagerImpl.class);
 
     protected ItemMetadataMapper itemMetadataMapper;
+    protected StudioConfiguration studioConfiguration;
+    protected ItemCounterServiceInternal itemCounterServiceInternal;
+    protected PlatformTransactionManager transactionManager;
 
     @Override
     @ValidateParams
@@ -46,12 +59,31 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         Map<String, String> params = new HashMap<>();
         params.put("site", site);
         params.put("path", path);
-        try {
-        itemMetadataMapper.insertEntry(params);
-        } catch (DuplicateKeyException e) {
-            logger.debug("Failed to insert metadata for site: " + site + " and path: " + path +
-                    " into item_metadata table, because it is duplicate entry.");
-        }
+        String cleanPath = path;
+        updateAndCount(site, "insertNewObjectMetadata", () -> {
+            try {
+                return itemMetadataMapper.insertEntry(params);
+            } catch (DuplicateKeyException e) {
+                logger.debug("Failed to insert metadata for site: " + site + " and path: " + cleanPath +
+                        " into item_metadata table, because it is duplicate entry.");
+                return 0;
+            }
+        });
+    }
+
+    @Override
+    @ValidateParams
+    public void insertNewObjectMetadata(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        updateAndCount(site, "insertNewObjectMetadata", () -> {
+            int inserted = 0;
+            for (List<String> batch : ListUtils.partition(normalizePaths(paths), getBulkOperationBatchSize())) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("site", site);
+                params.put("paths", batch);
+                inserted += itemMetadataMapper.insertEntries(params);
+            }
+            return inserted;
+        });
     }
 
     @Override
@@ -67,6 +99,19 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         itemMetadataMapper.setProperties(params);
     }
 
+    @Override
+    @ValidateParams
+    public void setObjectMetadata(@ValidateStringParam(name = "site") String site, List<String> paths,
+                                  Map<String, Object> properties) {
+        for (List<String> batch : ListUtils.partition(normalizePaths(paths), getBulkOperationBatchSize())) {
+            Map<String, Object> params = new HashMap<>();
+            params.putAll(properties);
+            params.put("site", site);
+            params.put("paths", batch);
+            itemMetadataMapper.setPropertiesForSiteAndPaths(params);
+        }
+    }
+
     @Override
     @ValidateParams
     public void setObjectMetadataForCommitId(@ValidateStringParam(name = "site") String site,
@@ -95,6 +140,22 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         return itemMetadataMapper.getProperties(params);
     }
 
+    @Override
+    @ValidateParams
+    public Map<String, ItemMetadata> getProperties(@ValidateStringParam(name = "site") String site,
+                                                   List<String> paths) {
+        Map<String, ItemMetadata> toRet = new HashMap<>();
+        for (List<String> batch : ListUtils.partition(normalizePaths(paths), getBulkOperationBatchSize())) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("site", site);
+            params.put("paths", batch);
+            for (ItemMetadata metadata : itemMetadataMapper.getPropertiesForSiteAndPaths(params)) {
+                toRet.put(metadata.getPath(), metadata);
+            }
+        }
+        return toRet;
+    }
+
     @Override
     @ValidateParams
     public boolean metadataExist(@ValidateStringParam(name = "site") String site,
@@ -176,6 +237,7 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         Map<String, String> params = new HashMap<>();
         params.put("site", site);
         itemMetadataMapper.deleteObjectMetadataForSite(params);
+        itemCounterServiceInternal.deleteItemCount(site);
     }
 
     @Override
@@ -186,7 +248,22 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         Map<String, String> params = new HashMap<>();
         params.put("site", site);
         params.put("path", path);
-        itemMetadataMapper.deleteEntry(params);
+        updateAndCount(site, "deleteObjectMetadata", () -> -itemMetadataMapper.deleteEntry(params));
+    }
+
+    @Override
+    @ValidateParams
+    public void deleteObjectMetadata(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        updateAndCount(site, "deleteObjectMetadata", () -> {
+            int deleted = 0;
+            for (List<String> batch : ListUtils.partition(normalizePaths(paths), getBulkOperationBatchSize())) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("site", site);
+                params.put("paths", batch);
+                deleted += itemMetadataMapper.deleteEntries(params);
+            }
+            return -deleted;
+        });
     }
 
     @Override
@@ -197,7 +274,7 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
         Map<String, String> params = new HashMap<>();
         params.put("site", site);
         params.put("path", path + "/%");
-        itemMetadataMapper.deleteFolder(params);
+        updateAndCount(site, "deleteObjectMetadataForFolder", () -> -itemMetadataMapper.deleteFolder(params));
     }
 
     @Override
@@ -261,7 +338,29 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
     @Override
     @ValidateParams
     public int countAllItems() {
-        return itemMetadataMapper.countAllItems();
+        return (int) itemCounterServiceInternal.getTotalItemCount();
+    }
+
+    /**
+     * Run a write to the item metadata and add the number of items it added or removed to the item counter of the
+     * site in the same transaction
+     *
+     * @param site site id
+     * @param name name of the transaction
+     * @param update the write, returns the number of items added or minus the number of items removed
+     */
+    protected void updateAndCount(String site, String name, IntSupplier update) {
+        DefaultTransactionDefinition defaultTransactionDefinition = new DefaultTransactionDefinition();
+        defaultTransactionDefinition.setName(name);
+        TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
+        try {
+            itemCounterServiceInternal.updateItemCount(site, update.getAsInt());
+            transactionManager.commit(txStatus);
+        } catch (RuntimeException e) {
+            logger.debug("Rolling back transaction.");
+            transactionManager.rollback(txStatus);
+            throw e;
+        }
     }
 
 
@@ -272,4 +371,42 @@ public class ObjectMetadataManagerImpl implements ObjectMetadataManager {
     public void setItemMetadataMapper(ItemMetadataMapper itemMetadataMapper) {
         this.itemMetadataMapper = itemMetadataMapper;
     }
+
+    protected List<String> normalizePaths(List<String> paths) {
+        List<String> cleanPaths = new ArrayList<>();
+        if (paths != null) {
+            for (String path : paths) {
+                cleanPaths.add(FilenameUtils.normalize(path, true));
+            }
+        }
+        return cleanPaths;
+    }
+
+    public int getBulkOperationBatchSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+    }
+
+    public StudioConfiguration getStudioConfiguration() {
+        return studioConfiguration;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    public ItemCounterServiceInternal getItemCounterServiceInternal() {
+        return itemCounterServiceInternal;
+    }
+
+    public void setItemCounterServiceInternal(ItemCounterServiceInternal itemCounterServiceInternal) {
+        this.itemCounterServiceInternal = itemCounterServiceInternal;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
 }
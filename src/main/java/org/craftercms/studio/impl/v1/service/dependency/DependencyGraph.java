@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+
+/**
+ * Dependencies of a site kept in memory as adjacency sets in both directions, so both "dependencies of" and
+ * "items depending on" lookups are answered without hitting the database. The dependency types are not kept since
+ * none of the lookups filter by them.
+ */
+public class DependencyGraph {
+
+    /** targets by source path **/
+    protected final Map<String, Set<String>> targets = new HashMap<String, Set<String>>();
+    /** sources by target path **/
+    protected final Map<String, Set<String>> sources = new HashMap<String, Set<String>>();
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    protected int edges;
+
+    /** version of the site dependencies this graph corresponds to **/
+    protected volatile long version;
+    protected volatile long lastValidation;
+
+    public DependencyGraph(List<DependencyEntity> dependencies, long version) {
+        for (DependencyEntity dependency : dependencies) {
+            addEdge(dependency.getSourcePath(), dependency.getTargetPath());
+        }
+        this.version = version;
+        this.lastValidation = System.currentTimeMillis();
+    }
+
+    /**
+     * Replace all the dependencies of the given items
+     *
+     * @param sourcePaths paths of the items
+     * @param dependencies new dependencies of the items
+     */
+    public void replaceDependencies(Collection<String> sourcePaths, Collection<DependencyEntity> dependencies) {
+        lock.writeLock().lock();
+        try {
+            for (String sourcePath : sourcePaths) {
+                removeTargets(sourcePath);
+            }
+            for (DependencyEntity dependency : dependencies) {
+                addEdge(dependency.getSourcePath(), dependency.getTargetPath());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all the dependencies from and to an item
+     *
+     * @param path path of the item
+     */
+    public void removePath(String path) {
+        lock.writeLock().lock();
+        try {
+            removeTargets(path);
+            removeSources(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Move all the dependencies from and to an item to a new path
+     *
+     * @param oldPath current path of the item
+     * @param newPath new path of the item
+     */
+    public void movePath(String oldPath, String newPath) {
+        lock.writeLock().lock();
+        try {
+            Set<String> oldTargets = removeTargets(oldPath);
+            Set<String> oldSources = removeSources(oldPath);
+            for (String target : oldTargets) {
+                addEdge(newPath, target.equals(oldPath) ? newPath : target);
+            }
+            for (String source : oldSources) {
+                if (!source.equals(oldPath)) {
+                    addEdge(source, newPath);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the direct dependencies of a list of items
+     *
+     * @param paths paths of the items
+     * @param filter filter for the dependencies, null to include all
+     * @return paths of the dependencies
+     */
+    public Set<String> getTargets(Collection<String> paths, Predicate<String> filter) {
+        return getAdjacent(targets, paths, filter);
+    }
+
+    /**
+     * Get the items that depend directly on a list of items
+     *
+     * @param paths paths of the items
+     * @return paths of the items depending on them
+     */
+    public Set<String> getSources(Collection<String> paths) {
+        return getAdjacent(sources, paths, null);
+    }
+
+    public int getEdgeCount() {
+        lock.readLock().lock();
+        try {
+            return edges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    protected Set<String> getAdjacent(Map<String, Set<String>> adjacency, Collection<String> paths,
+                                      Predicate<String> filter) {
+        Set<String> toRet = new HashSet<String>();
+        lock.readLock().lock();
+        try {
+            for (String path : paths) {
+                Set<String> adjacent = adjacency.get(path);
+                if (adjacent != null) {
+                    for (String adjacentPath : adjacent) {
+                        if (filter == null || filter.test(adjacentPath)) {
+                            toRet.add(adjacentPath);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return toRet;
+    }
+
+    protected void addEdge(String source, String target) {
+        if (targets.computeIfAbsent(source, k -> new HashSet<String>()).add(target)) {
+            sources.computeIfAbsent(target, k -> new HashSet<String>()).add(source);
+            edges++;
+        }
+    }
+
+    protected Set<String> removeTargets(String source) {
+        Set<String> removed = targets.remove(source);
+        if (removed == null) {
+            return new HashSet<String>();
+        }
+        for (String target : removed) {
+            removeFrom(sources, target, source);
+        }
+        edges -= removed.size();
+        return removed;
+    }
+
+    protected Set<String> removeSources(String target) {
+        Set<String> removed = sources.remove(target);
+        if (removed == null) {
+            return new HashSet<String>();
+        }
+        for (String source : removed) {
+            removeFrom(targets, source, target);
+        }
+        edges -= removed.size();
+        return removed;
+    }
+
+    protected void removeFrom(Map<String, Set<String>> adjacency, String key, String value) {
+        Set<String> values = adjacency.get(key);
+        if (values != null) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                adjacency.remove(key);
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getLastValidation() {
+        return lastValidation;
+    }
+
+    public void setLastValidation(long lastValidation) {
+        this.lastValidation = lastValidation;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.DependencyMapper;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.SITE_PARAM;
+
+/**
+ * Keeps a {@link DependencyGraph} for each site, loaded lazily with a single query. Every write to the dependencies
+ * of a site increments a version row in the same transaction, so the writes of a site are numbered in commit order.
+ * Changes made through the dependency service are applied to the graph only if it is exactly one version behind,
+ * any other gap (writes from other cluster nodes, bulk database operations, local writes committed in a different
+ * order) discards the graph. Changes made by anybody else are detected by comparing the version, checked at most
+ * once per validation interval, and cause the graph to be loaded again.
+ */
+public class DependencyGraphIndex implements StatisticsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraphIndex.class);
+
+    protected DependencyMapper dependencyMapper;
+    protected boolean enabled;
+    protected long validationInterval;
+
+    protected final Map<String, DependencyGraph> graphs = new ConcurrentHashMap<String, DependencyGraph>();
+    protected final Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder loads = new LongAdder();
+
+    /**
+     * Get the dependency graph of a site, loading it if needed
+     *
+     * @param site site id
+     * @return the graph or null if the index is disabled
+     */
+    public DependencyGraph getGraph(String site) {
+        if (!enabled) {
+            return null;
+        }
+        DependencyGraph graph = graphs.get(site);
+        if (graph != null && isValid(site, graph)) {
+            hits.increment();
+            return graph;
+        }
+        synchronized (getLock(site)) {
+            DependencyGraph current = graphs.get(site);
+            if (current != null && current != graph) {
+                return current;
+            }
+            current = load(site);
+            graphs.put(site, current);
+            return current;
+        }
+    }
+
+    /**
+     * Increment the version of the dependencies of a site, must be called in the same transaction that changes them
+     *
+     * @param site site id
+     * @return the new version
+     */
+    public long bumpVersion(String site) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_PARAM, site);
+        dependencyMapper.bumpDependenciesVersion(params);
+        // The row stays locked until the transaction ends, so this reads the version just written
+        return getVersion(site);
+    }
+
+    /**
+     * Apply a change already committed to the database to the graph of a site, if it is loaded
+     *
+     * @param site site id
+     * @param version version returned by {@link #bumpVersion(String)} in the transaction of the change
+     * @param change change to apply
+     */
+    public void update(String site, long version, Consumer<DependencyGraph> change) {
+        synchronized (getLock(site)) {
+            DependencyGraph graph = graphs.get(site);
+            if (graph == null || graph.getVersion() >= version) {
+                return;
+            }
+            if (graph.getVersion() == version - 1) {
+                change.accept(graph);
+                graph.setVersion(version);
+            } else {
+                logger.debug("Dependency graph for site " + site + " missed changes, discarding it");
+                graphs.remove(site);
+            }
+        }
+    }
+
+    /**
+     * Discard the graph of a site, it will be loaded again the next time it is needed
+     *
+     * @param site site id
+     */
+    public void invalidate(String site) {
+        synchronized (getLock(site)) {
+            graphs.remove(site);
+        }
+    }
+
+    protected Object getLock(String site) {
+        return locks.computeIfAbsent(site, key -> new Object());
+    }
+
+    protected boolean isValid(String site, DependencyGraph graph) {
+        long now = System.currentTimeMillis();
+        if (now - graph.getLastValidation() < validationInterval) {
+            return true;
+        }
+        long version = getVersion(site);
+        graph.setLastValidation(now);
+        if (version != graph.getVersion()) {
+            logger.debug("Dependencies of site " + site + " changed outside of this node, reloading graph");
+            return false;
+        }
+        return true;
+    }
+
+    protected DependencyGraph load(String site) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_PARAM, site);
+        // Read the version first, a write committed before the dependencies are read only causes a reload
+        long version = getVersion(site);
+        List<DependencyEntity> dependencies = dependencyMapper.getDependenciesForSite(params);
+        DependencyGraph graph = new DependencyGraph(dependencies, version);
+        loads.increment();
+        logger.debug("Loaded dependency graph for site " + site + " with " + graph.getEdgeCount() + " edges in " +
+                (System.currentTimeMillis() - startTime) + " ms");
+        return graph;
+    }
+
+    protected long getVersion(String site) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_PARAM, site);
+        Long version = dependencyMapper.getDependenciesVersion(params);
+        return version != null ? version : 0;
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "dependencyGraph";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        int edges = 0;
+        for (DependencyGraph graph : graphs.values()) {
+            edges += graph.getEdgeCount();
+        }
+        statistics.put("enabled", enabled);
+        statistics.put("sites", graphs.size());
+        statistics.put("edges", edges);
+        statistics.put("hits", hits.sum());
+        statistics.put("loads", loads.sum());
+        return statistics;
+    }
+
+    public DependencyMapper getDependencyMapper() {
+        return dependencyMapper;
+    }
+
+    public void setDependencyMapper(DependencyMapper dependencyMapper) {
+        this.dependencyMapper = dependencyMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+}
@@ -40,19 +40,29 @@ import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.to.CalculateDependenciesEntityTO;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.DeleteDependencyConfigTO;
+import org.craftercms.studio.api.v1.util.ListUtils;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.INDEX_FILE;
@@ -68,11 +78,15 @@ import static org.craftercms.studio.api.v1.dal.DependencyMapper.SITE_PARAM;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.SORUCE_PATH_COLUMN_NAME;
 import static org.craftercms.studio.api.v1.dal.DependencyMapper.TARGET_PATH_COLUMN_NAME;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATION_DEPENDENCY_ITEM_SPECIFIC_PATTERNS;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
 
 public class DependencyServiceImpl implements DependencyService {
 
     private static final Logger logger = LoggerFactory.getLogger(DependencyServiceImpl.class);
 
+    /** number of items resolved together, sharing the repository lookups **/
+    private static final int RESOLVE_CHUNK_SIZE = 50;
+
     protected DependencyMapper dependencyMapper;
     protected ItemStateMapper itemStateMapper;
     protected StudioConfiguration studioConfiguration;
@@ -83,6 +97,8 @@ public class DependencyServiceImpl implements DependencyService {
     protected ObjectMetadataManager objectMetadataManager;
     protected ContentRepository contentRepository;
     protected ServicesConfig servicesConfig;
+    protected AsyncTaskExecutor taskExecutor;
+    protected DependencyGraphIndex dependencyGraphIndex;
 
     @Override
     public Set<String> upsertDependencies(String site, String path)
@@ -104,11 +120,13 @@ public class DependencyServiceImpl implements DependencyService {
             logger.debug("Starting transaction.");
             TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
 
+            long version;
             try {
                 logger.debug("Delete all source dependencies for site: " + site + " path: " + path);
                 deleteAllSourceDependencies(site, path);
                 logger.debug("Insert all extracted dependencies entries for site: " + site + " path: " + path);
                 insertDependenciesIntoDatabase(dependencyEntities);
+                version = dependencyGraphIndex.bumpVersion(site);
                 logger.debug("Committing transaction.");
                 transactionManager.commit(txStatus);
             } catch (Exception e) {
@@ -116,6 +134,8 @@ public class DependencyServiceImpl implements DependencyService {
                 transactionManager.rollback(txStatus);
                 throw new ServiceLayerException("Failed to upsert dependencies for site: " + site + " path: " + path, e);
             }
+            dependencyGraphIndex.update(site, version,
+                    graph -> graph.replaceDependencies(Collections.singletonList(path), dependencyEntities));
 
         }
         return toRet;
@@ -128,13 +148,14 @@ public class DependencyServiceImpl implements DependencyService {
         List<DependencyEntity> dependencyEntities = new ArrayList<>();
         StringBuilder sbPaths = new StringBuilder();
         logger.debug("Resolving dependencies for list of paths.");
-        for (String path : paths) {
+        Map<String, Map<String, Set<String>>> resolvedDependencies = resolveDependencies(site, paths);
+        for (Map.Entry<String, Map<String, Set<String>>> entry : resolvedDependencies.entrySet()) {
+            String path = entry.getKey();
+            Map<String, Set<String>> dependencies = entry.getValue();
             sbPaths.append("\n").append(path);
-            logger.debug("Resolving dependencies for content site: " + site + " path: " + path);
-            Map<String, Set<String>> dependencies = dependencyResolver.resolve(site, path);
             if (dependencies != null) {
-                logger.debug("Found " + dependencies.size() + " dependencies. " +
-                        "Create entities to insert into database.");
+                logger.debug("Found " + dependencies.size() + " dependencies for site: " + site + " path: " + path +
+                        ". Create entities to insert into database.");
                 for (String type : dependencies.keySet()) {
                     dependencyEntities.addAll(createDependencyEntities(site, path, dependencies.get(type), type, toRet));
                 }
@@ -145,13 +166,22 @@ public class DependencyServiceImpl implements DependencyService {
         defaultTransactionDefinition.setName("upsertDependencies");
         logger.debug("Starting transaction.");
         TransactionStatus txStatus = transactionManager.getTransaction(defaultTransactionDefinition);
+        List<String> sourcePaths = new ArrayList<String>(resolvedDependencies.keySet());
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+        long version;
         try {
             logger.debug("Delete all source dependencies for list of paths site: " + site);
-            for (String path : paths) {
-                deleteAllSourceDependencies(site, path);
+            for (List<String> batch : ListUtils.partition(sourcePaths, batchSize)) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(SITE_PARAM, site);
+                params.put(PATHS_PARAM, batch);
+                dependencyMapper.deleteAllSourceDependenciesForPaths(params);
             }
             logger.debug("Insert all extracted dependencies entries lof list of paths for site: " + site);
-            insertDependenciesIntoDatabase(dependencyEntities);
+            for (List<DependencyEntity> batch : ListUtils.partition(dependencyEntities, batchSize)) {
+                insertDependenciesIntoDatabase(batch);
+            }
+            version = dependencyGraphIndex.bumpVersion(site);
             logger.debug("Committing transaction.");
             transactionManager.commit(txStatus);
         } catch (Exception e) {
@@ -160,7 +190,73 @@ public class DependencyServiceImpl implements DependencyService {
             throw new ServiceLayerException("Failed to upsert dependencies for site: " + site + " paths: " +
                     sbPaths.toString(), e);
         }
+        dependencyGraphIndex.update(site, version,
+                graph -> graph.replaceDependencies(sourcePaths, dependencyEntities));
+
+        return toRet;
+    }
 
+    @Override
+    public List<DependencyEntity> resolveDependencyEntities(String site, List<String> paths)
+            throws ServiceLayerException {
+        List<DependencyEntity> dependencyEntities = new ArrayList<>();
+        Set<String> extractedPaths = new HashSet<String>();
+        for (Map.Entry<String, Map<String, Set<String>>> entry : resolveDependencies(site, paths).entrySet()) {
+            Map<String, Set<String>> dependencies = entry.getValue();
+            if (dependencies != null) {
+                for (String type : dependencies.keySet()) {
+                    dependencyEntities.addAll(createDependencyEntities(site, entry.getKey(), dependencies.get(type),
+                            type, extractedPaths));
+                }
+            }
+        }
+        return dependencyEntities;
+    }
+
+    /**
+     * Resolve the dependencies of a list of paths in chunks, in parallel when a task executor is configured
+     *
+     * @param site site id
+     * @param paths paths to resolve, duplicates are only resolved once
+     * @return dependencies by type for each path, in the order of the given paths
+     */
+    protected Map<String, Map<String, Set<String>>> resolveDependencies(String site, List<String> paths)
+            throws ServiceLayerException {
+        Map<String, Map<String, Set<String>>> toRet = new LinkedHashMap<String, Map<String, Set<String>>>();
+        List<String> uniquePaths = new ArrayList<String>(new LinkedHashSet<String>(paths));
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        for (int i = 0; i < uniquePaths.size(); i = i + RESOLVE_CHUNK_SIZE) {
+            chunks.add(uniquePaths.subList(i, Math.min(i + RESOLVE_CHUNK_SIZE, uniquePaths.size())));
+        }
+        if (taskExecutor == null || chunks.size() < 2) {
+            for (List<String> chunk : chunks) {
+                logger.debug("Resolving dependencies for " + chunk.size() + " items of site: " + site);
+                toRet.putAll(dependencyResolver.resolve(site, chunk));
+            }
+        } else {
+            List<Future<Map<String, Map<String, Set<String>>>>> futures =
+                    new ArrayList<Future<Map<String, Map<String, Set<String>>>>>();
+            for (List<String> chunk : chunks) {
+                futures.add(taskExecutor.submit(() -> {
+                    logger.debug("Resolving dependencies for " + chunk.size() + " items of site: " + site);
+                    return dependencyResolver.resolve(site, chunk);
+                }));
+            }
+            try {
+                for (Future<Map<String, Map<String, Set<String>>>> future : futures) {
+                    toRet.putAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceLayerException("Interrupted while resolving dependencies for site: " + site, e);
+            } catch (ExecutionException e) {
+                throw new ServiceLayerException("Failed to resolve dependencies for site: " + site, e);
+            } finally {
+                for (Future<Map<String, Map<String, Set<String>>>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
         return toRet;
     }
 
@@ -255,28 +351,18 @@ public class DependencyServiceImpl implements DependencyService {
             throw new ContentNotFoundException();
         }
 
-        Set<String> toRet = new HashSet<String>();
-        Set<String> paths = new HashSet<String>();
-        boolean exitCondition = false;
-        paths.add(path);
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemSpecificDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!exitCondition);
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemSpecificDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-                if (exitCondition) break;
-            }
+        DependencyGraph graph = dependencyGraphIndex.getGraph(site);
+        Predicate<String> filter = getItemSpecificDependenciesFilter();
+        return collectDependencies(path, depth, paths -> graph != null ? graph.getTargets(paths, filter) :
+                getItemSpecificDependenciesFromDB(site, paths));
+    }
+
+    private Collection<String> getItemSpecificDependenciesForList(String site, Set<String> paths) {
+        DependencyGraph graph = dependencyGraphIndex.getGraph(site);
+        if (graph != null) {
+            return graph.getTargets(paths, getItemSpecificDependenciesFilter());
         }
-        return toRet;
+        return getItemSpecificDependenciesFromDB(site, paths);
     }
 
     private List<String> getItemSpecificDependenciesFromDB(String site, Set<String> paths) {
@@ -304,27 +390,17 @@ public class DependencyServiceImpl implements DependencyService {
         }
 
         logger.debug("Get dependency items for content " + path + " for site " + site);
+        DependencyGraph graph = dependencyGraphIndex.getGraph(site);
+        return collectDependencies(path, depth, paths -> graph != null ? graph.getTargets(paths, null) :
+                getItemDependenciesFromDB(site, paths));
+    }
 
-        Set<String> toRet = new HashSet<String>();
-        Set<String> paths = new HashSet<String>();
-        paths.add(path);
-        boolean exitCondition;
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!exitCondition);
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                if (exitCondition) break;
-            }
+    private Collection<String> getItemDependenciesForList(String site, Set<String> paths) {
+        DependencyGraph graph = dependencyGraphIndex.getGraph(site);
+        if (graph != null) {
+            return graph.getTargets(paths, null);
         }
-        return toRet;
+        return getItemDependenciesFromDB(site, paths);
     }
 
     private List<String> getItemDependenciesFromDB(String site, Set<String> paths) {
@@ -351,26 +427,35 @@ public class DependencyServiceImpl implements DependencyService {
         }
 
         logger.debug("Get items depending on content " + path + " for site " + site);
+        DependencyGraph graph = dependencyGraphIndex.getGraph(site);
+        return collectDependencies(path, depth, paths -> graph != null ? graph.getSources(paths) :
+                getItemsDependingOnFromDB(site, paths));
+    }
+
+    /**
+     * Walk the dependencies of an item level by level. Items already found are not visited again, so cycles end
+     * the walk.
+     *
+     * @param path path of the item
+     * @param depth max number of levels, negative for all
+     * @param nextLevel lookup of the dependencies of a set of items
+     * @return all the dependencies found
+     */
+    protected Set<String> collectDependencies(String path, int depth,
+                                              Function<Set<String>, Collection<String>> nextLevel) {
         Set<String> toRet = new HashSet<String>();
         Set<String> paths = new HashSet<String>();
         paths.add(path);
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemsDependingOnFromDB(site, paths);
-                toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!CollectionUtils.isNotEmpty(paths));
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemsDependingOnFromDB(site, paths);
-                toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
+        int d = depth;
+        while (!paths.isEmpty() && (depth < 0 || d-- > 0)) {
+            Set<String> newPaths = new HashSet<String>();
+            for (String dep : nextLevel.apply(paths)) {
+                if (toRet.add(dep)) {
+                    newPaths.add(dep);
+                }
             }
+            paths = newPaths;
         }
-
         return toRet;
     }
 
@@ -401,7 +486,18 @@ public class DependencyServiceImpl implements DependencyService {
         params.put(SITE_ID_PARAM, site);
         params.put(OLD_PATH_PARAM, oldPath);
         params.put(NEW_PATH_PARAM, newPath);
-        dependencyMapper.moveDependency(params);
+        TransactionStatus txStatus = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        long version;
+        try {
+            dependencyMapper.moveDependency(params);
+            version = dependencyGraphIndex.bumpVersion(site);
+            transactionManager.commit(txStatus);
+        } catch (Exception e) {
+            transactionManager.rollback(txStatus);
+            throw new ServiceLayerException("Failed to move dependencies for site: " + site + " from path: " +
+                    oldPath + " to path: " + newPath, e);
+        }
+        dependencyGraphIndex.update(site, version, graph -> graph.movePath(oldPath, newPath));
 
         return getItemDependencies(site, newPath, 1);
     }
@@ -417,7 +513,17 @@ public class DependencyServiceImpl implements DependencyService {
         Map<String, String> params = new HashMap<String, String>();
         params.put(SITE_PARAM, site);
         params.put(PATH_PARAM, path);
-        dependencyMapper.deleteDependenciesForSiteAndPath(params);
+        TransactionStatus txStatus = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        long version;
+        try {
+            dependencyMapper.deleteDependenciesForSiteAndPath(params);
+            version = dependencyGraphIndex.bumpVersion(site);
+            transactionManager.commit(txStatus);
+        } catch (Exception e) {
+            transactionManager.rollback(txStatus);
+            throw new ServiceLayerException("Failed to delete dependencies for site: " + site + " path: " + path, e);
+        }
+        dependencyGraphIndex.update(site, version, graph -> graph.removePath(path));
     }
 
     @Override
@@ -425,7 +531,16 @@ public class DependencyServiceImpl implements DependencyService {
         logger.debug("Delete all dependencies for site: " + site);
         Map<String, String> params = new HashMap<String, String>();
         params.put(SITE_PARAM, site);
-        dependencyMapper.deleteDependenciesForSite(params);
+        TransactionStatus txStatus = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            dependencyMapper.deleteDependenciesForSite(params);
+            dependencyGraphIndex.bumpVersion(site);
+            transactionManager.commit(txStatus);
+        } catch (Exception e) {
+            transactionManager.rollback(txStatus);
+            throw new ServiceLayerException("Failed to delete dependencies for site: " + site, e);
+        }
+        dependencyGraphIndex.invalidate(site);
     }
 
     @Override
@@ -484,7 +599,7 @@ public class DependencyServiceImpl implements DependencyService {
         depsSource.addAll(children);
         Set<String> dependencies = getContentTypeFilteredDeleteDependencies(site, depsSource);
         toRet.addAll(dependencies);
-        List<String> itemSpecificcDeps = getItemSpecificDependenciesFromDB(site, depsSource);
+        Collection<String> itemSpecificcDeps = getItemSpecificDependenciesForList(site, depsSource);
         toRet.addAll(itemSpecificcDeps);
         boolean doItAgain = false;
 
@@ -506,7 +621,7 @@ public class DependencyServiceImpl implements DependencyService {
 
     private Set<String> getContentTypeFilteredDeleteDependencies(String site, Set<String> paths) {
         Set<String> toRet = new HashSet<String>();
-        List<String> deps = getItemDependenciesFromDB(site, paths);
+        Collection<String> deps = getItemDependenciesForList(site, paths);
         for (String dep : deps) {
             ContentItemTO item = contentService.getContentItem(site, dep, 0);
             List<DeleteDependencyConfigTO> deleteDependencyConfigList =
@@ -555,6 +670,24 @@ public class DependencyServiceImpl implements DependencyService {
         return itemSpecificDependenciesPatterns;
     }
 
+    /**
+     * Filter equivalent to the RLIKE conditions of the item specific dependencies queries
+     */
+    protected Predicate<String> getItemSpecificDependenciesFilter() {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String pattern : getItemSpecificDependenciesPatterns()) {
+            patterns.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+        }
+        return path -> {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(path).find()) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
     @Override
     public Map<String, List<CalculateDependenciesEntityTO>> calculateDependencies(String site, List<String> paths)
             throws ServiceLayerException {
@@ -756,4 +889,20 @@ public class DependencyServiceImpl implements DependencyService {
     public void setItemStateMapper(ItemStateMapper itemStateMapper) {
         this.itemStateMapper = itemStateMapper;
     }
+
+    public AsyncTaskExecutor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    public void setTaskExecutor(AsyncTaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    public DependencyGraphIndex getDependencyGraphIndex() {
+        return dependencyGraphIndex;
+    }
+
+    public void setDependencyGraphIndex(DependencyGraphIndex dependencyGraphIndex) {
+        this.dependencyGraphIndex = dependencyGraphIndex;
+    }
 }
@@ -22,22 +22,25 @@ import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.dependency.DependencyResolver;
 import org.craftercms.studio.api.v1.to.DependencyResolverConfigTO;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
-import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,29 +52,59 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.
         CONFIGURATION_SITE_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME;
 
+/**
+ * Resolves dependencies by matching the content of the items against the regular expressions of the dependency
+ * resolver configuration. The configuration of each site is parsed and its patterns compiled once and kept until the
+ * configuration file changes.
+ */
 public class RegexDependencyResolver implements DependencyResolver {
 
     private static final Logger logger = LoggerFactory.getLogger(RegexDependencyResolver.class);
 
     protected ContentService contentService;
+    protected ContentRepository contentRepository;
     protected StudioConfiguration studioConfiguration;
 
+    protected final Map<String, CompiledConfiguration> configurationCache =
+            new ConcurrentHashMap<String, CompiledConfiguration>();
+
     @Override
     public Map<String, Set<String>> resolve(String site, String path) {
-        Map<String, Set<String>> toRet = new HashMap<String, Set<String>>();
-        try {
-            logger.debug("Get dependency resolver configuration for site " + site);
-            DependencyResolverConfigTO config = getConfiguration(site);
-            if (config != null) {
+        Map<String, Set<String>> toRet = resolve(site, Collections.singletonList(path)).get(path);
+        return toRet != null ? toRet : new HashMap<String, Set<String>>();
+    }
+
+    @Override
+    public Map<String, Map<String, Set<String>>> resolve(String site, List<String> paths) {
+        Map<String, Map<String, Set<String>>> toRet = new LinkedHashMap<String, Map<String, Set<String>>>();
+        logger.debug("Get dependency resolver configuration for site " + site);
+        CompiledConfiguration config = getCompiledConfiguration(site);
+        if (config == null) {
+            String configLocation = getConfigLocation(site);
+            logger.error("Failed to load Dependency Resolver configuration. Verify that configuration exists" +
+                    " and it is valid XML file: " + configLocation);
+            for (String path : paths) {
+                toRet.put(path, new HashMap<String, Set<String>>());
+            }
+            return toRet;
+        }
+
+        // First extract the candidate paths of all items, then check them all against the same tree
+        Map<String, Map<String, Set<String>>> candidates = new LinkedHashMap<String, Map<String, Set<String>>>();
+        Set<String> allCandidatePaths = new HashSet<String>();
+        for (String path : paths) {
+            Map<String, Set<String>> itemCandidates = new HashMap<String, Set<String>>();
+            try {
                 logger.debug("Determine item type of content for site: " + site + ", path: " + path);
-                DependencyResolverConfigTO.ItemType itemType = getItemTypeResolverConfig(site, path, config);
+                CompiledItemType itemType = config.getItemType(path);
                 if (itemType != null) {
                     String content = contentService.getContentAsString(site, path);
                     if (content != null) {
-                        Map<String, DependencyResolverConfigTO.DependencyType> dependencyTypes =
-                                itemType.getDependencyTypes();
                         logger.debug("Get dependencies of content for site: " + site + ", path: " + path);
-                        toRet = getDependencies(site, path, content, dependencyTypes);
+                        itemCandidates = getCandidatePaths(content, itemType);
+                        for (Set<String> candidatePaths : itemCandidates.values()) {
+                            allCandidatePaths.addAll(candidatePaths);
+                        }
                     } else {
                         logger.error("Failed to extract dependencies. " +
                                 "Content was empty/null found for site: " + site + ", path: " + path);
@@ -79,17 +112,63 @@ public class RegexDependencyResolver implements DependencyResolver {
                 } else {
                     logger.debug("No dependency extraction required for site: " + site + ", path: " + path);
                 }
-            } else {
-                String configLocation = getConfigLocation(site);
-                logger.error("Failed to load Dependency Resolver configuration. Verify that configuration exists" +
-                        " and it is valid XML file: " + configLocation);
+            } catch (Exception exc) {
+                logger.error("Unexcpected error resolving dependencies for site: " + site + " path: " + path);
             }
-        } catch (Exception exc) {
-            logger.error("Unexcpected error resolving dependencies for site: " + site + " path: " + path);
+            candidates.put(path, itemCandidates);
+        }
+
+        Set<String> existingPaths = allCandidatePaths.isEmpty() ? Collections.<String>emptySet() :
+                contentRepository.getExistingPaths(site, allCandidatePaths);
+        for (Map.Entry<String, Map<String, Set<String>>> item : candidates.entrySet()) {
+            Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+            for (Map.Entry<String, Set<String>> dependencyType : item.getValue().entrySet()) {
+                Set<String> extractedPaths = new HashSet<String>();
+                for (String matchedPath : dependencyType.getValue()) {
+                    if (existingPaths.contains(matchedPath)) {
+                        logger.debug("Content exists for matched path " + matchedPath + ". Adding to the result set");
+                        extractedPaths.add(matchedPath);
+                    } else {
+                        String message = "Found reference to " + matchedPath + " in content at " +
+                                item.getKey() + " but content does not exist in referenced path for site " +
+                                site + ".\n"
+                                + "Regular expression for extracting dependencies matched " +
+                                "string, and after applying transformation rules to get value " +
+                                "for dependency path, that dependency path was not found in" +
+                                " site repository as a content.";
+                        logger.debug(message);
+                    }
+                }
+                dependencies.put(dependencyType.getKey(), extractedPaths);
+            }
+            toRet.put(item.getKey(), dependencies);
         }
         return toRet;
     }
 
+    /**
+     * Get the compiled configuration of the site, parsing it again only if the configuration file has changed
+     */
+    protected CompiledConfiguration getCompiledConfiguration(String site) {
+        String configLocation = getConfigLocation(site);
+        String version = contentRepository.getContentObjectId(site, configLocation);
+        if (version == null) {
+            version = "default:" + contentRepository.getContentObjectId(StringUtils.EMPTY,
+                    getDefaultConfigLocation());
+        }
+        CompiledConfiguration config = configurationCache.get(site);
+        if (config == null || !StringUtils.equals(config.version, version)) {
+            DependencyResolverConfigTO configTO = getConfiguration(site);
+            if (configTO == null) {
+                configurationCache.remove(site);
+                return null;
+            }
+            config = new CompiledConfiguration(version, configTO);
+            configurationCache.put(site, config);
+        }
+        return config;
+    }
+
     @SuppressWarnings("unchecked")
     private DependencyResolverConfigTO getConfiguration(String site) {
         DependencyResolverConfigTO config = null;
@@ -191,67 +270,25 @@ public class RegexDependencyResolver implements DependencyResolver {
         return config;
     }
 
-    private DependencyResolverConfigTO.ItemType getItemTypeResolverConfig(String site, String path,
-                                                                          DependencyResolverConfigTO config) {
-        logger.debug("Loop through all item types to match path against include patterns");
-        Map<String, DependencyResolverConfigTO.ItemType> itemTypes = config.getItemTypes();
-        DependencyResolverConfigTO.ItemType itemType = null;
-        if (itemTypes != null) {
-            for (Map.Entry<String, DependencyResolverConfigTO.ItemType> entry : itemTypes.entrySet()) {
-                DependencyResolverConfigTO.ItemType it = entry.getValue();
-                List<String> includes = it.getIncludes();
-                if (ContentUtils.matchesPatterns(path, includes)) {
-                    itemType = it;
-                    break;
-                }
-            }
-        }
-        return itemType;
-    }
-
-    private Map<String, Set<String>> getDependencies(String site, String path, String content, Map<String,
-            DependencyResolverConfigTO.DependencyType> dependencyTypes) {
+    private Map<String, Set<String>> getCandidatePaths(String content, CompiledItemType itemType) {
         Map<String, Set<String>> toRet = new HashMap<String, Set<String>>();
         logger.debug("Loop through all dependency types");
-        for (Map.Entry<String, DependencyResolverConfigTO.DependencyType> dependencyTypeEntry :
-                dependencyTypes.entrySet()) {
-            Set<String> extractedPaths = new HashSet<String>();
-            DependencyResolverConfigTO.DependencyType dependencyType = dependencyTypeEntry.getValue();
-            List<DependencyResolverConfigTO.DependencyExtractionPattern> extractionPatterns =
-                    dependencyType.getIncludes();
-            logger.debug("Loop through all extraction patterns for " + dependencyTypeEntry.getKey());
-            for (DependencyResolverConfigTO.DependencyExtractionPattern extractionPattern :
-                    extractionPatterns) {
-                Pattern pattern = Pattern.compile(extractionPattern.getFindRegex());
-                Matcher matcher = pattern.matcher(content);
-                logger.debug("Matching content against regular expression " + extractionPattern.getFindRegex());
+        for (CompiledDependencyType dependencyType : itemType.dependencyTypes) {
+            Set<String> matchedPaths = new HashSet<String>();
+            logger.debug("Loop through all extraction patterns for " + dependencyType.name);
+            for (CompiledExtractionPattern extractionPattern : dependencyType.patterns) {
+                Matcher matcher = extractionPattern.find.matcher(content);
+                logger.debug("Matching content against regular expression " + extractionPattern.find.pattern());
                 while (matcher.find()) {
                     String matchedPath = matcher.group();
                     logger.debug("Matched path: " + matchedPath + ". Apply transformations");
-                    if (CollectionUtils.isNotEmpty(extractionPattern.getTransforms())) {
-                        for (DependencyResolverConfigTO.DependencyExtractionTransform transform :
-                                extractionPattern.getTransforms()) {
-                            Pattern find = Pattern.compile(transform.getMatch());
-                            Matcher replaceMatcher = find.matcher(matchedPath);
-                            matchedPath = replaceMatcher.replaceAll(transform.getReplace());
-                        }
-                    }
-                    if (contentService.contentExists(site, matchedPath)) {
-                        logger.debug("Content exists for matched path " + matchedPath + ". Adding to the result set");
-                        extractedPaths.add(matchedPath);
-                    } else {
-                        String message = "Found reference to " + matchedPath + " in content at " +
-                                path + " but content does not exist in referenced path for site " +
-                                site + ".\n"
-                                + "Regular expression for extracting dependencies matched " +
-                                "string, and after applying transformation rules to get value " +
-                                "for dependency path, that dependency path was not found in" +
-                                " site repository as a content.";
-                        logger.debug(message);
+                    for (CompiledTransform transform : extractionPattern.transforms) {
+                        matchedPath = transform.match.matcher(matchedPath).replaceAll(transform.replace);
                     }
+                    matchedPaths.add(matchedPath);
                 }
             }
-            toRet.put(dependencyType.getName(), extractedPaths);
+            toRet.put(dependencyType.name, matchedPaths);
         }
         return toRet;
     }
@@ -290,6 +327,14 @@ public class RegexDependencyResolver implements DependencyResolver {
         this.contentService = contentService;
     }
 
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
     public StudioConfiguration getStudioConfiguration() {
         return studioConfiguration;
     }
@@ -297,4 +342,103 @@ public class RegexDependencyResolver implements DependencyResolver {
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    /**
+     * Dependency resolver configuration with all its regular expressions compiled
+     */
+    protected static class CompiledConfiguration {
+
+        protected final String version;
+        /** item types in the order they are matched, with the include patterns of each one **/
+        protected final List<CompiledItemType> itemTypes = new ArrayList<CompiledItemType>();
+
+        protected CompiledConfiguration(String version, DependencyResolverConfigTO config) {
+            this.version = version;
+            if (config.getItemTypes() != null) {
+                for (DependencyResolverConfigTO.ItemType itemType : config.getItemTypes().values()) {
+                    itemTypes.add(new CompiledItemType(itemType));
+                }
+            }
+        }
+
+        protected CompiledItemType getItemType(String path) {
+            for (CompiledItemType itemType : itemTypes) {
+                if (itemType.matches(path)) {
+                    return itemType;
+                }
+            }
+            return null;
+        }
+    }
+
+    protected static class CompiledItemType {
+
+        protected final List<Pattern> includes = new ArrayList<Pattern>();
+        protected final List<CompiledDependencyType> dependencyTypes = new ArrayList<CompiledDependencyType>();
+
+        protected CompiledItemType(DependencyResolverConfigTO.ItemType itemType) {
+            if (itemType.getIncludes() != null) {
+                for (String include : itemType.getIncludes()) {
+                    includes.add(Pattern.compile(include));
+                }
+            }
+            if (itemType.getDependencyTypes() != null) {
+                for (DependencyResolverConfigTO.DependencyType dependencyType :
+                        itemType.getDependencyTypes().values()) {
+                    dependencyTypes.add(new CompiledDependencyType(dependencyType));
+                }
+            }
+        }
+
+        protected boolean matches(String path) {
+            for (Pattern include : includes) {
+                if (include.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    protected static class CompiledDependencyType {
+
+        protected final String name;
+        protected final List<CompiledExtractionPattern> patterns = new ArrayList<CompiledExtractionPattern>();
+
+        protected CompiledDependencyType(DependencyResolverConfigTO.DependencyType dependencyType) {
+            this.name = dependencyType.getName();
+            if (dependencyType.getIncludes() != null) {
+                for (DependencyResolverConfigTO.DependencyExtractionPattern pattern : dependencyType.getIncludes()) {
+                    patterns.add(new CompiledExtractionPattern(pattern));
+                }
+            }
+        }
+    }
+
+    protected static class CompiledExtractionPattern {
+
+        protected final Pattern find;
+        protected final List<CompiledTransform> transforms = new ArrayList<CompiledTransform>();
+
+        protected CompiledExtractionPattern(DependencyResolverConfigTO.DependencyExtractionPattern pattern) {
+            this.find = Pattern.compile(pattern.getFindRegex());
+            if (CollectionUtils.isNotEmpty(pattern.getTransforms())) {
+                for (DependencyResolverConfigTO.DependencyExtractionTransform transform : pattern.getTransforms()) {
+                    transforms.add(new CompiledTransform(Pattern.compile(transform.getMatch()),
+                            transform.getReplace()));
+                }
+            }
+        }
+    }
+
+    protected static class CompiledTransform {
+
+        protected final Pattern match;
+        protected final String replace;
+
+        protected CompiledTransform(Pattern match, String replace) {
+            this.match = match;
+            this.replace = replace;
+        }
+    }
 }
@@ -418,6 +418,7 @@ public class DeploymentServiceImpl implements DeploymentService {
         Map<String, String> params = new HashMap<String, String>();
         params.put("site", site);
         publishRequestMapper.deleteDeploymentDataForSite(params);
+        deploymentHistoryProvider.deleteDeploymentHistoryForSite(site);
         signalWorkersToContinue();
     }
 
@@ -801,7 +802,11 @@ public class DeploymentServiceImpl implements DeploymentService {
             throws ServiceLayerException {
         PreviewEventContext context = new PreviewEventContext(waitTillDone);
         context.setSite(site);
-        eventService.publish(EVENT_PREVIEW_SYNC, context);
+        if (waitTillDone) {
+            eventService.publishAndWait(EVENT_PREVIEW_SYNC, context);
+        } else {
+            eventService.publish(EVENT_PREVIEW_SYNC, context);
+        }
     }
 
     protected void syncFolder(String site, String path, Deployer deployer) {
@@ -20,11 +20,14 @@ package org.craftercms.studio.impl.v1.service.deployment;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
@@ -49,7 +52,6 @@ import org.craftercms.studio.api.v1.service.deployment.PublishingManager;
 import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
 import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.service.site.SiteService;
-import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.DeploymentItemTO;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
@@ -60,6 +62,7 @@ import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LI
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.PUBLISHING_MANAGER_INDEX_FILE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.
         PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ENVIRONMENT;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PROCESSING_STATE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.READY_STATE;
@@ -103,19 +106,128 @@ public class PublishingManagerImpl implements PublishingManager {
             throw new DeploymentException("Cannot process item, item is null.");
         }
 
-        DeploymentItemTO deploymentItem = new DeploymentItemTO();
-        deploymentItem.setSite(item.getSite());
-        deploymentItem.setPath(item.getPath());
-        deploymentItem.setCommitId(item.getCommitId());
-        deploymentItem.setPackageId(item.getPackageId());
+        return processItems(Collections.singletonList(item)).get(0);
+    }
 
-        String site = item.getSite();
-        String path = item.getPath();
-        String oldPath = item.getOldPath();
-        String environment = item.getEnvironment();
-        String action = item.getAction();
-        String user = item.getUser();
+    @Override
+    public List<DeploymentItemTO> processItems(List<PublishRequest> items)
+            throws DeploymentException, SiteNotFoundException {
+        List<DeploymentItemTO> deploymentItems = new ArrayList<DeploymentItemTO>(items.size());
+        if (items.isEmpty()) {
+            return deploymentItems;
+        }
+
+        String site = items.get(0).getSite();
+        List<String> updatedPaths = new ArrayList<String>();
+        for (PublishRequest item : items) {
+            if (item == null) {
+                throw new DeploymentException("Cannot process item, item is null.");
+            }
+            if (!StringUtils.equals(item.getSite(), site)) {
+                throw new DeploymentException("Cannot process items of different sites in the same batch.");
+            }
+            if (!StringUtils.equals(item.getAction(), PublishRequest.Action.DELETE)) {
+                updatedPaths.add(item.getPath());
+            }
+        }
+
+        // Only the metadata of the items is needed to finalize them, it is loaded for the whole batch at once
+        Map<String, ItemMetadata> metadataByPath = objectMetadataManager.getProperties(site, updatedPaths);
+        List<String> deployedPaths = new ArrayList<String>();
+        List<String> savedPaths = new ArrayList<String>();
+        List<String> finalizedPaths = new ArrayList<String>();
+
+        for (PublishRequest item : items) {
+            DeploymentItemTO deploymentItem = new DeploymentItemTO();
+            deploymentItem.setSite(item.getSite());
+            deploymentItem.setPath(item.getPath());
+            deploymentItem.setCommitId(item.getCommitId());
+            deploymentItem.setPackageId(item.getPackageId());
+
+            String path = item.getPath();
+            String oldPath = item.getOldPath();
+            String environment = item.getEnvironment();
+            String action = item.getAction();
+            boolean isLive = isLiveEnvironment(site, environment);
+
+            if (StringUtils.equals(action, PublishRequest.Action.DELETE)) {
+                // keep the order of the changes in case the same path was also updated in the batch
+                finalizeItems(site, deployedPaths, savedPaths, finalizedPaths);
+                processDeletedItem(item, deploymentItem);
+                metadataByPath.remove(FilenameUtils.normalize(path, true));
+            } else {
+                if (StringUtils.equals(action, PublishRequest.Action.MOVE)) {
+                    deploymentItem.setMove(true);
+                    deploymentItem.setOldPath(oldPath);
+                    if (oldPath != null && oldPath.length() > 0) {
+                        if (isLive) {
+                            objectMetadataManager.clearRenamed(site, path);
+                        }
+                    }
+                }
+
+                ItemMetadata itemMetadata = metadataByPath.get(FilenameUtils.normalize(path, true));
+
+                if (itemMetadata == null) {
+                    if (contentService.contentExists(site, path)) {
+                        LOGGER.warn("Content item: '" + site + "':'" + path + "' doesn't exists in " +
+                                "the database, but does exist in git. This may cause problems " +
+                                "in the environment: '" + environment + "'");
+                    } else {
+                        LOGGER.warn("Content item: '" + site + "':'" + path + "' cannot be published. " +
+                                "Content does not exist in git nor in the database. Skipping...");
+                        deploymentItem = null;
+                    }
+                } else {
+                    if (isLive) {
+                        // check if commit id from workflow and from object state match
+                        if (itemMetadata.getCommitId() != null &&
+                                itemMetadata.getCommitId().equals(item.getCommitId())) {
+                            deployedPaths.add(path);
+                        }
+                    } else {
+                        savedPaths.add(path);
+                    }
+                    finalizedPaths.add(path);
+                }
+            }
+            deploymentItems.add(deploymentItem);
+        }
+
+        finalizeItems(site, deployedPaths, savedPaths, finalizedPaths);
+        return deploymentItems;
+    }
+
+    /**
+     * Update the state and clear the workflow metadata of the given items, and clear the lists
+     */
+    protected void finalizeItems(String site, List<String> deployedPaths, List<String> savedPaths,
+                                 List<String> finalizedPaths) {
+        // should consider what should be done if this does not work.
+        // Currently the method will bail and the items are stuck in processing.
+        if (!deployedPaths.isEmpty()) {
+            LOGGER.debug("Environment is live, transition {0} item(s) to LIVE state for site {1}",
+                    deployedPaths.size(), site);
+            objectStateService.transitionBulk(site, deployedPaths, TransitionEvent.DEPLOYMENT);
+        }
+        if (!savedPaths.isEmpty()) {
+            objectStateService.transitionBulk(site, savedPaths, TransitionEvent.SAVE);
+        }
+        if (!finalizedPaths.isEmpty()) {
+            Map<String, Object> props = new HashMap<String, Object>();
+            props.put(ItemMetadata.PROP_SUBMITTED_BY, StringUtils.EMPTY);
+            props.put(ItemMetadata.PROP_SEND_EMAIL, 0);
+            props.put(ItemMetadata.PROP_SUBMITTED_FOR_DELETION, 0);
+            props.put(ItemMetadata.PROP_SUBMISSION_COMMENT, StringUtils.EMPTY);
+            props.put(ItemMetadata.PROP_SUBMITTED_TO_ENVIRONMENT, StringUtils.EMPTY);
+            objectMetadataManager.setObjectMetadata(site, finalizedPaths, props);
+        }
+        deployedPaths.clear();
+        savedPaths.clear();
+        finalizedPaths.clear();
+    }
 
+    protected boolean isLiveEnvironment(String site, String environment) {
         String liveEnvironment = LIVE_ENVIRONMENT;
 
         if (servicesConfig.isStagingEnvironmentEnabled(site)) {
@@ -129,109 +241,69 @@ public class PublishingManagerImpl implements PublishingManager {
                 isLive = true;
             }
         }
-        else if (StringUtils.equalsIgnoreCase(LIVE_ENVIRONMENT, item.getEnvironment()) ||
+        else if (StringUtils.equalsIgnoreCase(LIVE_ENVIRONMENT, environment) ||
                 StringUtils.equalsIgnoreCase(PRODUCTION_ENVIRONMENT, environment)) {
             isLive = true;
         }
+        return isLive;
+    }
 
-        if (StringUtils.equals(action, PublishRequest.Action.DELETE)) {
-            if (oldPath != null && oldPath.length() > 0) {
-                contentService.deleteContent(site, oldPath, user);
-                boolean hasRenamedChildren = false;
-
-                if (oldPath.endsWith(FILE_SEPARATOR + DmConstants.INDEX_FILE)) {
-                    if (contentService.contentExists(site,
-                            oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""))) {
-                        // TODO: SJ: This bypasses the Content Service, fix
-                        RepositoryItem[] children = contentRepository.getContentChildren(
-                                site, oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""));
-
-                        if (children.length > 1) {
-                            hasRenamedChildren = true;
-                        }
-                    }
-                    if (!hasRenamedChildren) {
-                        deleteFolder(site,
-                                oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""), user);
-                    }
-                }
-                deploymentItem.setMove(true);
-                deploymentItem.setOldPath(oldPath);
-                objectMetadataManager.clearRenamed(site, path);
-            }
-
+    protected void processDeletedItem(PublishRequest item, DeploymentItemTO deploymentItem)
+            throws SiteNotFoundException {
+        String site = item.getSite();
+        String path = item.getPath();
+        String oldPath = item.getOldPath();
+        String user = item.getUser();
 
-            boolean haschildren = false;
+        if (oldPath != null && oldPath.length() > 0) {
+            contentService.deleteContent(site, oldPath, user);
+            boolean hasRenamedChildren = false;
 
-            if (item.getPath().endsWith(FILE_SEPARATOR + DmConstants.INDEX_FILE)) {
+            if (oldPath.endsWith(FILE_SEPARATOR + DmConstants.INDEX_FILE)) {
                 if (contentService.contentExists(site,
-                        path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""))) {
+                        oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""))) {
                     // TODO: SJ: This bypasses the Content Service, fix
-                    RepositoryItem[] children = contentRepository.getContentChildren(site,
-                            path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""));
+                    RepositoryItem[] children = contentRepository.getContentChildren(
+                            site, oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""));
 
                     if (children.length > 1) {
-                        haschildren = true;
+                        hasRenamedChildren = true;
                     }
                 }
+                if (!hasRenamedChildren) {
+                    deleteFolder(site,
+                            oldPath.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""), user);
+                }
             }
+            deploymentItem.setMove(true);
+            deploymentItem.setOldPath(oldPath);
+            objectMetadataManager.clearRenamed(site, path);
+        }
 
-            if (contentService.contentExists(site, path)) {
-                contentService.deleteContent(site, path, user);
 
-                if (!haschildren) {
-                    deleteFolder(site, path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""), user);
-                }
-            }
-            deploymentItem.setDelete(true);
-        } else {
-            if (StringUtils.equals(action, PublishRequest.Action.MOVE)) {
-                deploymentItem.setMove(true);
-                deploymentItem.setOldPath(oldPath);
-                if (oldPath != null && oldPath.length() > 0) {
-                    if (isLive) {
-                        objectMetadataManager.clearRenamed(site, path);
-                    }
-                }
-            }
+        boolean haschildren = false;
 
-            ItemMetadata itemMetadata = objectMetadataManager.getProperties(site, path);
+        if (item.getPath().endsWith(FILE_SEPARATOR + DmConstants.INDEX_FILE)) {
+            if (contentService.contentExists(site,
+                    path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""))) {
+                // TODO: SJ: This bypasses the Content Service, fix
+                RepositoryItem[] children = contentRepository.getContentChildren(site,
+                        path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""));
 
-            if (itemMetadata == null) {
-                if (contentService.contentExists(site, path)) {
-                    LOGGER.warn("Content item: '" + site + "':'" + path + "' doesn't exists in " +
-                            "the database, but does exist in git. This may cause problems " +
-                            "in the environment: '" + environment + "'");
-                } else {
-                    LOGGER.warn("Content item: '" + site + "':'" + path + "' cannot be published. " +
-                            "Content does not exist in git nor in the database. Skipping...");
-                    return null;
+                if (children.length > 1) {
+                    haschildren = true;
                 }
-            } else {
+            }
+        }
 
-                ContentItemTO contentItem = contentService.getContentItem(site, path);
-                if (isLive) {
-                    // should consider what should be done if this does not work.
-                    // Currently the method will bail and the item is stuck in processing.
-                    LOGGER.debug("Environment is live, transition item to LIVE state {0}:{1}", site, path);
+        if (contentService.contentExists(site, path)) {
+            contentService.deleteContent(site, path, user);
 
-                    // check if commit id from workflow and from object state match
-                    if (itemMetadata.getCommitId() != null && itemMetadata.getCommitId().equals(item.getCommitId())) {
-                        objectStateService.transition(site, contentItem, TransitionEvent.DEPLOYMENT);
-                    }
-                } else {
-                    objectStateService.transition(site, contentItem, TransitionEvent.SAVE);
-                }
-                Map<String, Object> props = new HashMap<String, Object>();
-                props.put(ItemMetadata.PROP_SUBMITTED_BY, StringUtils.EMPTY);
-                props.put(ItemMetadata.PROP_SEND_EMAIL, 0);
-                props.put(ItemMetadata.PROP_SUBMITTED_FOR_DELETION, 0);
-                props.put(ItemMetadata.PROP_SUBMISSION_COMMENT, StringUtils.EMPTY);
-                props.put(ItemMetadata.PROP_SUBMITTED_TO_ENVIRONMENT, StringUtils.EMPTY);
-                objectMetadataManager.setObjectMetadata(site, path, props);
+            if (!haschildren) {
+                deleteFolder(site, path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""), user);
             }
         }
-        return deploymentItem;
+        deploymentItem.setDelete(true);
     }
 
     private void deleteFolder(String site, String path, String user) throws SiteNotFoundException {
@@ -258,10 +330,7 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsCompleted(@ValidateStringParam(name = "site") String site,
                                    @ValidateStringParam(name = "environment") String environment,
                                    List<PublishRequest> processedItems) throws DeploymentException {
-        for (PublishRequest item : processedItems) {
-            item.setState(PublishRequest.State.COMPLETED);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        updateItemsDeploymentState(processedItems, PublishRequest.State.COMPLETED);
     }
 
     @Override
@@ -269,10 +338,7 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsProcessing(@ValidateStringParam(name = "site") String site,
                                     @ValidateStringParam(name = "environment") String environment,
                                     List<PublishRequest> itemsToDeploy) throws DeploymentException {
-        for (PublishRequest item : itemsToDeploy) {
-            item.setState(PublishRequest.State.PROCESSING);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        updateItemsDeploymentState(itemsToDeploy, PublishRequest.State.PROCESSING);
     }
 
     @Override
@@ -280,10 +346,7 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsReady(@ValidateStringParam(name = "site") String site,
                                @ValidateStringParam(name = "environment") String environment,
                                List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
-        for (PublishRequest item : copyToEnvironmentItems) {
-            item.setState(READY_FOR_LIVE);
-            publishRequestMapper.updateItemDeploymentState(item);
-        }
+        updateItemsDeploymentState(copyToEnvironmentItems, READY_FOR_LIVE);
     }
 
     @Override
@@ -291,10 +354,36 @@ public class PublishingManagerImpl implements PublishingManager {
     public void markItemsBlocked(@ValidateStringParam(name = "site") String site,
                                  @ValidateStringParam(name = "environment") String environment,
                                  List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
-        for (PublishRequest item : copyToEnvironmentItems) {
-            item.setState(PublishRequest.State.BLOCKED);
-            publishRequestMapper.updateItemDeploymentState(item);
+        updateItemsDeploymentState(copyToEnvironmentItems, PublishRequest.State.BLOCKED);
+    }
+
+    /**
+     * Change the state of the given publishing requests, updating them in batches instead of one by one
+     */
+    protected void updateItemsDeploymentState(List<PublishRequest> items, String state) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(PUBLISHING_MANAGER_STATE_UPDATE_BATCH_SIZE));
+        List<Long> ids = new ArrayList<Long>(Math.min(items.size(), batchSize));
+        for (PublishRequest item : items) {
+            item.setState(state);
+            ids.add(item.getId());
+            if (ids.size() >= batchSize) {
+                updateItemsDeploymentState(ids, state);
+                ids.clear();
+            }
         }
+        if (!ids.isEmpty()) {
+            updateItemsDeploymentState(ids, state);
+        }
+    }
+
+    protected void updateItemsDeploymentState(Collection<Long> ids, String state) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("state", state);
+        params.put("ids", ids);
+        publishRequestMapper.updateItemsDeploymentState(params);
     }
 
     @Override
@@ -16,6 +16,7 @@
  */
 package org.craftercms.studio.impl.v1.service.deployment.job;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -28,6 +29,7 @@ import org.craftercms.studio.api.v1.service.deployment.PublishingManager;
 import org.craftercms.studio.api.v1.service.event.EventService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.notification.NotificationService;
 import org.craftercms.studio.impl.v1.job.RepositoryJob;
@@ -36,7 +38,7 @@ import org.springframework.core.task.TaskExecutor;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOYMENT_MASTER_PUBLISHING_NODE;
 
 
-public class DeployContentToEnvironmentStore extends RepositoryJob {
+public class DeployContentToEnvironmentStore extends RepositoryJob implements StatisticsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(DeployContentToEnvironmentStore.class);
 
@@ -56,6 +58,8 @@ public class DeployContentToEnvironmentStore extends RepositoryJob {
     protected TaskExecutor taskExecutor;
     protected AuditServiceInternal auditServiceInternal;
 
+    protected final PublishingStatistics publishingStatistics = new PublishingStatistics();
+
     public static synchronized void signalToStop(boolean toStop) {
         stopSignaled = toStop;
     }
@@ -92,7 +96,8 @@ public class DeployContentToEnvironmentStore extends RepositoryJob {
                 for (String site : siteNames) {
 
                     PublisherTask publisherTask = new PublisherTask(site, studioConfiguration, siteService,
-                            publishingManager, servicesConfig,contentRepository, notificationService, auditServiceInternal);
+                            publishingManager, servicesConfig,contentRepository, notificationService, auditServiceInternal,
+                            publishingStatistics);
                     taskExecutor.execute(publisherTask);
                 }
             }
@@ -108,6 +113,16 @@ public class DeployContentToEnvironmentStore extends RepositoryJob {
         return toReturn;
     }
 
+    @Override
+    public String getStatisticsName() {
+        return "publishing";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        return publishingStatistics.getStatistics();
+    }
+
     public PublishingManager getPublishingManager() {
         return publishingManager;
     }
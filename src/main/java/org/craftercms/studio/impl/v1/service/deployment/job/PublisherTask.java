@@ -52,6 +52,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -62,10 +63,16 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_C
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_PUBLISHING;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_QUEUED;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_STOPPED_ERROR;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_UPDATE_INTERVAL;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_BASE_PATH;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SITES_REPOS_PATH;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_PUBLISHED;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CONTENT_ITEM;
+import static org.craftercms.studio.impl.v1.service.deployment.job.PublishingStatistics.PHASE_DEPLOY;
+import static org.craftercms.studio.impl.v1.service.deployment.job.PublishingStatistics.PHASE_MARK_COMPLETED;
+import static org.craftercms.studio.impl.v1.service.deployment.job.PublishingStatistics.PHASE_MARK_PROCESSING;
+import static org.craftercms.studio.impl.v1.service.deployment.job.PublishingStatistics.PHASE_PROCESS_ITEMS;
+import static org.craftercms.studio.impl.v1.service.deployment.job.PublishingStatistics.PHASE_TOTAL;
 
 public class PublisherTask implements Runnable {
 
@@ -81,6 +88,8 @@ public class PublisherTask implements Runnable {
     private ContentRepository contentRepository;
     private NotificationService notificationService;
     private AuditServiceInternal auditServiceInternal;
+    private PublishingStatistics publishingStatistics;
+    private long lastStatusUpdate;
 
     public PublisherTask(String site,
                          StudioConfiguration studioConfiguration,
@@ -89,7 +98,8 @@ public class PublisherTask implements Runnable {
                          ServicesConfig servicesConfig,
                          ContentRepository contentRepository,
                          NotificationService notificationService,
-                         AuditServiceInternal auditServiceInternal) {
+                         AuditServiceInternal auditServiceInternal,
+                         PublishingStatistics publishingStatistics) {
         this.site = site;
         this.studioConfiguration = studioConfiguration;
         this.siteService = siteService;
@@ -98,6 +108,7 @@ public class PublisherTask implements Runnable {
         this.contentRepository = contentRepository;
         this.notificationService = notificationService;
         this.auditServiceInternal = auditServiceInternal;
+        this.publishingStatistics = publishingStatistics;
     }
 
     @Override
@@ -128,7 +139,9 @@ public class PublisherTask implements Runnable {
                                         publishingManager.getItemsReadyForDeployment(site, environment);
 
                                 if (itemsToDeploy != null && itemsToDeploy.size() > 0) {
+                                    long startTime = System.nanoTime();
                                     publishingManager.markItemsProcessing(site, environment, itemsToDeploy);
+                                    recordPhase(PHASE_MARK_PROCESSING, startTime);
                                     List<String> commitIds = itemsToDeploy.stream()
                                             .map(PublishRequest::getCommitId)
                                             .distinct().collect(Collectors.toList());
@@ -148,7 +161,7 @@ public class PublisherTask implements Runnable {
                                         logger.debug("Site \"{0}\" has {1} items ready for deployment",
                                                 site, itemsToDeploy.size());
 
-                                        doPublishing(itemsToDeploy, environment);
+                                        doPublishing(itemsToDeploy, environment, startTime);
                                     } else {
                                         publishingManager.markItemsReady(site, environment, itemsToDeploy);
                                     }
@@ -227,7 +240,8 @@ public class PublisherTask implements Runnable {
         return environments;
     }
 
-    private void doPublishing(List<PublishRequest> itemsToDeploy, String environment) {
+    private void doPublishing(List<PublishRequest> itemsToDeploy, String environment, long startTime) {
+        boolean success = false;
         try {
             String statusMessage = StringUtils.EMPTY;
             String author = itemsToDeploy.get(0).getUser();
@@ -241,8 +255,14 @@ public class PublisherTask implements Runnable {
             try {
                 logger.debug("Mark items as processing for site \"{0}\"", site);
                 Set<String> packageIds = new HashSet<String>();
-                for (PublishRequest item : itemsToDeploy) {
-                    processPublishingRequest(site, environment, item,
+                long phaseStart = System.nanoTime();
+                logger.debug("Processing {0} content item(s) for site \"{1}\"", itemsToDeploy.size(), site);
+                List<DeploymentItemTO> deploymentItems = publishingManager.processItems(itemsToDeploy);
+                logger.debug("Processing COMPLETE {0} content item(s) for site \"{1}\"", itemsToDeploy.size(),
+                        site);
+                for (int i = 0; i < itemsToDeploy.size(); i++) {
+                    PublishRequest item = itemsToDeploy.get(i);
+                    processPublishingRequest(site, environment, item, deploymentItems.get(i),
                             completeDeploymentItemList, processedPaths);
                     if (!StringUtils.equals(currentPackageId, item.getPackageId())) {
                         currentPackageId = item.getPackageId();
@@ -252,22 +272,31 @@ public class PublisherTask implements Runnable {
                                 statusMessage.replace("{package_id}", currentPackageId)
                                         .replace("{datetime}", ZonedDateTime.now(ZoneOffset.UTC)
                                                 .format(DateTimeFormatter.ofPattern(sdf.toPattern())));
-                        siteService.updatePublishingStatusMessage(site, statusMessage);
+                        updateStatusMessage(statusMessage);
                     }
                     if (packageIds.add(item.getPackageId())) {
                         sbComment.append(item.getSubmissionComment()).append("\n");
                     }
                 }
+                long processTime = recordPhase(PHASE_PROCESS_ITEMS, phaseStart);
+                phaseStart = System.nanoTime();
                 deploy(site, environment, completeDeploymentItemList, author,
                         sbComment.toString());
+                long deployTime = recordPhase(PHASE_DEPLOY, phaseStart);
                 StringBuilder sbPackIds = new StringBuilder("Package(s): ");
                 for (String packageId : packageIds) {
                     sbPackIds.append(packageId).append(";");
                 }
                 generateWorkflowActivity(site, sbPackIds.toString(), author, OPERATION_PUBLISHED);
+                phaseStart = System.nanoTime();
                 publishingManager.markItemsCompleted(site, environment, itemsToDeploy);
+                long markCompletedTime = recordPhase(PHASE_MARK_COMPLETED, phaseStart);
                 logger.debug("Mark deployment completed for processed items for site \"{0}\"", site);
-                logger.info("Finished publishing environment " + environment + " for site " + site);
+                long totalTime = recordPhase(PHASE_TOTAL, startTime);
+                success = true;
+                logger.info("Finished publishing environment " + environment + " for site " + site + ": " +
+                        itemsToDeploy.size() + " item(s) in " + totalTime + " ms (processing items " + processTime +
+                        " ms, deploy " + deployTime + " ms, mark completed " + markCompletedTime + " ms)");
 
                 if (publishingManager.isPublishingQueueEmpty(site)) {
                     statusMessage = studioConfiguration.getProperty
@@ -315,11 +344,45 @@ public class PublisherTask implements Runnable {
                     + site, err);
             notificationService.notifyDeploymentError(site, err);
             logger.info("Continue executing deployment for other sites.");
+        } finally {
+            if (publishingStatistics != null) {
+                publishingStatistics.recordCycle(itemsToDeploy.size(), success);
+            }
+        }
+    }
+
+    /**
+     * Record the time spent in a phase of the publishing cycle
+     *
+     * @return the time spent in milliseconds
+     */
+    private long recordPhase(String phase, long phaseStart) {
+        long elapsed = System.nanoTime() - phaseStart;
+        if (publishingStatistics != null) {
+            publishingStatistics.record(phase, elapsed);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    private void updateStatusMessage(String statusMessage) throws SiteNotFoundException {
+        siteService.updatePublishingStatusMessage(site, statusMessage);
+        lastStatusUpdate = System.currentTimeMillis();
+    }
+
+    /**
+     * Update the status message with the progress of the publishing, at most once per update interval so the
+     * publishing of big packages doesn't write it for every item
+     */
+    private void updateProgressStatusMessage(String statusMessage) throws SiteNotFoundException {
+        long interval = Long.parseLong(
+                studioConfiguration.getProperty(JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_UPDATE_INTERVAL));
+        if (System.currentTimeMillis() - lastStatusUpdate >= interval) {
+            updateStatusMessage(statusMessage);
         }
     }
 
     private void processPublishingRequest(String site, String environment, PublishRequest item,
-            List<DeploymentItemTO> completeDeploymentItemList,
+            DeploymentItemTO deploymentItem, List<DeploymentItemTO> completeDeploymentItemList,
             Set<String> processedPaths)
     throws ServiceLayerException, DeploymentException {
         List<DeploymentItemTO> missingDependencies = new ArrayList<DeploymentItemTO>();
@@ -329,19 +392,12 @@ public class PublisherTask implements Runnable {
         String statusMessage = studioConfiguration.getProperty(JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_BUSY);
         statusMessage = statusMessage.replace("{item_path}", messagePath).replace("{datetime}",
                 ZonedDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern(sdf.toPattern())));
-        siteService.updatePublishingStatusMessage(site, statusMessage);
+        updateProgressStatusMessage(statusMessage);
         try {
             List<DeploymentItemTO> deploymentItemList = new ArrayList<DeploymentItemTO>();
-
-
-            logger.debug("Processing [{0}] content item for site \"{1}\"", item
-                    .getPath(), site);
-            DeploymentItemTO deploymentItem = publishingManager.processItem(item);
             if (deploymentItem != null) {
                 deploymentItemList.add(deploymentItem);
             }
-            logger.debug("Processing COMPLETE [{0}] content item for site \"{1}\"",
-                    item.getPath(), site);
 
             if (isMandatoryDependenciesCheckEnabled()) {
                 logger.debug("Processing Mandatory Deps [{0}] content item for site "
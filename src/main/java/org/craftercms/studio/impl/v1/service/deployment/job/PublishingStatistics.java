@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.deployment.job;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent by the publisher in each phase of the publishing cycles, shared by all the {@link PublisherTask}s
+ */
+public class PublishingStatistics {
+
+    public static final String PHASE_MARK_PROCESSING = "markProcessing";
+    public static final String PHASE_PROCESS_ITEMS = "processItems";
+    public static final String PHASE_DEPLOY = "deploy";
+    public static final String PHASE_MARK_COMPLETED = "markCompleted";
+    public static final String PHASE_TOTAL = "total";
+
+    protected final Map<String, PhaseStatistics> phases = new ConcurrentHashMap<String, PhaseStatistics>();
+
+    protected final LongAdder cycles = new LongAdder();
+    protected final LongAdder items = new LongAdder();
+    protected final LongAdder failures = new LongAdder();
+
+    /**
+     * Record the time spent in a phase of a publishing cycle
+     *
+     * @param phase name of the phase
+     * @param nanos time spent in nanoseconds
+     */
+    public void record(String phase, long nanos) {
+        PhaseStatistics statistics = phases.computeIfAbsent(phase, p -> new PhaseStatistics());
+        statistics.count.increment();
+        statistics.totalTime.add(nanos);
+        long current = statistics.maxTime.get();
+        while (nanos > current && !statistics.maxTime.compareAndSet(current, nanos)) {
+            current = statistics.maxTime.get();
+        }
+    }
+
+    /**
+     * Record a publishing cycle that finished
+     *
+     * @param itemCount number of publishing requests of the cycle
+     * @param success false if the cycle failed
+     */
+    public void recordCycle(int itemCount, boolean success) {
+        cycles.increment();
+        items.add(itemCount);
+        if (!success) {
+            failures.increment();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("cycles", cycles.sum());
+        statistics.put("items", items.sum());
+        statistics.put("failures", failures.sum());
+        for (Map.Entry<String, PhaseStatistics> entry : phases.entrySet()) {
+            PhaseStatistics phase = entry.getValue();
+            long count = phase.count.sum();
+            Map<String, Object> phaseStatistics = new LinkedHashMap<>();
+            phaseStatistics.put("count", count);
+            phaseStatistics.put("avgTimeMs", count > 0 ?
+                    TimeUnit.NANOSECONDS.toMillis(phase.totalTime.sum() / count) : 0);
+            phaseStatistics.put("maxTimeMs", TimeUnit.NANOSECONDS.toMillis(phase.maxTime.get()));
+            statistics.put(entry.getKey(), phaseStatistics);
+        }
+        return statistics;
+    }
+
+    protected static class PhaseStatistics {
+
+        protected final LongAdder count = new LongAdder();
+        protected final LongAdder totalTime = new LongAdder();
+        protected final AtomicLong maxTime = new AtomicLong();
+    }
+}
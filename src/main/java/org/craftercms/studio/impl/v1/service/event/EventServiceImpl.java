@@ -14,86 +14,456 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package org.craftercms.studio.impl.v1.service.event;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
 import org.craftercms.studio.api.v1.ebus.*;
+import org.craftercms.studio.api.v1.job.CronJobContext;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.event.EventService;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+import org.craftercms.studio.impl.v2.service.security.Authentication;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.http.HttpSession;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-public class EventServiceImpl implements EventService, ApplicationContextAware {
+import static org.craftercms.studio.api.v1.constant.StudioConstants.HTTP_SESSION_ATTRIBUTE_AUTHENTICATION;
+
+/**
+ * Event service that delivers the events asynchronously. Every event type has its own bounded queue drained, in
+ * publishing order, by a single task of the shared executor at a time, so a slow listener only delays the events of
+ * its own type and never the publisher. When the queue of an event is full the publisher blocks until there is room,
+ * which throttles the publishers instead of dropping events or delivering them out of order.
+ *
+ * Events listed in {@code awaitEvents}, and the ones published through {@link #publishAndWait(String, Object...)},
+ * are still queued (so ordering is kept) but the publisher waits until all the listeners have been invoked.
+ *
+ * Listener methods are resolved to {@link MethodHandle}s when subscribed, the listener bean is looked up once on
+ * the first delivery. The user and ticket of the request the event was published from are resolved when it is
+ * published and given to the listeners through a {@link RepositoryEventContext}, the request itself is never bound
+ * to another thread since it can be recycled once the response is sent. Job, repository event and security contexts
+ * are passed as they are.
+ */
+public class EventServiceImpl implements EventService, ApplicationContextAware, StatisticsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(EventServiceImpl.class);
 
+    /** time between warnings while a publisher is blocked on a full queue **/
+    private static final long FULL_QUEUE_WAIT_MILLIS = 1000;
+
     protected ApplicationContext applicationContext;
+    protected TaskExecutor taskExecutor;
+    protected int queueCapacity = 1000;
+    protected Set<String> awaitEvents = Collections.emptySet();
 
-    private Map<String, List<EventSubscriber>> eventListeners = new HashMap<String, List<EventSubscriber>>();
+    private final Map<String, EventQueue> eventQueues = new ConcurrentHashMap<String, EventQueue>();
 
+    /** queue being drained by the current thread, used to avoid waiting on itself **/
+    private final ThreadLocal<EventQueue> currentQueue = new ThreadLocal<EventQueue>();
 
     @Override
     @ValidateParams
     public void publish(@ValidateStringParam(name = "event") String event, Object... args) {
+        publish(event, awaitEvents.contains(event), args);
+    }
+
+    @Override
+    @ValidateParams
+    public void publishAndWait(@ValidateStringParam(name = "event") String event, Object... args) {
+        publish(event, true, args);
+    }
+
+    protected void publish(String event, boolean await, Object... args) {
         logger.debug(String.format("Publishing %s", event));
 
-        List<EventSubscriber> listenersForEvent = getListenersForEvent(event, false);
-        if (listenersForEvent != null) {
-            for (EventSubscriber listener : listenersForEvent) {
-                Object bean = applicationContext.getBean(listener.getBeanName());
-                Method method = listener.getMethod();
-                try {
-                    method.invoke(bean, args);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    logger.error("Error invoking listeners method for Publishing event: " + listener.getBeanName() + " - " + listener.getMethod());
-                }
+        EventQueue queue = eventQueues.get(event);
+        if (queue == null || queue.listeners.isEmpty()) {
+            return;
+        }
+        PendingEvent pendingEvent = new PendingEvent(args, await);
+        queue.published.increment();
+        if (await && currentQueue.get() == queue) {
+            // published by a listener of the same event, the queue can't be drained until it returns
+            queue.deliver(pendingEvent);
+        } else {
+            queue.enqueue(pendingEvent);
+        }
+        if (await) {
+            try {
+                pendingEvent.done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn(String.format("Interrupted while waiting for the delivery of event %s", event));
+            } catch (ExecutionException e) {
+                logger.error(String.format("Error waiting for the delivery of event %s", event), e);
             }
         }
     }
 
-    protected List<EventSubscriber> getListenersForEvent(String event, boolean create) {
-        List<EventSubscriber> listeners = eventListeners.get(event);
-        if (listeners == null && create) {
-            listeners = new ArrayList<EventSubscriber>();
-            eventListeners.put(event, listeners);
-        }
-        return listeners;
+    protected EventQueue getQueueForEvent(String event) {
+        return eventQueues.computeIfAbsent(event, EventQueue::new);
     }
 
     @Override
     @ValidateParams
     public void subscribe(@ValidateStringParam(name = "event") String event, @ValidateStringParam(name = "listener") String listener, Method method) {
         logger.info(String.format("Subscribing %s to %s", listener, event));
-        EventSubscriber subscriber = new EventSubscriber(listener, method);
-        getListenersForEvent(event, true).add(subscriber);
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            logger.error("Listener method is not accessible, can't subscribe " + listener + " - " + method + " to " +
+                    event, e);
+            return;
+        }
+        // adapt the handle to (Object bean, Object[] args) -> void so all the listeners are invoked the same way
+        handle = handle.asType(handle.type().generic().changeReturnType(void.class))
+                .asSpreader(Object[].class, method.getParameterCount());
+        getQueueForEvent(event).listeners.add(new ListenerHandle(new EventSubscriber(listener, method), handle));
     }
 
     @Override
     @ValidateParams
     public void unSubscribe(@ValidateStringParam(name = "event") String event, @ValidateStringParam(name = "listener") String listener) {
         logger.debug(String.format("UnSubscribing %s to %s", listener, event));
-        List<EventSubscriber> listeners = getListenersForEvent(event, false);
-        for (EventSubscriber subscriber : listeners) {
-            if (StringUtils.equals(subscriber.getBeanName(), listener)) {
-                listeners.remove(subscriber);
-            }
+        EventQueue queue = eventQueues.get(event);
+        if (queue != null) {
+            queue.listeners.removeIf(l -> StringUtils.equals(l.subscriber.getBeanName(), listener));
+        }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "eventBus";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        for (EventQueue queue : eventQueues.values()) {
+            Map<String, Object> eventStatistics = new LinkedHashMap<>();
+            long delivered = queue.delivered.sum();
+            eventStatistics.put("listeners", queue.listeners.size());
+            eventStatistics.put("queueDepth", queue.events.size());
+            eventStatistics.put("queueCapacity", queueCapacity);
+            eventStatistics.put("published", queue.published.sum());
+            eventStatistics.put("delivered", delivered);
+            eventStatistics.put("blockedPublishes", queue.blockedPublishes.sum());
+            eventStatistics.put("listenerErrors", queue.errors.sum());
+            eventStatistics.put("avgQueueTimeMs", delivered > 0 ?
+                    TimeUnit.NANOSECONDS.toMillis(queue.totalQueueTime.sum() / delivered) : 0);
+            eventStatistics.put("maxQueueTimeMs", TimeUnit.NANOSECONDS.toMillis(queue.maxQueueTime.get()));
+            eventStatistics.put("avgDeliveryTimeMs", delivered > 0 ?
+                    TimeUnit.NANOSECONDS.toMillis(queue.totalDeliveryTime.sum() / delivered) : 0);
+            eventStatistics.put("maxDeliveryTimeMs", TimeUnit.NANOSECONDS.toMillis(queue.maxDeliveryTime.get()));
+            statistics.put(queue.event, eventStatistics);
         }
+        return statistics;
     }
 
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
     }
+
+    public TaskExecutor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Set<String> getAwaitEvents() {
+        return awaitEvents;
+    }
+
+    public void setAwaitEvents(String[] awaitEvents) {
+        Set<String> events = new HashSet<String>();
+        if (ArrayUtils.isNotEmpty(awaitEvents)) {
+            for (String event : awaitEvents) {
+                if (StringUtils.isNotBlank(event)) {
+                    events.add(event.trim());
+                }
+            }
+        }
+        this.awaitEvents = Collections.unmodifiableSet(events);
+    }
+
+    protected static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Listener method resolved at subscription time
+     */
+    protected class ListenerHandle {
+
+        protected final EventSubscriber subscriber;
+        protected final MethodHandle handle;
+        protected volatile Object bean;
+
+        protected ListenerHandle(EventSubscriber subscriber, MethodHandle handle) {
+            this.subscriber = subscriber;
+            this.handle = handle;
+        }
+
+        protected void invoke(Object[] args) throws Throwable {
+            Object target = bean;
+            if (target == null) {
+                target = applicationContext.getBean(subscriber.getBeanName());
+                bean = target;
+            }
+            handle.invokeExact(target, args);
+        }
+    }
+
+    protected static class PendingEvent {
+
+        protected final Object[] args;
+        protected final long publishedAt = System.nanoTime();
+        protected final ThreadContext context = ThreadContext.resolve();
+        protected final CompletableFuture<Void> done;
+
+        protected PendingEvent(Object[] args, boolean await) {
+            this.args = args;
+            this.done = await ? new CompletableFuture<Void>() : null;
+        }
+    }
+
+    /**
+     * Thread bound contexts that listeners rely on, like the current user
+     */
+    protected static class ThreadContext {
+
+        protected RequestContext requestContext;
+        protected CronJobContext cronJobContext;
+        protected RepositoryEventContext repositoryEventContext;
+        protected SecurityContext securityContext;
+
+        protected static ThreadContext capture() {
+            ThreadContext context = new ThreadContext();
+            context.requestContext = RequestContext.getCurrent();
+            context.cronJobContext = CronJobContext.getCurrent();
+            context.repositoryEventContext = RepositoryEventContext.getCurrent();
+            context.securityContext = SecurityContextHolder.getContext();
+            return context;
+        }
+
+        /**
+         * Capture the contexts of the publisher to be used on another thread, the user and ticket of the current
+         * request are copied to a repository event context instead of keeping the request
+         */
+        protected static ThreadContext resolve() {
+            ThreadContext context = capture();
+            RequestContext requestContext = context.requestContext;
+            if (requestContext != null) {
+                context.requestContext = null;
+                context.cronJobContext = null;
+                context.repositoryEventContext = null;
+                HttpSession httpSession = requestContext.getRequest().getSession(false);
+                if (httpSession != null) {
+                    Authentication auth =
+                            (Authentication) httpSession.getAttribute(HTTP_SESSION_ATTRIBUTE_AUTHENTICATION);
+                    if (auth != null) {
+                        context.repositoryEventContext =
+                                new RepositoryEventContext(auth.getToken(), auth.getUsername());
+                    }
+                }
+            }
+            return context;
+        }
+
+        protected void restore() {
+            if (requestContext == null) {
+                RequestContext.clear();
+            } else {
+                RequestContext.setCurrent(requestContext);
+            }
+            if (cronJobContext == null) {
+                CronJobContext.clear();
+            } else {
+                CronJobContext.setCurrent(cronJobContext);
+            }
+            if (repositoryEventContext == null) {
+                RepositoryEventContext.clear();
+            } else {
+                RepositoryEventContext.setCurrent(repositoryEventContext);
+            }
+            SecurityContextHolder.setContext(securityContext);
+        }
+    }
+
+    /**
+     * Listeners and pending events of a single event type
+     */
+    protected class EventQueue {
+
+        protected final String event;
+        protected final List<ListenerHandle> listeners = new CopyOnWriteArrayList<ListenerHandle>();
+        protected final BlockingQueue<PendingEvent> events = new LinkedBlockingQueue<PendingEvent>(queueCapacity);
+        protected final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        protected final LongAdder published = new LongAdder();
+        protected final LongAdder delivered = new LongAdder();
+        protected final LongAdder blockedPublishes = new LongAdder();
+        protected final LongAdder errors = new LongAdder();
+        protected final LongAdder totalQueueTime = new LongAdder();
+        protected final LongAdder totalDeliveryTime = new LongAdder();
+        protected final AtomicLong maxQueueTime = new AtomicLong();
+        protected final AtomicLong maxDeliveryTime = new AtomicLong();
+
+        protected EventQueue(String event) {
+            this.event = event;
+        }
+
+        /**
+         * Queue an event and make sure it is drained, blocking while the queue is full
+         */
+        protected void enqueue(PendingEvent pendingEvent) {
+            if (!events.offer(pendingEvent)) {
+                if (currentQueue.get() == this) {
+                    // published by a listener of the same event, this thread is the only one draining the queue
+                    deliver(pendingEvent);
+                    return;
+                }
+                logger.debug(String.format("Queue for event %s is full, waiting for room", event));
+                blockedPublishes.increment();
+                boolean interrupted = false;
+                try {
+                    boolean queued = false;
+                    while (!queued) {
+                        try {
+                            queued = events.offer(pendingEvent, FULL_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException e) {
+                            // the event must not be lost, keep waiting and restore the flag afterwards
+                            interrupted = true;
+                        }
+                        if (!queued) {
+                            logger.warn(String.format("Queue for event %s is still full, publisher is waiting",
+                                    event));
+                            // in case the drain task ended without taking the events
+                            schedule();
+                        }
+                    }
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Start a drain task unless there is one running already
+         */
+        protected void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                if (taskExecutor == null) {
+                    drain();
+                    return;
+                }
+                try {
+                    taskExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    logger.warn(String.format("Event executor rejected the delivery of %s, delivering on the " +
+                            "publishing thread", event));
+                    drain();
+                }
+            }
+        }
+
+        protected void drain() {
+            EventQueue previous = currentQueue.get();
+            currentQueue.set(this);
+            try {
+                do {
+                    PendingEvent pendingEvent;
+                    while ((pendingEvent = events.poll()) != null) {
+                        deliver(pendingEvent);
+                    }
+                    scheduled.set(false);
+                    // an event could have been queued after the last poll but before the flag was cleared
+                } while (!events.isEmpty() && scheduled.compareAndSet(false, true));
+            } finally {
+                if (previous == null) {
+                    currentQueue.remove();
+                } else {
+                    currentQueue.set(previous);
+                }
+            }
+        }
+
+        protected void deliver(PendingEvent pendingEvent) {
+            long start = System.nanoTime();
+            long queueTime = start - pendingEvent.publishedAt;
+            ThreadContext previousContext = ThreadContext.capture();
+            pendingEvent.context.restore();
+            try {
+                for (ListenerHandle listener : listeners) {
+                    try {
+                        listener.invoke(pendingEvent.args);
+                    } catch (Throwable t) {
+                        errors.increment();
+                        logger.error("Error invoking listeners method for Publishing event: " +
+                                listener.subscriber.getBeanName() + " - " + listener.subscriber.getMethod(), t);
+                    }
+                }
+            } finally {
+                previousContext.restore();
+                long deliveryTime = System.nanoTime() - start;
+                delivered.increment();
+                totalQueueTime.add(queueTime);
+                totalDeliveryTime.add(deliveryTime);
+                updateMax(maxQueueTime, queueTime);
+                updateMax(maxDeliveryTime, deliveryTime);
+                if (pendingEvent.done != null) {
+                    pendingEvent.done.complete(null);
+                }
+            }
+        }
+    }
 }
@@ -32,12 +32,17 @@ import org.craftercms.studio.api.v1.service.objectstate.ObjectStateService;
 import org.craftercms.studio.api.v1.service.objectstate.State;
 import org.craftercms.studio.api.v1.service.objectstate.TransitionEvent;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v1.util.ListUtils;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
@@ -92,6 +97,24 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         return state;
     }
 
+    @Override
+    @ValidateParams
+    public Map<String, ItemState> getObjectStates(@ValidateStringParam(name = "site") String site,
+                                                  List<String> paths) {
+        Map<String, ItemState> toRet = new HashMap<String, ItemState>();
+        List<String> cleanPaths = normalizePaths(paths);
+        int batchSize = getBulkOperationBatchSize();
+        for (int i = 0; i < cleanPaths.size(); i = i + batchSize) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("site", site);
+            params.put("paths", cleanPaths.subList(i, Math.min(i + batchSize, cleanPaths.size())));
+            for (ItemState state : itemStateMapper.getObjectStateForSiteAndPaths(params)) {
+                toRet.put(state.getPath(), state);
+            }
+        }
+        return toRet;
+    }
+
     @Override
     @ValidateParams
     public void setSystemProcessing(@ValidateStringParam(name = "site") String site,
@@ -160,16 +183,7 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
             if (currentState == null) {
                 logger.debug("Preforming transition event " + event.name() + " on object " + lockKey +
                         " without current state");
-                switch (event) {
-                    case SAVE:
-                        nextState = State.NEW_UNPUBLISHED_UNLOCKED;
-                        break;
-                    case SAVE_FOR_PREVIEW:
-                        nextState = State.NEW_UNPUBLISHED_LOCKED;
-                        break;
-                    default:
-                        nextState = State.NEW_UNPUBLISHED_UNLOCKED;
-                }
+                nextState = getInitialState(event);
             } else {
                 logger.debug("Preforming transition event " + event + " on object " + lockKey + " with " +
                         currentState.getState() + " state");
@@ -199,6 +213,15 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         logger.debug("Transition finished for " + event.name() + " on object " + lockKey);
     }
 
+    protected State getInitialState(TransitionEvent event) {
+        switch (event) {
+            case SAVE_FOR_PREVIEW:
+                return State.NEW_UNPUBLISHED_LOCKED;
+            default:
+                return State.NEW_UNPUBLISHED_UNLOCKED;
+        }
+    }
+
     @Override
     @ValidateParams
     public void deployCommitId(@ValidateStringParam(name = "site") String site,
@@ -371,6 +394,31 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         return itemStateMapper.isFolderLive(params) > 0;
     }
 
+    @Override
+    @ValidateParams
+    public Set<String> getLiveFolders(@ValidateStringParam(name = "site") String site, List<String> folderPaths) {
+        Set<String> toRet = new HashSet<String>();
+        List<String> cleanPaths = normalizePaths(folderPaths);
+        int batchSize = getBulkOperationBatchSize();
+        for (int i = 0; i < cleanPaths.size(); i = i + batchSize) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("site", site);
+            params.put("folderPaths", cleanPaths.subList(i, Math.min(i + batchSize, cleanPaths.size())));
+            toRet.addAll(itemStateMapper.getLiveFolders(params));
+        }
+        return toRet;
+    }
+
+    protected List<String> normalizePaths(List<String> paths) {
+        List<String> cleanPaths = new ArrayList<String>();
+        if (paths != null) {
+            for (String path : paths) {
+                cleanPaths.add(FilenameUtils.normalize(path, true));
+            }
+        }
+        return cleanPaths;
+    }
+
     @Override
     @ValidateParams
     public boolean isScheduled(@ValidateStringParam(name = "site") String site,
@@ -428,6 +476,17 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         itemStateMapper.deleteObjectStateForSiteAndPath(params);
     }
 
+    @Override
+    @ValidateParams
+    public void deleteObjectStatesForPaths(@ValidateStringParam(name = "site") String site, List<String> paths) {
+        for (List<String> batch : ListUtils.partition(normalizePaths(paths), getBulkOperationBatchSize())) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("site", site);
+            params.put("paths", batch);
+            itemStateMapper.deleteObjectStatesForSiteAndPaths(params);
+        }
+    }
+
     @Override
     @ValidateParams
     public void deleteObjectStatesForFolder(@ValidateStringParam(name = "site") String site,
@@ -480,6 +539,104 @@ public class ObjectStateServiceImpl extends AbstractRegistrableService implement
         }
     }
     
+    @Override
+    @ValidateParams
+    public void transitionBulk(@ValidateStringParam(name = "site") String site, List<String> paths,
+                               TransitionEvent event) {
+        // Same per path locks as transition, taken in order so that concurrent bulk transitions can't deadlock
+        List<String> cleanPaths = new ArrayList<String>(new TreeSet<String>(normalizePaths(paths)));
+        for (List<String> batch : ListUtils.partition(cleanPaths, getBulkOperationBatchSize())) {
+            List<String> lockKeys = new ArrayList<String>();
+            try {
+                for (String path : batch) {
+                    String lockKey = site + ":" + path;
+                    generalLockService.lock(lockKey);
+                    lockKeys.add(lockKey);
+                }
+                Map<String, String> targetStates = new HashMap<String, String>();
+                try {
+                    transitionBulkPartial(site, batch, event, targetStates);
+                } catch (Exception e) {
+                    logger.error("Bulk transition failed for event " + event.name() + " and " + batch.size() +
+                            " items of site " + site + ", transitioning the remaining ones one by one", e);
+                    // One bad item must not leave the rest of the batch without their transition, e.g. stuck in
+                    // a processing state after being published. The statements are not run in a transaction, so
+                    // the items that already reached their target state are skipped instead of being
+                    // transitioned twice. The locks are reentrant and still held, so nothing changed them since
+                    transitionRemaining(site, batch, event, targetStates);
+                }
+            } finally {
+                for (int i = lockKeys.size() - 1; i >= 0; i--) {
+                    generalLockService.unlock(lockKeys.get(i));
+                }
+            }
+        }
+    }
+
+    private void transitionRemaining(String site, List<String> paths, TransitionEvent event,
+                                     Map<String, String> targetStates) {
+        Map<String, ItemState> currentStates =
+                targetStates.isEmpty() ? Collections.emptyMap() : getObjectStates(site, paths);
+        for (String path : paths) {
+            ItemState currentState = currentStates.get(path);
+            String targetState = targetStates.get(path);
+            if (targetState == null || currentState == null || !targetState.equals(currentState.getState())) {
+                transition(site, path, event);
+            }
+        }
+    }
+
+    /**
+     * Transition a batch of items with one statement per target state
+     *
+     * @param targetStates filled with the state every item should end up in, before anything is written
+     */
+    private void transitionBulkPartial(String site, List<String> paths, TransitionEvent event,
+                                       Map<String, String> targetStates) {
+        Map<String, String> plannedStates = new HashMap<String, String>();
+        Map<String, ItemState> currentStates = getObjectStates(site, paths);
+        List<ItemState> newEntries = new ArrayList<ItemState>();
+        Map<State, List<String>> objectIdsByState = new HashMap<State, List<String>>();
+        for (String path : paths) {
+            ItemState currentState = currentStates.get(path);
+            if (currentState == null) {
+                ItemState newEntry = new ItemState();
+                newEntry.setObjectId(UUID.randomUUID().toString());
+                newEntry.setSite(site);
+                newEntry.setPath(path);
+                newEntry.setSystemProcessing(0);
+                newEntry.setState(getInitialState(event).name());
+                newEntries.add(newEntry);
+                plannedStates.put(path, newEntry.getState());
+            } else {
+                State currentStateValue = State.valueOf(currentState.getState());
+                State nextState = transitionTable[currentStateValue.ordinal()][event.ordinal()];
+                plannedStates.put(path, nextState == State.NOOP ? currentStateValue.name() : nextState.name());
+                if (nextState == State.NOOP) {
+                    logger.warn("Transition not defined for event " + event.name() + " and current state " +
+                            currentState.getState() + " [object id: " + currentState.getObjectId() + "]");
+                } else if (nextState != currentStateValue) {
+                    objectIdsByState.computeIfAbsent(nextState, s -> new ArrayList<String>())
+                            .add(currentState.getObjectId());
+                }
+            }
+        }
+        targetStates.putAll(plannedStates);
+        logger.debug("Bulk transition " + event.name() + " for site " + site + ": " + newEntries.size() +
+                " new entries, " + (paths.size() - newEntries.size()) + " existing entries");
+        if (!newEntries.isEmpty()) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("entries", newEntries);
+            itemStateMapper.insertEntries(params);
+        }
+        for (Map.Entry<State, List<String>> entry : objectIdsByState.entrySet()) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("state", entry.getKey().name());
+            params.put("objectIds", entry.getValue());
+            itemStateMapper.setObjectStateForObjectIds(params);
+        }
+    }
+
     /**
      * get the object for a given set of states
      */
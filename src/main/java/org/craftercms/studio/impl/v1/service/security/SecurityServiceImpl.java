@@ -29,14 +29,24 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import org.apache.commons.collections4.CollectionUtils;
@@ -58,6 +68,7 @@ import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.job.CronJobContext;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.ContentTypeService;
@@ -70,6 +81,7 @@ import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v2.dal.AuditLog;
 import org.craftercms.studio.api.v2.dal.Group;
 import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.service.security.AuthenticationChain;
@@ -125,6 +137,7 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_CIP
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_FORGOT_PASSWORD_EMAIL_TEMPLATE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_FORGOT_PASSWORD_MESSAGE_SUBJECT;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_FORGOT_PASSWORD_TOKEN_TIMEOUT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_PERMISSIONS_DECISION_CACHE_MAX_SIZE;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_RESET_PASSWORD_SERVICE_URL;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_SESSION_TIMEOUT;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_TYPE;
@@ -132,12 +145,18 @@ import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_LOGOU
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_USER;
 
 /**
+ * Permission and role mapping files are parsed once and their rules compiled into {@link Pattern} tables, both are
+ * cached by the id of the configuration blob so any change to the files is picked up on the next access. Resolved
+ * permissions are kept in a bounded decision cache keyed by scope, configuration version, roles and path.
+ *
  * @author Dejan Brkic
  */
-public class SecurityServiceImpl implements SecurityService {
+public class SecurityServiceImpl implements SecurityService, StatisticsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(SecurityServiceImpl.class);
 
+    protected static final String GLOBAL_SCOPE = "###GLOBAL###";
+
     protected ContentTypeService contentTypeService;
     protected ContentService contentService;
     protected GeneralLockService generalLockService;
@@ -152,6 +171,23 @@ public class SecurityServiceImpl implements SecurityService {
     protected ConfigurationService configurationService;
     protected AuditServiceInternal auditServiceInternal;
     protected SiteService siteService;
+    protected ContentRepository contentRepository;
+
+    /** compiled permission and role mappings by site-filename key **/
+    protected Map<String, CompiledPermissionsConfig> permissionsConfigCache = new ConcurrentHashMap<>();
+    /** resolved permissions by scope, configuration version, roles and path **/
+    protected Cache<String, Set<String>> permissionsDecisionCache;
+
+    protected final AtomicLong configCacheHits = new AtomicLong();
+    protected final AtomicLong configCacheMisses = new AtomicLong();
+    protected final AtomicLong decisionCacheHits = new AtomicLong();
+    protected final AtomicLong decisionCacheMisses = new AtomicLong();
+
+    public void init() {
+        permissionsDecisionCache = CacheBuilder.newBuilder()
+                .maximumSize(getPermissionsDecisionCacheMaxSize())
+                .build();
+    }
 
     @Override
     @ValidateParams
@@ -250,11 +286,11 @@ public class SecurityServiceImpl implements SecurityService {
                                           @ValidateStringParam(name = "user") String user, List<String> groups) {
         Set<String> permissions = new HashSet<String>();
         if (StringUtils.isNotEmpty(site)) {
-            PermissionsConfigTO rolesConfig = loadConfiguration(site, getRoleMappingsFileName());
-            PermissionsConfigTO permissionsConfig = loadConfiguration(site, getPermissionsFileName());
+            CompiledPermissionsConfig rolesConfig = getCompiledConfiguration(site, getRoleMappingsFileName());
+            CompiledPermissionsConfig permissionsConfig = getCompiledConfiguration(site, getPermissionsFileName());
             Set<String> roles = new HashSet<String>();
             addUserRoles(roles, site, user);
-            addGroupRoles(roles, site, groups, rolesConfig);
+            addGroupRoles(roles, site, groups, rolesConfig.getConfig());
             // resolve the permission
             permissions = populateUserPermissions(site, path, roles, permissionsConfig);
             // check if the user is allowed to edit the content
@@ -277,11 +313,14 @@ public class SecurityServiceImpl implements SecurityService {
             }
         }
 
-        PermissionsConfigTO globalRolesConfig = loadGlobalRolesConfiguration();
-        PermissionsConfigTO globalPermissionsConfig = loadGlobalPermissionsConfiguration();
+        CompiledPermissionsConfig globalRolesConfig =
+                getCompiledGlobalConfiguration(getGlobalRoleMappingsFileName(), this::loadGlobalRolesConfiguration);
+        CompiledPermissionsConfig globalPermissionsConfig =
+                getCompiledGlobalConfiguration(getGlobalPermissionsFileName(),
+                        this::loadGlobalPermissionsConfiguration);
         Set<String> roles = new HashSet<String>();
-        addGlobalUserRoles(user, roles, globalRolesConfig);
-        addGlobalGroupRoles(roles, groups, globalRolesConfig);
+        addGlobalUserRoles(user, roles, globalRolesConfig.getConfig());
+        addGlobalGroupRoles(roles, groups, globalRolesConfig.getConfig());
         permissions.addAll(populateUserGlobalPermissions(path, roles, globalPermissionsConfig));
         return permissions;
     }
@@ -317,58 +356,9 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
-    @SuppressWarnings("unchecked")
     protected Set<String> populateUserGlobalPermissions(String path, Set<String> roles,
-                                                  PermissionsConfigTO permissionsConfig) {
-        Set<String> permissions = new HashSet<String>();
-        if (roles != null && !roles.isEmpty()) {
-            for (String role : roles) {
-                Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
-                Map<String, List<Node>> siteRoles = permissionsMap.get("###GLOBAL###");
-                if (siteRoles == null || siteRoles.isEmpty()) {
-                    siteRoles = permissionsMap.get("*");
-                }
-                if (siteRoles != null && !siteRoles.isEmpty()) {
-                    List<Node> ruleNodes = siteRoles.get(role);
-                    if (ruleNodes == null || ruleNodes.isEmpty()) {
-                        ruleNodes = siteRoles.get("*");
-                    }
-                    if (ruleNodes != null && !ruleNodes.isEmpty()) {
-                        for (Node ruleNode : ruleNodes) {
-                            String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
-                            if (path.matches(regex)) {
-                                logger.debug("Global permissions found by matching " + regex + " for " + role);
-
-                                List<Node> permissionNodes =
-                                        ruleNode.selectNodes(StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
-                                for (Node permissionNode : permissionNodes) {
-                                    String permission = permissionNode.getText().toLowerCase();
-                                    logger.debug("adding global permissions " + permission + " to " + path
-                                            + " for " + role);
-                                    permissions.add(permission);
-                                }
-                            }
-                        }
-                    } else {
-                        logger.debug("No default role is set. adding default permission: "
-                                + StudioConstants.PERMISSION_VALUE_READ);
-                        // If no default role is set
-                        permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                    }
-                } else {
-                    logger.debug("No default site is set. adding default permission: "
-                            + StudioConstants.PERMISSION_VALUE_READ);
-                    // If no default site is set
-                    permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                }
-            }
-        } else {
-            logger.debug("No user or group matching found. adding default permission: "
-                    + StudioConstants.PERMISSION_VALUE_READ);
-            // If user or group did not match the roles-mapping file
-            permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-        }
-        return permissions;
+                                                        CompiledPermissionsConfig permissionsConfig) {
+        return resolvePermissions(GLOBAL_SCOPE, path, roles, permissionsConfig);
     }
 
     /* Derives a key based off the site and filename */
@@ -403,7 +393,8 @@ public class SecurityServiceImpl implements SecurityService {
             if (groups != null && groups.size() > 0) {
                 logger.debug("Groups for " + user + " in " + site + ": " + groups);
 
-                PermissionsConfigTO rolesConfig = loadConfiguration(site, getRoleMappingsFileName());
+                PermissionsConfigTO rolesConfig =
+                        getCompiledConfiguration(site, getRoleMappingsFileName()).getConfig();
                 Set<String> userRoles = new HashSet<String>();
                 if (rolesConfig != null) {
                     Map<String, List<String>> rolesMap = rolesConfig.getRoles();
@@ -463,37 +454,65 @@ public class SecurityServiceImpl implements SecurityService {
      * @param roles
      * @param permissionsConfig
      */
-    @SuppressWarnings("unchecked")
     protected Set<String> populateUserPermissions(String site, String path, Set<String> roles,
-                                                  PermissionsConfigTO permissionsConfig) {
+                                                  CompiledPermissionsConfig permissionsConfig) {
+        return resolvePermissions(site, path, roles, permissionsConfig);
+    }
+
+    /**
+     * Resolve the permissions for the given roles and path, using the decision cache when the configuration
+     * comes from a known version
+     *
+     * @param scope site or global scope of the rules
+     * @param path path to resolve permissions for
+     * @param roles roles of the user
+     * @param permissionsConfig compiled permission mappings
+     * @return the resolved permissions, the caller owns the returned set
+     */
+    protected Set<String> resolvePermissions(String scope, String path, Set<String> roles,
+                                             CompiledPermissionsConfig permissionsConfig) {
+        if (permissionsConfig.getVersion() == null) {
+            return evaluatePermissions(scope, path, roles, permissionsConfig);
+        }
+        String key = getPermissionsDecisionKey(scope, permissionsConfig.getVersion(), roles, path);
+        Set<String> permissions = permissionsDecisionCache.getIfPresent(key);
+        if (permissions != null) {
+            decisionCacheHits.incrementAndGet();
+        } else {
+            decisionCacheMisses.incrementAndGet();
+            permissions = Collections.unmodifiableSet(evaluatePermissions(scope, path, roles, permissionsConfig));
+            permissionsDecisionCache.put(key, permissions);
+        }
+        return new HashSet<String>(permissions);
+    }
+
+    protected String getPermissionsDecisionKey(String scope, String version, Set<String> roles, String path) {
+        return new StringBuilder(scope).append(":").append(version).append(":")
+                .append(roles == null ? StringUtils.EMPTY : new TreeSet<String>(roles).toString()).append(":")
+                .append(path).toString();
+    }
+
+    protected Set<String> evaluatePermissions(String scope, String path, Set<String> roles,
+                                              CompiledPermissionsConfig permissionsConfig) {
         Set<String> permissions = new HashSet<String>();
         if (roles != null && !roles.isEmpty()) {
             for (String role : roles) {
-                Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
-                Map<String, List<Node>> siteRoles = permissionsMap.get(site);
-                if (siteRoles == null || siteRoles.isEmpty()) {
-                    siteRoles = permissionsMap.get("*");
+                Map<String, Map<String, List<PermissionRule>>> rulesMap = permissionsConfig.getRules();
+                Map<String, List<PermissionRule>> scopeRoles = rulesMap.get(scope);
+                if (scopeRoles == null || scopeRoles.isEmpty()) {
+                    scopeRoles = rulesMap.get("*");
                 }
-                if (siteRoles != null && !siteRoles.isEmpty()) {
-                    List<Node> ruleNodes = siteRoles.get(role);
-                    if (ruleNodes == null || ruleNodes.isEmpty()) {
-                        ruleNodes = siteRoles.get("*");
+                if (scopeRoles != null && !scopeRoles.isEmpty()) {
+                    List<PermissionRule> rules = scopeRoles.get(role);
+                    if (rules == null || rules.isEmpty()) {
+                        rules = scopeRoles.get("*");
                     }
-                    if (ruleNodes != null && !ruleNodes.isEmpty()) {
-                        for (Node ruleNode : ruleNodes) {
-                            String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
-                            if (path.matches(regex)) {
-                                logger.debug("Permissions found by matching " + regex + " for " + role
-                                        + " in " + site);
-
-                                List<Node> permissionNodes = ruleNode.selectNodes(
-                                        StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
-                                for (Node permissionNode : permissionNodes) {
-                                    String permission = permissionNode.getText().toLowerCase();
-                                    logger.debug("adding permissions " + permission + " to " + path + " for "
-                                            + role + " in " + site);
-                                    permissions.add(permission);
-                                }
+                    if (rules != null && !rules.isEmpty()) {
+                        for (PermissionRule rule : rules) {
+                            if (rule.matches(path)) {
+                                logger.debug("Permissions found by matching " + rule.getRegex() + " for " + role
+                                        + " in " + scope + ": " + rule.getPermissions());
+                                permissions.addAll(rule.getPermissions());
                             }
                         }
                     } else {
@@ -518,6 +537,83 @@ public class SecurityServiceImpl implements SecurityService {
         return permissions;
     }
 
+    protected CompiledPermissionsConfig getCompiledConfiguration(String site, String filename) {
+        String path = getConfigPath().replaceFirst(StudioConstants.PATTERN_SITE, site) + FILE_SEPARATOR + filename;
+        return getCompiledConfiguration(getPermissionsKey(site, filename), site, path,
+                () -> loadConfiguration(site, filename));
+    }
+
+    protected CompiledPermissionsConfig getCompiledGlobalConfiguration(String filename,
+                                                                       Supplier<PermissionsConfigTO> loader) {
+        return getCompiledConfiguration(getPermissionsKey(GLOBAL_SCOPE, filename), StringUtils.EMPTY,
+                getGlobalConfigPath() + FILE_SEPARATOR + filename, loader);
+    }
+
+    protected CompiledPermissionsConfig getCompiledConfiguration(String key, String site, String path,
+                                                                 Supplier<PermissionsConfigTO> loader) {
+        // Read the version before the content, if the file changes in between the entry is stored with the old
+        // version and reloaded on the next access
+        String version = contentRepository.getContentObjectId(site, path);
+        CompiledPermissionsConfig cached = permissionsConfigCache.get(key);
+        if (cached != null && StringUtils.equals(cached.getVersion(), version)) {
+            configCacheHits.incrementAndGet();
+            return cached;
+        }
+        configCacheMisses.incrementAndGet();
+        PermissionsConfigTO config = loader.get();
+        if (config != null && version != null) {
+            CompiledPermissionsConfig compiled = new CompiledPermissionsConfig(version, config, compileRules(config));
+            permissionsConfigCache.put(key, compiled);
+            return compiled;
+        } else {
+            permissionsConfigCache.remove(key);
+            return new CompiledPermissionsConfig(null, config, compileRules(config));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<String, Map<String, List<PermissionRule>>> compileRules(PermissionsConfigTO config) {
+        if (config == null || config.getPermissions() == null) {
+            return null;
+        }
+        Map<String, Map<String, List<PermissionRule>>> rulesMap = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<Node>>> scopeEntry : config.getPermissions().entrySet()) {
+            Map<String, List<PermissionRule>> scopeRoles = new HashMap<>();
+            for (Map.Entry<String, List<Node>> roleEntry : scopeEntry.getValue().entrySet()) {
+                List<PermissionRule> rules = new ArrayList<>();
+                for (Node ruleNode : roleEntry.getValue()) {
+                    String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
+                    Pattern pattern;
+                    try {
+                        pattern = Pattern.compile(regex);
+                    } catch (PatternSyntaxException e) {
+                        logger.error("Invalid permission rule regex " + regex + " for role " + roleEntry.getKey()
+                                + " in " + scopeEntry.getKey() + ", the rule will be ignored", e);
+                        continue;
+                    }
+                    Set<String> permissions = new HashSet<String>();
+                    List<Node> permissionNodes =
+                            ruleNode.selectNodes(StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
+                    for (Node permissionNode : permissionNodes) {
+                        permissions.add(permissionNode.getText().toLowerCase());
+                    }
+                    rules.add(new PermissionRule(regex, pattern, permissions));
+                }
+                scopeRoles.put(roleEntry.getKey(), rules);
+            }
+            rulesMap.put(scopeEntry.getKey(), scopeRoles);
+        }
+        return rulesMap;
+    }
+
+    protected void invalidatePermissions(String scope, String... filenames) {
+        for (String filename : filenames) {
+            permissionsConfigCache.remove(getPermissionsKey(scope, filename));
+        }
+        String prefix = scope + ":";
+        permissionsDecisionCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
     protected PermissionsConfigTO loadConfiguration(String site, String filename) {
         String siteConfigPath = getConfigPath().replaceFirst(StudioConstants.PATTERN_SITE, site);
         String siteConfigFullPath = siteConfigPath + FILE_SEPARATOR + filename;
@@ -620,9 +716,9 @@ public class SecurityServiceImpl implements SecurityService {
             Element root = document.getRootElement();
 
             // permissions file
-            loadPermissions("###GLOBAL###", root, config);
+            loadPermissions(GLOBAL_SCOPE, root, config);
 
-            String globalPermissionsKey = "###GLOBAL###:" + getGlobalPermissionsFileName();
+            String globalPermissionsKey = GLOBAL_SCOPE + ":" + getGlobalPermissionsFileName();
             config.setKey(globalPermissionsKey);
             config.setLastUpdated(ZonedDateTime.now(ZoneOffset.UTC));
 
@@ -649,7 +745,7 @@ public class SecurityServiceImpl implements SecurityService {
             // roles file
             loadRoles(root, config);
 
-            String globalRolesKey = "###GLOBAL###:" + getGlobalRoleMappingsFileName();
+            String globalRolesKey = GLOBAL_SCOPE + ":" + getGlobalRoleMappingsFileName();
             config.setKey(globalRolesKey);
             config.setLastUpdated(ZonedDateTime.now(ZoneOffset.UTC));
 
@@ -663,14 +759,33 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     @ValidateParams
     public void reloadConfiguration(@ValidateStringParam(name = "site") String site) {
-        PermissionsConfigTO permissionsConfigTO = loadConfiguration(site, getPermissionsFileName());
-        PermissionsConfigTO rolesConfigTO = loadConfiguration(site, getRoleMappingsFileName());
+        invalidatePermissions(site, getPermissionsFileName(), getRoleMappingsFileName());
+        getCompiledConfiguration(site, getPermissionsFileName());
+        getCompiledConfiguration(site, getRoleMappingsFileName());
     }
 
     @Override
     public void reloadGlobalConfiguration() {
-        PermissionsConfigTO permissionsConfigTO = loadGlobalPermissionsConfiguration();
-        PermissionsConfigTO rolesConfigTO = loadGlobalRolesConfiguration();
+        invalidatePermissions(GLOBAL_SCOPE, getGlobalPermissionsFileName(), getGlobalRoleMappingsFileName());
+        getCompiledGlobalConfiguration(getGlobalPermissionsFileName(), this::loadGlobalPermissionsConfiguration);
+        getCompiledGlobalConfiguration(getGlobalRoleMappingsFileName(), this::loadGlobalRolesConfiguration);
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "permissionsCache";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("configSize", permissionsConfigCache.size());
+        statistics.put("configHits", configCacheHits.get());
+        statistics.put("configMisses", configCacheMisses.get());
+        statistics.put("decisionSize", permissionsDecisionCache.size());
+        statistics.put("decisionHits", decisionCacheHits.get());
+        statistics.put("decisionMisses", decisionCacheMisses.get());
+        return statistics;
     }
 
     @Override
@@ -1051,6 +1166,10 @@ public class SecurityServiceImpl implements SecurityService {
         return studioConfiguration.getProperty(CONFIGURATION_GLOBAL_PERMISSION_MAPPINGS_FILE_NAME);
     }
 
+    public int getPermissionsDecisionCacheMaxSize() {
+        return Integer.parseInt(studioConfiguration.getProperty(SECURITY_PERMISSIONS_DECISION_CACHE_MAX_SIZE));
+    }
+
     public int getSessionTimeout() {
         int toReturn = Integer.parseInt(studioConfiguration.getProperty(SECURITY_SESSION_TIMEOUT));
         return toReturn;
@@ -1180,4 +1299,70 @@ public class SecurityServiceImpl implements SecurityService {
     public void setSiteService(SiteService siteService) {
         this.siteService = siteService;
     }
+
+    public ContentRepository getContentRepository() {
+        return contentRepository;
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    /**
+     * Parsed permission or role mappings along with their compiled rules and the version of the file they were
+     * loaded from
+     */
+    protected static class CompiledPermissionsConfig {
+
+        protected final String version;
+        protected final PermissionsConfigTO config;
+        protected final Map<String, Map<String, List<PermissionRule>>> rules;
+
+        protected CompiledPermissionsConfig(String version, PermissionsConfigTO config,
+                                            Map<String, Map<String, List<PermissionRule>>> rules) {
+            this.version = version;
+            this.config = config;
+            this.rules = rules;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public PermissionsConfigTO getConfig() {
+            return config;
+        }
+
+        public Map<String, Map<String, List<PermissionRule>>> getRules() {
+            return rules;
+        }
+    }
+
+    /**
+     * Permission rule with its path regex compiled
+     */
+    protected static class PermissionRule {
+
+        protected final String regex;
+        protected final Pattern pattern;
+        protected final Set<String> permissions;
+
+        protected PermissionRule(String regex, Pattern pattern, Set<String> permissions) {
+            this.regex = regex;
+            this.pattern = pattern;
+            this.permissions = Collections.unmodifiableSet(permissions);
+        }
+
+        public boolean matches(String path) {
+            return pattern.matcher(path).matches();
+        }
+
+        public String getRegex() {
+            return regex;
+        }
+
+        public Set<String> getPermissions() {
+            return permissions;
+        }
+    }
 }
@@ -28,14 +28,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.collections4.CollectionUtils;
@@ -57,6 +56,7 @@ import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
 import org.craftercms.studio.api.v1.constant.DmConstants;
+import org.craftercms.studio.api.v1.constant.RepoOperation;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.dal.GitLog;
 import org.craftercms.studio.api.v1.dal.ItemMetadata;
@@ -66,7 +66,6 @@ import org.craftercms.studio.api.v1.dal.SiteFeedMapper;
 import org.craftercms.studio.api.v1.deployment.PreviewDeployer;
 import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
 import org.craftercms.studio.api.v1.exception.BlueprintNotFoundException;
-import org.craftercms.studio.api.v1.exception.ContentNotFoundException;
 import org.craftercms.studio.api.v1.exception.PreviewDeployerUnreachableException;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteAlreadyExistsException;
@@ -124,9 +123,7 @@ import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.Node;
-import org.dom4j.io.SAXReader;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.xml.sax.SAXException;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_CONFIG_FOLDER;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.DEFAULT_ORGANIZATION_ID;
@@ -149,6 +146,8 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATIO
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATION_SITE_PREVIEW_DESTROY_CONTEXT_URL;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATION_SITE_MUTLI_ENVIRONMENT_CONFIG_BASE_PATH;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.JOB_DEPLOY_CONTENT_TO_ENVIRONMENT_STATUS_MESSAGE_DEFAULT;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_SYNC_DB_GENERATE_AUDIT_LOG;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_ADD_REMOTE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_DELETE;
@@ -213,6 +212,9 @@ public class SiteServiceImpl implements SiteService {
         }
         String commitId = contentRepository.writeContent(site, path, content);
         contentRepository.reloadRepository(site);
+        if (StringUtils.startsWith(path, studioConfiguration.getProperty(CONFIGURATION_SITE_CONFIG_BASE_PATH))) {
+            servicesConfig.invalidateConfiguration(site);
+        }
 
         PreviewEventContext context = new PreviewEventContext();
         context.setSite(site);
@@ -573,88 +575,6 @@ public class SiteServiceImpl implements SiteService {
         contentRepository.writeContent(site, path, contentToWrite);
     }
 
-	protected void createObjectStatesforNewSite(String site) {
-		createObjectStateNewSiteObjectFolder(site, FILE_SEPARATOR);
-	}
-
-	protected void createObjectStateNewSiteObjectFolder(String site, String path) {
-		RepositoryItem[] children = contentRepository.getContentChildren(site, path);
-		for (RepositoryItem child : children) {
-			if (child.isFolder) {
-				createObjectStateNewSiteObjectFolder(site, child.path + FILE_SEPARATOR + child.name);
-			} else {
-				objectStateService.insertNewEntry(site, child.path + FILE_SEPARATOR + child.name);
-			}
-		}
-	}
-
-    protected void createObjectMetadataforNewSite(String site, String lastCommitId) {
-        createObjectMetadataNewSiteObjectFolder(site, FILE_SEPARATOR, lastCommitId);
-    }
-
-    protected void createObjectMetadataNewSiteObjectFolder(String site, String path, String lastCommitId) {
-        RepositoryItem[] children = contentRepository.getContentChildren(site, path);
-        for (RepositoryItem child : children) {
-            if (child.isFolder) {
-                createObjectMetadataNewSiteObjectFolder(site, child.path + FILE_SEPARATOR + child.name,
-                        lastCommitId);
-            } else {
-                objectMetadataManager.insertNewObjectMetadata(site, child.path + FILE_SEPARATOR + child.name);
-                objectMetadataManager.updateCommitId(site, child.path + FILE_SEPARATOR + child.name,
-                        lastCommitId);
-            }
-        }
-    }
-
-	protected void extractDependenciesForNewSite(String site) {
-        Map<String, Set<String>> globalDeps = new HashMap<String, Set<String>>();
-        extractDependenciesItemForNewSite(site, FILE_SEPARATOR, globalDeps);
-	}
-
-    private void extractDependenciesItemForNewSite(String site, String fullPath, Map<String, Set<String>> globalDeps) {
-        RepositoryItem[] children = contentRepository.getContentChildren(site, fullPath);
-        for (RepositoryItem child : children) {
-            if (child.isFolder) {
-                extractDependenciesItemForNewSite(site, child.path + FILE_SEPARATOR + child.name, globalDeps);
-            } else {
-                String childPath = child.path + FILE_SEPARATOR + child.name;
-
-                if (childPath.endsWith(DmConstants.XML_PATTERN)) {
-                    try {
-                        dependencyService.upsertDependencies(site, childPath);
-                    } catch (ContentNotFoundException e) {
-                        logger.error("Failed to extract dependencies for document: site " + site + " path " +
-                                childPath, e);
-                    } catch (ServiceLayerException e) {
-                        logger.error("Failed to extract dependencies for document: site " + site + " path " +
-                                childPath, e);
-                    }
-                } else {
-
-                    boolean isCss = childPath.endsWith(DmConstants.CSS_PATTERN);
-                    boolean isJs = childPath.endsWith(DmConstants.JS_PATTERN);
-                    List<String> templatePatterns = servicesConfig.getRenderingTemplatePatterns(site);
-                    boolean isTemplate = false;
-                    for (String templatePattern : templatePatterns) {
-                        Pattern pattern = Pattern.compile(templatePattern);
-                        Matcher matcher = pattern.matcher(childPath);
-                        if (matcher.matches()) {
-                            isTemplate = true;
-                            break;
-                        }
-                    }
-                    try {
-                        if (isCss || isJs || isTemplate) {
-                            dependencyService.upsertDependencies(site, childPath);
-                        }
-                    } catch (ServiceLayerException e) {
-                        logger.error("Failed to extract dependencies for: site " + site + " path " + childPath, e);
-                    }
-                }
-            }
-        }
-    }
-
     private void addDefaultGroupsForNewSite(String siteId) {
         List<String> defaultGroups = getDefaultGroups();
         for (String group : defaultGroups) {
@@ -1248,7 +1168,8 @@ public class SiteServiceImpl implements SiteService {
     @ValidateParams
     public boolean syncDatabaseWithRepo(@ValidateStringParam(name = "site") String site,
                                         @ValidateStringParam(name = "fromCommitId") String fromCommitId) throws SiteNotFoundException {
-        return syncDatabaseWithRepo(site, fromCommitId, true);
+        return syncDatabaseWithRepo(site, fromCommitId,
+                Boolean.parseBoolean(studioConfiguration.getProperty(REPO_SYNC_DB_GENERATE_AUDIT_LOG)));
     }
 
     @Override
@@ -1256,10 +1177,11 @@ public class SiteServiceImpl implements SiteService {
     public boolean syncDatabaseWithRepo(@ValidateStringParam(name = "site") String site,
                                         @ValidateStringParam(name = "fromCommitId") String fromCommitId,
                                         boolean generateAuditLog) throws SiteNotFoundException {
-		boolean toReturn = true;
-        List<RepoOperationTO> repoOperations = contentRepository.getOperations(site, fromCommitId, contentRepository
-		    .getRepoLastCommitId(site));
-        if (CollectionUtils.isEmpty(repoOperations)) {
+        boolean toReturn = true;
+        long startTime = System.currentTimeMillis();
+        List<String> commitIds =
+                contentRepository.getCommitIds(site, fromCommitId, contentRepository.getRepoLastCommitId(site));
+        if (CollectionUtils.isEmpty(commitIds)) {
             logger.debug("Database is up to date with repository for site: " + site);
             contentRepository.markGitLogVerifiedProcessed(site, fromCommitId);
             return toReturn;
@@ -1267,253 +1189,71 @@ public class SiteServiceImpl implements SiteService {
 
         logger.info("Syncing database with repository for site: " + site + " fromCommitId = " +
                 (StringUtils.isEmpty(fromCommitId) ? "Empty repo" : fromCommitId));
-        logger.debug("Operations to sync: ");
-	    for (RepoOperationTO repoOperation: repoOperations) {
-	    	logger.debug("\tOperation: " + repoOperation.getOperation().toString() + " " + repoOperation.getPath());
-	    }
 
-	    boolean diverged = false;
-	    GitLog current = null;
-	    SiteFeed siteFeed = getSite(site);
-
-	    // Process all operations and track if one or more have failed
-	    for (RepoOperationTO repoOperation: repoOperations) {
-            boolean gitLogProcessed = false;
-            logger.debug("Verifying repo opertation " + repoOperation.getOperation().toString() + " " +
-                    repoOperation.getPath());
-            logger.debug("Get Git Log from database for commit id " + repoOperation.getCommitId());
-            GitLog gitLog = contentRepository.getGitLog(site, repoOperation.getCommitId());
-            if (gitLog != null) {
-                diverged = diverged || gitLog.getProcessed() < 1;
-            } else {
-                logger.debug("Git Log does not exist in database for commit id " + repoOperation.getCommitId());
-                logger.debug("Inserting Git Log for commit id " + repoOperation.getCommitId() + " and site " + site);
-                contentRepository.insertGitLog(site, repoOperation.getCommitId(), 0);
-                logger.debug("Repository diverged from database. All repository operations onwards need to be processed");
-                diverged = true;
-                gitLogProcessed = false;
-                gitLog = contentRepository.getGitLog(site, repoOperation.getCommitId());
+        SiteFeed siteFeed = getSite(site);
+
+        // Only the commits not processed yet need to be synced
+        long phaseStart = System.currentTimeMillis();
+        List<String> unprocessedCommitIds = new ArrayList<String>();
+        for (String commitId : commitIds) {
+            logger.debug("Get Git Log from database for commit id " + commitId);
+            GitLog gitLog = contentRepository.getGitLog(site, commitId);
+            if (gitLog == null) {
+                logger.debug("Git Log does not exist in database for commit id " + commitId);
+                logger.debug("Inserting Git Log for commit id " + commitId + " and site " + site);
+                contentRepository.insertGitLog(site, commitId, 0);
+            }
+            if (gitLog == null || gitLog.getProcessed() < 1) {
+                logger.debug("Repository diverged from database at commit id " + commitId);
+                unprocessedCommitIds.add(commitId);
+            }
+        }
+        logger.info("Verified " + commitIds.size() + " commits for site: " + site + " in " +
+                (System.currentTimeMillis() - phaseStart) + " ms, " + unprocessedCommitIds.size() +
+                " commits need to be synced");
+
+        List<AuditLog> auditLogs = new ArrayList<AuditLog>();
+        if (!unprocessedCommitIds.isEmpty()) {
+            // Consecutive commits are compared at once instead of replaying every commit, paths that changed
+            // several times are only processed once
+            phaseStart = System.currentTimeMillis();
+            List<RepoOperationTO> repoOperations = contentRepository.getNetOperations(site, unprocessedCommitIds);
+            logger.debug("Operations to sync: ");
+            for (RepoOperationTO repoOperation : repoOperations) {
+                logger.debug("\tOperation: " + repoOperation.getOperation().toString() + " " +
+                        repoOperation.getPath());
             }
 
-            if (current == null) {
-                current = gitLog;
-            } else {
-	            if (!current.getCommitId().equals(gitLog.getCommitId())) {
-                    contentRepository.markGitLogVerifiedProcessed(site, current.getCommitId());
-                    current = gitLog;
+            // The audit log needs every operation of every commit, only walk the commits one by one for it
+            if (generateAuditLog) {
+                Set<String> unprocessed = new HashSet<String>(unprocessedCommitIds);
+                for (RepoOperationTO repoOperation : contentRepository.getOperations(site, fromCommitId,
+                        commitIds.get(commitIds.size() - 1))) {
+                    if (unprocessed.contains(repoOperation.getCommitId())) {
+                        auditLogs.add(createSyncAuditLog(site, siteFeed, repoOperation));
+                    }
                 }
             }
+            logger.info("Computed " + repoOperations.size() + " operations to sync for site: " + site + " in " +
+                    (System.currentTimeMillis() - phaseStart) + " ms");
 
-	        if (diverged) {
-                Map<String, String> activityInfo = new HashMap<String, String>();
-                String contentClass;
-                Map<String, Object> properties;
+            // Moves affect two paths so they are applied one by one, the rest are applied in bulk
+            phaseStart = System.currentTimeMillis();
+            Map<String, RepoOperationTO> pendingChanges = new LinkedHashMap<String, RepoOperationTO>();
+            for (RepoOperationTO repoOperation : repoOperations) {
                 switch (repoOperation.getOperation()) {
                     case CREATE:
                     case COPY:
-                        ItemState state = objectStateService.getObjectState(site, repoOperation.getPath(), false);
-
-                        if (state == null) {
-                            logger.debug("Insert item state for site: " + site + " path: " + repoOperation.getPath());
-                            objectStateService.insertNewEntry(site, repoOperation.getPath());
-                        } else {
-                            logger.debug("Set item state for site: " + site + " path: " + repoOperation.getPath());
-                            objectStateService.transition(site, repoOperation.getPath(), TransitionEvent.SAVE);
-                        }
-
-                        logger.debug("Set item metadata for site: " + site + " path: " + repoOperation.getPath());
-                        if (!objectMetadataManager.metadataExist(site, repoOperation.getPath())) {
-                            objectMetadataManager.insertNewObjectMetadata(site, repoOperation.getPath());
-                        }
-                        properties = new HashMap<String, Object>();
-                        properties.put(ItemMetadata.PROP_SITE, site);
-                        properties.put(ItemMetadata.PROP_PATH, repoOperation.getPath());
-                        properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
-                        properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
-                        properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
-                        objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(), properties);
-                        logger.debug("Extract dependencies for site: " + site + " path: " +
-                                repoOperation.getPath());
-                        toReturn = toReturn && extractDependenciesForItem(site, repoOperation.getPath());
-                        contentClass = contentService.getContentTypeClass(site, repoOperation.getPath());
-                        if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                            activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                        }
-                        if (generateAuditLog) {
-                            logger.debug("Insert audit log for site: " + site + " path: " + repoOperation.getPath());
-                            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                            auditLog.setOperation(OPERATION_CREATE);
-                            auditLog.setSiteId(siteFeed.getId());
-                            auditLog.setActorId(repoOperation.getAuthor());
-                            auditLog.setActorDetails(repoOperation.getAuthor());
-                            auditLog.setPrimaryTargetId(site + ":" + repoOperation.getPath());
-                            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                            auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                            auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(site,
-                                    repoOperation.getPath()));
-                            auditLog.setOrigin(ORIGIN_GIT);
-                            auditServiceInternal.insertAuditLog(auditLog);
-                        }
-                        break;
-
                     case UPDATE:
-                        logger.debug("Set item state for site: " + site + " path: " + repoOperation.getPath());
-                        objectStateService.getObjectState(site, repoOperation.getPath());
-                        objectStateService.transition(site, repoOperation.getPath(), TransitionEvent.SAVE);
-
-                        logger.debug("Set item metadata for site: " + site + " path: " + repoOperation.getPath());
-                        if (!objectMetadataManager.metadataExist(site, repoOperation.getPath())) {
-                            objectMetadataManager.insertNewObjectMetadata(site, repoOperation.getPath());
-                        }
-                        properties = new HashMap<String, Object>();
-                        properties.put(ItemMetadata.PROP_SITE, site);
-                        properties.put(ItemMetadata.PROP_PATH, repoOperation.getPath());
-                        properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
-                        properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
-                        properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
-                        objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(), properties);
-
-                        logger.debug("Extract dependencies for site: " + site + " path: " + repoOperation.getPath());
-                        toReturn = toReturn && extractDependenciesForItem(site, repoOperation.getPath());
-                        contentClass = contentService.getContentTypeClass(site, repoOperation.getPath());
-                        if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                            activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                        }
-                        if (generateAuditLog) {
-                            logger.debug("Insert audit log for site: " + site + " path: " + repoOperation.getPath());
-                            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                            auditLog.setOperation(OPERATION_UPDATE);
-                            auditLog.setSiteId(siteFeed.getId());
-                            auditLog.setActorId(repoOperation.getAuthor());
-                            auditLog.setActorDetails(repoOperation.getAuthor());
-                            auditLog.setOrigin(ORIGIN_GIT);
-                            auditLog.setPrimaryTargetId(site + ":" + repoOperation.getPath());
-                            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                            auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                            auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(site,
-                                    repoOperation.getPath()));
-                            auditServiceInternal.insertAuditLog(auditLog);
-                        }
-                        break;
-
                     case DELETE:
-                        logger.debug("Delete item state for site: " + site + " path: " + repoOperation.getPath());
-                        objectStateService.deleteObjectStateForPath(site, repoOperation.getPath());
-                        logger.debug("Delete item metadata for site: " + site + " path: " + repoOperation.getPath());
-                        objectMetadataManager.deleteObjectMetadata(site, repoOperation.getPath());
-                        logger.debug("Extract dependencies for site: " + site + " path: " + repoOperation.getPath());
-                        try {
-                            dependencyService.deleteItemDependencies(site, repoOperation.getPath());
-                        } catch (ServiceLayerException e) {
-                            logger.error("Error deleting dependencies for site " + site + " file: " +
-                                    repoOperation.getPath(), e);
-                        }
-                        contentClass = contentService.getContentTypeClass(site, repoOperation.getPath());
-                        if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                            activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                        }
-                        if (generateAuditLog) {
-                            logger.debug("Insert audit log for site: " + site + " path: " + repoOperation.getPath());
-                            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                            auditLog.setOperation(OPERATION_DELETE);
-                            auditLog.setSiteId(siteFeed.getId());
-                            auditLog.setOrigin(ORIGIN_GIT);
-                            auditLog.setActorId(repoOperation.getAuthor());
-                            auditLog.setActorDetails(repoOperation.getAuthor());
-                            auditLog.setPrimaryTargetId(site + ":" + repoOperation.getPath());
-                            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                            auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                            auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(site,
-                                    repoOperation.getPath()));
-                            auditServiceInternal.insertAuditLog(auditLog);
-                        }
+                        pendingChanges.put(repoOperation.getPath(), repoOperation);
                         break;
 
                     case MOVE:
-                        ItemState stateRename = objectStateService.getObjectState(site, repoOperation.getPath(), false);
-                        logger.debug("Set item state for site: " + site + " path: " + repoOperation.getMoveToPath());
-                        if (stateRename == null) {
-                            objectStateService.getObjectState(site, repoOperation.getMoveToPath());
-                            objectStateService.transition(site, repoOperation.getMoveToPath(), TransitionEvent.SAVE);
-                        } else {
-                            objectStateService.updateObjectPath(site, repoOperation.getPath(),
-                                    repoOperation.getMoveToPath());
-                            objectStateService.transition(site, repoOperation.getMoveToPath(), TransitionEvent.SAVE);
-                        }
-
-                        logger.debug("Set item metadata for site: " + site + " path: " +
-                                repoOperation.getMoveToPath());
-                        if (!objectMetadataManager.metadataExist(site, repoOperation.getPath())) {
-                            if (!objectMetadataManager.metadataExist(site, repoOperation.getMoveToPath())) {
-                                objectMetadataManager.insertNewObjectMetadata(site, repoOperation.getMoveToPath());
-                            } else {
-                                if (!objectMetadataManager.isRenamed(site, repoOperation.getMoveToPath())) {
-                                    // set renamed and old path
-                                    properties = new HashMap<String, Object>();
-                                    properties.put(ItemMetadata.PROP_SITE, site);
-                                    properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
-                                    properties.put(ItemMetadata.PROP_RENAMED, 1);
-                                    properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
-                                    properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
-                                    properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
-                                    properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
-                                    objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(),
-                                            properties);
-                                }
-                            }
-                        } else {
-                            if (!objectMetadataManager.metadataExist(site, repoOperation.getMoveToPath())) {
-                                // preform move: update path, set renamed, set old url
-                                objectMetadataManager.updateObjectPath(site, repoOperation.getPath(),
-                                        repoOperation.getMoveToPath());
-                                properties = new HashMap<String, Object>();
-                                properties.put(ItemMetadata.PROP_SITE, site);
-                                properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
-                                properties.put(ItemMetadata.PROP_RENAMED, 1);
-                                properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
-                                properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
-                                properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
-                                objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(), properties);
-                            } else {
-                                // if not already renamed set renamed and old url
-                                if (!objectMetadataManager.isRenamed(site, repoOperation.getMoveToPath())) {
-                                    // set renamed and old path
-                                    properties = new HashMap<String, Object>();
-                                    properties.put(ItemMetadata.PROP_SITE, site);
-                                    properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
-                                    properties.put(ItemMetadata.PROP_RENAMED, 1);
-                                    properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
-                                    properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
-                                    properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
-                                    objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(),
-                                            properties);
-                                }
-                                objectMetadataManager.deleteObjectMetadata(site, repoOperation.getPath());
-                            }
-                        }
-
-                        logger.debug("Extract dependencies for site: " + site + " path: " + repoOperation.getPath());
-                        toReturn = toReturn && extractDependenciesForItem(site, repoOperation.getMoveToPath());
-                        contentClass = contentService.getContentTypeClass(site, repoOperation.getMoveToPath());
-                        if (repoOperation.getMoveToPath().endsWith(DmConstants.XML_PATTERN)) {
-                            activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                        }
-                        if (generateAuditLog) {
-                            logger.debug("Insert audit log for site: " + site + " path: " +
-                                    repoOperation.getMoveToPath());
-                            AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
-                            auditLog.setOperation(OPERATION_MOVE);
-                            auditLog.setSiteId(siteFeed.getId());
-                            auditLog.setActorId(repoOperation.getAuthor());
-                            auditLog.setActorDetails(repoOperation.getAuthor());
-                            auditLog.setOrigin(ORIGIN_GIT);
-                            auditLog.setPrimaryTargetId(site + ":" + repoOperation.getMoveToPath());
-                            auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                            auditLog.setPrimaryTargetValue(repoOperation.getMoveToPath());
-                            auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(site,
-                                    repoOperation.getMoveToPath()));
-                            auditServiceInternal.insertAuditLog(auditLog);
-                        }
+                        // The changes of previous commits to the moved paths have to be applied first
+                        toReturn = applySyncChanges(site, pendingChanges) && toReturn;
+                        pendingChanges.clear();
+                        toReturn = processMoveOperation(site, repoOperation) && toReturn;
                         break;
 
                     default:
@@ -1523,12 +1263,23 @@ public class SiteServiceImpl implements SiteService {
                         break;
                 }
             }
-	    }
-        if (current != null) {
-            contentRepository.markGitLogVerifiedProcessed(site, current.getCommitId());
-            updateLastVerifiedGitlogCommitId(site, current.getCommitId());
+            toReturn = applySyncChanges(site, pendingChanges) && toReturn;
+            logger.info("Synced " + repoOperations.size() + " operations to database for site: " + site + " in " +
+                    (System.currentTimeMillis() - phaseStart) + " ms");
         }
 
+	    if (!auditLogs.isEmpty()) {
+	        phaseStart = System.currentTimeMillis();
+	        auditServiceInternal.insertAuditLogs(auditLogs);
+	        logger.info("Inserted " + auditLogs.size() + " audit log entries for site: " + site + " in " +
+                    (System.currentTimeMillis() - phaseStart) + " ms");
+        }
+
+	    for (String commitId : commitIds) {
+            contentRepository.markGitLogVerifiedProcessed(site, commitId);
+        }
+	    updateLastVerifiedGitlogCommitId(site, commitIds.get(commitIds.size() - 1));
+
 	    // At this point we have attempted to process all operations, some may have failed
 	    // We will update the lastCommitId of the database ignoring errors if any
 	    logger.debug("Done syncing operations with a result of: " + toReturn);
@@ -1548,7 +1299,7 @@ public class SiteServiceImpl implements SiteService {
 
 	    logger.info("Done syncing database with repository for site: " + site + " fromCommitId = " +
                 (StringUtils.isEmpty(fromCommitId) ? "Empty repo" : fromCommitId) + " with a final result of: " +
-                toReturn);
+                toReturn + " in " + (System.currentTimeMillis() - startTime) + " ms");
         logger.info("Last commit ID for site: " + site + " is " + lastCommitId);
 
         if (!toReturn) {
@@ -1560,29 +1311,203 @@ public class SiteServiceImpl implements SiteService {
 	    return toReturn;
     }
 
+    /**
+     * Apply the net change of each path: states, metadata and dependencies are updated with one statement per batch
+     * of paths, and the dependencies are extracted in parallel by the dependency service.
+     *
+     * @param site site id
+     * @param changes net operation by path
+     * @return false if the dependencies of some items could not be extracted
+     */
+    protected boolean applySyncChanges(String site, Map<String, RepoOperationTO> changes) {
+        if (changes.isEmpty()) {
+            return true;
+        }
+        boolean toReturn = true;
+        long phaseStart = System.currentTimeMillis();
+        List<String> deletedPaths = new ArrayList<String>();
+        List<String> updatedPaths = new ArrayList<String>();
+        Map<String, List<String>> updatedPathsByCommit = new LinkedHashMap<String, List<String>>();
+        Map<String, RepoOperationTO> commitOperations = new HashMap<String, RepoOperationTO>();
+        for (Map.Entry<String, RepoOperationTO> entry : changes.entrySet()) {
+            RepoOperationTO repoOperation = entry.getValue();
+            if (repoOperation.getOperation() == RepoOperation.DELETE) {
+                deletedPaths.add(entry.getKey());
+            } else {
+                updatedPaths.add(entry.getKey());
+                String commitId = repoOperation.getCommitId();
+                updatedPathsByCommit.computeIfAbsent(commitId, c -> new ArrayList<String>()).add(entry.getKey());
+                commitOperations.putIfAbsent(commitId, repoOperation);
+            }
+        }
+
+        if (!deletedPaths.isEmpty()) {
+            logger.debug("Delete item state and metadata for " + deletedPaths.size() + " items of site: " + site);
+            objectStateService.deleteObjectStatesForPaths(site, deletedPaths);
+            objectMetadataManager.deleteObjectMetadata(site, deletedPaths);
+            for (String path : deletedPaths) {
+                try {
+                    dependencyService.deleteItemDependencies(site, path);
+                } catch (ServiceLayerException e) {
+                    logger.error("Error deleting dependencies for site " + site + " file: " + path, e);
+                }
+            }
+        }
+
+        if (!updatedPaths.isEmpty()) {
+            logger.debug("Set item state and metadata for " + updatedPaths.size() + " items of site: " + site);
+            objectStateService.transitionBulk(site, updatedPaths, TransitionEvent.SAVE);
+            Set<String> existingMetadata = objectMetadataManager.getProperties(site, updatedPaths).keySet();
+            List<String> newMetadata = new ArrayList<String>();
+            for (String path : updatedPaths) {
+                if (!existingMetadata.contains(path)) {
+                    newMetadata.add(path);
+                }
+            }
+            objectMetadataManager.insertNewObjectMetadata(site, newMetadata);
+            for (Map.Entry<String, List<String>> entry : updatedPathsByCommit.entrySet()) {
+                RepoOperationTO repoOperation = commitOperations.get(entry.getKey());
+                Map<String, Object> properties = new HashMap<String, Object>();
+                properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
+                properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
+                properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
+                objectMetadataManager.setObjectMetadata(site, entry.getValue(), properties);
+            }
+        }
+        long databaseTime = System.currentTimeMillis() - phaseStart;
+
+        phaseStart = System.currentTimeMillis();
+        List<String> dependencyPaths = new ArrayList<String>();
+        for (String path : updatedPaths) {
+            if (requiresDependencyExtraction(site, path)) {
+                dependencyPaths.add(path);
+            }
+        }
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+        for (int i = 0; i < dependencyPaths.size(); i = i + batchSize) {
+            List<String> batch = dependencyPaths.subList(i, Math.min(i + batchSize, dependencyPaths.size()));
+            try {
+                dependencyService.upsertDependencies(site, batch);
+            } catch (ServiceLayerException e) {
+                logger.error("Error extracting dependencies for site " + site + " files: " + batch, e);
+                toReturn = false;
+            }
+            logger.info("Extracted dependencies for " + (i + batch.size()) + " of " + dependencyPaths.size() +
+                    " items of site: " + site);
+        }
+
+        logger.info("Synced " + deletedPaths.size() + " deleted and " + updatedPaths.size() + " updated items for " +
+                "site: " + site + " (item state and metadata in " + databaseTime + " ms, dependencies in " +
+                (System.currentTimeMillis() - phaseStart) + " ms)");
+        return toReturn;
+    }
+
+    protected boolean processMoveOperation(String site, RepoOperationTO repoOperation) {
+        Map<String, Object> properties;
+        ItemState stateRename = objectStateService.getObjectState(site, repoOperation.getPath(), false);
+        logger.debug("Set item state for site: " + site + " path: " + repoOperation.getMoveToPath());
+        if (stateRename == null) {
+            objectStateService.getObjectState(site, repoOperation.getMoveToPath());
+            objectStateService.transition(site, repoOperation.getMoveToPath(), TransitionEvent.SAVE);
+        } else {
+            objectStateService.updateObjectPath(site, repoOperation.getPath(),
+                    repoOperation.getMoveToPath());
+            objectStateService.transition(site, repoOperation.getMoveToPath(), TransitionEvent.SAVE);
+        }
+
+        logger.debug("Set item metadata for site: " + site + " path: " +
+                repoOperation.getMoveToPath());
+        if (!objectMetadataManager.metadataExist(site, repoOperation.getPath())) {
+            if (!objectMetadataManager.metadataExist(site, repoOperation.getMoveToPath())) {
+                objectMetadataManager.insertNewObjectMetadata(site, repoOperation.getMoveToPath());
+            } else {
+                if (!objectMetadataManager.isRenamed(site, repoOperation.getMoveToPath())) {
+                    // set renamed and old path
+                    properties = new HashMap<String, Object>();
+                    properties.put(ItemMetadata.PROP_SITE, site);
+                    properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
+                    properties.put(ItemMetadata.PROP_RENAMED, 1);
+                    properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
+                    properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
+                    properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
+                    properties.put(ItemMetadata.PROP_MODIFIED, repoOperation.getDateTime());
+                    objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(),
+                            properties);
+                }
+            }
+        } else {
+            if (!objectMetadataManager.metadataExist(site, repoOperation.getMoveToPath())) {
+                // preform move: update path, set renamed, set old url
+                objectMetadataManager.updateObjectPath(site, repoOperation.getPath(),
+                        repoOperation.getMoveToPath());
+                properties = new HashMap<String, Object>();
+                properties.put(ItemMetadata.PROP_SITE, site);
+                properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
+                properties.put(ItemMetadata.PROP_RENAMED, 1);
+                properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
+                properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
+                properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
+                objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(), properties);
+            } else {
+                // if not already renamed set renamed and old url
+                if (!objectMetadataManager.isRenamed(site, repoOperation.getMoveToPath())) {
+                    // set renamed and old path
+                    properties = new HashMap<String, Object>();
+                    properties.put(ItemMetadata.PROP_SITE, site);
+                    properties.put(ItemMetadata.PROP_PATH, repoOperation.getMoveToPath());
+                    properties.put(ItemMetadata.PROP_RENAMED, 1);
+                    properties.put(ItemMetadata.PROP_OLD_URL, repoOperation.getPath());
+                    properties.put(ItemMetadata.PROP_COMMIT_ID, repoOperation.getCommitId());
+                    properties.put(ItemMetadata.PROP_MODIFIER, repoOperation.getAuthor());
+                    objectMetadataManager.setObjectMetadata(site, repoOperation.getMoveToPath(),
+                            properties);
+                }
+                objectMetadataManager.deleteObjectMetadata(site, repoOperation.getPath());
+            }
+        }
+
+        logger.debug("Extract dependencies for site: " + site + " path: " + repoOperation.getMoveToPath());
+        return extractDependenciesForItem(site, repoOperation.getMoveToPath());
+    }
+
+    protected AuditLog createSyncAuditLog(String site, SiteFeed siteFeed, RepoOperationTO repoOperation) {
+        String path = repoOperation.getPath();
+        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+        switch (repoOperation.getOperation()) {
+            case CREATE:
+            case COPY:
+                auditLog.setOperation(OPERATION_CREATE);
+                break;
+            case UPDATE:
+                auditLog.setOperation(OPERATION_UPDATE);
+                break;
+            case DELETE:
+                auditLog.setOperation(OPERATION_DELETE);
+                break;
+            case MOVE:
+                auditLog.setOperation(OPERATION_MOVE);
+                path = repoOperation.getMoveToPath();
+                break;
+            default:
+                break;
+        }
+        auditLog.setSiteId(siteFeed.getId());
+        auditLog.setActorId(repoOperation.getAuthor());
+        auditLog.setActorDetails(repoOperation.getAuthor());
+        auditLog.setOrigin(ORIGIN_GIT);
+        auditLog.setPrimaryTargetId(site + ":" + path);
+        auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+        auditLog.setPrimaryTargetValue(path);
+        auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(site, path));
+        return auditLog;
+    }
+
     protected boolean extractDependenciesForItem(String site, String path) {
 		boolean toReturn = true;
 
 	    try {
-		    if (path.endsWith(DmConstants.XML_PATTERN)) {
-			    SAXReader saxReader = new SAXReader();
-				try {
-					saxReader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-					saxReader.setFeature("http://xml.org/sax/features/external-general-entities", false);
-					saxReader.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-				}catch (SAXException ex){
-					logger.error("Unable to turn off external entity loading, This could be a security risk.", ex);
-				}
-
+		    if (requiresDependencyExtraction(site, path)) {
 			    dependencyService.upsertDependencies(site, path);
-		    } else {
-			    boolean isCss = path.endsWith(DmConstants.CSS_PATTERN);
-			    boolean isJs = path.endsWith(DmConstants.JS_PATTERN);
-			    boolean isTemplate = ContentUtils.matchesPatterns(path, servicesConfig.getRenderingTemplatePatterns
-				    (site));
-			    if (isCss || isJs || isTemplate) {
-				    dependencyService.upsertDependencies(site, path);
-			    }
 		    }
 	    } catch (ServiceLayerException e) {
 		    logger.error("Error extracting dependencies for site " + site + " file: " + path, e);
@@ -1592,6 +1517,12 @@ public class SiteServiceImpl implements SiteService {
 	    return toReturn;
     }
 
+    protected boolean requiresDependencyExtraction(String site, String path) {
+        return path.endsWith(DmConstants.XML_PATTERN) || path.endsWith(DmConstants.CSS_PATTERN) ||
+                path.endsWith(DmConstants.JS_PATTERN) ||
+                ContentUtils.matchesPatterns(path, servicesConfig.getRenderingTemplatePatterns(site));
+    }
+
     @Override
     @ValidateParams
     public boolean exists(@ValidateStringParam(name = "site") String site) {
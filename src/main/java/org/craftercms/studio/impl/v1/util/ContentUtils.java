@@ -27,6 +27,9 @@ import org.xml.sax.SAXException;
 
 import java.io.*;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 
@@ -35,6 +38,9 @@ public class ContentUtils {
 
 	private static final Logger logger = LoggerFactory.getLogger(ContentUtils.class);
 
+	/** compiled patterns, they come from the site configurations so the number of them is bounded **/
+	private static final Map<String, Pattern> compiledPatterns = new ConcurrentHashMap<String, Pattern>();
+
     /**
      * release resource
      *
@@ -121,7 +127,7 @@ public class ContentUtils {
 	public static boolean matchesPatterns(String uri, List<String> patterns) {
 		if (patterns != null) {
 			for (String pattern : patterns) {
-				if (uri.matches(pattern)) {
+				if (compiledPatterns.computeIfAbsent(pattern, Pattern::compile).matcher(uri).matches()) {
 					return true;
 				}
 			}
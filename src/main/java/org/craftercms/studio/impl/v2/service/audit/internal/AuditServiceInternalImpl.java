@@ -39,6 +39,7 @@ import java.util.Map;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CLUSTER_MEMBER_LOCAL_ADDRESS;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_NAME;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.CLUSTERING_NODE_REGISTRATION;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_DELETE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_MOVE;
@@ -208,6 +209,37 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         return result > 0;
     }
 
+    @Override
+    public void insertAuditLogs(List<AuditLog> auditLogs) {
+        List<AuditLog> batch = new ArrayList<AuditLog>();
+        int batchSize = Integer.parseInt(studioConfiguration.getProperty(OBJECT_STATE_BULK_OPERATIONS_BATCH_SIZE));
+        for (AuditLog auditLog : auditLogs) {
+            if (CollectionUtils.isNotEmpty(auditLog.getParameters())) {
+                // parameters need the generated id of their entry, flush the pending entries first to keep the order
+                if (!batch.isEmpty()) {
+                    insertAuditLogBatch(batch);
+                    batch = new ArrayList<AuditLog>();
+                }
+                insertAuditLog(auditLog);
+            } else {
+                batch.add(auditLog);
+                if (batch.size() >= batchSize) {
+                    insertAuditLogBatch(batch);
+                    batch = new ArrayList<AuditLog>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertAuditLogBatch(batch);
+        }
+    }
+
+    protected void insertAuditLogBatch(List<AuditLog> auditLogs) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("auditLogs", auditLogs);
+        auditDao.insertAuditLogs(params);
+    }
+
     @Override
     public AuditLog createAuditLogEntry() {
         AuditLog auditLog = new AuditLog();
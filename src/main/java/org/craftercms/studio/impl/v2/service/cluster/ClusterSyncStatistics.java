@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.service.cluster;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the cluster sync job of a repository type, shared with the sync tasks it launches
+ */
+public class ClusterSyncStatistics {
+
+    protected final LongAdder cycles = new LongAdder();
+    protected final LongAdder totalCycleTime = new LongAdder();
+    protected final AtomicLong maxCycleTime = new AtomicLong();
+    protected volatile long lastCycleTime;
+    protected volatile int lastCycleSites;
+    protected volatile int lastCycleSkippedSites;
+    protected final LongAdder sites = new LongAdder();
+    protected final LongAdder skippedSites = new LongAdder();
+    protected final LongAdder skippedPeers = new LongAdder();
+    protected final LongAdder fetches = new LongAdder();
+    protected final LongAdder failedFetches = new LongAdder();
+    protected final LongAdder syncs = new LongAdder();
+    protected final LongAdder totalSyncTime = new LongAdder();
+
+    /**
+     * Record a cycle of the sync job
+     *
+     * @param time time in milliseconds to compare the watermarks and launch the tasks
+     * @param siteCount number of sites checked
+     * @param skippedSiteCount number of sites that didn't need to be synced
+     */
+    public void recordCycle(long time, int siteCount, int skippedSiteCount) {
+        cycles.increment();
+        totalCycleTime.add(time);
+        long current = maxCycleTime.get();
+        while (time > current && !maxCycleTime.compareAndSet(current, time)) {
+            current = maxCycleTime.get();
+        }
+        lastCycleTime = time;
+        lastCycleSites = siteCount;
+        lastCycleSkippedSites = skippedSiteCount;
+        sites.add(siteCount);
+        skippedSites.add(skippedSiteCount);
+    }
+
+    public void recordSkippedPeers(int count) {
+        skippedPeers.add(count);
+    }
+
+    public void recordFetch(boolean success) {
+        fetches.increment();
+        if (!success) {
+            failedFetches.increment();
+        }
+    }
+
+    public void recordSync(long time) {
+        syncs.increment();
+        totalSyncTime.add(time);
+    }
+
+    public Map<String, Object> getStatistics() {
+        long totalCycles = cycles.sum();
+        long totalSyncs = syncs.sum();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("cycles", totalCycles);
+        statistics.put("lastCycleTimeMs", lastCycleTime);
+        statistics.put("avgCycleTimeMs", totalCycles > 0 ? totalCycleTime.sum() / totalCycles : 0);
+        statistics.put("maxCycleTimeMs", maxCycleTime.get());
+        statistics.put("lastCycleSites", lastCycleSites);
+        statistics.put("lastCycleSkippedSites", lastCycleSkippedSites);
+        statistics.put("sites", sites.sum());
+        statistics.put("skippedSites", skippedSites.sum());
+        statistics.put("skippedPeers", skippedPeers.sum());
+        statistics.put("fetches", fetches.sum());
+        statistics.put("failedFetches", failedFetches.sum());
+        statistics.put("syncs", totalSyncs);
+        statistics.put("avgSyncTimeMs", totalSyncs > 0 ? totalSyncTime.sum() / totalSyncs : 0);
+        return statistics;
+    }
+}
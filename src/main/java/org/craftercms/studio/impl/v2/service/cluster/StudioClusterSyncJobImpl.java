@@ -39,18 +39,23 @@ import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v2.dal.ClusterDAO;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
+import org.craftercms.studio.api.v2.dal.ClusterSiteSyncRepo;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
 import org.craftercms.studio.api.v2.service.cluster.StudioClusterSyncJob;
 import org.craftercms.studio.impl.v1.service.deployment.job.DeployContentToEnvironmentStore;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CLUSTER_MEMBER_LOCAL_ADDRESS;
@@ -61,12 +66,18 @@ import static org.craftercms.studio.api.v1.util.StudioConfiguration.CONFIGURATIO
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_BASE_PATH;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.SITES_REPOS_PATH;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_LOCAL_ADDRESS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_NODE_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_REPO_TYPE;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_SITE_SYNC_REPOS;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_STATE;
 
-public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
+public class StudioClusterSyncJobImpl implements StudioClusterSyncJob, StatisticsProvider {
 
     private final static Logger logger = LoggerFactory.getLogger(StudioClusterSyncJobImpl.class);
 
+    /** max number of watermarks published in a single statement **/
+    private final static int WATERMARK_BATCH_SIZE = 100;
+
     private SiteService siteService;
     private TaskExecutor taskExecutor;
     private PreviewDeployer previewDeployer;
@@ -76,6 +87,14 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
     private ServicesConfig servicesConfig;
     private GitRepositories repositoryType;
     private DeploymentService deploymentService;
+    private AsyncTaskExecutor fetchTaskExecutor;
+
+    private final ClusterSyncStatistics statistics = new ClusterSyncStatistics();
+    // Watermarks of the local repositories last published for the other members, by site
+    private final Map<String, String> publishedWatermarks = new ConcurrentHashMap<String, String>();
+    // Watermarks of the other members last synced, by site and git remote name
+    private final Map<String, Map<String, String>> syncedWatermarks =
+            new ConcurrentHashMap<String, Map<String, String>>();
 
     private ReentrantLock singleWorkerLock = new ReentrantLock();
     private final static Map<String, String> deletedSitesMap = new HashMap<String, String>();
@@ -90,11 +109,11 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
                     String localAddress = registrationData.getString(CLUSTER_MEMBER_LOCAL_ADDRESS);
                     logger.debug("Cluster is configured.");
                     List<ClusterMember> cm = clusterDAO.getAllMembers();
-                    boolean memberRemoved =
-                            !cm.stream().anyMatch(clusterMember -> {
-                                return clusterMember.getLocalAddress().equals(localAddress);
-                            });
-                    if (memberRemoved) {
+                    ClusterMember localMember = cm.stream()
+                            .filter(clusterMember -> clusterMember.getLocalAddress().equals(localAddress))
+                            .findFirst()
+                            .orElse(null);
+                    if (localMember == null) {
                         logger.info("Cluster member " + localAddress + " is removed from cluster. Not syncing with other " +
                                 "members");
                         DeployContentToEnvironmentStore.signalToStop(true);
@@ -114,7 +133,23 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
                                 logger.debug("Number of active cluster members: " + numActiveMembers);
                             }
                             if ((clusterMembers != null && clusterMembers.size() > 0) && (siteNames != null && siteNames.size() > 0)) {
+                                long cycleStartTime = System.currentTimeMillis();
+                                Map<String, String> localWatermarks = publishWatermarks(localMember, siteNames);
+                                Map<String, Map<Long, String>> peerWatermarks = getPeerWatermarks(localMember);
+                                int skippedSites = 0;
                                 for (String site : siteNames) {
+                                    Map<String, String> siteSyncedWatermarks =
+                                            syncedWatermarks.computeIfAbsent(site, s -> new ConcurrentHashMap<>());
+                                    Map<String, String> sitePeerWatermarks = new HashMap<String, String>();
+                                    List<ClusterMember> syncNodes = getNodesToSync(clusterMembers,
+                                            localWatermarks.get(site), peerWatermarks.get(site),
+                                            siteSyncedWatermarks, sitePeerWatermarks);
+                                    if (syncNodes.isEmpty()) {
+                                        logger.debug("No cluster member has changes for site " + site +
+                                                ", skipping sync");
+                                        skippedSites++;
+                                        continue;
+                                    }
                                     SiteFeed siteFeed = siteService.getSite(site);
                                     logger.debug("Creating task thread to sync cluster node for site " + site);
                                     switch (repositoryType) {
@@ -130,6 +165,11 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
                                             nodeSandobxSyncTask.setServicesConfig(servicesConfig);
                                             nodeSandobxSyncTask.setClusterNodes(clusterMembers);
                                             nodeSandobxSyncTask.setDeploymentService(deploymentService);
+                                            nodeSandobxSyncTask.setSyncNodes(syncNodes);
+                                            nodeSandobxSyncTask.setPeerWatermarks(sitePeerWatermarks);
+                                            nodeSandobxSyncTask.setSyncedWatermarks(siteSyncedWatermarks);
+                                            nodeSandobxSyncTask.setFetchTaskExecutor(fetchTaskExecutor);
+                                            nodeSandobxSyncTask.setSyncStatistics(statistics);
                                             taskExecutor.execute(nodeSandobxSyncTask);
                                             break;
                                         case PUBLISHED:
@@ -144,9 +184,18 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
                                             nodePublishedSyncTask.setServicesConfig(servicesConfig);
                                             nodePublishedSyncTask.setClusterNodes(clusterMembers);
                                             nodePublishedSyncTask.setDeploymentService(deploymentService);
+                                            nodePublishedSyncTask.setSyncNodes(syncNodes);
+                                            nodePublishedSyncTask.setPeerWatermarks(sitePeerWatermarks);
+                                            nodePublishedSyncTask.setSyncedWatermarks(siteSyncedWatermarks);
+                                            nodePublishedSyncTask.setFetchTaskExecutor(fetchTaskExecutor);
+                                            nodePublishedSyncTask.setSyncStatistics(statistics);
                                             taskExecutor.execute(nodePublishedSyncTask);
                                     }
                                 }
+                                long cycleTime = System.currentTimeMillis() - cycleStartTime;
+                                statistics.recordCycle(cycleTime, siteNames.size(), skippedSites);
+                                logger.debug("Cluster " + repositoryType + " sync cycle checked " + siteNames.size() +
+                                        " sites in " + cycleTime + " ms, " + skippedSites + " sites skipped");
                             }
                         } catch (Exception err) {
                             logger.error("Error while executing cluster sync job", err);
@@ -160,6 +209,114 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
         }
     }
 
+    /**
+     * Calculate the watermarks of the local repositories and publish the ones that changed since the last cycle, so
+     * the other members can tell if they need to sync from this one
+     *
+     * @return the watermarks of the local repositories by site
+     */
+    private Map<String, String> publishWatermarks(ClusterMember localMember, Set<String> siteNames) {
+        Map<String, String> localWatermarks = new HashMap<String, String>();
+        List<ClusterSiteSyncRepo> changed = new ArrayList<ClusterSiteSyncRepo>();
+        for (String site : siteNames) {
+            String watermark = getLocalWatermark(site);
+            if (StringUtils.isEmpty(watermark)) {
+                continue;
+            }
+            localWatermarks.put(site, watermark);
+            if (!StringUtils.equals(watermark, publishedWatermarks.get(site))) {
+                ClusterSiteSyncRepo siteSyncRepo = new ClusterSiteSyncRepo();
+                siteSyncRepo.setClusterNodeId(localMember.getId());
+                siteSyncRepo.setSiteId(site);
+                siteSyncRepo.setRepoType(repositoryType.name());
+                siteSyncRepo.setWatermark(watermark);
+                changed.add(siteSyncRepo);
+            }
+        }
+        for (int i = 0; i < changed.size(); i += WATERMARK_BATCH_SIZE) {
+            List<ClusterSiteSyncRepo> batch = changed.subList(i, Math.min(i + WATERMARK_BATCH_SIZE, changed.size()));
+            try {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(CLUSTER_SITE_SYNC_REPOS, batch);
+                clusterDAO.upsertSiteSyncRepos(params);
+                batch.forEach(siteSyncRepo ->
+                        publishedWatermarks.put(siteSyncRepo.getSiteId(), siteSyncRepo.getWatermark()));
+            } catch (Exception e) {
+                logger.error("Error while publishing the " + repositoryType + " repository watermarks", e);
+            }
+        }
+        return localWatermarks;
+    }
+
+    private String getLocalWatermark(String site) {
+        switch (repositoryType) {
+            case SANDBOX:
+                return contentRepository.getRepoLastCommitId(site);
+            case PUBLISHED:
+                Map<String, String> branchHeads = contentRepository.getPublishedBranchHeads(site);
+                if (branchHeads == null || branchHeads.isEmpty()) {
+                    return null;
+                }
+                StringBuilder watermark = new StringBuilder();
+                branchHeads.forEach((branch, commitId) -> watermark.append(branch).append('=').append(commitId)
+                        .append(';'));
+                return watermark.toString();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the watermarks published by the other members
+     *
+     * @return the watermarks by site and cluster member id
+     */
+    private Map<String, Map<Long, String>> getPeerWatermarks(ClusterMember localMember) {
+        Map<String, Map<Long, String>> peerWatermarks = new HashMap<String, Map<Long, String>>();
+        try {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put(CLUSTER_REPO_TYPE, repositoryType.name());
+            params.put(CLUSTER_NODE_ID, localMember.getId());
+            for (ClusterSiteSyncRepo siteSyncRepo : clusterDAO.getOtherNodesSiteSyncRepos(params)) {
+                peerWatermarks.computeIfAbsent(siteSyncRepo.getSiteId(), s -> new HashMap<>())
+                        .put(siteSyncRepo.getClusterNodeId(), siteSyncRepo.getWatermark());
+            }
+        } catch (Exception e) {
+            // Without the watermarks all the members are synced, same as before they existed
+            logger.error("Error while getting the " + repositoryType + " repository watermarks of the other " +
+                    "cluster members", e);
+        }
+        return peerWatermarks;
+    }
+
+    /**
+     * Get the members a site needs to be synced from. A member is skipped when its watermark is the same as the
+     * local one or as the one last synced from it, members without a watermark are always synced.
+     *
+     * @param sitePeerWatermarksByRemote filled with the watermarks of the members to sync, by git remote name
+     */
+    private List<ClusterMember> getNodesToSync(List<ClusterMember> clusterMembers, String localWatermark,
+                                               Map<Long, String> sitePeerWatermarks,
+                                               Map<String, String> siteSyncedWatermarks,
+                                               Map<String, String> sitePeerWatermarksByRemote) {
+        List<ClusterMember> syncNodes = new ArrayList<ClusterMember>();
+        int skippedPeers = 0;
+        for (ClusterMember clusterMember : clusterMembers) {
+            String peerWatermark = sitePeerWatermarks != null ? sitePeerWatermarks.get(clusterMember.getId()) : null;
+            if (peerWatermark != null && (peerWatermark.equals(localWatermark) ||
+                    peerWatermark.equals(siteSyncedWatermarks.get(clusterMember.getGitRemoteName())))) {
+                skippedPeers++;
+                continue;
+            }
+            if (peerWatermark != null) {
+                sitePeerWatermarksByRemote.put(clusterMember.getGitRemoteName(), peerWatermark);
+            }
+            syncNodes.add(clusterMember);
+        }
+        statistics.recordSkippedPeers(skippedPeers);
+        return syncNodes;
+    }
+
     private void cleanupDeletedSites() {
         logger.debug("Remove local copies of deleted sites if present");
         List<SiteFeed> deletedSites = siteService.getDeletedSites();
@@ -300,4 +457,22 @@ public class StudioClusterSyncJobImpl implements StudioClusterSyncJob {
     public void setDeploymentService(DeploymentService deploymentService) {
         this.deploymentService = deploymentService;
     }
+
+    public AsyncTaskExecutor getFetchTaskExecutor() {
+        return fetchTaskExecutor;
+    }
+
+    public void setFetchTaskExecutor(AsyncTaskExecutor fetchTaskExecutor) {
+        this.fetchTaskExecutor = fetchTaskExecutor;
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "cluster" + StringUtils.capitalize(StringUtils.lowerCase(repositoryType.name())) + "Sync";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        return statistics.getStatistics();
+    }
 }
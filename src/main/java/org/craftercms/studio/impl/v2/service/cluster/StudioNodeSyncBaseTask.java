@@ -35,10 +35,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
@@ -66,6 +72,7 @@ import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.RemoteAddCommand;
 import org.eclipse.jgit.api.RemoteSetUrlCommand;
@@ -75,6 +82,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
 import org.eclipse.jgit.transport.SshSessionFactory;
@@ -83,6 +91,8 @@ import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.util.FS;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 
 public abstract class StudioNodeSyncBaseTask implements Runnable {
 
@@ -102,6 +112,11 @@ public abstract class StudioNodeSyncBaseTask implements Runnable {
     protected ServicesConfig servicesConfig;
     protected SiteService siteService;
     protected DeploymentService deploymentService;
+    protected List<ClusterMember> syncNodes;
+    protected Map<String, String> peerWatermarks;
+    protected Map<String, String> syncedWatermarks;
+    protected AsyncTaskExecutor fetchTaskExecutor;
+    protected ClusterSyncStatistics syncStatistics;
 
 	// Abstract methods to be implemented by Sandbox/Published classes
 	protected abstract boolean isSyncRequiredInternal(String siteId, String siteDatabaseLastCommitId);
@@ -151,7 +166,11 @@ public abstract class StudioNodeSyncBaseTask implements Runnable {
                         try {
                             // Sync with remote and update the local cache with the last commit ID to speed things up
                             logger.debug("Update content for site " + siteId);
+                            long syncStartTime = System.currentTimeMillis();
                             updateContent(siteDatabaseLastCommitId);
+                            if (syncStatistics != null) {
+                                syncStatistics.recordSync(System.currentTimeMillis() - syncStartTime);
+                            }
                         } catch (IOException | CryptoException | ServiceLayerException e) {
                             logger.error("Error while updating content for site " + siteId + " on cluster node.", e);
                         }
@@ -179,9 +198,98 @@ public abstract class StudioNodeSyncBaseTask implements Runnable {
 
     // Determine if the local repo needs to be sync'd
     protected boolean isSyncRequired(String siteId, String siteDatabaseLastCommitId) {
+        if (getSyncNodes().isEmpty()) {
+            logger.debug("No cluster member is ahead of the local repository for site " + siteId);
+            return false;
+        }
 		return isSyncRequiredInternal(siteId, siteDatabaseLastCommitId);
 	}
 
+    /**
+     * Get the cluster members to sync from, the ones whose repository changed since it was last synced
+     */
+    protected List<ClusterMember> getSyncNodes() {
+        return syncNodes != null ? syncNodes : clusterNodes;
+    }
+
+    /**
+     * Remember the watermark of a cluster member that has been synced, so it is not synced again until it changes
+     */
+    protected void markSynced(ClusterMember remoteNode) {
+        if (peerWatermarks != null && syncedWatermarks != null) {
+            String watermark = peerWatermarks.get(remoteNode.getGitRemoteName());
+            if (watermark != null) {
+                syncedWatermarks.put(remoteNode.getGitRemoteName(), watermark);
+            }
+        }
+    }
+
+    /**
+     * Fetch from the given cluster members, in parallel when there is a fetch executor. Merges are left to the
+     * caller since they have to be done one at a time.
+     *
+     * @param git local repository
+     * @param remoteNodes cluster members to fetch from
+     * @return the fetch result of each cluster member, in the same order, without the ones that failed
+     */
+    protected Map<ClusterMember, FetchResult> fetchFromRemotes(Git git, List<ClusterMember> remoteNodes) {
+        Map<ClusterMember, Future<FetchResult>> pendingFetches = new LinkedHashMap<ClusterMember, Future<FetchResult>>();
+        for (ClusterMember remoteNode : remoteNodes) {
+            Callable<FetchResult> fetch = () -> fetchFromRemote(git, remoteNode);
+            Future<FetchResult> pendingFetch = null;
+            if (fetchTaskExecutor != null && remoteNodes.size() > 1) {
+                try {
+                    pendingFetch = fetchTaskExecutor.submit(fetch);
+                } catch (TaskRejectedException e) {
+                    logger.debug("Fetch executor is busy, fetching from " + remoteNode.getLocalAddress() +
+                            " in the sync thread for site " + siteId);
+                }
+            }
+            if (pendingFetch == null) {
+                FutureTask<FetchResult> fetchTask = new FutureTask<FetchResult>(fetch);
+                fetchTask.run();
+                pendingFetch = fetchTask;
+            }
+            pendingFetches.put(remoteNode, pendingFetch);
+        }
+
+        Map<ClusterMember, FetchResult> fetchResults = new LinkedHashMap<ClusterMember, FetchResult>();
+        for (Map.Entry<ClusterMember, Future<FetchResult>> entry : pendingFetches.entrySet()) {
+            boolean success = false;
+            try {
+                FetchResult fetchResult = entry.getValue().get();
+                if (fetchResult != null) {
+                    fetchResults.put(entry.getKey(), fetchResult);
+                    success = true;
+                }
+            } catch (ExecutionException e) {
+                logger.error("Error while fetching from cluster member " + entry.getKey().getLocalAddress() +
+                        " for site " + siteId, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                if (syncStatistics != null) {
+                    syncStatistics.recordFetch(success);
+                }
+            }
+        }
+        return fetchResults;
+    }
+
+    protected FetchResult fetchFromRemote(Git git, ClusterMember remoteNode) throws CryptoException, GitAPIException,
+            IOException, ServiceLayerException {
+        logger.debug("Fetch from cluster member " + remoteNode.getLocalAddress() + " for site " + siteId);
+        final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(), ".tmp");
+        try {
+            FetchCommand fetchCommand = git.fetch().setRemote(remoteNode.getGitRemoteName());
+            fetchCommand = setAuthenticationForCommand(remoteNode, fetchCommand, tempKey);
+            return fetchCommand.call();
+        } finally {
+            Files.deleteIfExists(tempKey);
+        }
+    }
+
     protected String getDatbaseLastCommitId(String siteId) {
         String siteDatabaseLastCommitId = StringUtils.EMPTY;
 
@@ -545,4 +653,24 @@ public abstract class StudioNodeSyncBaseTask implements Runnable {
     public void setDeploymentService(DeploymentService deploymentService) {
         this.deploymentService = deploymentService;
     }
+
+    public void setSyncNodes(List<ClusterMember> syncNodes) {
+        this.syncNodes = syncNodes;
+    }
+
+    public void setPeerWatermarks(Map<String, String> peerWatermarks) {
+        this.peerWatermarks = peerWatermarks;
+    }
+
+    public void setSyncedWatermarks(Map<String, String> syncedWatermarks) {
+        this.syncedWatermarks = syncedWatermarks;
+    }
+
+    public void setFetchTaskExecutor(AsyncTaskExecutor fetchTaskExecutor) {
+        this.fetchTaskExecutor = fetchTaskExecutor;
+    }
+
+    public void setSyncStatistics(ClusterSyncStatistics syncStatistics) {
+        this.syncStatistics = syncStatistics;
+    }
 }
@@ -19,25 +19,19 @@ package org.craftercms.studio.impl.v2.service.cluster;
 
 import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
 import static org.craftercms.studio.api.v1.util.StudioConfiguration.REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING;
-import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_CIPHER_KEY;
-import static org.craftercms.studio.api.v1.util.StudioConfiguration.SECURITY_CIPHER_SALT;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.GIT_ROOT;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoException;
-import org.craftercms.commons.crypto.TextEncryptor;
-import org.craftercms.commons.crypto.impl.PbkAesTextEncryptor;
 import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.repository.InvalidRemoteRepositoryCredentialsException;
@@ -48,9 +42,9 @@ import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.to.PublishingTargetTO;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
 import org.eclipse.jgit.api.CheckoutCommand;
-import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -115,18 +109,19 @@ public class StudioNodeSyncPublishedTask extends StudioNodeSyncBaseTask {
 
             Set<String> environments = getAllPublishingEnvironments(siteId);
             logger.debug("Update published repo from all active cluster members");
-            for (ClusterMember remoteNode : clusterNodes) {
-                logger.debug("Fetch from cluster member " + remoteNode.getLocalAddress());
-                final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(), ".tmp");
-                FetchCommand fetch = git.fetch().setRemote(remoteNode.getGitRemoteName());
-                fetch = setAuthenticationForCommand(remoteNode, fetch, tempKey);
-                fetch.call();
-                Files.delete(tempKey);
-
+            // Fetches can run in parallel, merges have to be done one at a time
+            Map<ClusterMember, FetchResult> fetchResults = fetchFromRemotes(git, getSyncNodes());
+            for (Map.Entry<ClusterMember, FetchResult> entry : fetchResults.entrySet()) {
+                ClusterMember remoteNode = entry.getKey();
                 logger.debug("Update all environments for site " + siteId + " from cluster member " +
                         remoteNode.getLocalAddress());
+                boolean merged = true;
                 for (String branch : environments) {
-                    updatePublishedBranch(git, remoteNode, branch);
+                    merged = updatePublishedBranch(git, remoteNode, branch, entry.getValue()) && merged;
+                }
+                // A failed merge is retried on the next run
+                if (merged) {
+                    markSynced(remoteNode);
                 }
             }
         } catch (GitAPIException e) {
@@ -135,14 +130,10 @@ public class StudioNodeSyncPublishedTask extends StudioNodeSyncBaseTask {
 
     }
 
-    private void updatePublishedBranch(Git git, ClusterMember remoteNode, String branch) throws CryptoException,
-            GitAPIException, IOException, ServiceLayerException {
+    private boolean updatePublishedBranch(Git git, ClusterMember remoteNode, String branch, FetchResult fetchResult)
+            throws GitAPIException, IOException {
         logger.debug("Update published environment " + branch + " from " + remoteNode.getLocalAddress() +
                 " for site " + siteId);
-        final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(), ".tmp");
-
-        TextEncryptor encryptor = new PbkAesTextEncryptor(studioConfiguration.getProperty(SECURITY_CIPHER_KEY),
-                studioConfiguration.getProperty(SECURITY_CIPHER_SALT));
 
         Repository repo = git.getRepository();
         Ref ref = repo.exactRef(Constants.R_HEADS + branch);
@@ -157,10 +148,6 @@ public class StudioNodeSyncPublishedTask extends StudioNodeSyncBaseTask {
         }
         checkoutCommand.call();
 
-        FetchCommand fetchCommand = git.fetch().setRemote(remoteNode.getGitRemoteName());
-        fetchCommand = setAuthenticationForCommand(remoteNode, fetchCommand, tempKey);
-        FetchResult fetchResult = fetchCommand.call();
-
         ObjectId commitToMerge = null;
         Ref r = null;
         if (fetchResult != null) {
@@ -176,11 +163,16 @@ public class StudioNodeSyncPublishedTask extends StudioNodeSyncBaseTask {
                 mergeCommand.setCommit(true);
                 mergeCommand.include(remoteNode.getGitRemoteName(), commitToMerge);
                 mergeCommand.setStrategy(MergeStrategy.THEIRS);
-                mergeCommand.call();
+                MergeResult mergeResult = mergeCommand.call();
+                if (!mergeResult.getMergeStatus().isSuccessful()) {
+                    logger.error("Error while merging published environment " + branch + " for site " + siteId +
+                            " from cluster member " + remoteNode.getLocalAddress() + ", merge status: " +
+                            mergeResult.getMergeStatus());
+                    return false;
+                }
             }
         }
-
-        Files.delete(tempKey);
+        return true;
     }
 
     private Set<String> getAllPublishingEnvironments(String site) {
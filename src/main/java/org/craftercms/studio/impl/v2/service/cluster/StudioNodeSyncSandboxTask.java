@@ -30,7 +30,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -55,9 +57,9 @@ import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.util.StudioConfiguration;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
 import org.eclipse.jgit.api.CloneCommand;
-import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
@@ -174,14 +176,26 @@ public class StudioNodeSyncSandboxTask extends StudioNodeSyncBaseTask {
         }
         try (Git git = new Git(repo)) {
             logger.debug("Update content from each active cluster memeber");
-            for (ClusterMember remoteNode : clusterNodes) {
+            List<ClusterMember> nodesToFetch = new ArrayList<ClusterMember>();
+            for (ClusterMember remoteNode : getSyncNodes()) {
                 String remoteLastSyncCommit = remoteLastSyncCommits.get(remoteNode.getGitRemoteName());
                 if (StringUtils.isEmpty(remoteLastSyncCommit) ||
                         !StringUtils.equals(lastCommitId, remoteLastSyncCommit)) {
-                    updateBranch(git, remoteNode);
+                    nodesToFetch.add(remoteNode);
+                }
+            }
+            // Fetches can run in parallel, merges have to be done one at a time
+            Map<ClusterMember, FetchResult> fetchResults = fetchFromRemotes(git, nodesToFetch);
+            for (Map.Entry<ClusterMember, FetchResult> entry : fetchResults.entrySet()) {
+                ClusterMember remoteNode = entry.getKey();
+                // A failed merge is retried on the next run
+                if (updateBranch(git, remoteNode, entry.getValue())) {
                     remoteLastSyncCommits.put(remoteNode.getGitRemoteName(), lastCommitId);
+                    markSynced(remoteNode);
                 }
             }
+            // Merged content may include configuration changes
+            servicesConfig.invalidateConfiguration(siteId);
         } catch (GitAPIException e) {
             logger.error("Error while syncing cluster node content for site " + siteId);
         }
@@ -328,15 +342,7 @@ public class StudioNodeSyncSandboxTask extends StudioNodeSyncBaseTask {
         return cloned;
     }
 
-    private void updateBranch(Git git, ClusterMember remoteNode) throws CryptoException, GitAPIException,
-            IOException, ServiceLayerException {
-        TextEncryptor encryptor = new PbkAesTextEncryptor(studioConfiguration.getProperty(SECURITY_CIPHER_KEY),
-                studioConfiguration.getProperty(SECURITY_CIPHER_SALT));
-        final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(), ".tmp");
-        FetchCommand fetchCommand = git.fetch().setRemote(remoteNode.getGitRemoteName());
-        fetchCommand = setAuthenticationForCommand(remoteNode, fetchCommand, tempKey);
-        FetchResult fetchResult = fetchCommand.call();
-
+    private boolean updateBranch(Git git, ClusterMember remoteNode, FetchResult fetchResult) throws GitAPIException {
         ObjectId commitToMerge = null;
         Ref r = null;
         if (fetchResult != null) {
@@ -353,11 +359,15 @@ public class StudioNodeSyncSandboxTask extends StudioNodeSyncBaseTask {
                 mergeCommand.setCommit(true);
                 mergeCommand.include(remoteNode.getGitRemoteName(), commitToMerge);
                 mergeCommand.setStrategy(MergeStrategy.THEIRS);
-                mergeCommand.call();
+                MergeResult mergeResult = mergeCommand.call();
+                if (!mergeResult.getMergeStatus().isSuccessful()) {
+                    logger.error("Error while merging sandbox for site " + siteId + " from cluster member " +
+                            remoteNode.getLocalAddress() + ", merge status: " + mergeResult.getMergeStatus());
+                    return false;
+                }
             }
         }
-
-        Files.delete(tempKey);
+        return true;
     }
 
     private void addSiteUuidFile(String site, String siteUuid) throws IOException {
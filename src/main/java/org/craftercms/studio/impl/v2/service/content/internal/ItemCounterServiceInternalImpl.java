@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2007-2019 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.content.internal;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.util.StudioConfiguration;
+import org.craftercms.studio.api.v2.dal.ClusterDAO;
+import org.craftercms.studio.api.v2.dal.ClusterMember;
+import org.craftercms.studio.api.v2.dal.ItemCount;
+import org.craftercms.studio.api.v2.dal.ItemCounterDAO;
+import org.craftercms.studio.api.v2.monitoring.StatisticsProvider;
+import org.craftercms.studio.api.v2.service.content.internal.ItemCounterServiceInternal;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CLUSTER_MEMBER_LOCAL_ADDRESS;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.CLUSTERING_NODE_REGISTRATION;
+import static org.craftercms.studio.api.v1.util.StudioConfiguration.ITEM_COUNTER_CACHE_TIME_TO_LIVE;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ITEM_COUNT_DELTA;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
+
+/**
+ * Keeps the number of items of each site in the item counter table. The writes to the item metadata update the
+ * counters in the same transaction, and the total is cached so the entitlement checks done on every save don't hit
+ * the database. A periodic reconciliation corrects any drift against the item metadata table, the drift found is
+ * exposed through the monitoring API. In a cluster only the active member with the lowest id reconciles.
+ */
+public class ItemCounterServiceInternalImpl implements ItemCounterServiceInternal, StatisticsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemCounterServiceInternalImpl.class);
+
+    private ItemCounterDAO itemCounterDao;
+    private ClusterDAO clusterDao;
+    private StudioConfiguration studioConfiguration;
+    private PlatformTransactionManager transactionManager;
+
+    private volatile CachedTotal cachedTotal;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder reconciliations = new LongAdder();
+    private volatile long lastDrift;
+    private volatile Map<String, Long> lastDriftBySite = Collections.emptyMap();
+    private volatile ZonedDateTime lastReconciliation;
+
+    @Override
+    public long getTotalItemCount() {
+        CachedTotal cached = cachedTotal;
+        if (cached != null && System.currentTimeMillis() - cached.loadTime < getCacheTimeToLive()) {
+            cacheHits.increment();
+            return cached.total;
+        }
+        cacheMisses.increment();
+        long total = itemCounterDao.getTotalItemCount();
+        cachedTotal = new CachedTotal(total);
+        return total;
+    }
+
+    @Override
+    public void updateItemCount(String siteId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_ID, siteId);
+        params.put(ITEM_COUNT_DELTA, delta);
+        itemCounterDao.addItemCount(params);
+        invalidateCache();
+    }
+
+    @Override
+    public void deleteItemCount(String siteId) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(SITE_ID, siteId);
+        itemCounterDao.deleteItemCount(params);
+        invalidateCache();
+    }
+
+    @Override
+    public void reconcile() {
+        if (!isReconciliationNode()) {
+            logger.debug("Item counters are reconciled by another cluster member, skipping");
+            return;
+        }
+        logger.debug("Reconciling the item counters with the item metadata");
+        Map<String, Long> driftBySite = new LinkedHashMap<String, Long>();
+        long totalDrift = 0;
+        TransactionStatus txStatus = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            // Lock the counters first, the writes to the item metadata update them in the same transaction so
+            // every write is either committed before the count or waits until the corrections are committed
+            Map<String, Long> counters = new HashMap<String, Long>();
+            for (ItemCount itemCount : itemCounterDao.lockItemCounts()) {
+                counters.put(itemCount.getSiteId(), itemCount.getCount());
+            }
+            for (ItemCount itemCount : itemCounterDao.countMetadataItems()) {
+                Long counter = counters.remove(itemCount.getSiteId());
+                long drift = itemCount.getCount() - (counter != null ? counter : 0);
+                if (drift != 0) {
+                    driftBySite.put(itemCount.getSiteId(), drift);
+                }
+            }
+            // Sites that have a counter but no items left
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                if (entry.getValue() != 0) {
+                    driftBySite.put(entry.getKey(), -entry.getValue());
+                }
+            }
+
+            for (Map.Entry<String, Long> entry : driftBySite.entrySet()) {
+                logger.info("Correcting the item counter of site " + entry.getKey() + " by " + entry.getValue());
+                updateItemCount(entry.getKey(), entry.getValue());
+                totalDrift += Math.abs(entry.getValue());
+            }
+            transactionManager.commit(txStatus);
+        } catch (Exception e) {
+            transactionManager.rollback(txStatus);
+            logger.error("Failed to reconcile the item counters", e);
+            return;
+        }
+
+        lastDrift = totalDrift;
+        lastDriftBySite = Collections.unmodifiableMap(driftBySite);
+        lastReconciliation = ZonedDateTime.now();
+        reconciliations.increment();
+    }
+
+    /**
+     * Check if this node should reconcile the counters: always when clustering is not configured, otherwise only if
+     * it is the active member with the lowest id
+     */
+    protected boolean isReconciliationNode() {
+        HierarchicalConfiguration<ImmutableNode> registrationData =
+                studioConfiguration.getSubConfig(CLUSTERING_NODE_REGISTRATION);
+        if (registrationData == null || registrationData.isEmpty()) {
+            return true;
+        }
+        String localAddress = registrationData.getString(CLUSTER_MEMBER_LOCAL_ADDRESS);
+        List<ClusterMember> members = clusterDao.getAllMembers();
+        return members.stream()
+                .filter(member -> member.getState() == ClusterMember.State.ACTIVE)
+                .min(Comparator.comparingLong(ClusterMember::getId))
+                .map(member -> member.getLocalAddress().equals(localAddress))
+                .orElse(false);
+    }
+
+    /**
+     * Drop the cached total now and, when inside a transaction, again after it completes so the total cached by
+     * other threads before the commit is not kept until it expires
+     */
+    protected void invalidateCache() {
+        cachedTotal = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(int status) {
+                    cachedTotal = null;
+                }
+            });
+        }
+    }
+
+    @Override
+    public String getStatisticsName() {
+        return "itemCounter";
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        CachedTotal cached = cachedTotal;
+        statistics.put("cachedTotal", cached != null ? cached.total : null);
+        statistics.put("cacheHits", cacheHits.sum());
+        statistics.put("cacheMisses", cacheMisses.sum());
+        statistics.put("reconciliations", reconciliations.sum());
+        statistics.put("lastReconciliation", lastReconciliation);
+        statistics.put("lastDrift", lastDrift);
+        statistics.put("lastDriftBySite", lastDriftBySite);
+        return statistics;
+    }
+
+    public long getCacheTimeToLive() {
+        return Long.parseLong(studioConfiguration.getProperty(ITEM_COUNTER_CACHE_TIME_TO_LIVE));
+    }
+
+    public ItemCounterDAO getItemCounterDao() {
+        return itemCounterDao;
+    }
+
+    public void setItemCounterDao(ItemCounterDAO itemCounterDao) {
+        this.itemCounterDao = itemCounterDao;
+    }
+
+    public ClusterDAO getClusterDao() {
+        return clusterDao;
+    }
+
+    public void setClusterDao(ClusterDAO clusterDao) {
+        this.clusterDao = clusterDao;
+    }
+
+    public StudioConfiguration getStudioConfiguration() {
+        return studioConfiguration;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    private static class CachedTotal {
+
+        private final long total;
+        private final long loadTime = System.currentTimeMillis();
+
+        private CachedTotal(long total) {
+            this.total = total;
+        }
+    }
+}
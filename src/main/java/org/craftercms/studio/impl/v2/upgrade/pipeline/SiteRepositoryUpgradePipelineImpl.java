@@ -101,7 +101,7 @@ public class SiteRepositoryUpgradePipelineImpl extends DefaultUpgradePipelineImp
         GitContentRepositoryHelper helper = new GitContentRepositoryHelper(studioConfiguration, servicesConfig,
                 userServiceInternal, securityService);
 
-        Repository repository = helper.getRepository(site, GitRepositories.SANDBOX);
+        Repository repository = helper.acquireRepository(site, GitRepositories.SANDBOX);
         if (repository != null) {
             Git git = new Git(repository);
             try {
@@ -125,6 +125,7 @@ public class SiteRepositoryUpgradePipelineImpl extends DefaultUpgradePipelineImp
                     }
                 }
                 git.close();
+                helper.releaseRepository(site, GitRepositories.SANDBOX, repository);
             }
         }
 
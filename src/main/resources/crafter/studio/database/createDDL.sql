@@ -57,7 +57,8 @@ CREATE TABLE IF NOT EXISTS `dependency` (
   `type`        VARCHAR(50) NOT NULL,
   PRIMARY KEY (`id`),
   KEY `dependency_site_idx` (`site`),
-  KEY `dependency_sourcepath_idx` (`source_path`(1000))
+  KEY `dependency_sourcepath_idx` (`source_path`(1000)),
+  KEY `dependency_site_targetpath_idx` (`site`, `target_path`(900))
 )
   ENGINE = InnoDB
   DEFAULT CHARSET = utf8
@@ -127,6 +128,7 @@ CREATE TABLE IF NOT EXISTS `site` (
   `publishing_enabled`              INT           NOT NULL DEFAULT 1,
   `publishing_status_message`       VARCHAR(2000) NULL,
   `last_verified_gitlog_commit_id`  VARCHAR(50)   NULL,
+  `last_indexed_commit_id`          VARCHAR(50)   NULL,
   `sandbox_branch`                  VARCHAR(255)  NOT NULL DEFAULT 'master',
   `search_engine`                   VARCHAR(20)   NOT NULL DEFAULT 'Elasticsearch',
   PRIMARY KEY (`id`),
@@ -320,6 +322,38 @@ CREATE TABLE IF NOT EXISTS remote_repository
   DEFAULT CHARSET = utf8
   ROW_FORMAT = DYNAMIC ;
 
+CREATE TABLE IF NOT EXISTS deployment_history
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `environment`     VARCHAR(255)  NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `publish_date`    DATETIME      NOT NULL,
+  `username`        VARCHAR(255)  NULL,
+  `package_id`      VARCHAR(50)   NULL,
+  PRIMARY KEY (`id`),
+  INDEX `deploymenthistory_site_date_idx` (`site_id`, `publish_date`),
+  INDEX `deploymenthistory_site_path_idx` (`site_id`, `path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS commit_path
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `commit_date`     DATETIME      NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `commitpath_site_path_date_idx` (`site_id`, `path`(900), `commit_date`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
 CREATE TABLE IF NOT EXISTS cluster
 (
   `id`                  BIGINT(20)    NOT NULL AUTO_INCREMENT,
@@ -341,6 +375,67 @@ CREATE TABLE IF NOT EXISTS cluster
   DEFAULT CHARSET = utf8
   ROW_FORMAT = DYNAMIC ;
 
+CREATE TABLE IF NOT EXISTS cluster_site_sync_repo
+(
+  `cluster_node_id`     BIGINT(20)    NOT NULL,
+  `site_id`             VARCHAR(50)   NOT NULL,
+  `repo_type`           VARCHAR(20)   NOT NULL,
+  `watermark`           VARCHAR(2000) NOT NULL,
+  `updated_date`        DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`cluster_node_id`, `site_id`, `repo_type`),
+  FOREIGN KEY `cluster_site_sync_repo_node_fk` (`cluster_node_id`) REFERENCES `cluster` (`id`) ON DELETE CASCADE
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS rebuild_item_staging
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site`        VARCHAR(50)   NOT NULL,
+  `path`        VARCHAR(2000) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `rebuild_item_staging_path_idx` (`site`, `path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS rebuild_dependency_staging
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site`        VARCHAR(50)   NOT NULL,
+  `source_path` TEXT          NOT NULL,
+  `target_path` TEXT          NOT NULL,
+  `type`        VARCHAR(50)   NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `rebuild_dependency_staging_source_idx` (`site`, `source_path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS item_counter
+(
+  `site_id`      VARCHAR(50)   NOT NULL,
+  `item_count`   BIGINT(20)    NOT NULL DEFAULT 0,
+  `updated_date` TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS dependency_version
+(
+  `site`         VARCHAR(50)   NOT NULL,
+  `version`      BIGINT(20)    NOT NULL DEFAULT 0,
+  PRIMARY KEY (`site`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
 
 INSERT IGNORE INTO site (site_id, name, description, system)
 VALUES ('studio_root', 'Studio Root', 'Studio Root for global permissions', 1) ;
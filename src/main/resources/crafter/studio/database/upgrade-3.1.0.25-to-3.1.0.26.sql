@@ -0,0 +1,19 @@
+CREATE TABLE IF NOT EXISTS deployment_history
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `environment`     VARCHAR(255)  NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `publish_date`    DATETIME      NOT NULL,
+  `username`        VARCHAR(255)  NULL,
+  `package_id`      VARCHAR(50)   NULL,
+  PRIMARY KEY (`id`),
+  INDEX `deploymenthistory_site_date_idx` (`site_id`, `publish_date`),
+  INDEX `deploymenthistory_site_path_idx` (`site_id`, `path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '3.1.0.26' ;
@@ -0,0 +1,17 @@
+CREATE TABLE IF NOT EXISTS commit_path
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `commit_date`     DATETIME      NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `commitpath_site_path_date_idx` (`site_id`, `path`(900), `commit_date`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+ALTER TABLE `site` ADD COLUMN IF NOT EXISTS `last_indexed_commit_id` VARCHAR(50) NULL ;
+
+UPDATE _meta SET version = '3.1.0.27' ;
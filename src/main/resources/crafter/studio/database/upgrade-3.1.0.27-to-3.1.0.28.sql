@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS cluster_site_sync_repo
+(
+  `cluster_node_id`     BIGINT(20)    NOT NULL,
+  `site_id`             VARCHAR(50)   NOT NULL,
+  `repo_type`           VARCHAR(20)   NOT NULL,
+  `watermark`           VARCHAR(2000) NOT NULL,
+  `updated_date`        DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`cluster_node_id`, `site_id`, `repo_type`),
+  FOREIGN KEY `cluster_site_sync_repo_node_fk` (`cluster_node_id`) REFERENCES `cluster` (`id`) ON DELETE CASCADE
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '3.1.0.28' ;
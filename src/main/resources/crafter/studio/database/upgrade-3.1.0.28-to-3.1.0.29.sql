@@ -0,0 +1,27 @@
+CREATE TABLE IF NOT EXISTS rebuild_item_staging
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site`        VARCHAR(50)   NOT NULL,
+  `path`        VARCHAR(2000) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `rebuild_item_staging_path_idx` (`site`, `path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS rebuild_dependency_staging
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site`        VARCHAR(50)   NOT NULL,
+  `source_path` TEXT          NOT NULL,
+  `target_path` TEXT          NOT NULL,
+  `type`        VARCHAR(50)   NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `rebuild_dependency_staging_source_idx` (`site`, `source_path`(900))
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '3.1.0.29' ;
@@ -0,0 +1,3 @@
+CREATE INDEX IF NOT EXISTS `dependency_site_targetpath_idx` ON `dependency` (`site`, `target_path`(900)) ;
+
+UPDATE _meta SET version = '3.1.0.30' ;
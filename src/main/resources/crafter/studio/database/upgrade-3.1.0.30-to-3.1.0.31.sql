@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS item_counter
+(
+  `site_id`      VARCHAR(50)   NOT NULL,
+  `item_count`   BIGINT(20)    NOT NULL DEFAULT 0,
+  `updated_date` TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+INSERT INTO item_counter (site_id, item_count)
+SELECT site, COUNT(1) FROM item_metadata GROUP BY site
+ON DUPLICATE KEY UPDATE item_count = VALUES(item_count) ;
+
+UPDATE _meta SET version = '3.1.0.31' ;
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS dependency_version
+(
+  `site`         VARCHAR(50)   NOT NULL,
+  `version`      BIGINT(20)    NOT NULL DEFAULT 0,
+  PRIMARY KEY (`site`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '3.1.0.32' ;